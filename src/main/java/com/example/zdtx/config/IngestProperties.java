@@ -0,0 +1,56 @@
+package com.example.zdtx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 入队限流与背压配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "zdtx.ingest")
+public class IngestProperties {
+
+    private boolean enabled = true;
+
+    // 未单独配置的来源系统：每秒补充的令牌数、桶容量（允许的突发条数）
+    private double defaultRatePerSec = 50.0;
+
+    private int defaultBurst = 200;
+
+    // 各来源系统单独的限额，key 为 systemCode
+    private Map<String, Limit> sources = new HashMap<>();
+
+    // 等待队列深度水位：超过 high 开始拒绝，降到 low 以下恢复
+    private long highWatermark = 50000L;
+
+    private long lowWatermark = 40000L;
+
+    // 多久读一次等待队列深度
+    private long depthRefreshMs = 500L;
+
+    // 回复里建议的重试间隔上限
+    private long retryAfterMaxMs = 60000L;
+
+    @Data
+    public static class Limit {
+        private double ratePerSec;
+
+        private int burst;
+    }
+
+    public Limit limitOf(String source) {
+        Limit l = sources.get(source);
+        if (l != null && l.getRatePerSec() > 0 && l.getBurst() > 0) {
+            return l;
+        }
+        Limit d = new Limit();
+        d.setRatePerSec(defaultRatePerSec);
+        d.setBurst(defaultBurst);
+        return d;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.zdtx.config;
+
+import com.example.zdtx.utils.PooledHttpClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 让 RestTemplate 走共用的 PooledHttpClient（连接复用、按 host 限流、超时、统计都一致）
+ */
+public class PooledClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private final PooledHttpClient client;
+
+    public PooledClientHttpRequestFactory(PooledHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new Request(uri, httpMethod);
+    }
+
+    /**
+     * 先把 body 缓存在内存里，execute 时一次发出
+     */
+    private class Request implements ClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+        Request(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            Map<String, String> flat = new LinkedHashMap<>();
+            headers.forEach((k, v) -> flat.put(k, String.join(",", v)));
+            return new Response(client.execute(method.name(), uri.toString(), flat, body.toByteArray()));
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static class Response implements ClientHttpResponse {
+        private final PooledHttpClient.Response resp;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        Response(PooledHttpClient.Response resp) {
+            this.resp = resp;
+            resp.headers().forEach(headers::put);
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(resp.status());
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return resp.status();
+        }
+
+        @Override
+        public String getStatusText() {
+            HttpStatus status = HttpStatus.resolve(resp.status());
+            return status == null ? "" : status.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(resp.body());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
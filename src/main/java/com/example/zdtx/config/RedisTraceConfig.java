@@ -0,0 +1,41 @@
+package com.example.zdtx.config;
+
+import com.example.zdtx.utils.RoundTrace;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * 调度追踪的 Redis 命令计数：连接工厂初始化完（客户端已建、连接还没建）就挂上 Lettuce 命令监听，
+ * 命令在发起线程上写出时记到该线程正在采样的一轮上；没有采样的线程只多一次 ThreadLocal 读取
+ */
+@Configuration
+public class RedisTraceConfig {
+
+    @Bean
+    public static BeanPostProcessor redisCommandCounter(Environment environment) {
+        boolean enabled = environment.getProperty("zdtx.trace.enabled", Boolean.class, true);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof LettuceConnectionFactory) {
+                    AbstractRedisClient client = ((LettuceConnectionFactory) bean).getNativeClient();
+                    if (client != null) {
+                        client.addListener(new CommandListener() {
+                            @Override
+                            public void commandStarted(CommandStartedEvent event) {
+                                RoundTrace.redis(1);
+                            }
+                        });
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -1,13 +1,33 @@
 package com.example.zdtx.config;
 
+import com.example.zdtx.utils.HttpUtils;
+import com.example.zdtx.utils.PooledHttpClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * 对外 HTTP：RestTemplate 和 HttpUtils 共用同一个连接池客户端
+ */
 @Configuration
 public class RestTemplateConfig {
+
+    @Bean
+    public PooledHttpClient pooledHttpClient(@Value("${zdtx.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                             @Value("${zdtx.http.read-timeout-ms:5000}") long readTimeoutMs,
+                                             @Value("${zdtx.http.max-per-host:32}") int maxPerHost,
+                                             @Value("${zdtx.http.acquire-timeout-ms:1000}") long acquireTimeoutMs,
+                                             @Value("${zdtx.http.compression:true}") boolean compression,
+                                             @Value("${zdtx.http.auth-token:}") String authToken) {
+        PooledHttpClient client = new PooledHttpClient(connectTimeoutMs, readTimeoutMs, maxPerHost,
+                acquireTimeoutMs, compression);
+        HttpUtils.use(client, authToken);
+        return client;
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(PooledHttpClient pooledHttpClient) {
+        return new RestTemplate(new PooledClientHttpRequestFactory(pooledHttpClient));
     }
 }
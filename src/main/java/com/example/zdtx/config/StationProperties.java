@@ -0,0 +1,29 @@
+package com.example.zdtx.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 终点（站台）容量配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "zdtx.station")
+public class StationProperties {
+
+    // 未单独配置的终点默认缓存位数
+    private int defaultSlots = 1;
+
+    // 各终点缓存位数，key 为终点编码
+    private Map<String, Integer> slots = new HashMap<>();
+
+    // 没有学习数据时的默认处理时间
+    private long defaultProcessMs = 10000L;
+
+    // 学习样本数达到多少后完全采用学习值
+    private long warmupN = 5;
+}
@@ -8,4 +8,7 @@ public class ParameterConstants {
     //货物在中转点处理的等待下限
     public static final int  STATS_PROCESSING_TIME_LOWER = 5;
 
+    //站点作业时间统计上限（超过视为异常样本）
+    public static final long STATS_STATION_DWELL_UPPER = 30 * 60 * 1000L;
+
 }
@@ -1,20 +1,111 @@
 package com.example.zdtx.constants;
 
+/**
+ * Redis key 布局（兼容 Redis Cluster）：
+ * 1. 分区工作集：等待队列、任务详情、在途 / 截止时间 / 取消 / 死信索引、启动标记、终点占用、段负载按分区带 hash tag，
+ *    key = tag(分区) + 下面的后缀（仓库 WH1 是 {WH1}，默认分区是 {_default}）。下发 / 完成 / 回收脚本只碰一个分区的 key，
+ *    不同分区落在不同的槽，可以分到不同分片
+ * 2. 指令号 → 分区的索引 task:house:<code> 不带 tag，只拿到指令号的回报 / 取消 / 去重先查它，查不到是默认分区
+ * 3. 全局 key（分区登记、key 布局版本）带 {zdtx}
+ * 4. OD / 容器 / 终点统计、终点可用时间、通知溢出、令牌桶等单 key 访问的不带 tag，按 key 自然分散到各分片
+ */
 public class RedisConstants {
-    //创建任务
+    /** 全局 key 的 hash tag */
+    public static final String CORE_TAG = "{zdtx}";
+
+    /** 默认分区（不带仓库编码）在 hash tag 里的名字 */
+    public static final String DEFAULT_PARTITION_TAG = "_default";
+
+    /** 分区的 hash tag；分区名不能是保留的 _default，也不能带花括号（会和别的分区撞槽 / 撞名），入队时已校验 */
+    public static String tag(String partition) {
+        if (partition == null || partition.isEmpty()) return "{" + DEFAULT_PARTITION_TAG + "}";
+        if (partition.equalsIgnoreCase(DEFAULT_PARTITION_TAG) || partition.indexOf('{') >= 0 || partition.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("非法分区名：" + partition);
+        }
+        return "{" + partition + "}";
+    }
+
+    /** 分区工作集里的 key：tag + 后缀 */
+    public static String key(String partition, String suffix) {
+        return tag(partition) + suffix;
+    }
+
+    /** 分区工作集 key 所属的分区（取 tag 里的名字），不带 tag 的返回 null */
+    public static String partitionOfKey(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        if (close < 0) return null;
+        String name = key.substring(open + 1, close);
+        return DEFAULT_PARTITION_TAG.equals(name) ? "" : name;
+    }
+
+    // ---------- 以下为分区工作集的后缀，用 key(分区, 后缀) 拼 ----------
+
+    /** 在途任务（member=指令号，score=预计完成时间） */
     public static final String TASK_RUNNING_ZSET = "task:running";
+    /** 在途任务详情（下发时从 task:info 转过来，重发次数也记在这里） */
+    public static final String TASK_RUNNING_INFO = "task:running:info:";
 
     public static final String TASK_WAITING_ZSET = "task:waiting";
     public static final String TASK_INFO = "task:info:";
+    /** 有截止时间的等待任务（member=指令号，score=截止时间），入队预测时数排在前面的任务 */
+    public static final String TASK_DUE_ZSET = "task:due";
 
-    /** 已完成任务有序集合 */
+    /** 启动标记：值为启动时间，完成后改成耗时 */
     public static final String TASK_COMPLETED_SET      = "task:completed:";
-    /** 已取消任务集合 */
+    /** 压缩存量启动标记时的耗时汇总，和启动标记在同一个槽 */
+    public static final String STATS_COMPLETED_LEGACY = "stats:completed:legacy";
+    /** 已取消任务集合（启动后才取消的，超时回收时不再重发） */
     public static final String TASK_CANCELLED_SET       = "task:cancelled";
+    /** 死信任务（超时且重发次数用完，member=指令号，score=进入时间） */
+    public static final String TASK_DEAD_ZSET = "task:dead";
+    public static final String TASK_DEAD_INFO = "task:dead:info:";
+
+    /** 终点缓存位占用时间线（member=指令号，score=预计释放时间），后缀为终点 */
+    public static final String NODE_OCCUPANCY = "node:occupancy:";
+
+    /** 各路径段上的在途任务数（hash，field=段 id，随下发 / 完成 / 回收增减） */
+    public static final String ROUTE_LOAD = "route:load";
+
+    // ---------- 以下为完整 key ----------
+
+    /** 指令号 → 所属分区（只记非默认分区），不带 tag */
+    public static final String TASK_HOUSE = "task:house:";
+
+    /** 登记过的非默认分区（set） */
+    public static final String PARTITIONS = CORE_TAG + "partitions";
+
+    /** 已完成任务按天汇总（hash：count, sum_ms, b<对数桶>），后缀为 yyyyMMdd；压缩时存量耗时记在各分区的 legacy 里 */
+    public static final String STATS_COMPLETED = "stats:completed:";
 
     public static final Integer MAX_TASK = 6;
 
     public static final String CONTAINER_LAST =  "stats:container:last:";
 
     public static final String CONTAINER_DURATION =  "stats:container:duration:";
+
+    /** 终点预计最早可接任务时间 */
+    public static final String NODE_AVAILABLE = "node:available:";
+
+    /** 站点作业时间统计（容器连续任务间隔减 OD 行驶时间） */
+    public static final String STATION_SERVICE = "stats:station:service:";
+
+    /** 入队去重布隆过滤器（按时间窗口轮换，后缀为窗口序号；当前和上一窗口一起检查，共用 tag {bloom}） */
+    public static final String DEDUPE_BLOOM = "dedupe:{bloom}:";
+
+    /** 降级期间本地 WAL 事件的回放标记，保证重复回放幂等 */
+    public static final String WAL_APPLIED = "wal:applied:";
+
+    /** 上游通知内存队列满时溢出到这里（list，元素为 "入队时间|JSON"，后缀为接口名） */
+    public static final String NOTIFY_SPILL = "notify:spill:";
+    /** 重试次数用完仍未送达的上游通知 */
+    public static final String NOTIFY_DEAD = "notify:dead:";
+
+    /** 入队令牌桶（hash：tokens, ts），后缀为来源系统 */
+    public static final String INGEST_BUCKET = "ingest:bucket:";
+
+    /** 本库 key 布局版本，旧布局（不带 hash tag）迁移完成后写入 */
+    public static final String KEYSPACE_VERSION = CORE_TAG + "keyspace:version";
+    /** key 布局迁移锁（SET NX + 租期），同一时刻只有一个实例在迁 */
+    public static final String KEYSPACE_MIGRATE_LOCK = KEYSPACE_VERSION + ":lock";
 }
@@ -0,0 +1,177 @@
+package com.example.zdtx.controller;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.CompletedDayVO;
+import com.example.zdtx.domain.vo.HttpHostVO;
+import com.example.zdtx.domain.vo.JournalVO;
+import com.example.zdtx.domain.vo.KeyspaceVO;
+import com.example.zdtx.domain.vo.NotifyEndpointVO;
+import com.example.zdtx.domain.vo.RedisGatewayVO;
+import com.example.zdtx.domain.vo.ReplayVO;
+import com.example.zdtx.domain.vo.RetentionVO;
+import com.example.zdtx.domain.vo.RoundTraceVO;
+import com.example.zdtx.domain.vo.SchedulingWeightsVO;
+import com.example.zdtx.domain.vo.TraceVO;
+import com.example.zdtx.domain.vo.TuningRunVO;
+import com.example.zdtx.domain.vo.TuningVO;
+import com.example.zdtx.domain.vo.WarmupVO;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.RedisGatewayService;
+import com.example.zdtx.service.RedisKeyspaceService;
+import com.example.zdtx.service.RetentionService;
+import com.example.zdtx.service.RoundTraceService;
+import com.example.zdtx.service.WarmupService;
+import com.example.zdtx.service.WeightTunerService;
+import com.example.zdtx.utils.HttpUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@CrossOrigin
+public class AdminController {
+
+    private final RedisGatewayService redisGatewayService;
+
+    private final NotifyService notifyService;
+
+    private final WarmupService warmupService;
+
+    private final DispatchJournalService dispatchJournalService;
+
+    private final RetentionService retentionService;
+
+    private final RoundTraceService roundTraceService;
+
+    private final WeightTunerService weightTunerService;
+
+    private final RedisKeyspaceService redisKeyspaceService;
+
+    @GetMapping("/redis-gateway")
+    Result<RedisGatewayVO> redisGateway(){
+        return Result.success(redisGatewayService.stats());
+    }
+
+    /**
+     * key 布局：是否集群、调度工作集所在节点、各节点槽数、旧 key 迁移结果
+     */
+    @GetMapping("/keyspace")
+    Result<KeyspaceVO> keyspace(){
+        return Result.success(redisKeyspaceService.info());
+    }
+
+    /**
+     * 就绪探针：启动预热结束前返回 503
+     */
+    @GetMapping("/ready")
+    ResponseEntity<Result<WarmupVO>> ready(){
+        WarmupVO info = warmupService.info();
+        if (!Boolean.TRUE.equals(info.getReady())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Result.error("预热中"));
+        }
+        return ResponseEntity.ok(Result.success(info));
+    }
+
+    @GetMapping("/warmup")
+    Result<WarmupVO> warmup(){
+        return Result.success(warmupService.info());
+    }
+
+    @GetMapping("/notify")
+    Result<List<NotifyEndpointVO>> notifyStats(){
+        return Result.success(notifyService.stats());
+    }
+
+    @GetMapping("/http")
+    Result<List<HttpHostVO>> http(){
+        return Result.success(HttpUtils.stats());
+    }
+
+    @GetMapping("/journal")
+    Result<JournalVO> journal(){
+        return Result.success(dispatchJournalService.stats());
+    }
+
+    /**
+     * 用当前调度代码回放本机最近的调度日志，列出决定不同的指令
+     */
+    @PostMapping("/journal/replay")
+    Result<ReplayVO> replayJournal(@RequestParam(required = false) Integer rounds){
+        return dispatchJournalService.replay(rounds);
+    }
+
+    @GetMapping("/retention")
+    Result<RetentionVO> retention(){
+        return Result.success(retentionService.info());
+    }
+
+    /**
+     * 立即压缩一批存量 task:completed:*，不等定时任务
+     */
+    @PostMapping("/retention/compact")
+    Result<RetentionVO> compact(){
+        return Result.success(retentionService.compact());
+    }
+
+    /**
+     * 按天汇总的完成耗时：/admin/retention/days?days=7
+     */
+    @GetMapping("/retention/days")
+    Result<List<CompletedDayVO>> completedDays(@RequestParam(defaultValue = "7") int days){
+        return Result.success(retentionService.days(days));
+    }
+
+    @GetMapping("/trace")
+    Result<TraceVO> trace(){
+        return Result.success(roundTraceService.stats());
+    }
+
+    /**
+     * 采样到的最慢几轮调度，带各阶段耗时和 Redis 命令数：/admin/trace/slowest?n=10
+     */
+    @GetMapping("/trace/slowest")
+    Result<List<RoundTraceVO>> slowestRounds(@RequestParam(defaultValue = "10") int n){
+        return Result.success(roundTraceService.slowest(n));
+    }
+
+    /**
+     * 运行时调整采样比例，0 关闭：/admin/trace/sample?rate=0.1
+     */
+    @PostMapping("/trace/sample")
+    Result<TraceVO> traceSample(@RequestParam double rate){
+        return Result.success(roundTraceService.sample(rate));
+    }
+
+    @GetMapping("/tuning")
+    Result<TuningVO> tuning(){
+        return Result.success(weightTunerService.info());
+    }
+
+    /**
+     * 在最近的调度日志上搜索调度权重，apply=false 只给建议：/admin/tuning/run?apply=true
+     */
+    @PostMapping("/tuning/run")
+    Result<TuningRunVO> tuningRun(@RequestParam(defaultValue = "false") boolean apply){
+        return Result.success(weightTunerService.run(apply));
+    }
+
+    /**
+     * 手工设定调度权重，没给的字段沿用当前值
+     */
+    @PutMapping("/tuning/weights")
+    Result<TuningVO> tuningWeights(@RequestBody SchedulingWeightsVO weights){
+        return Result.success(weightTunerService.set(weights));
+    }
+
+    @PostMapping("/tuning/rollback")
+    Result<TuningVO> tuningRollback(){
+        TuningVO vo = weightTunerService.rollback();
+        return vo == null ? Result.error("没有可回滚的切换") : Result.success(vo);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.zdtx.controller;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.BatchSizeVO;
+import com.example.zdtx.domain.vo.DegradedVO;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.DispatchBatchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/dispatch")
+@RequiredArgsConstructor
+@CrossOrigin
+public class DispatchController {
+
+    private final DispatchBatchService dispatchBatchService;
+
+    private final DegradedModeService degradedModeService;
+
+    @GetMapping("/batch")
+    Result<BatchSizeVO> batch(){
+        return Result.success(dispatchBatchService.snapshot());
+    }
+
+    @GetMapping("/degraded")
+    Result<DegradedVO> degraded(){
+        return Result.success(degradedModeService.info());
+    }
+}
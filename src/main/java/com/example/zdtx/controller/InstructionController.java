@@ -2,15 +2,35 @@ package com.example.zdtx.controller;
 
 import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
 import com.example.zdtx.domain.dto.instruction.InstructionCancelDTO;
+import com.example.zdtx.domain.dto.instruction.QueueBrowseDTO;
 import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.AdmissionVO;
+import com.example.zdtx.domain.vo.DedupeVO;
+import com.example.zdtx.domain.vo.ImportVO;
+import com.example.zdtx.domain.vo.IngestVO;
 import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LifecycleVO;
+import com.example.zdtx.domain.vo.PartitionVO;
+import com.example.zdtx.domain.vo.QueuePageVO;
+import com.example.zdtx.service.AdmissionService;
+import com.example.zdtx.service.BulkImportService;
+import com.example.zdtx.service.DedupeService;
+import com.example.zdtx.service.IngestGuardService;
 import com.example.zdtx.service.InstructionServcie;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.QueueInspectService;
+import com.example.zdtx.service.TaskLifecycleService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -19,7 +39,9 @@ import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/instruction")
@@ -29,6 +51,20 @@ public class InstructionController {
 
     private final InstructionServcie instructionServcie;
 
+    private final DedupeService dedupeService;
+
+    private final TaskLifecycleService taskLifecycleService;
+
+    private final QueueInspectService queueInspectService;
+
+    private final AdmissionService admissionService;
+
+    private final IngestGuardService ingestGuardService;
+
+    private final PartitionService partitionService;
+
+    private final BulkImportService bulkImportService;
+
     // ⭐ 手动文件配置
     private static final Path TASK_LOG = Paths.get("logs", "instruction-tasks.log");
     private static final ObjectMapper MAPPER = new ObjectMapper();
@@ -36,13 +72,27 @@ public class InstructionController {
     private static final DateTimeFormatter TS = DateTimeFormatter.ISO_INSTANT;
 
     @PostMapping("/addInstruction")
-    Result<Boolean> addInstruction(@Valid @RequestBody InstructionAddDTO requestparm){
+    ResponseEntity<Result<Boolean>> addInstruction(@Valid @RequestBody InstructionAddDTO requestparm){
+        IngestGuardService.Busy busy = ingestGuardService.check(requestparm.getSystemCode(), 1);
+        if (busy != null) {
+            return rejected(busy);
+        }
         long t0 = System.currentTimeMillis();
 
         Result<Boolean> result = instructionServcie.addInstruction(requestparm);
 
 //        appendTaskLog(requestparm, result, System.currentTimeMillis() - t0);
-        return result;
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 背压拒绝：回 429 + Retry-After（秒）
+     */
+    static <T> ResponseEntity<Result<T>> rejected(IngestGuardService.Busy busy) {
+        long sec = (busy.retryAfterMs + 999) / 1000;
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(sec))
+                .body(Result.error("系统繁忙：" + busy.reason + "，请 " + sec + " 秒后重试"));
     }
 
     private void appendTaskLog(InstructionAddDTO req, Result<Boolean> resp, long costMs) {
@@ -69,8 +119,38 @@ public class InstructionController {
     }
 
     @PostMapping("/addInstructions")
-    Result<Void> addInstructions(@Valid @RequestBody List<InstructionAddDTO> requestparm){
-        return instructionServcie.addInstructions(requestparm);
+    ResponseEntity<Result<Void>> addInstructions(@Valid @RequestBody List<InstructionAddDTO> requestparm){
+        // 按来源分组取令牌，有一组被拒就整批拒绝（已扣的退回）
+        Map<String, Integer> bySource = new LinkedHashMap<>();
+        for (InstructionAddDTO dto : requestparm) {
+            bySource.merge(dto.getSystemCode() == null ? "" : dto.getSystemCode(), 1, Integer::sum);
+        }
+        IngestGuardService.Busy busy = ingestGuardService.checkAll(bySource);
+        if (busy != null) {
+            return rejected(busy);
+        }
+        return ResponseEntity.ok(instructionServcie.addInstructions(requestparm));
+    }
+
+    /**
+     * 大批量流式导入：body 为 JSON 数组或 NDJSON（Content-Type: application/x-ndjson），边读边分段入队，
+     * 回复逐条错误；被限流停下时回 429 + Retry-After，带上从哪条开始重发
+     */
+    @PostMapping("/import")
+    ResponseEntity<Result<ImportVO>> importInstructions(HttpServletRequest request) throws IOException {
+        ImportVO summary = bulkImportService.importStream(request.getInputStream());
+        if (summary.getStopped() == null) {
+            return ResponseEntity.ok(Result.success(summary, "导入完成"));
+        }
+        Result<ImportVO> result = Result.error("导入中途停止：" + summary.getStopped()
+                + "，请从第 " + summary.getResumeFrom() + " 条（序号）开始重发");
+        result.setData(summary);
+        if (summary.getRetryAfterMs() == null) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((summary.getRetryAfterMs() + 999) / 1000))
+                .body(result);
     }
 
     @DeleteMapping("/cancelInstruction")
@@ -78,9 +158,57 @@ public class InstructionController {
         return instructionServcie.cancelInstruction(requestparm);
     }
 
+    /**
+     * 调度一轮：/instruction/getInstructions?partition=WH1 只调度该仓库 / 产线，不带时为默认分区
+     * 降级模式下降级队列不分区，只有默认分区出任务（包含所有仓库的），带非默认分区时返回错误
+     */
     @GetMapping("/getInstructions")
-    Result<List<InstructionExVO>> getInstructions() throws InterruptedException {
-        return instructionServcie.getInstructions();
+    Result<List<InstructionExVO>> getInstructions(@RequestParam(required = false) String partition) {
+        return instructionServcie.getInstructions(partition);
+    }
+
+    /**
+     * 所有已知分区并行各调度一轮，只返回有结果的分区
+     */
+    @GetMapping("/getInstructionsAll")
+    Result<Map<String, List<InstructionExVO>>> getInstructionsAll() {
+        return instructionServcie.getInstructionsAll();
+    }
+
+    @GetMapping("/partitions")
+    Result<PartitionVO> partitions(){
+        return Result.success(partitionService.info());
+    }
+
+    /**
+     * 只读浏览等待队列：/instruction/queue?size=50&cursor=...&locationTo=G02&minPriority=1&minAgeMs=60000
+     */
+    @GetMapping("/queue")
+    Result<QueuePageVO> queue(QueueBrowseDTO query){
+        return queueInspectService.browse(query);
+    }
+
+    /**
+     * 只预测不入队：按当前积压估计完成时间和能否赶上截止时间
+     */
+    @PostMapping("/admission")
+    Result<AdmissionVO> admission(@Valid @RequestBody InstructionAddDTO requestparm){
+        return Result.success(admissionService.predict(requestparm));
+    }
+
+    @GetMapping("/ingest")
+    Result<IngestVO> ingest(){
+        return Result.success(ingestGuardService.info());
+    }
+
+    @GetMapping("/dedupe")
+    Result<DedupeVO> dedupe(){
+        return Result.success(dedupeService.stats());
+    }
+
+    @GetMapping("/running")
+    Result<LifecycleVO> running(@RequestParam(defaultValue = "20") int limit){
+        return Result.success(taskLifecycleService.info(limit));
     }
 
     @DeleteMapping("/clear")
@@ -0,0 +1,52 @@
+package com.example.zdtx.controller;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LimiterVO;
+import com.example.zdtx.service.IngestGuardService;
+import com.example.zdtx.service.ReactiveInstructionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * 入队 / 调度 / 回报的非阻塞版本，接口参数与 /instruction、/status 一致
+ */
+@RestController
+@RequestMapping("/rx")
+@RequiredArgsConstructor
+@CrossOrigin
+public class ReactiveInstructionController {
+
+    private final ReactiveInstructionService reactiveInstructionService;
+
+    private final IngestGuardService ingestGuardService;
+
+    @PostMapping("/instruction/addInstruction")
+    Mono<ResponseEntity<Result<Boolean>>> addInstruction(@Valid @RequestBody InstructionAddDTO requestparm){
+        return ingestGuardService.checkAsync(requestparm.getSystemCode(), 1)
+                .map(InstructionController::<Boolean>rejected)
+                .switchIfEmpty(Mono.defer(() -> reactiveInstructionService.addInstruction(requestparm).map(ResponseEntity::ok)));
+    }
+
+    @GetMapping("/instruction/getInstructions")
+    Mono<Result<List<InstructionExVO>>> getInstructions(){
+        return reactiveInstructionService.getInstructions();
+    }
+
+    @PostMapping("/status/update")
+    Mono<Result<Boolean>> updateStatus(@Valid @RequestBody StatusUpdateDTO requestparm){
+        return reactiveInstructionService.updateStatus(requestparm);
+    }
+
+    @GetMapping("/limiter")
+    Result<List<LimiterVO>> limiter(){
+        return Result.success(reactiveInstructionService.limiters());
+    }
+}
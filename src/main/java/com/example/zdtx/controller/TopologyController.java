@@ -0,0 +1,56 @@
+package com.example.zdtx.controller;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.RouteLoadVO;
+import com.example.zdtx.domain.vo.RouteVO;
+import com.example.zdtx.domain.vo.TopologyVO;
+import com.example.zdtx.service.RouteService;
+import com.example.zdtx.service.TopologyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/topology")
+@RequiredArgsConstructor
+@CrossOrigin
+public class TopologyController {
+
+    private final TopologyService topologyService;
+
+    private final RouteService routeService;
+
+    @GetMapping
+    Result<TopologyVO> info(){
+        return Result.success(topologyService.info());
+    }
+
+    @PostMapping("/reload")
+    Result<TopologyVO> reload(){
+        try {
+            return Result.success(topologyService.reload().join(), "重载成功");
+        } catch (Exception e) {
+            return Result.error("重载失败：" + e.getMessage());
+        }
+    }
+
+    @GetMapping("/route")
+    Result<RouteVO> route(@RequestParam String from,
+                          @RequestParam String to,
+                          @RequestParam(defaultValue = "SHORTEST") Topology.DirectionPolicy policy){
+        Topology topology = topologyService.current();
+        List<Topology.Seg> path = topology.path(from, to, policy);
+        List<String> segs = path.stream()
+                .map(s -> s.id + (s.dir > 0 ? "↑" : s.dir < 0 ? "↓" : "→"))
+                .collect(Collectors.toList());
+        return Result.success(new RouteVO(from, to, policy.name(), topology.costOf(path), segs));
+    }
+
+    @GetMapping("/load")
+    Result<RouteLoadVO> load(){
+        return Result.success(routeService.info());
+    }
+}
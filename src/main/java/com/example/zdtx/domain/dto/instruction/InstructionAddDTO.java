@@ -25,6 +25,14 @@ public class InstructionAddDTO {
     @NotNull(message = "优先级不能为空")
     private Integer priority;
 
+    // 最晚完成时间（毫秒时间戳），可不填
+    private Long dueAt;
+
+    // 来源系统，按它做入队限流，可不填
+    private String systemCode;
+
+    // 仓库 / 产线编码，按它分区排队和调度，可不填（进默认分区）
+    private String houseCode;
 
     @Override
     public String toString() {
@@ -33,6 +41,8 @@ public class InstructionAddDTO {
                 ", 起点='" + locationFrom + '\'' +
                 ", 终点='" + locationTo + '\'' +
                 ", 优先级=" + priority +
+                (dueAt == null ? "" : ", 截止=" + dueAt) +
+                (houseCode == null ? "" : ", 仓库=" + houseCode) +
                 '}';
     }
 }
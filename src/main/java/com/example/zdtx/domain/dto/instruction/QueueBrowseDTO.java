@@ -0,0 +1,32 @@
+package com.example.zdtx.domain.dto.instruction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueueBrowseDTO {
+    // 上一页返回的 nextCursor，第一页不传
+    private String cursor;
+
+    private Integer size;
+
+    // 看哪个仓库的等待队列，不传是默认分区
+    private String houseCode;
+
+    // 以下为可选过滤条件
+    private String locationFrom;
+
+    private String locationTo;
+
+    private Integer minPriority;
+
+    private Integer maxPriority;
+
+    // 按入队时间算的等待时长
+    private Long minAgeMs;
+
+    private Long maxAgeMs;
+}
@@ -0,0 +1,61 @@
+package com.example.zdtx.domain.dto.topology;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 拓扑配置文件（topology.json）结构
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TopologyConfigDTO {
+    private String version;
+
+    // 未单独配置权重的边的默认行驶时间
+    private Integer defaultEdgeMs;
+
+    // 环线（主环、第二环等），节点顺序即“顺时针”方向
+    private List<LoopDTO> loops = new ArrayList<>();
+
+    // 额外的边（捷径、环间连接）
+    private List<EdgeDTO> edges = new ArrayList<>();
+
+    // 站点 -> 挂接的灰点
+    private Map<String, List<String>> attach = new HashMap<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class LoopDTO {
+        private String name;
+
+        private Boolean closed;
+
+        private Boolean bidirectional;
+
+        // 环上每段的统一权重，不配则用 defaultEdgeMs
+        private Integer edgeMs;
+
+        private List<String> nodes = new ArrayList<>();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class EdgeDTO {
+        private String from;
+
+        private String to;
+
+        private Integer ms;
+
+        private Boolean bidirectional;
+    }
+}
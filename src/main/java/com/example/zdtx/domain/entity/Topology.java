@@ -0,0 +1,445 @@
+package com.example.zdtx.domain.entity;
+
+import com.example.zdtx.domain.dto.topology.TopologyConfigDTO;
+
+import java.util.*;
+
+/**
+ * 线体拓扑快照（只读）：
+ * 1. 灰点为图节点，环线 + 额外边组成带权有向图（权重=行驶毫秒）
+ * 2. 构建时用逐源 Dijkstra 预计算全源最短路，距离和下一跳存成扁平 int 矩阵
+ * 3. 站点通过 attach 挂到灰点上，查询时在挂接点之间取最小
+ * 4. 没有 OD 统计时的行驶时间估计（estimateMs）可关掉，关掉后调用方退回固定默认值
+ * 构建完成后不再修改，重载时整体替换
+ */
+public class Topology {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    public static class Seg {
+        public final String id;  // 无向段 id
+        public final int dir;    // +1 顺时针，-1 逆时针，0 非环线边（捷径）
+        public Seg(String id, int dir) { this.id = id; this.dir = dir; }
+        @Override public String toString(){ return "Seg{id="+id+",dir="+dir+"}"; }
+    }
+
+    public enum DirectionPolicy {
+        SHORTEST, CLOCKWISE, COUNTERCLOCKWISE
+    }
+
+    private static class Loop {
+        final String name;
+        final int[] nodes;
+        final boolean closed;
+        final Map<Integer, Integer> pos = new HashMap<>();
+
+        Loop(String name, int[] nodes, boolean closed) {
+            this.name = name;
+            this.nodes = nodes;
+            this.closed = closed;
+            for (int i = 0; i < nodes.length; i++) pos.putIfAbsent(nodes[i], i);
+        }
+    }
+
+    private final String version;
+    private final long builtAt;
+    private final long buildMs;
+    private final int n;
+    private final String[] names;
+    private final Map<String, Integer> index;
+    // dist[s * n + t]：s -> t 的最短行驶毫秒
+    private final int[] dist;
+    // next[s * n + t]：s -> t 最短路上的第一跳，-1 表示不可达
+    private final int[] next;
+    // (a * n + b) -> 方向
+    private final Map<Long, Integer> edgeDir;
+    // (a * n + b) -> 权重
+    private final Map<Long, Integer> edgeMs;
+    private final List<Loop> loops;
+    private final Map<String, int[]> attach;
+    private final boolean coldEstimate;
+
+    private Topology(String version, long builtAt, long buildMs, String[] names, Map<String, Integer> index,
+                     int[] dist, int[] next, Map<Long, Integer> edgeDir, Map<Long, Integer> edgeMs,
+                     List<Loop> loops, Map<String, int[]> attach, boolean coldEstimate) {
+        this.version = version;
+        this.builtAt = builtAt;
+        this.buildMs = buildMs;
+        this.n = names.length;
+        this.names = names;
+        this.index = index;
+        this.dist = dist;
+        this.next = next;
+        this.edgeDir = edgeDir;
+        this.edgeMs = edgeMs;
+        this.loops = loops;
+        this.attach = attach;
+        this.coldEstimate = coldEstimate;
+    }
+
+    // ===================== 构建 =====================
+
+    /**
+     * 按配置构建拓扑
+     *
+     * @param learnedEdgeMs 学习到的边权（key 为 "FROM|TO"），可为空；有值时覆盖配置权重
+     */
+    public static Topology build(TopologyConfigDTO cfg, Map<String, Integer> learnedEdgeMs) {
+        return build(cfg, learnedEdgeMs, true);
+    }
+
+    /**
+     * @param coldEstimate 没有 OD 统计时是否用最短路距离估计行驶时间
+     */
+    public static Topology build(TopologyConfigDTO cfg, Map<String, Integer> learnedEdgeMs, boolean coldEstimate) {
+        long t0 = System.currentTimeMillis();
+        if (cfg == null) {
+            throw new IllegalArgumentException("拓扑配置为空");
+        }
+        Map<String, Integer> learned = learnedEdgeMs == null ? Collections.emptyMap() : learnedEdgeMs;
+        int defaultMs = cfg.getDefaultEdgeMs() == null ? 500 : cfg.getDefaultEdgeMs();
+
+        // 1) 节点编号
+        LinkedHashMap<String, Integer> index = new LinkedHashMap<>();
+        if (cfg.getLoops() != null) {
+            for (TopologyConfigDTO.LoopDTO loop : cfg.getLoops()) {
+                for (String node : loop.getNodes()) indexOf(index, node);
+            }
+        }
+        if (cfg.getEdges() != null) {
+            for (TopologyConfigDTO.EdgeDTO e : cfg.getEdges()) {
+                indexOf(index, e.getFrom());
+                indexOf(index, e.getTo());
+            }
+        }
+        int n = index.size();
+        String[] names = index.keySet().toArray(new String[0]);
+
+        // 2) 有向边
+        Map<Long, Integer> edgeMs = new HashMap<>();
+        Map<Long, Integer> edgeDir = new HashMap<>();
+        List<Loop> loops = new ArrayList<>();
+        if (cfg.getLoops() != null) {
+            for (TopologyConfigDTO.LoopDTO loop : cfg.getLoops()) {
+                int[] nodes = loop.getNodes().stream().mapToInt(s -> index.get(normalize(s))).toArray();
+                boolean closed = !Boolean.FALSE.equals(loop.getClosed());
+                boolean bidirectional = !Boolean.FALSE.equals(loop.getBidirectional());
+                int w = loop.getEdgeMs() == null ? defaultMs : loop.getEdgeMs();
+                int len = nodes.length;
+                int segs = closed ? len : len - 1;
+                for (int i = 0; i < segs; i++) {
+                    int a = nodes[i], b = nodes[(i + 1) % len];
+                    addEdge(edgeMs, edgeDir, n, a, b, weight(learned, names, a, b, w), +1);
+                    if (bidirectional) {
+                        addEdge(edgeMs, edgeDir, n, b, a, weight(learned, names, b, a, w), -1);
+                    }
+                }
+                loops.add(new Loop(loop.getName(), nodes, closed));
+            }
+        }
+        if (cfg.getEdges() != null) {
+            for (TopologyConfigDTO.EdgeDTO e : cfg.getEdges()) {
+                int a = index.get(normalize(e.getFrom()));
+                int b = index.get(normalize(e.getTo()));
+                int w = e.getMs() == null ? defaultMs : e.getMs();
+                addEdge(edgeMs, edgeDir, n, a, b, weight(learned, names, a, b, w), 0);
+                if (Boolean.TRUE.equals(e.getBidirectional())) {
+                    addEdge(edgeMs, edgeDir, n, b, a, weight(learned, names, b, a, w), 0);
+                }
+            }
+        }
+
+        // 3) 邻接表
+        int[] degree = new int[n];
+        for (Long k : edgeMs.keySet()) degree[(int) (k / n)]++;
+        int[][] adj = new int[n][];
+        int[][] adjW = new int[n][];
+        for (int i = 0; i < n; i++) {
+            adj[i] = new int[degree[i]];
+            adjW[i] = new int[degree[i]];
+        }
+        int[] fill = new int[n];
+        for (Map.Entry<Long, Integer> e : edgeMs.entrySet()) {
+            int a = (int) (e.getKey() / n), b = (int) (e.getKey() % n);
+            adj[a][fill[a]] = b;
+            adjW[a][fill[a]++] = e.getValue();
+        }
+
+        // 4) 全源最短路
+        int[] dist = new int[n * n];
+        int[] next = new int[n * n];
+        Arrays.fill(dist, UNREACHABLE);
+        Arrays.fill(next, -1);
+        for (int s = 0; s < n; s++) {
+            dijkstra(s, n, adj, adjW, dist, next);
+        }
+
+        // 5) 站点挂接
+        Map<String, int[]> attach = new HashMap<>();
+        if (cfg.getAttach() != null) {
+            cfg.getAttach().forEach((station, anchors) -> {
+                int[] idx = anchors.stream()
+                        .map(a -> index.get(normalize(a)))
+                        .filter(Objects::nonNull)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+                if (idx.length > 0) attach.put(normalize(station), idx);
+            });
+        }
+
+        long now = System.currentTimeMillis();
+        return new Topology(cfg.getVersion(), now, now - t0, names, Collections.unmodifiableMap(index),
+                dist, next, edgeDir, edgeMs, loops, attach, coldEstimate);
+    }
+
+    private static void dijkstra(int s, int n, int[][] adj, int[][] adjW, int[] dist, int[] next) {
+        int base = s * n;
+        dist[base + s] = 0;
+        next[base + s] = s;
+        PriorityQueue<long[]> pq = new PriorityQueue<>(Comparator.comparingLong(a -> a[0]));
+        pq.add(new long[]{0, s});
+        while (!pq.isEmpty()) {
+            long[] top = pq.poll();
+            int u = (int) top[1];
+            if (top[0] > dist[base + u]) continue;
+            for (int i = 0; i < adj[u].length; i++) {
+                int v = adj[u][i];
+                long nd = top[0] + adjW[u][i];
+                if (nd < dist[base + v]) {
+                    dist[base + v] = (int) Math.min(nd, UNREACHABLE - 1L);
+                    next[base + v] = (u == s) ? v : next[base + u];
+                    pq.add(new long[]{nd, v});
+                }
+            }
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> index, String node) {
+        return index.computeIfAbsent(normalize(node), k -> index.size());
+    }
+
+    private static int weight(Map<String, Integer> learned, String[] names, int a, int b, int def) {
+        Integer w = learned.get(names[a] + "|" + names[b]);
+        return Math.max(1, w == null ? def : w);
+    }
+
+    private static void addEdge(Map<Long, Integer> edgeMs, Map<Long, Integer> edgeDir,
+                                int n, int a, int b, int w, int dir) {
+        if (a == b) return;
+        long key = (long) a * n + b;
+        Integer old = edgeMs.get(key);
+        if (old == null || w < old) {
+            edgeMs.put(key, w);
+        }
+        edgeDir.putIfAbsent(key, dir);
+    }
+
+    private static String normalize(String s) {
+        return s == null ? null : s.trim().toUpperCase();
+    }
+
+    // ===================== 查询 =====================
+
+    /**
+     * 把原始点位映射到灰点：本身就是灰点直接返回，站点则返回挂接的灰点
+     */
+    public List<String> anchors(String raw) {
+        int[] idx = anchorIndexes(raw);
+        if (idx.length == 0) return Collections.emptyList();
+        List<String> list = new ArrayList<>(idx.length);
+        for (int i : idx) list.add(names[i]);
+        return list;
+    }
+
+    private int[] anchorIndexes(String raw) {
+        if (raw == null) return new int[0];
+        String s = normalize(raw);
+        Integer i = index.get(s);
+        if (i != null) return new int[]{i};
+        int[] a = attach.get(s);
+        return a == null ? new int[0] : a;
+    }
+
+    /**
+     * 灰点之间的最短行驶毫秒（O(1)）
+     */
+    public int distance(int from, int to) {
+        return dist[from * n + to];
+    }
+
+    /**
+     * 点位之间的最短行驶毫秒，映射不到或不可达时返回 UNREACHABLE
+     */
+    public int distanceMs(String from, String to) {
+        int best = UNREACHABLE;
+        for (int f : anchorIndexes(from)) {
+            for (int t : anchorIndexes(to)) {
+                best = Math.min(best, dist[f * n + t]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 没有 OD 统计时的行驶时间估计：开启时同 distanceMs，关闭时返回 UNREACHABLE（调用方用固定默认值）
+     */
+    public int estimateMs(String from, String to) {
+        return coldEstimate ? distanceMs(from, to) : UNREACHABLE;
+    }
+
+    /**
+     * 点位之间最短路经过的灰点序列（含起止挂接点），映射不到或不可达时为空
+     */
+    public List<String> nodePath(String from, String to) {
+        int bestF = -1, bestT = -1, best = UNREACHABLE;
+        for (int f : anchorIndexes(from)) {
+            for (int t : anchorIndexes(to)) {
+                if (dist[f * n + t] < best) {
+                    best = dist[f * n + t];
+                    bestF = f;
+                    bestT = t;
+                }
+            }
+        }
+        if (bestF < 0) return Collections.emptyList();
+        List<String> nodes = new ArrayList<>();
+        nodes.add(names[bestF]);
+        for (int cur = bestF; cur != bestT; ) {
+            cur = next[cur * n + bestT];
+            if (cur < 0) return Collections.emptyList();
+            nodes.add(names[cur]);
+        }
+        return nodes;
+    }
+
+    /**
+     * 相邻灰点 a -> b 的边权，没有这条边时返回 UNREACHABLE
+     */
+    public int edgeMs(String a, String b) {
+        Integer i = index.get(normalize(a)), j = index.get(normalize(b));
+        Integer w = i == null || j == null ? null : edgeMs.get((long) i * n + j);
+        return w == null ? UNREACHABLE : w;
+    }
+
+    public List<Seg> path(String from, String to) {
+        return path(from, to, DirectionPolicy.SHORTEST);
+    }
+
+    /**
+     * 展开路径段；顺/逆时针只在同一环线上走，找不到公共环线时退化为最短路
+     */
+    public List<Seg> path(String from, String to, DirectionPolicy policy) {
+        int[] fromAs = anchorIndexes(from);
+        int[] toAs = anchorIndexes(to);
+        if (fromAs.length == 0 || toAs.length == 0) return Collections.emptyList();
+
+        List<Seg> best = null;
+        long bestCost = Long.MAX_VALUE;
+        for (int f : fromAs) {
+            for (int t : toAs) {
+                List<Seg> p = null;
+                long cost;
+                if (policy != DirectionPolicy.SHORTEST) {
+                    p = loopWalk(f, t, policy == DirectionPolicy.CLOCKWISE ? +1 : -1);
+                }
+                if (p == null) {
+                    if (dist[f * n + t] == UNREACHABLE) continue;
+                    cost = dist[f * n + t];
+                } else {
+                    cost = costOf(p);
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = p != null ? p : shortest(f, t);
+                }
+            }
+        }
+        return best == null ? Collections.emptyList() : best;
+    }
+
+    /**
+     * 路径总行驶毫秒
+     */
+    public long costOf(List<Seg> path) {
+        long sum = 0;
+        for (Seg s : path) {
+            sum += segMs(s);
+        }
+        return sum;
+    }
+
+    /**
+     * 单段行驶毫秒（按段的行进方向取边权）
+     */
+    public int segMs(Seg s) {
+        String[] ab = s.id.split("\\|");
+        int a = index.get(ab[0]), b = index.get(ab[1]);
+        Integer w = s.dir >= 0 ? edgeMs.get((long) a * n + b) : edgeMs.get((long) b * n + a);
+        if (w == null) w = edgeMs.get((long) a * n + b);
+        if (w == null) w = edgeMs.get((long) b * n + a);
+        return w == null ? 0 : w;
+    }
+
+    private List<Seg> shortest(int s, int t) {
+        if (s == t) return Collections.emptyList();
+        List<Seg> path = new ArrayList<>();
+        int cur = s;
+        while (cur != t) {
+            int nx = next[cur * n + t];
+            if (nx < 0) return Collections.emptyList();
+            path.add(seg(cur, nx));
+            cur = nx;
+        }
+        return path;
+    }
+
+    private List<Seg> loopWalk(int s, int t, int dir) {
+        if (s == t) return Collections.emptyList();
+        for (Loop loop : loops) {
+            Integer si = loop.pos.get(s), ti = loop.pos.get(t);
+            if (si == null || ti == null) continue;
+            int len = loop.nodes.length;
+            if (!loop.closed && (dir > 0 ? ti < si : ti > si)) continue;
+            List<Seg> path = new ArrayList<>();
+            for (int i = si; i != ti; i = (i + dir + len) % len) {
+                int j = (i + dir + len) % len;
+                path.add(seg(loop.nodes[i], loop.nodes[j]));
+            }
+            return path;
+        }
+        return null;
+    }
+
+    private Seg seg(int a, int b) {
+        String x = names[a], y = names[b];
+        String undirected = x.compareTo(y) < 0 ? x + "|" + y : y + "|" + x;
+        Integer dir = edgeDir.get((long) a * n + b);
+        if (dir == null) {
+            Integer rev = edgeDir.get((long) b * n + a);
+            dir = rev == null ? 0 : -rev;
+        }
+        return new Seg(undirected, dir);
+    }
+
+    // ===================== 元信息 =====================
+
+    public String getVersion() { return version; }
+
+    public long getBuiltAt() { return builtAt; }
+
+    public long getBuildMs() { return buildMs; }
+
+    public int nodeCount() { return n; }
+
+    public int edgeCount() { return edgeMs.size(); }
+
+    public int stationCount() { return attach.size(); }
+
+    public List<String> stations() {
+        List<String> list = new ArrayList<>(attach.keySet());
+        Collections.sort(list);
+        return list;
+    }
+
+    public int loopCount() { return loops.size(); }
+}
@@ -0,0 +1,37 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AdmissionVO {
+    private String instructionCode;
+
+    // 调度模式：score / deadline
+    private String mode;
+
+    private Long dueAt;
+
+    // 预计排在它前面的等待任务数
+    private Long ahead;
+
+    // 估排队时间用的完成速率（条/秒）
+    private Double ratePerSec;
+
+    private Long travelMs;
+
+    private Long serviceMs;
+
+    private Long predictedStartAt;
+
+    private Long predictedFinishAt;
+
+    // 截止时间 - 预计完成时间，没有截止时间为空
+    private Long slackMs;
+
+    // 预计能否按期完成，没有截止时间为空
+    private Boolean onTime;
+}
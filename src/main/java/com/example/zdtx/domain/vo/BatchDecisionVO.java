@@ -0,0 +1,30 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchDecisionVO {
+    private Long ts;
+
+    // 本轮使用的批量
+    private Integer batchSize;
+
+    private Integer candidates;
+
+    private Integer ready;
+
+    private Integer deferred;
+
+    private Integer inFlight;
+
+    private Double completionRatePerSec;
+
+    private Long nodeBacklogMs;
+
+    // 根据本轮信号算出的下一轮批量
+    private Integer nextBatchSize;
+}
@@ -0,0 +1,41 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchSizeVO {
+    // 是否启用自适应（false 时固定为 MAX_TASK）
+    private Boolean adaptive;
+
+    private Integer current;
+
+    private Integer min;
+
+    private Integer max;
+
+    private Double damping;
+
+    // 当前信号
+    private Integer inFlight;
+
+    private Double completionRatePerSec;
+
+    private Double deferredRatio;
+
+    private Long nodeBacklogMs;
+
+    // 累计量，用来和固定批量做吞吐对比
+    private Long rounds;
+
+    private Long dispatched;
+
+    private Double dispatchRatePerMin;
+
+    private List<BatchDecisionVO> history;
+}
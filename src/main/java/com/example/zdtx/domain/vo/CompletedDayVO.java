@@ -0,0 +1,16 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompletedDayVO {
+    // yyyyMMdd；legacy 为压缩时收进来的存量记录（不知道完成日期）
+    private String day;
+
+    // 任务耗时（毫秒），max 为最高非空桶的上界
+    private HistogramVO durations;
+}
@@ -0,0 +1,38 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DedupeVO {
+    private Boolean enabled;
+
+    // 每个窗口预期指令数 / 目标误判率
+    private Long expectedPerWindow;
+
+    private Double fpp;
+
+    // 位图大小（bit）与哈希函数个数
+    private Long bits;
+
+    private Integer hashes;
+
+    private Long windowMs;
+
+    private String currentKey;
+
+    private Long checked;
+
+    // 布隆命中次数（含误判）
+    private Long filterHits;
+
+    private Long duplicateWaiting;
+
+    private Long duplicateDispatched;
+
+    // 布隆命中但精确检查未命中
+    private Long falsePositives;
+}
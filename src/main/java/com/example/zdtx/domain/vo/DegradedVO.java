@@ -0,0 +1,30 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DegradedVO {
+    private Boolean degraded;
+
+    // 进入降级的时间与原因
+    private Long since;
+
+    private String cause;
+
+    // 内存等待队列长度
+    private Integer waiting;
+
+    // 降级期间写入 WAL 的事件数
+    private Long walEvents;
+
+    // 历史累计
+    private Long outages;
+
+    private Long replayedEvents;
+
+    private Long lastRecoveredAt;
+}
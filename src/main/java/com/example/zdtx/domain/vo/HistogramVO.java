@@ -0,0 +1,23 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistogramVO {
+    private Long count;
+
+    private Double mean;
+
+    // 分位数为所在对数桶的上界
+    private Long p50;
+
+    private Long p90;
+
+    private Long p99;
+
+    private Long max;
+}
@@ -0,0 +1,32 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HttpHostVO {
+    // scheme://host:port
+    private String host;
+
+    private Integer maxConcurrent;
+
+    private Long inFlight;
+
+    private Long requests;
+
+    // IO 异常 + 5xx
+    private Long errors;
+
+    private Long timeouts;
+
+    // 等不到并发名额被拒绝的请求
+    private Long rejected;
+
+    private Long bytesIn;
+
+    // 单次请求耗时（毫秒，不含排队）
+    private HistogramVO latencyMs;
+}
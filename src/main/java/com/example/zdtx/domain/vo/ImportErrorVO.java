@@ -0,0 +1,17 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportErrorVO {
+    // 在请求里的序号（从 0 开始）
+    private Integer index;
+
+    private String instructionCode;
+
+    private String message;
+}
@@ -0,0 +1,39 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportVO {
+    // 读到的条数 / 入队的 / 格式或校验不通过的 / 重复、超期等没入队的
+    private Integer total = 0;
+
+    private Integer accepted = 0;
+
+    private Integer invalid = 0;
+
+    private Integer rejected = 0;
+
+    // 写入 Redis 的段数
+    private Integer chunks = 0;
+
+    private Long elapsedMs;
+
+    // 中途停下的原因（限流、JSON 损坏、Redis 异常），以及从第几条（序号）开始重发；全部处理完时为空
+    private String stopped;
+
+    private Integer resumeFrom;
+
+    private Long retryAfterMs;
+
+    // 逐条错误，最多 import-max-errors 条
+    private List<ImportErrorVO> errors = new ArrayList<>();
+
+    private Boolean errorsTruncated = false;
+}
@@ -0,0 +1,29 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestVO {
+    private Boolean enabled;
+
+    // 最近一次读到的等待队列深度
+    private Long waiting;
+
+    private Long highWatermark;
+
+    private Long lowWatermark;
+
+    // 当前是否因队列过深拒绝入队
+    private Boolean busy;
+
+    // 本实例累计因队列过深拒绝的请求数
+    private Long rejectedDepth;
+
+    private List<SourceLimitVO> sources;
+}
@@ -20,6 +20,14 @@ public class InstructionExVO {
 
     private String containerCode;
 
+    // 下发时选定的行驶方向（CLOCKWISE / COUNTERCLOCKWISE / SHORTEST），未下发或映射不到拓扑时为空
+    private String direction;
+
+    public InstructionExVO(String instructionCode, String locationFrom, String locationTo, Integer priority,
+                           String containerCode) {
+        this(instructionCode, locationFrom, locationTo, priority, containerCode, null);
+    }
+
     @Override
     public String toString() {
         return "指令信息 {" +
@@ -27,6 +35,7 @@ public class InstructionExVO {
                 ", 起点='" + locationFrom + '\'' +
                 ", 终点='" + locationTo + '\'' +
                 ", 优先级=" + priority +
+                (direction == null ? "" : ", 方向=" + direction) +
                 '}' + '\n';
     }
 }
@@ -0,0 +1,35 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JournalVO {
+    private Boolean enabled;
+
+    private String dir;
+
+    // 现存分段数与占用（映射文件按分段大小预分配）
+    private Integer segments;
+
+    private Long diskBytes;
+
+    // 本实例写入的轮数 / 字节，队列满丢弃的轮数，写盘失败次数
+    private Long rounds;
+
+    private Long bytes;
+
+    private Long dropped;
+
+    private Long failures;
+
+    private Integer queued;
+
+    // 后台编码 + 追加一轮的耗时（微秒）
+    private HistogramVO appendUs;
+
+    private String lastError;
+}
@@ -0,0 +1,32 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeyspaceVO {
+    // 是否连的 Redis Cluster
+    private Boolean cluster;
+
+    // 默认分区工作集（{_default}）所在的槽和主节点
+    private Integer coreSlot;
+
+    private String coreNode;
+
+    // 各主节点负责的槽数
+    private Map<String, Integer> slotsByNode;
+
+    private Long topologyRefreshedAt;
+
+    // 启动时旧布局 key 的迁移：迁过来的条数、目标已存在没迁的条数、耗时
+    private Long migrated;
+
+    private Long migrateConflicts;
+
+    private Long migrateMs;
+}
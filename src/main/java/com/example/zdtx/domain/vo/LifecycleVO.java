@@ -0,0 +1,37 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LifecycleVO {
+    // 在途 / 已过预计完成时间 / 超过宽限期（下一轮会被回收）
+    private Long running;
+
+    private Long overdue;
+
+    private Long stuck;
+
+    private Long dead;
+
+    private Long graceMs;
+
+    private Integer maxRequeue;
+
+    // 本实例回收累计
+    private Long requeued;
+
+    private Long deadLettered;
+
+    private Long cancelledReaped;
+
+    private Long extended;
+
+    // 最早该完成的在途任务
+    private List<RunningTaskVO> oldest;
+}
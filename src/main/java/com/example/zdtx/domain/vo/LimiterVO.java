@@ -0,0 +1,26 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LimiterVO {
+    private String name;
+
+    private Integer maxInFlight;
+
+    private Integer maxQueue;
+
+    // 当前执行中 / 排队中
+    private Integer inFlight;
+
+    private Integer queued;
+
+    // 累计放行 / 拒绝
+    private Long accepted;
+
+    private Long rejected;
+}
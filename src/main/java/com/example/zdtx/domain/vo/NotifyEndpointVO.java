@@ -0,0 +1,50 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotifyEndpointVO {
+    // confirm / create / feedback
+    private String endpoint;
+
+    private String url;
+
+    // 没配置 url 时不发送
+    private Boolean enabled;
+
+    // 内存队列 / 等待溢出 / 已溢出到 Redis 的条数
+    private Integer queued;
+
+    private Integer overflow;
+
+    private Long spilled;
+
+    // 最老一条未送达消息已等待的时间
+    private Long lagMs;
+
+    private Long enqueued;
+
+    private Long sent;
+
+    private Long batches;
+
+    private Long failures;
+
+    private Long retries;
+
+    private Long deadLettered;
+
+    private Long dropped;
+
+    private String lastError;
+
+    // 单条消息从入队到送达（毫秒）
+    private HistogramVO deliveryMs;
+
+    // 单次批量请求往返（毫秒）
+    private HistogramVO requestMs;
+}
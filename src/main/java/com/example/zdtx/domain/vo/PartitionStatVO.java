@@ -0,0 +1,30 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PartitionStatVO {
+    // 仓库 / 产线编码，默认分区为空串
+    private String partition;
+
+    private Long waiting;
+
+    // 该分区批量控制器给出的下一轮批量
+    private Integer batchSize;
+
+    private Integer inFlight;
+
+    private Long rounds;
+
+    private Long dispatched;
+
+    // 最近一轮调度耗时
+    private Long lastRoundMs;
+
+    // 当前是否正在调度
+    private Boolean busy;
+}
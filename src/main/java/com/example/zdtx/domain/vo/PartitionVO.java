@@ -0,0 +1,20 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PartitionVO {
+    // 并行调度线程池大小
+    private Integer parallelism;
+
+    // 全部分区一起调度时，因该分区正在调度而跳过的次数
+    private Long skipped;
+
+    private List<PartitionStatVO> partitions;
+}
@@ -0,0 +1,23 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueuePageVO {
+    // 等待队列总条数
+    private Long total;
+
+    // 本页在队列里扫过的条数（有过滤条件时可能大于 items 条数）
+    private Integer scanned;
+
+    // 下一页游标，为空表示已到队尾
+    private String nextCursor;
+
+    private List<InstructionExVO> items;
+}
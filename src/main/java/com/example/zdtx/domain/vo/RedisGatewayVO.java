@@ -0,0 +1,43 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RedisGatewayVO {
+    private Boolean enabled;
+
+    private Long windowUs;
+
+    private Integer maxBatch;
+
+    private Integer flushers;
+
+    // 调用方提交的读命令数 / 去重后实际发出的命令数
+    private Long commands;
+
+    private Long sent;
+
+    private Long deduped;
+
+    private Long batches;
+
+    private Long errors;
+
+    // 调用方从提交到拿到结果的等待（微秒）
+    private HistogramVO waitUs;
+
+    // 单个 pipeline 往返（微秒）
+    private HistogramVO pipelineUs;
+
+    // 每批去重后的命令数
+    private HistogramVO batchSize;
+
+    // 集群模式下发往各主节点的命令数
+    private Map<String, Long> sentByNode;
+}
@@ -0,0 +1,29 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplayDiffVO {
+    // 所在轮次的规划时刻
+    private Long plannedAt;
+
+    private String instructionCode;
+
+    // 本批内的名次，未进本批为 -1
+    private Integer recordedRank;
+
+    private Integer replayRank;
+
+    // ready / deferred / unscheduled
+    private String recorded;
+
+    private String replayed;
+
+    private Double recordedScore;
+
+    private Double replayScore;
+}
@@ -0,0 +1,23 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一组权重回放录制轮次的结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplayScoreVO {
+    private Double readyPerRound;
+
+    // 发出去的平均等待 / 候选平均等待
+    private Double waitRatio;
+
+    // 每轮发出后预计在终点前干等的秒数
+    private Double idleSecPerRound;
+
+    private Double objective;
+}
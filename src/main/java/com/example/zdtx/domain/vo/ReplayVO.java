@@ -0,0 +1,48 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplayVO {
+    // 回放轮数 / 解码失败跳过的记录数 / 候选总数
+    private Long rounds;
+
+    private Long skipped;
+
+    private Long candidates;
+
+    // 有任何不同的轮数
+    private Long roundsChanged;
+
+    // ready / deferred / 是否进本批 有变化的条数
+    private Long decisionsChanged;
+
+    // 决定相同但本批内名次变了的条数
+    private Long rankChanged;
+
+    private Long nowReady;
+
+    private Long nowDeferred;
+
+    // 当前代码用到了录制时没读过的终点（按全空闲、默认处理时间补）
+    private Long missingNodes;
+
+    // 发出去（ready）的指令里，起点就是容器上一单终点的条数：录制时 / 回放时
+    private Long chainedRecorded;
+
+    private Long chainedReplay;
+
+    // 录制时一轮的打分 + 规划耗时（含读 Redis），与纯内存回放的耗时，单位微秒
+    private HistogramVO recordedUs;
+
+    private HistogramVO replayUs;
+
+    // 前若干条差异
+    private List<ReplayDiffVO> diffs;
+}
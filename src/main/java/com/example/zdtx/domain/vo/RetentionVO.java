@@ -0,0 +1,40 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RetentionVO {
+    private Boolean enabled;
+
+    private Long completedTtlMs;
+
+    private Long staleStartMs;
+
+    private Integer rollupDays;
+
+    // 压缩进度：当前 SCAN 游标（0 为一遍刚开始），已扫完的遍数
+    private String cursor;
+
+    private Long passes;
+
+    // 本实例压缩累计：扫过的 key / 已有 TTL 的 / 已完成收进 legacy 并设 TTL 的 / 超期未回报设 TTL 的 / 还在用的
+    private Long scanned;
+
+    private Long withTtl;
+
+    private Long expiredFinished;
+
+    private Long expiredStale;
+
+    private Long live;
+
+    private Long lastRunAt;
+
+    private Long lastRunMs;
+
+    private String lastError;
+}
@@ -0,0 +1,29 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoundTraceVO {
+    private String traceId;
+
+    // 仓库 / 产线编码，默认分区为空串
+    private String partition;
+
+    private Long startedAt;
+
+    private Long elapsedUs;
+
+    private Integer redisCommands;
+
+    // 批量、候选数、ready / deferred 数
+    private Map<String, Long> attributes;
+
+    private List<TraceStageVO> stages;
+}
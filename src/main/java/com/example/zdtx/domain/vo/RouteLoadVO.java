@@ -0,0 +1,34 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RouteLoadVO {
+    private Boolean enabled;
+
+    // 每个在途任务让所经段的用时增加的比例
+    private Double congestionFactor;
+
+    private Double hysteresis;
+
+    private Long minHoldMs;
+
+    // 段 id -> 在途任务数
+    private Map<String, Integer> segments;
+
+    // 本实例累计：选方向次数、换方向次数、因滞回保持原方向的次数
+    private Long chosen;
+
+    private Long switched;
+
+    private Long held;
+
+    // 当前记着方向的起终点对数
+    private Integer sticky;
+}
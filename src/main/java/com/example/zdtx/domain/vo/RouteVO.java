@@ -0,0 +1,22 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RouteVO {
+    private String from;
+
+    private String to;
+
+    private String policy;
+
+    private Long costMs;
+
+    private List<String> segments;
+}
@@ -0,0 +1,31 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RunningTaskVO {
+    private String instructionCode;
+
+    private String containerCode;
+
+    private String locationFrom;
+
+    private String locationTo;
+
+    private Long dispatchedAt;
+
+    private Long expectedFinishAt;
+
+    // 超过预计完成时间多久（未超时为 0）
+    private Long overdueMs;
+
+    // 已超时重发次数
+    private Integer attempts;
+
+    // 启动后已被取消
+    private Boolean cancelled;
+}
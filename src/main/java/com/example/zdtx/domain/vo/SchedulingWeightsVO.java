@@ -0,0 +1,33 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一组调度权重；手工调整时没给的字段沿用当前值
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SchedulingWeightsVO {
+    // 优先级、等待分钟数、历史耗时（毫秒）的权重，历史耗时取 mean + k * std
+    private Double wp;
+
+    private Double ww;
+
+    private Double wt;
+
+    private Double k;
+
+    // OD 样本数达到多少后历史耗时不再缩小
+    private Long warmupN;
+
+    // 允许比终点缓存位空出提前多久到达
+    private Long safeEarlyArriveMs;
+
+    // 终点没有学到停留时间时的处理时间，及完全采用学习值需要的样本数
+    private Long defaultProcessMs;
+
+    private Long stationWarmupN;
+}
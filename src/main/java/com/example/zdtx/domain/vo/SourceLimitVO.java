@@ -0,0 +1,24 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SourceLimitVO {
+    private String source;
+
+    private Double ratePerSec;
+
+    private Integer burst;
+
+    // Redis 里当前剩余令牌（按上次取令牌的时间补算前的值）
+    private Double tokens;
+
+    // 本实例累计：放行条数、被限流的请求数
+    private Long accepted;
+
+    private Long rejected;
+}
@@ -0,0 +1,28 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TopologyVO {
+    private String version;
+
+    private String source;
+
+    private Integer nodes;
+
+    private Integer edges;
+
+    private Integer loops;
+
+    private Integer stations;
+
+    private Boolean learnedWeights;
+
+    private Long builtAt;
+
+    private Long buildMs;
+}
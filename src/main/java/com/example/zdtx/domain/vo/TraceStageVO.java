@@ -0,0 +1,29 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TraceStageVO {
+    private String name;
+
+    // 外层阶段，直接属于本轮时为 null
+    private String parent;
+
+    // 嵌套层级，0 为本轮直接下属的阶段
+    private Integer depth;
+
+    // 第一次进入相对本轮开始的时间（微秒）
+    private Long offsetUs;
+
+    // 本阶段累计耗时（微秒），同名阶段多次进出时累加
+    private Long totalUs;
+
+    private Integer calls;
+
+    // 本阶段（不含内层阶段）发出的 Redis 命令数
+    private Integer redisCommands;
+}
@@ -0,0 +1,31 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TraceVO {
+    private Boolean enabled;
+
+    private Double sampleRate;
+
+    // none / json / otlp
+    private String export;
+
+    // 采样到的轮数，导出成功 / 失败 / 队列满丢弃的轮数
+    private Long sampled;
+
+    private Long exported;
+
+    private Long exportFailures;
+
+    private Long dropped;
+
+    // 采样轮次的总耗时（微秒）
+    private HistogramVO roundUs;
+
+    private String lastError;
+}
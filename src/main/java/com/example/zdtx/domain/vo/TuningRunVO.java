@@ -0,0 +1,32 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.Data;
+
+/**
+ * 一次调参：起点权重与找到的最好权重在同一批录制轮次上的回放结果
+ */
+@Data
+public class TuningRunVO {
+    private Long startedAt;
+
+    private Long elapsedMs;
+
+    private Integer rounds;
+
+    private Integer evaluations;
+
+    private SchedulingWeightsVO baseline;
+
+    private ReplayScoreVO baselineScore;
+
+    private SchedulingWeightsVO best;
+
+    private ReplayScoreVO bestScore;
+
+    // 目标值相对提升
+    private Double improvement;
+
+    private Boolean applied;
+
+    private String message;
+}
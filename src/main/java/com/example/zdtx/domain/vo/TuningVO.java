@@ -0,0 +1,32 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 调参状态：当前权重、回滚守护、最近一次调参和切换记录
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TuningVO {
+    private Boolean autoEnabled;
+
+    private SchedulingWeightsVO current;
+
+    // 切换后观察中：切换前 / 切换后的每分钟下发条数，观察到什么时候
+    private Boolean guarding;
+
+    private Double guardBaselinePerMin;
+
+    private Double guardObservedPerMin;
+
+    private Long guardUntil;
+
+    private TuningRunVO lastRun;
+
+    private List<WeightsChangeVO> history;
+}
@@ -0,0 +1,36 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WarmupVO {
+    // PENDING / RUNNING / DONE / FAILED / SKIPPED
+    private String state;
+
+    // 预热结束（成功、失败或跳过）后才算就绪
+    private Boolean ready;
+
+    private Long startedAt;
+
+    private Long elapsedMs;
+
+    // 预加载的 stats:od:* / node:* 键数、等待队列条数
+    private Integer odKeys;
+
+    private Integer nodeKeys;
+
+    private Integer waiting;
+
+    // 模拟调度轮数，以及第一轮 / 最后一轮的耗时（微秒），用来看 JIT 的效果
+    private Integer rounds;
+
+    private Long firstRoundUs;
+
+    private Long lastRoundUs;
+
+    private String error;
+}
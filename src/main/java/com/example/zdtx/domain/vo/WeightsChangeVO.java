@@ -0,0 +1,17 @@
+package com.example.zdtx.domain.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WeightsChangeVO {
+    private Long at;
+
+    // 启动 / 手工 / 自动调优 / 回滚
+    private String reason;
+
+    private SchedulingWeightsVO weights;
+}
@@ -0,0 +1,30 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.vo.AdmissionVO;
+import reactor.core.publisher.Mono;
+
+/**
+ * 入队时预测指令能否在截止时间前完成：排队等待 + 行驶 + 终点缓存位等待 + 处理
+ */
+public interface AdmissionService {
+
+    /**
+     * 是否按截止时间调度（zdtx.dispatch.mode=deadline）
+     */
+    boolean deadlineMode();
+
+    /**
+     * 预计超期的指令是否在入队时直接拒绝
+     */
+    boolean rejectLate();
+
+    AdmissionVO predict(InstructionAddDTO dto);
+
+    Mono<AdmissionVO> predictAsync(InstructionAddDTO dto);
+
+    /**
+     * 入队回复里附带的预测说明
+     */
+    String describe(AdmissionVO vo);
+}
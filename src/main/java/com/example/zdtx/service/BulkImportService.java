@@ -0,0 +1,15 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.ImportVO;
+
+import java.io.InputStream;
+
+/**
+ * 大批量指令流式导入：边读边校验，按段入队，内存占用和批量大小无关
+ */
+public interface BulkImportService {
+    /**
+     * body 为 JSON 数组或每行一个 JSON 对象（NDJSON）
+     */
+    ImportVO importStream(InputStream body);
+}
@@ -0,0 +1,46 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.DedupeVO;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface DedupeService {
+
+    enum Verdict {
+        // 新指令
+        NEW,
+        // 已在等待队列，重复提交按幂等处理
+        WAITING,
+        // 已下发，拒绝重新入队
+        DISPATCHED
+    }
+
+    /**
+     * 入队前检查并登记指令号
+     */
+    Verdict check(String instructionCode);
+
+    /**
+     * 批量检查（一次 pipeline 登记，布隆命中的再做一次精确检查）
+     */
+    Map<String, Verdict> checkAll(List<String> instructionCodes);
+
+    /**
+     * 下发时把指令号刷新到当前窗口，保证已下发的指令在下个窗口仍能被识别
+     */
+    void markDispatched(String instructionCode);
+
+    /**
+     * check 的非阻塞版本
+     */
+    Mono<Verdict> checkAsync(String instructionCode);
+
+    /**
+     * markDispatched 的非阻塞版本
+     */
+    Mono<Void> markDispatchedAsync(String instructionCode);
+
+    DedupeVO stats();
+}
@@ -0,0 +1,41 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.DegradedVO;
+import com.example.zdtx.domain.vo.InstructionExVO;
+
+import java.util.List;
+
+public interface DegradedModeService {
+    /**
+     * 当前是否处于降级（Redis 不可用）模式
+     */
+    boolean isDegraded();
+
+    /**
+     * 当前线程是否在回放 WAL（回放的事件降级时已发过上游通知，不再重复发）
+     */
+    boolean isReplaying();
+
+    /**
+     * 判断异常是否为 Redis 不可用；是则进入降级模式并返回 true
+     */
+    boolean tryEnter(Throwable cause);
+
+    /**
+     * 正常调度时记录一份等待队列快照，降级时用它给内存队列打底
+     */
+    void rememberWaiting(List<InstructionExVO> waiting);
+
+    Result<Boolean> ingest(InstructionAddDTO requestparm);
+
+    Result<String> cancel(String instructionCode);
+
+    Result<List<InstructionExVO>> dispatch(int batchSize);
+
+    Result<Boolean> status(StatusUpdateDTO requestparm);
+
+    DegradedVO info();
+}
@@ -0,0 +1,38 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.BatchSizeVO;
+
+public interface DispatchBatchService {
+    /**
+     * 本轮 getInstructions 应取的候选数量
+     */
+    int nextBatchSize();
+
+    /**
+     * 一轮调度结束后回报本轮信号
+     *
+     * @param candidates    本轮实际拿到的候选数
+     * @param ready         本轮实际起调成功数（规划为可下发但提交失败的不算）
+     * @param deferred      本轮延后数
+     * @param nodeBacklogMs 本轮涉及终点的平均积压（可用时间 - now，负数按 0 算）
+     */
+    void onRoundFinished(int candidates, int ready, int deferred, long nodeBacklogMs);
+
+    /**
+     * /status/update 收到完成回报
+     */
+    void onCompleted();
+
+    /**
+     * 用本分区在途索引（task:running，所有实例共享、重启不丢）的条数校准在途数；
+     * 不校准时在途数只是本实例下发减完成回报的估计
+     */
+    void syncInFlight(long running);
+
+    BatchSizeVO snapshot();
+
+    /**
+     * 同样配置、状态从头开始的独立控制器（分区调度用）
+     */
+    DispatchBatchService fork();
+}
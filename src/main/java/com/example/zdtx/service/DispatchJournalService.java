@@ -0,0 +1,44 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.JournalVO;
+import com.example.zdtx.domain.vo.ReplayVO;
+import com.example.zdtx.service.impl.DispatchPlanner;
+import com.example.zdtx.service.impl.DispatchReplay;
+import com.example.zdtx.utils.DispatchJournal;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 调度决策日志：每轮的输入和 ready / deferred 结果写进本地内存映射文件，可用当前代码回放比对
+ */
+public interface DispatchJournalService {
+
+    /**
+     * 开始录一轮；未开启时返回 null，调用方据此跳过所有录制
+     */
+    DispatchJournal.Round begin(byte source, int batchSize);
+
+    /**
+     * 一轮录完，交给后台线程编码写盘；队列满时丢弃
+     */
+    void record(DispatchJournal.Round round);
+
+    JournalVO stats();
+
+    /**
+     * 用当前代码回放最近 rounds 轮
+     */
+    Result<ReplayVO> replay(Integer rounds);
+
+    /**
+     * 读出本机最近 n 轮（未开启时为空）
+     */
+    List<DispatchJournal.Round> recent(int n) throws IOException;
+
+    /**
+     * 用给定权重回放这些轮次并汇总（拓扑、接续加分取当前配置）
+     */
+    DispatchReplay.Score evaluate(List<DispatchJournal.Round> rounds, DispatchPlanner.Weights weights);
+}
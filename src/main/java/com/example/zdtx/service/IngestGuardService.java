@@ -0,0 +1,41 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.IngestVO;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 入队前的背压：等待队列深度水位 + 按来源系统（systemCode）的令牌桶，令牌桶在 Redis 里，多实例共用
+ */
+public interface IngestGuardService {
+
+    final class Busy {
+        public final String reason;
+        // 建议多久后重试
+        public final long retryAfterMs;
+
+        public Busy(String reason, long retryAfterMs) {
+            this.reason = reason;
+            this.retryAfterMs = retryAfterMs;
+        }
+    }
+
+    /**
+     * 来源 source 要入队 n 条：放行返回 null，否则返回拒绝原因和重试建议。
+     * n 超过桶容量时等桶满了整批扣掉（令牌记成负数），后面的请求等补回来，不会一直被拒
+     */
+    Busy check(String source, int n);
+
+    /**
+     * 一批里多个来源一起取令牌：全部取到才放行；有一个被拒，前面已扣的退回去，返回最长的重试建议
+     */
+    Busy checkAll(Map<String, Integer> bySource);
+
+    /**
+     * check 的非阻塞版本，放行时为空
+     */
+    Mono<Busy> checkAsync(String source, int n);
+
+    IngestVO info();
+}
@@ -7,17 +7,34 @@ import com.example.zdtx.domain.entity.Result;
 import com.example.zdtx.domain.vo.InstructionExVO;
 
 import java.util.List;
+import java.util.Map;
 
 public interface InstructionServcie {
     Result<Boolean> addInstruction(InstructionAddDTO requestparm);
 
     Result<Void> addInstructions(List<InstructionAddDTO> requestparm);
 
+    /**
+     * 流式导入的一段（段内指令号已去重）：去重 / 截止预测 / 分区入队同 addInstructions，
+     * 返回没入队的指令号 → 原因
+     */
+    Map<String, String> importChunk(List<InstructionAddDTO> chunk);
+
     Result<String> cancelInstruction(InstructionCancelDTO requestparm);
 
     Boolean queryInstruction(InstructionQueryDTO requestparm);
 
     Result<List<InstructionExVO>> getInstructions() throws InterruptedException;
 
+    /**
+     * 只调度某个仓库 / 产线分区；partition 为空等同默认分区
+     */
+    Result<List<InstructionExVO>> getInstructions(String partition);
+
+    /**
+     * 所有已知分区并行各调度一轮，key 为分区（默认分区为空串）
+     */
+    Result<Map<String, List<InstructionExVO>>> getInstructionsAll();
+
     Result<Void> clear();
 }
@@ -0,0 +1,32 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.dto.remote.TaskCreateDTO;
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
+import com.example.zdtx.domain.vo.NotifyEndpointVO;
+
+import java.util.List;
+
+/**
+ * 上游 WMS 通知：调用方只入队，由后台线程按接口攒批发送、失败退避重试，
+ * 不让调度 / 回报的耗时跟着上游走
+ */
+public interface NotifyService {
+
+    /**
+     * 指令已受理
+     */
+    boolean create(TaskCreateDTO dto);
+
+    /**
+     * 指令已下发执行
+     */
+    boolean confirm(ConfirmTaskDTO dto);
+
+    /**
+     * 指令执行反馈（finish / exception）
+     */
+    boolean feedback(TaskFeedbackDTO dto);
+
+    List<NotifyEndpointVO> stats();
+}
@@ -0,0 +1,69 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.PartitionVO;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按仓库 / 产线分区调度：每个分区有自己的等待队列、批量控制器和调度锁，
+ * 同一分区的轮次串行，不同分区互不等待；全部分区一起调度时在 work-stealing 线程池上并行
+ */
+public interface PartitionService {
+
+    /**
+     * 入队时登记分区，全部分区调度时会带上它
+     */
+    void register(String partition);
+
+    /**
+     * 已知分区（含默认分区）
+     */
+    Set<String> partitions();
+
+    /**
+     * 是否已知分区；本实例没登记过但存储里登记过（别的实例入队的）时顺便登记
+     */
+    boolean known(String partition);
+
+    /**
+     * 分区的批量控制器；默认分区就是全局的那个。以下按分区取状态的方法遇到未知分区抛 IllegalArgumentException
+     */
+    DispatchBatchService batchOf(String partition);
+
+    /**
+     * 在分区锁内跑一轮（调用线程上执行，同分区排队）
+     */
+    <T> T runRound(String partition, Supplier<T> round);
+
+    /**
+     * 响应式版本：拿到同一把分区锁后订阅 round，round 结束（或取消）时释放
+     */
+    <T> Mono<T> runRoundAsync(String partition, Supplier<Mono<T>> round);
+
+    /**
+     * 每个分区并行各跑一轮，正在调度的分区本次跳过
+     */
+    <T> Map<String, T> runAll(Function<String, T> round);
+
+    /**
+     * 分区本轮下发了 n 条，计入下发统计
+     */
+    void onDispatched(String partition, int n);
+
+    /**
+     * 完成回报喂给任务所属分区（调用方按 TaskStore.partitionOfTask 查）的批量控制器；
+     * 分区未知时喂默认分区（全局）的
+     */
+    void onCompleted(String partition);
+
+    /**
+     * 本实例启动以来各分区累计下发条数
+     */
+    long dispatched();
+
+    PartitionVO info();
+}
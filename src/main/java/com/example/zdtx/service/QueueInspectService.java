@@ -0,0 +1,13 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.dto.instruction.QueueBrowseDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.QueuePageVO;
+
+/**
+ * 等待队列只读浏览：按调度顺序（score 从高到低）游标分页，不影响调度
+ */
+public interface QueueInspectService {
+
+    Result<QueuePageVO> browse(QueueBrowseDTO query);
+}
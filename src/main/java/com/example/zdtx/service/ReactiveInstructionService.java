@@ -0,0 +1,24 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LimiterVO;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 入队 / 回报 / 调度的非阻塞版本：Redis 访问全部走响应式客户端，不占 servlet 线程和连接池
+ */
+public interface ReactiveInstructionService {
+
+    Mono<Result<Boolean>> addInstruction(InstructionAddDTO requestparm);
+
+    Mono<Result<List<InstructionExVO>>> getInstructions();
+
+    Mono<Result<Boolean>> updateStatus(StatusUpdateDTO requestparm);
+
+    List<LimiterVO> limiters();
+}
@@ -0,0 +1,36 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.RedisGatewayVO;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 跨请求的 Redis 读命令合并：
+ * 并发调用方的小命令在一个极短窗口内（或凑满上限）合成一个 pipeline 发出，相同的读只发一次
+ */
+public interface RedisGatewayService {
+
+    String get(String key);
+
+    String hget(String key, String field);
+
+    List<String> hmget(String key, List<String> fields);
+
+    Map<String, String> hgetAll(String key);
+
+    /**
+     * 异步版本：同一调用方一次提交多条，再统一等待
+     */
+    CompletableFuture<List<String>> hmgetAsync(String key, List<String> fields);
+
+    CompletableFuture<Map<String, String>> hgetAllAsync(String key);
+
+    /**
+     * 等待异步结果，Redis 异常原样抛出（降级判断要用）
+     */
+    <T> T await(CompletableFuture<T> future);
+
+    RedisGatewayVO stats();
+}
@@ -0,0 +1,19 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.KeyspaceVO;
+
+/**
+ * Redis key 布局：启动时把旧布局（不带 hash tag）的 key 改名迁过来；
+ * 连 Redis Cluster 时维护槽到主节点的映射，合并网关据此按节点拆批
+ */
+public interface RedisKeyspaceService {
+
+    boolean clustered();
+
+    /**
+     * key 所在主节点（host:port）；单机或还没拿到拓扑时为 null
+     */
+    String nodeOf(String key);
+
+    KeyspaceVO info();
+}
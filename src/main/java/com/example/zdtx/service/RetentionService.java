@@ -0,0 +1,28 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.CompletedDayVO;
+import com.example.zdtx.domain.vo.RetentionVO;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface RetentionService {
+    /**
+     * 完成回报：任务所属分区的 task:completed:<code> 改写成耗时并设过期时间，耗时计入完成当天的汇总
+     */
+    void onFinished(String partition, String instructionCode, long durationMs, long finishedAt);
+
+    Mono<Void> onFinishedAsync(String partition, String instructionCode, long durationMs, long finishedAt);
+
+    /**
+     * 接着上次的游标压缩一批存量 task:completed:*（没有 TTL 的）
+     */
+    RetentionVO compact();
+
+    RetentionVO info();
+
+    /**
+     * 最近 days 天（含今天）的完成耗时汇总，最后一条是 legacy
+     */
+    List<CompletedDayVO> days(int days);
+}
@@ -0,0 +1,36 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.RoundTraceVO;
+import com.example.zdtx.domain.vo.TraceVO;
+import com.example.zdtx.utils.RoundTrace;
+
+import java.util.List;
+
+/**
+ * 调度轮次追踪：按比例采样 getInstructions 的轮次，记各阶段耗时和 Redis 命令数，
+ * 保留最慢的若干轮供查询，可导出成 JSON 行文件或 OTLP
+ */
+public interface RoundTraceService {
+
+    /**
+     * 开始一轮；没采中时返回 null，调用方据此跳过所有埋点
+     */
+    RoundTrace begin(String partition);
+
+    /**
+     * 一轮结束：从当前线程摘下，计入最慢排行，交给后台导出
+     */
+    void finish(RoundTrace trace);
+
+    TraceVO stats();
+
+    /**
+     * 最慢的 n 轮，按耗时从大到小
+     */
+    List<RoundTraceVO> slowest(int n);
+
+    /**
+     * 运行时调整采样比例，0 关闭
+     */
+    TraceVO sample(double rate);
+}
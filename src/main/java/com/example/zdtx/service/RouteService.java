@@ -0,0 +1,30 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.RouteLoadVO;
+import com.example.zdtx.domain.vo.RouteVO;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 下发时选行驶方向：按各段在途任务数估算顺 / 逆时针和最短路的预计用时，取最小的，带滞回防止来回切换
+ */
+public interface RouteService {
+
+    /**
+     * 各段在途任务数（一轮调度读一次）
+     */
+    Map<String, Integer> segmentLoad();
+
+    Mono<Map<String, Integer>> segmentLoadAsync();
+
+    /**
+     * 为一条要下发的任务选方向；选中后把路径累加到 load 上，同一轮后面的任务能看到
+     *
+     * @return policy 为选中的方向，costMs 为考虑拥堵后的预计用时；映射不到拓扑时返回 null
+     */
+    RouteVO choose(Topology topology, String from, String to, Map<String, Integer> load);
+
+    RouteLoadVO info();
+}
@@ -0,0 +1,32 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.SchedulingWeightsVO;
+import com.example.zdtx.domain.vo.WeightsChangeVO;
+import com.example.zdtx.service.impl.DispatchPlanner;
+
+import java.util.List;
+
+/**
+ * 当前生效的调度权重：启动时取配置，之后可整组切换，调度每轮开始时取一次
+ */
+public interface SchedulingWeightsService {
+
+    DispatchPlanner.Weights current();
+
+    /**
+     * 整组替换，返回被替换下来的一组
+     */
+    DispatchPlanner.Weights apply(DispatchPlanner.Weights weights, String reason);
+
+    /**
+     * 最近的切换记录，新的在前
+     */
+    List<WeightsChangeVO> history();
+
+    SchedulingWeightsVO toVO(DispatchPlanner.Weights weights);
+
+    /**
+     * 在 base 上覆盖 vo 里给了的字段
+     */
+    DispatchPlanner.Weights merge(DispatchPlanner.Weights base, SchedulingWeightsVO vo);
+}
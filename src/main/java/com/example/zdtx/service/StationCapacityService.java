@@ -0,0 +1,40 @@
+package com.example.zdtx.service;
+
+import reactor.core.publisher.Mono;
+
+public interface StationCapacityService {
+    /**
+     * 终点缓存位数
+     */
+    int slots(String node);
+
+    /**
+     * 终点处理（停留）时间估计，学习值不足时向默认值过渡
+     */
+    long serviceMs(String node);
+
+    /**
+     * 终点各缓存位的空闲时间（升序，长度 = 缓存位数），已空闲的位记为 now；占用汇总各分区
+     */
+    long[] slotFreeTimes(String node, long now);
+
+    /**
+     * 下发提交：在终点占用一个缓存位直到 releaseAt（记在任务所属分区下），并刷新 node:available
+     */
+    void occupy(String partition, String node, String instructionCode, long releaseAt, long now);
+
+    /**
+     * serviceMs 的非阻塞版本（响应式调度路径用）
+     */
+    Mono<Long> serviceMsAsync(String node);
+
+    /**
+     * slotFreeTimes 的非阻塞版本
+     */
+    Mono<long[]> slotFreeTimesAsync(String node, long now);
+
+    /**
+     * occupy 的非阻塞版本
+     */
+    Mono<Void> occupyAsync(String partition, String node, String instructionCode, long releaseAt, long now);
+}
@@ -0,0 +1,40 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LifecycleVO;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface TaskLifecycleService {
+    /**
+     * 下发：task:info 转为在途详情，按预计完成时间进 task:running；route 为选定路径的段 id（可为 null），计入段负载。
+     * 都在任务所属分区的 key 上
+     */
+    void onDispatched(String partition, InstructionExVO vo, long dispatchedAt, long expectedFinishAt, List<String> route);
+
+    Mono<Void> onDispatchedAsync(String partition, InstructionExVO vo, long dispatchedAt, long expectedFinishAt, List<String> route);
+
+    /**
+     * 完成回报：移出 task:running，终点缓存位改按实际到达时间 + 处理时间占用；分区按指令号查
+     *
+     * @return 是否是在途任务
+     */
+    boolean onCompleted(String instructionCode, String locationTo, long now);
+
+    Mono<Boolean> onCompletedAsync(String instructionCode, String locationTo, long now);
+
+    /**
+     * 启动后取消：超时回收时不再重发
+     *
+     * @return 是否是在途任务
+     */
+    boolean markCancelled(String instructionCode);
+
+    /**
+     * 分区 task:running 里的任务数，读失败返回 -1
+     */
+    long runningCount(String partition);
+
+    LifecycleVO info(int limit);
+}
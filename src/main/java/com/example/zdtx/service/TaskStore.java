@@ -0,0 +1,204 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.constants.RedisConstants;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 调度核心用到的存储：等待队列、任务详情、终点可用时间、终点缓存位占用、截止时间索引、OD / 容器 / 终点统计、启动标记。
+ * zdtx.store.type 选实现：redis（默认，多实例共享）/ memory（单机，进程内，可定期落盘）。
+ * 按仓库 / 产线分区：等待队列、任务详情、截止时间、启动标记、占用写入都在 partition(分区) 视图上读写（Redis 下各分区
+ * 落在自己的槽）；根对象就是默认分区。只拿到指令号时先用 partitionOfTask 找到分区。统计和终点可用时间各分区共用
+ */
+public interface TaskStore {
+
+    /**
+     * 不带仓库编码的指令进默认分区
+     */
+    String DEFAULT_PARTITION = "";
+
+    static String partitionOf(String houseCode) {
+        return houseCode == null ? DEFAULT_PARTITION : houseCode.trim().toUpperCase();
+    }
+
+    /**
+     * 入队前校验仓库编码：不能是默认分区保留的 _default，不能带花括号（key 的 hash tag 用它）。合法返回 null，否则返回原因
+     */
+    static String invalidHouseCode(String houseCode) {
+        if (houseCode == null) return null;
+        String p = partitionOf(houseCode);
+        if (p.equalsIgnoreCase(RedisConstants.DEFAULT_PARTITION_TAG)) {
+            return "仓库编码 " + houseCode + " 是保留名";
+        }
+        if (p.indexOf('{') >= 0 || p.indexOf('}') >= 0) {
+            return "仓库编码不能包含花括号：" + houseCode;
+        }
+        return null;
+    }
+
+    /**
+     * 批量入队的一条：等待队列分数 + 任务详情
+     */
+    class Waiting {
+        public final String code;
+        public final double score;
+        public final Map<String, String> fields;
+
+        public Waiting(String code, double score, Map<String, String> fields) {
+            this.code = code;
+            this.score = score;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * redis 为 true；memory 时只有 Redis 版的功能（在途索引和超时回收、段负载、布隆去重、/rx 接口）关闭
+     */
+    boolean shared();
+
+    /**
+     * 等待队列换成该分区的视图，其余读写不变
+     */
+    TaskStore partition(String partition);
+
+    /**
+     * 登记过的非默认分区：入队时登记，等待队列空了也还在（在途回收、汇总读都要按它找分区）
+     */
+    Set<String> partitions();
+
+    /**
+     * 指令所属分区，没有记录的是默认分区
+     */
+    String partitionOfTask(String code);
+
+    // ===================== 等待队列 =====================
+
+    void addWaiting(String code, double score);
+
+    /**
+     * 不在队列里返回 null
+     */
+    Double waitingScore(String code);
+
+    boolean removeWaiting(String code);
+
+    /**
+     * 分数从高到低；同分按指令号从大到小（与 ZREVRANGE 一致）
+     */
+    List<String> waitingByScoreDesc();
+
+    /**
+     * waitingByScoreDesc 的前 n 条（同一顺序），n <= 0 时为整队
+     */
+    List<String> waitingTop(int n);
+
+    long waitingSize();
+
+    /**
+     * 一次写入多条：分数 + 详情（Redis 下是一个 pipeline）
+     */
+    void enqueueAll(List<Waiting> batch);
+
+    // ===================== 任务详情 =====================
+
+    void putTask(String code, Map<String, String> fields);
+
+    /**
+     * 没有时返回空 map
+     */
+    Map<String, String> getTask(String code);
+
+    CompletableFuture<Map<String, String>> getTaskAsync(String code);
+
+    /**
+     * 与 codes 一一对应，没有的为空 map
+     */
+    List<Map<String, String>> getTasks(List<String> codes);
+
+    void deleteTask(String code);
+
+    /**
+     * 下发后清理详情；Redis 下在途脚本已经转存并删掉，不再重复
+     */
+    void dispatched(String code);
+
+    // ===================== 终点可用时间 =====================
+
+    Long nodeAvailableAt(String node);
+
+    void setNodeAvailableAt(String node, long at);
+
+    // ===================== 终点缓存位占用（node:occupancy:） =====================
+
+    /**
+     * 终点上释放时间不早于 now 的占用（释放时间，毫秒）；同一终点可能接多个分区的任务，这里是全部分区合起来的
+     */
+    List<Long> occupancy(String node, long now);
+
+    /**
+     * 以本分区的名义占一个缓存位到 releaseAt，顺带清掉 now 之前已释放的
+     */
+    void occupy(String node, String code, long releaseAt, long now);
+
+    /**
+     * 已有的占用改成新的释放时间，没有就不加
+     */
+    void reoccupy(String node, String code, long releaseAt);
+
+    // ===================== 截止时间索引（task:due，按分区） =====================
+
+    /**
+     * 指令号 -> 截止时间
+     */
+    void addDue(Map<String, Long> dueAt);
+
+    void removeDue(String code);
+
+    /**
+     * 截止时间在 [from, to] 之间的条数
+     */
+    long countDue(long from, long to);
+
+    /**
+     * 删掉截止时间早于 before 的，返回删除条数
+     */
+    long pruneDue(long before);
+
+    // ===================== 统计（按完整 key：stats:od:、stats:container:、stats:station:） =====================
+
+    /**
+     * 与 fields 一一对应，没有的为 null
+     */
+    List<String> getStats(String key, List<String> fields);
+
+    CompletableFuture<List<String>> getStatsAsync(String key, List<String> fields);
+
+    void putStats(String key, Map<String, String> fields);
+
+    /**
+     * 计数字段各自累加（HINCRBY），ttlMs > 0 时整个 key 在 ttlMs 后过期
+     */
+    void incrStats(String key, Map<String, Long> deltas, long ttlMs);
+
+    // ===================== 启动标记（task:completed:，按分区） =====================
+
+    /**
+     * 第一次启动才写入并返回 true
+     */
+    boolean markStarted(String code, long at);
+
+    String startMarker(String code);
+
+    /**
+     * ttlMs > 0 时到期删除，否则一直保留
+     */
+    void setStartMarker(String code, String value, long ttlMs);
+
+    /**
+     * 等待异步读的结果，存储异常原样抛出（降级判断要用）
+     */
+    <T> T await(CompletableFuture<T> future);
+}
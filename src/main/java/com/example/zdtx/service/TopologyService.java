@@ -0,0 +1,20 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.TopologyVO;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface TopologyService {
+    /**
+     * 当前生效的拓扑快照，调度热路径直接用
+     */
+    Topology current();
+
+    /**
+     * 后台重新加载配置并原子替换，不阻塞调度
+     */
+    CompletableFuture<TopologyVO> reload();
+
+    TopologyVO info();
+}
@@ -0,0 +1,16 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.WarmupVO;
+
+/**
+ * 启动预热：对外就绪前先把调度要读的数据走一遍、把打分 / 路由代码跑热
+ */
+public interface WarmupService {
+
+    /**
+     * 预热是否已结束（就绪探针用）
+     */
+    boolean isReady();
+
+    WarmupVO info();
+}
@@ -0,0 +1,28 @@
+package com.example.zdtx.service;
+
+import com.example.zdtx.domain.vo.SchedulingWeightsVO;
+import com.example.zdtx.domain.vo.TuningRunVO;
+import com.example.zdtx.domain.vo.TuningVO;
+
+/**
+ * 调度权重自动调参：在本机最近的调度日志上回放搜索，提升足够大时整组切换，切换后吞吐下降则回滚
+ */
+public interface WeightTunerService {
+
+    TuningVO info();
+
+    /**
+     * 跑一次搜索；apply 为 false 时只给出建议不切换
+     */
+    TuningRunVO run(boolean apply);
+
+    /**
+     * 手工设定权重（没给的字段沿用当前值），不做回滚守护
+     */
+    TuningVO set(SchedulingWeightsVO weights);
+
+    /**
+     * 退回上一次切换前的权重，没有可退的返回 null
+     */
+    TuningVO rollback();
+}
@@ -0,0 +1,188 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.AdmissionVO;
+import com.example.zdtx.service.AdmissionService;
+import com.example.zdtx.service.DispatchBatchService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.service.TopologyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 入队预测：
+ * 1. 排在前面的任务数：deadline 模式下是所属分区里截止时间在 (now, dueAt] 之间的（Redis 存储下是该分区 task:due 上
+ *    ZCOUNT，O(log n)），其余情况按所属分区的整个等待队列算（偏保守）
+ * 2. 排队时间 = 前面任务数 / 完成速率（来自批量控制器，没学到时用默认值）
+ * 3. 行驶时间同调度：OD 统计 -> 拓扑最短路 -> 默认值；终点按最早空出的缓存位和处理时间估
+ */
+@Service
+@RequiredArgsConstructor
+public class AdmissionServiceImpl implements AdmissionService {
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final StationCapacityService stationCapacityService;
+
+    private final TopologyService topologyService;
+
+    private final DispatchBatchService dispatchBatchService;
+
+    private final TaskStore taskStore;
+
+    // score：优先级 + 等待时间打分；deadline：截止任务按余量优先
+    @Value("${zdtx.dispatch.mode:score}")
+    private String mode;
+
+    @Value("${zdtx.deadline.reject-late:false}")
+    private boolean rejectLate;
+
+    // 完成速率还没学到时按这个估排队时间
+    @Value("${zdtx.deadline.default-rate-per-sec:0.5}")
+    private double defaultRatePerSec;
+
+    // 截止时间早于 now - 这个值的索引项视为残留，定期清掉
+    @Value("${zdtx.deadline.prune-after-ms:86400000}")
+    private long pruneAfterMs;
+
+    @Override
+    public boolean deadlineMode() {
+        return "deadline".equalsIgnoreCase(mode);
+    }
+
+    @Override
+    public boolean rejectLate() {
+        return rejectLate;
+    }
+
+    @Override
+    public AdmissionVO predict(InstructionAddDTO dto) {
+        long now = System.currentTimeMillis();
+        TaskStore store = taskStore.partition(TaskStore.partitionOf(dto.getHouseCode()));
+        Long ahead = useDueIndex(dto)
+                ? store.countDue(now + 1, dto.getDueAt())
+                : Long.valueOf(store.waitingSize());
+        long travelMs = travelMs(dto.getLocationFrom(), dto.getLocationTo(),
+                dto.getLocationFrom() == null || dto.getLocationTo() == null ? null
+                        : taskStore.getStats(odKey(dto), Collections.singletonList("mean_ms")).get(0));
+        long slotFreeAt = now;
+        long serviceMs = 0L;
+        if (dto.getLocationTo() != null) {
+            long[] free = stationCapacityService.slotFreeTimes(normalize(dto.getLocationTo()), now);
+            slotFreeAt = free.length == 0 ? now : free[0];
+            serviceMs = stationCapacityService.serviceMs(normalize(dto.getLocationTo()));
+        }
+        return build(dto, now, ahead == null ? 0L : ahead, travelMs, slotFreeAt, serviceMs);
+    }
+
+    @Override
+    public Mono<AdmissionVO> predictAsync(InstructionAddDTO dto) {
+        long now = System.currentTimeMillis();
+        String partition = TaskStore.partitionOf(dto.getHouseCode());
+        Mono<Long> ahead = (useDueIndex(dto)
+                ? reactiveStringRedisTemplate.opsForZSet().count(key(partition, TASK_DUE_ZSET),
+                        Range.closed((double) (now + 1), (double) dto.getDueAt()))
+                : reactiveStringRedisTemplate.opsForZSet().size(key(partition, TASK_WAITING_ZSET)))
+                .defaultIfEmpty(0L);
+        Mono<Long> travel = dto.getLocationFrom() == null || dto.getLocationTo() == null
+                ? Mono.just(travelMs(dto.getLocationFrom(), dto.getLocationTo(), null))
+                : reactiveStringRedisTemplate.<String, String>opsForHash().get(odKey(dto), "mean_ms")
+                .map(mean -> travelMs(dto.getLocationFrom(), dto.getLocationTo(), mean))
+                .defaultIfEmpty(travelMs(dto.getLocationFrom(), dto.getLocationTo(), null));
+        if (dto.getLocationTo() == null) {
+            return Mono.zip(ahead, travel).map(t -> build(dto, now, t.getT1(), t.getT2(), now, 0L));
+        }
+        String node = normalize(dto.getLocationTo());
+        return Mono.zip(ahead, travel, stationCapacityService.slotFreeTimesAsync(node, now),
+                        stationCapacityService.serviceMsAsync(node))
+                .map(t -> build(dto, now, t.getT1(), t.getT2(),
+                        t.getT3().length == 0 ? now : t.getT3()[0], t.getT4()));
+    }
+
+    @Override
+    public String describe(AdmissionVO vo) {
+        String finish = LocalDateTime.ofInstant(Instant.ofEpochMilli(vo.getPredictedFinishAt()), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+        if (vo.getOnTime() == null) {
+            return "预计 " + finish + " 完成";
+        }
+        return vo.getOnTime()
+                ? "预计 " + finish + " 完成，可按期"
+                : "预计 " + finish + " 完成，超期约 " + (-vo.getSlackMs() / 1000) + " 秒";
+    }
+
+    /**
+     * 清理 task:due 里早已过期的残留项（降级回放、手工删 key 等没走正常出队的）
+     */
+    @Scheduled(fixedDelayString = "${zdtx.deadline.prune-interval-ms:600000}")
+    public void prune() {
+        try {
+            long before = System.currentTimeMillis() - pruneAfterMs;
+            long removed = taskStore.pruneDue(before);
+            for (String p : taskStore.partitions()) removed += taskStore.partition(p).pruneDue(before);
+            if (removed > 0) {
+                System.out.println("[" + ts() + "] 截止时间索引清理 " + removed + " 条过期残留");
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[" + ts() + "] 截止时间索引清理跳过：" + e.getMessage());
+        }
+    }
+
+    private boolean useDueIndex(InstructionAddDTO dto) {
+        return deadlineMode() && dto.getDueAt() != null;
+    }
+
+    private AdmissionVO build(InstructionAddDTO dto, long now, long ahead, long travelMs, long slotFreeAt, long serviceMs) {
+        Double rate = dispatchBatchService.snapshot().getCompletionRatePerSec();
+        double ratePerSec = rate == null || rate <= 0 ? defaultRatePerSec : rate;
+        long startAt = DispatchPlanner.predictStartAt(now, ahead, ratePerSec);
+        long finishAt = DispatchPlanner.predictFinishAt(startAt, travelMs, slotFreeAt, serviceMs);
+        Long slack = dto.getDueAt() == null ? null : dto.getDueAt() - finishAt;
+        return new AdmissionVO(dto.getInstructionCode(), deadlineMode() ? "deadline" : "score", dto.getDueAt(),
+                ahead, ratePerSec, travelMs, serviceMs, startAt, finishAt, slack, slack == null ? null : slack >= 0);
+    }
+
+    /**
+     * 同 InstructionServcieImpl.estimateTravelMs：OD 均值 -> 拓扑最短路 -> 默认值
+     */
+    private long travelMs(String from, String to, String odMean) {
+        if (from == null || to == null) {
+            return DispatchPlanner.DEFAULT_TRAVEL_MS;
+        }
+        if (odMean != null) {
+            try {
+                return (long) Double.parseDouble(odMean);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        int d = topologyService.current().estimateMs(from, to);
+        return d == Topology.UNREACHABLE ? DispatchPlanner.DEFAULT_TRAVEL_MS : d;
+    }
+
+    private static String odKey(InstructionAddDTO dto) {
+        return "stats:od:" + normalize(dto.getLocationFrom()) + "|" + normalize(dto.getLocationTo());
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "NULL" : s.trim().toUpperCase();
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.vo.ImportErrorVO;
+import com.example.zdtx.domain.vo.ImportVO;
+import com.example.zdtx.service.BulkImportService;
+import com.example.zdtx.service.IngestGuardService;
+import com.example.zdtx.service.InstructionServcie;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 流式导入：
+ * 1. Jackson 逐个读出 JSON 数组元素或 NDJSON 的每一行（MappingIterator 两种都认），每次只有一条在内存里
+ * 2. 逐条转 DTO 并按 @NotNull 等注解校验，不通过的记错误继续往下读
+ * 3. 攒够 import-chunk-size 条就按来源取令牌、入队一段（一段一个 pipeline），段内的指令号表随之清掉；
+ *    跨段的重复由入队时的去重挡住
+ * 4. 被限流时等 Retry-After 再试，要等太久或 JSON 损坏、Redis 异常就停下，回复里给出从哪条开始重发
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkImportServiceImpl implements BulkImportService {
+
+    private final InstructionServcie instructionServcie;
+
+    private final IngestGuardService ingestGuardService;
+
+    private final Validator validator;
+
+    // Spring 配好的 ObjectMapper（带 spring.jackson.* 配置和已注册的模块），和接口的 JSON 解析一致
+    private final ObjectMapper objectMapper;
+
+    // 每段条数；超过来源令牌桶容量的段会预支令牌，后面的段要多等
+    @Value("${zdtx.ingest.import-chunk-size:200}")
+    private int chunkSize;
+
+    // 被限流时单次最多等多久，超过就停下让调用方稍后从断点重发
+    @Value("${zdtx.ingest.import-max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    @Value("${zdtx.ingest.import-max-errors:1000}")
+    private int maxErrors;
+
+
+    /**
+     * 还没写入的一段，以及段内指令号 → 序号
+     */
+    private static class Chunk {
+        final List<InstructionAddDTO> items = new ArrayList<>();
+        final Map<String, Integer> indexOf = new HashMap<>();
+        int firstIndex = -1;
+
+        void clear() {
+            items.clear();
+            indexOf.clear();
+            firstIndex = -1;
+        }
+    }
+
+    @Override
+    public ImportVO importStream(InputStream body) {
+        long start = System.currentTimeMillis();
+        ImportVO summary = new ImportVO();
+        Chunk chunk = new Chunk();
+        int size = Math.max(1, chunkSize);
+        int index = 0;
+        try (MappingIterator<JsonNode> it = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+            while (it.hasNextValue()) {
+                JsonNode node = it.nextValue();
+                int i = index++;
+                summary.setTotal(summary.getTotal() + 1);
+
+                InstructionAddDTO dto;
+                try {
+                    dto = objectMapper.treeToValue(node, InstructionAddDTO.class);
+                } catch (JsonProcessingException e) {
+                    invalid(summary, i, node.path("instructionCode").asText(null), "字段格式错误：" + e.getOriginalMessage());
+                    continue;
+                }
+                String violation = validate(dto);
+                if (violation != null) {
+                    invalid(summary, i, dto.getInstructionCode(), violation);
+                    continue;
+                }
+                if (chunk.indexOf.putIfAbsent(dto.getInstructionCode(), i) != null) {
+                    invalid(summary, i, dto.getInstructionCode(), "批内重复");
+                    continue;
+                }
+                if (chunk.firstIndex < 0) chunk.firstIndex = i;
+                chunk.items.add(dto);
+                if (chunk.items.size() >= size && !flush(summary, chunk)) {
+                    return finish(summary, start);
+                }
+            }
+        } catch (IOException e) {
+            // 读坏了之前攒下的照常写入，断点放在坏掉的这条
+            if (flush(summary, chunk)) {
+                summary.setStopped("第 " + index + " 条附近 JSON 格式错误：" + e.getMessage());
+                summary.setResumeFrom(index);
+            }
+            return finish(summary, start);
+        }
+        flush(summary, chunk);
+        return finish(summary, start);
+    }
+
+    /**
+     * 写入一段；停下（限流等太久 / Redis 异常）时返回 false，这一段整段不算入队
+     */
+    private boolean flush(ImportVO summary, Chunk chunk) {
+        if (chunk.items.isEmpty()) return true;
+        Map<String, Integer> bySource = new LinkedHashMap<>();
+        for (InstructionAddDTO dto : chunk.items) {
+            bySource.merge(dto.getSystemCode() == null ? "" : dto.getSystemCode(), 1, Integer::sum);
+        }
+        if (!acquire(summary, chunk, bySource)) return false;
+
+        Map<String, String> rejected;
+        try {
+            rejected = instructionServcie.importChunk(chunk.items);
+        } catch (RuntimeException e) {
+            stop(summary, chunk, "入队失败：" + e.getMessage(), null);
+            return false;
+        }
+        summary.setAccepted(summary.getAccepted() + chunk.items.size() - rejected.size());
+        summary.setRejected(summary.getRejected() + rejected.size());
+        rejected.forEach((code, reason) -> error(summary, chunk.indexOf.get(code), code, reason));
+        summary.setChunks(summary.getChunks() + 1);
+        chunk.clear();
+        return true;
+    }
+
+    /**
+     * 一段里各来源的令牌一起取（被拒时已扣的退回），拿不到就等，等太久停下
+     */
+    private boolean acquire(ImportVO summary, Chunk chunk, Map<String, Integer> bySource) {
+        while (true) {
+            IngestGuardService.Busy busy = ingestGuardService.checkAll(bySource);
+            if (busy == null) return true;
+            if (busy.retryAfterMs > maxWaitMs) {
+                stop(summary, chunk, busy.reason, busy.retryAfterMs);
+                return false;
+            }
+            try {
+                Thread.sleep(Math.max(1L, busy.retryAfterMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop(summary, chunk, "导入被中断", null);
+                return false;
+            }
+        }
+    }
+
+    private static void stop(ImportVO summary, Chunk chunk, String reason, Long retryAfterMs) {
+        summary.setStopped(reason);
+        summary.setResumeFrom(chunk.firstIndex);
+        summary.setRetryAfterMs(retryAfterMs);
+    }
+
+    private String validate(InstructionAddDTO dto) {
+        Set<ConstraintViolation<InstructionAddDTO>> violations = validator.validate(dto);
+        if (violations.isEmpty()) return null;
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("，"));
+    }
+
+    private void invalid(ImportVO summary, int index, String code, String message) {
+        summary.setInvalid(summary.getInvalid() + 1);
+        error(summary, index, code, message);
+    }
+
+    private void error(ImportVO summary, Integer index, String code, String message) {
+        if (summary.getErrors().size() < maxErrors) {
+            summary.getErrors().add(new ImportErrorVO(index, code, message));
+        } else {
+            summary.setErrorsTruncated(true);
+        }
+    }
+
+    private static ImportVO finish(ImportVO summary, long start) {
+        summary.setElapsedMs(System.currentTimeMillis() - start);
+        System.out.println("[" + ts() + "] 流式导入结束：读到 " + summary.getTotal() + " 条，入队 " + summary.getAccepted()
+                + " 条，无效 " + summary.getInvalid() + " 条，未入队 " + summary.getRejected() + " 条，"
+                + summary.getChunks() + " 段，耗时 " + summary.getElapsedMs() + " ms"
+                + (summary.getStopped() == null ? "" : "，中途停止：" + summary.getStopped()));
+        return summary;
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.zdtx.service.impl;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.example.zdtx.domain.vo.DedupeVO;
+import com.example.zdtx.service.DedupeService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 入队去重：
+ * 1. Redis 位图布隆过滤器，按时间窗口轮换（当前窗口 + 上一窗口），过期自动回收
+ * 2. 一次 Lua 调用完成“查 + 登记”，新指令只多这一个往返
+ * 3. 只有布隆命中时才通过 TaskStore 精确检查启动标记 / 任务详情（等待中的任务不论在哪个分区都有详情）
+ * memory 存储时不用布隆，每条都直接精确检查（都是进程内查表）
+ */
+@Service
+@RequiredArgsConstructor
+public class DedupeServiceImpl implements DedupeService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final TaskStore taskStore;
+
+    @Value("${zdtx.dedupe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.dedupe.expected-per-window:5000000}")
+    private long expectedPerWindow;
+
+    @Value("${zdtx.dedupe.fpp:0.001}")
+    private double fpp;
+
+    @Value("${zdtx.dedupe.window-ms:86400000}")
+    private long windowMs;
+
+    // KEYS[1]=当前窗口，KEYS[2]=上一窗口；ARGV[1]=过期秒数，ARGV[2..]=位偏移
+    // 返回 1 表示当前或上一窗口里所有位都已置位（可能重复）
+    private static final String CHECK_AND_ADD_LUA =
+            "local inCur, inPrev = 1, 1\n" +
+            "for i = 2, #ARGV do\n" +
+            "  local off = tonumber(ARGV[i])\n" +
+            "  if redis.call('SETBIT', KEYS[1], off, 1) == 0 then inCur = 0 end\n" +
+            "  if inPrev == 1 and redis.call('GETBIT', KEYS[2], off) == 0 then inPrev = 0 end\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "if inCur == 1 or inPrev == 1 then return 1 end\n" +
+            "return 0";
+
+    private static final DefaultRedisScript<Long> CHECK_AND_ADD =
+            new DefaultRedisScript<>(CHECK_AND_ADD_LUA, Long.class);
+
+    private long bits;
+    private int hashes;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong filterHits = new AtomicLong();
+    private final AtomicLong duplicateWaiting = new AtomicLong();
+    private final AtomicLong duplicateDispatched = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // m = -n ln p / (ln2)^2，k = m/n ln2
+        double n = Math.max(1, expectedPerWindow);
+        double ln2 = Math.log(2);
+        bits = (long) Math.ceil(-n * Math.log(fpp) / (ln2 * ln2));
+        // Redis 位图上限 2^32 bit
+        bits = Math.min(bits, (1L << 32) - 1);
+        hashes = Math.max(1, (int) Math.round(bits / n * ln2));
+    }
+
+    @Override
+    public Verdict check(String instructionCode) {
+        if (!enabled || instructionCode == null) {
+            return Verdict.NEW;
+        }
+        checked.incrementAndGet();
+        if (!taskStore.shared()) {
+            return exactCheck(Collections.singletonList(instructionCode), false).get(instructionCode);
+        }
+        String[] keys = windowKeys();
+        Long hit = stringRedisTemplate.execute(CHECK_AND_ADD, Arrays.asList(keys), scriptArgs(instructionCode));
+        if (hit == null || hit == 0L) {
+            return Verdict.NEW;
+        }
+        filterHits.incrementAndGet();
+        return exactCheck(Collections.singletonList(instructionCode), true).get(instructionCode);
+    }
+
+    @Override
+    public Map<String, Verdict> checkAll(List<String> instructionCodes) {
+        Map<String, Verdict> verdicts = new LinkedHashMap<>();
+        if (instructionCodes == null || instructionCodes.isEmpty()) {
+            return verdicts;
+        }
+        if (!enabled) {
+            instructionCodes.forEach(c -> verdicts.put(c, Verdict.NEW));
+            return verdicts;
+        }
+
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(instructionCodes));
+        if (!taskStore.shared()) {
+            checked.addAndGet(codes.size());
+            return exactCheck(codes, false);
+        }
+        String[] keys = windowKeys();
+        byte[] script = CHECK_AND_ADD_LUA.getBytes(StandardCharsets.UTF_8);
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String code : codes) {
+                Object[] args = scriptArgs(code);
+                byte[][] keysAndArgs = new byte[2 + args.length][];
+                keysAndArgs[0] = keys[0].getBytes(StandardCharsets.UTF_8);
+                keysAndArgs[1] = keys[1].getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < args.length; i++) {
+                    keysAndArgs[2 + i] = String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+                }
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2, keysAndArgs);
+            }
+            return null;
+        });
+        checked.addAndGet(codes.size());
+
+        List<String> hits = new ArrayList<>();
+        for (int i = 0; i < codes.size(); i++) {
+            Object r = results != null && i < results.size() ? results.get(i) : null;
+            if (r instanceof Long && (Long) r == 1L) {
+                hits.add(codes.get(i));
+            } else {
+                verdicts.put(codes.get(i), Verdict.NEW);
+            }
+        }
+        if (!hits.isEmpty()) {
+            filterHits.addAndGet(hits.size());
+            verdicts.putAll(exactCheck(hits, true));
+        }
+        return verdicts;
+    }
+
+    @Override
+    public void markDispatched(String instructionCode) {
+        if (!enabled || instructionCode == null || !taskStore.shared()) return;
+        stringRedisTemplate.execute(CHECK_AND_ADD, Arrays.asList(windowKeys()), scriptArgs(instructionCode));
+    }
+
+    @Override
+    public Mono<Verdict> checkAsync(String instructionCode) {
+        if (!enabled || instructionCode == null) {
+            return Mono.just(Verdict.NEW);
+        }
+        return reactiveStringRedisTemplate
+                .execute(CHECK_AND_ADD, Arrays.asList(windowKeys()), Arrays.asList(scriptArgs(instructionCode)))
+                .next()
+                .defaultIfEmpty(0L)
+                .flatMap(hit -> {
+                    checked.incrementAndGet();
+                    if (hit == 0L) {
+                        return Mono.just(Verdict.NEW);
+                    }
+                    filterHits.incrementAndGet();
+                    return reactiveStringRedisTemplate.opsForValue().get(TASK_HOUSE + instructionCode)
+                            .defaultIfEmpty(TaskStore.DEFAULT_PARTITION)
+                            .flatMap(p -> reactiveStringRedisTemplate.hasKey(key(p, TASK_COMPLETED_SET) + instructionCode)
+                                    .zipWith(reactiveStringRedisTemplate.hasKey(key(p, TASK_INFO) + instructionCode)))
+                            .map(t -> verdictOf(t.getT1(), t.getT2(), true));
+                });
+    }
+
+    @Override
+    public Mono<Void> markDispatchedAsync(String instructionCode) {
+        if (!enabled || instructionCode == null) return Mono.empty();
+        return reactiveStringRedisTemplate
+                .execute(CHECK_AND_ADD, Arrays.asList(windowKeys()), Arrays.asList(scriptArgs(instructionCode)))
+                .then();
+    }
+
+    @Override
+    public DedupeVO stats() {
+        return new DedupeVO(enabled, expectedPerWindow, fpp, bits, hashes, windowMs, windowKeys()[0],
+                checked.get(), filterHits.get(), duplicateWaiting.get(), duplicateDispatched.get(),
+                falsePositives.get());
+    }
+
+    /**
+     * 精确检查：已下发看启动标记，等待中看任务详情，都在任务所属分区下（分区按指令号查）
+     *
+     * @param afterFilter 布隆命中后才查的，查出来是新指令记一次误判
+     */
+    private Map<String, Verdict> exactCheck(List<String> codes, boolean afterFilter) {
+        Map<String, Verdict> verdicts = new LinkedHashMap<>();
+        for (String code : codes) {
+            TaskStore store = taskStore.partition(taskStore.partitionOfTask(code));
+            boolean started = store.startMarker(code) != null;
+            boolean waiting = !store.getTask(code).isEmpty();
+            verdicts.put(code, verdictOf(started, waiting, afterFilter));
+        }
+        return verdicts;
+    }
+
+    private Verdict verdictOf(Object completed, Object waiting, boolean afterFilter) {
+        if (Boolean.TRUE.equals(completed)) {
+            duplicateDispatched.incrementAndGet();
+            return Verdict.DISPATCHED;
+        }
+        if (Boolean.TRUE.equals(waiting)) {
+            duplicateWaiting.incrementAndGet();
+            return Verdict.WAITING;
+        }
+        if (afterFilter) falsePositives.incrementAndGet();
+        return Verdict.NEW;
+    }
+
+    private String[] windowKeys() {
+        long window = System.currentTimeMillis() / windowMs;
+        return new String[]{DEDUPE_BLOOM + window, DEDUPE_BLOOM + (window - 1)};
+    }
+
+    /**
+     * ARGV：过期秒数 + k 个位偏移（双重哈希 h1 + i*h2）
+     */
+    private Object[] scriptArgs(String code) {
+        long[] h = MurmurHash.hash128(code.getBytes(StandardCharsets.UTF_8));
+        Object[] args = new Object[hashes + 1];
+        args[0] = String.valueOf(2 * windowMs / 1000);
+        for (int i = 0; i < hashes; i++) {
+            long combined = h[0] + i * h[1];
+            args[i + 1] = String.valueOf(Math.floorMod(combined, bits));
+        }
+        return args;
+    }
+}
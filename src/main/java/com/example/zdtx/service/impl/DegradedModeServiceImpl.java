@@ -0,0 +1,581 @@
+package com.example.zdtx.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.example.zdtx.config.StationProperties;
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.dto.remote.TaskCreateDTO;
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.DegradedVO;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.StatisticsService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.utils.WriteAheadLog;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * Redis 不可用时的降级模式：
+ * 1. 入队、取消、下发、状态回报写本地 WAL（内存映射，批量刷盘），同时维护内存等待队列
+ * 2. 内存队列用最近一次正常调度的等待队列快照打底，重启时从 WAL 重建
+ * 3. 后台探活，Redis 恢复后按顺序回放 WAL，每个事件带回放标记，重复回放幂等；
+ *    事件记着 houseCode，入队 / 取消 / 下发都回放到所属分区的 key 上
+ * 降级期间只按优先级 + 等待时间排序，行驶时间用拓扑估计，终点占用只在本机内存里算
+ */
+@Service
+@RequiredArgsConstructor
+public class DegradedModeServiceImpl implements DegradedModeService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final StationCapacityService stationCapacityService;
+
+    private final StationProperties stationProperties;
+
+    private final TopologyService topologyService;
+
+    private final TaskLifecycleService taskLifecycleService;
+
+    private final NotifyService notifyService;
+
+    private final ObjectProvider<StatisticsService> statisticsService;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final byte EV_INGEST   = 1;
+    private static final byte EV_CANCEL   = 2;
+    private static final byte EV_DISPATCH = 3;
+    private static final byte EV_STATUS   = 4;
+
+    // 与正常调度一致的打分权重
+    private static final int Wp = 1000;
+    private static final int Ww = 5;
+    private static final long SAFE_EARLY_ARRIVE_MS = 5000L;
+    private static final long DEFAULT_TRAVEL_MS = 12000L;
+
+    // 回放标记保留时长
+    private static final long APPLIED_TTL_HOURS = 24;
+
+    @Value("${zdtx.degraded.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.degraded.wal-dir:wal}")
+    private String walDir;
+
+    @Value("${zdtx.degraded.segment-size:16777216}")
+    private int segmentSize;
+
+    @Value("${zdtx.degraded.sync-batch:64}")
+    private int syncBatch;
+
+    @Value("${zdtx.degraded.sync-interval-ms:50}")
+    private long syncIntervalMs;
+
+    private final Object lock = new Object();
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong seq = new AtomicLong();
+
+    private volatile boolean degraded;
+    // 回放线程走正常路径，不再写 WAL
+    private final ThreadLocal<Boolean> replaying = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private volatile long since;
+    private volatile String cause;
+    private WriteAheadLog wal;
+
+    // 内存等待队列
+    private final Map<String, Pending> waiting = new ConcurrentHashMap<>();
+    // 终点 -> 各缓存位空闲时间（仅降级期间）
+    private final Map<String, long[]> nodeSlots = new HashMap<>();
+    private volatile List<InstructionExVO> lastWaiting = Collections.emptyList();
+
+    private final AtomicLong walEvents = new AtomicLong();
+    private final AtomicLong outages = new AtomicLong();
+    private final AtomicLong replayedEvents = new AtomicLong();
+    private volatile long lastRecoveredAt;
+
+    private static class Pending {
+        final InstructionExVO vo;
+        final long enqueueAt;
+        // 所属分区，回放时按它找等待队列；null 为默认分区
+        final String houseCode;
+
+        Pending(InstructionExVO vo, long enqueueAt, String houseCode) {
+            this.vo = vo;
+            this.enqueueAt = enqueueAt;
+            this.houseCode = houseCode;
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled || !WriteAheadLog.hasSegments(walPath())) {
+            return;
+        }
+        // 上次降级期间没回放完就退出了：从 WAL 重建内存队列，等探活成功后回放
+        List<WriteAheadLog.Record> records = WriteAheadLog.readAll(walPath());
+        for (WriteAheadLog.Record r : records) {
+            applyToMemory(r.type, parse(r.payload));
+        }
+        synchronized (lock) {
+            wal = openWal();
+            degraded = true;
+            since = System.currentTimeMillis();
+            cause = "启动时发现未回放的 WAL（" + records.size() + " 条）";
+        }
+        System.out.println("[" + ts() + "] " + cause + "，内存队列 " + waiting.size() + " 条");
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        synchronized (lock) {
+            if (wal != null) wal.close();
+        }
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return degraded && !replaying.get();
+    }
+
+    @Override
+    public boolean isReplaying() {
+        return replaying.get();
+    }
+
+    @Override
+    public boolean tryEnter(Throwable e) {
+        if (!enabled || replaying.get() || !isRedisUnavailable(e)) {
+            return false;
+        }
+        synchronized (lock) {
+            if (degraded) return true;
+            try {
+                wal = openWal();
+            } catch (IOException io) {
+                System.out.println("[" + ts() + "] WAL 打开失败，无法降级：" + io.getMessage());
+                return false;
+            }
+            degraded = true;
+            since = System.currentTimeMillis();
+            cause = String.valueOf(e.getMessage());
+            outages.incrementAndGet();
+
+            // 用最近一次的等待队列快照打底（这些指令本来就在 Redis 里，回放时不再写入）
+            for (InstructionExVO vo : lastWaiting) {
+                Map<String, Object> ev = event(vo.getInstructionCode());
+                ev.put("seeded", true);
+                putVo(ev, vo, since);
+                if (append(EV_INGEST, ev)) {
+                    waiting.putIfAbsent(vo.getInstructionCode(), new Pending(vo, since, null));
+                }
+            }
+        }
+        System.out.println("[" + ts() + "] Redis 不可用，进入降级模式：" + cause
+                + "，内存队列 " + waiting.size() + " 条");
+        return true;
+    }
+
+    @Override
+    public void rememberWaiting(List<InstructionExVO> list) {
+        // 调用方每轮都是新建的列表，这里只留引用，不复制
+        lastWaiting = list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public Result<Boolean> ingest(InstructionAddDTO requestparm) {
+        if (requestparm == null) {
+            return Result.error("指令为空");
+        }
+        String code = requestparm.getInstructionCode();
+        long now = System.currentTimeMillis();
+        InstructionExVO vo = new InstructionExVO(code, requestparm.getLocationFrom(),
+                requestparm.getLocationTo(), requestparm.getPriority(), requestparm.getContainerCode());
+        Map<String, Object> ev = event(code);
+        putVo(ev, vo, now);
+        if (requestparm.getHouseCode() != null) ev.put("houseCode", requestparm.getHouseCode());
+        synchronized (lock) {
+            if (waiting.containsKey(code)) {
+                return Result.success(Boolean.TRUE, "指令已在队列中");
+            }
+            if (!append(EV_INGEST, ev)) {
+                return Result.error("降级模式写 WAL 失败");
+            }
+            waiting.put(code, new Pending(vo, now, requestparm.getHouseCode()));
+        }
+        notifyService.create(BeanUtil.copyProperties(requestparm, TaskCreateDTO.class));
+        return Result.success(Boolean.TRUE, "添加成功（降级模式）");
+    }
+
+    @Override
+    public Result<String> cancel(String instructionCode) {
+        synchronized (lock) {
+            Map<String, Object> ev = event(instructionCode);
+            Pending p = waiting.get(instructionCode);
+            if (p != null && p.houseCode != null) ev.put("houseCode", p.houseCode);
+            if (!append(EV_CANCEL, ev)) {
+                return Result.error("降级模式写 WAL 失败");
+            }
+            if (waiting.remove(instructionCode) != null) {
+                return Result.success("指令未启动", "指令" + instructionCode + "取消成功");
+            }
+        }
+        // 不在内存队列：可能还在 Redis 里等待，回放时再删
+        return Result.success("指令状态未知", "指令" + instructionCode + "取消已记录，Redis 恢复后生效");
+    }
+
+    @Override
+    public Result<List<InstructionExVO>> dispatch(int batchSize) {
+        long now = System.currentTimeMillis();
+        List<InstructionExVO> ready = new ArrayList<>();
+        List<InstructionExVO> deferred = new ArrayList<>();
+
+        synchronized (lock) {
+            List<Pending> candidates = new ArrayList<>(waiting.values());
+            candidates.sort(Comparator.comparingDouble((Pending p) -> -score(p, now)));
+            if (candidates.size() > batchSize) {
+                candidates = candidates.subList(0, batchSize);
+            }
+
+            Topology topology = topologyService.current();
+            for (Pending p : candidates) {
+                InstructionExVO vo = p.vo;
+                long releaseAt = planSlot(vo, now, topology);
+                if (releaseAt < 0) {
+                    deferred.add(vo);
+                    continue;
+                }
+                Map<String, Object> ev = event(vo.getInstructionCode());
+                putVo(ev, vo, p.enqueueAt);
+                if (p.houseCode != null) ev.put("houseCode", p.houseCode);
+                ev.put("startedAt", now);
+                ev.put("releaseAt", releaseAt);
+                if (append(EV_DISPATCH, ev)) {
+                    waiting.remove(vo.getInstructionCode());
+                    ready.add(vo);
+                } else {
+                    deferred.add(vo);
+                }
+            }
+        }
+
+        ready.forEach(vo -> notifyService.confirm(BeanUtil.copyProperties(vo, ConfirmTaskDTO.class)));
+
+        List<InstructionExVO> ordered = new ArrayList<>(ready.size() + deferred.size());
+        ordered.addAll(ready);
+        ordered.addAll(deferred);
+        System.out.println("[" + ts() + "] 降级调度：ready=" + ready.size() + "，deferred=" + deferred.size()
+                + "，内存队列剩余 " + waiting.size());
+        if (ordered.isEmpty()) {
+            return Result.success(Collections.emptyList(), "暂无待执行的指令");
+        }
+        return Result.success(ordered, "获取成功（降级模式）");
+    }
+
+    @Override
+    public Result<Boolean> status(StatusUpdateDTO requestparm) {
+        Map<String, Object> ev = event(requestparm.getInstructionCode());
+        ev.put("locationFrom", requestparm.getLocationFrom());
+        ev.put("locationTo", requestparm.getLocationTo());
+        ev.put("containerCode", requestparm.getContainerCode());
+        ev.put("time", requestparm.getTime() != null ? requestparm.getTime().getTime() : System.currentTimeMillis());
+        synchronized (lock) {
+            if (!append(EV_STATUS, ev)) {
+                return Result.error("降级模式写 WAL 失败");
+            }
+        }
+        notifyService.feedback(new TaskFeedbackDTO(null, null, null,
+                requestparm.getInstructionCode(), requestparm.getContainerCode(), "finish"));
+        return Result.success(Boolean.TRUE, "完成更新（降级模式，Redis 恢复后统计）");
+    }
+
+    @Override
+    public DegradedVO info() {
+        return new DegradedVO(degraded, degraded ? since : null, degraded ? cause : null, waiting.size(),
+                walEvents.get(), outages.get(), replayedEvents.get(), lastRecoveredAt);
+    }
+
+    // ===================== 探活 + 回放 =====================
+
+    @Scheduled(fixedDelayString = "${zdtx.degraded.probe-interval-ms:2000}")
+    public void probe() {
+        if (!degraded) return;
+        try {
+            stringRedisTemplate.execute(RedisConnection::ping);
+        } catch (Exception e) {
+            return;
+        }
+        replaying.set(Boolean.TRUE);
+        try {
+            recover();
+        } catch (Exception e) {
+            System.out.println("[" + ts() + "] WAL 回放中断，稍后重试：" + e.getMessage());
+        } finally {
+            replaying.set(Boolean.FALSE);
+        }
+    }
+
+    private void recover() throws IOException {
+        // 1) 不持锁回放已有事件，期间新请求照常写 WAL
+        List<WriteAheadLog.Record> records = WriteAheadLog.readAll(walPath());
+        for (WriteAheadLog.Record r : records) {
+            replay(r.type, parse(r.payload));
+        }
+        // 2) 持锁补上回放期间新写入的事件，然后切回正常模式
+        synchronized (lock) {
+            List<WriteAheadLog.Record> all = WriteAheadLog.readAll(walPath());
+            for (int i = records.size(); i < all.size(); i++) {
+                replay(all.get(i).type, parse(all.get(i).payload));
+            }
+            if (wal != null) {
+                wal.closeAndDelete();
+                wal = null;
+            }
+            waiting.clear();
+            nodeSlots.clear();
+            degraded = false;
+            lastRecoveredAt = System.currentTimeMillis();
+            System.out.println("[" + ts() + "] Redis 已恢复，回放 WAL " + all.size() + " 条，退出降级模式");
+        }
+    }
+
+    private void replay(byte type, Map<String, Object> ev) {
+        String id = String.valueOf(ev.get("id"));
+        String appliedKey = WAL_APPLIED + id;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(appliedKey))) {
+            return;
+        }
+        String code = String.valueOf(ev.get("instructionCode"));
+        String partition = type == EV_STATUS ? null : partitionOf(ev, code);
+        switch (type) {
+            case EV_INGEST: {
+                if (Boolean.TRUE.equals(ev.get("seeded"))) break;
+                if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key(partition, TASK_COMPLETED_SET) + code))) break;
+                long enqueueAt = toLong(ev.get("enqueueAt"), System.currentTimeMillis());
+                int priority = (int) toLong(ev.get("priority"), 1);
+                if (!partition.isEmpty()) {
+                    stringRedisTemplate.opsForSet().add(PARTITIONS, partition);
+                    stringRedisTemplate.opsForValue().set(TASK_HOUSE + code, partition);
+                }
+                stringRedisTemplate.opsForZSet().add(RedisTaskStore.waitingKey(partition), code, priority * 1e13 - enqueueAt);
+                Map<String, String> info = new HashMap<>();
+                for (String f : Arrays.asList("instructionCode", "containerCode", "locationFrom", "locationTo", "priority", "enqueueAt", "houseCode")) {
+                    if (ev.get(f) != null) info.put(f, String.valueOf(ev.get(f)));
+                }
+                stringRedisTemplate.opsForHash().putAll(key(partition, TASK_INFO) + code, info);
+                break;
+            }
+            case EV_CANCEL: {
+                Long removed = stringRedisTemplate.opsForZSet().remove(RedisTaskStore.waitingKey(partition), code);
+                stringRedisTemplate.delete(key(partition, TASK_INFO) + code);
+                if (removed == null || removed == 0L) {
+                    taskLifecycleService.markCancelled(code);
+                }
+                break;
+            }
+            case EV_DISPATCH: {
+                long startedAt = toLong(ev.get("startedAt"), System.currentTimeMillis());
+                stringRedisTemplate.opsForValue().setIfAbsent(key(partition, TASK_COMPLETED_SET) + code, String.valueOf(startedAt));
+                stringRedisTemplate.opsForZSet().remove(RedisTaskStore.waitingKey(partition), code);
+                // 进在途索引，预计完成时间按拓扑行驶时间估
+                InstructionExVO vo = new InstructionExVO();
+                vo.setInstructionCode(code);
+                vo.setLocationFrom((String) ev.get("locationFrom"));
+                vo.setLocationTo((String) ev.get("locationTo"));
+                vo.setContainerCode((String) ev.get("containerCode"));
+                vo.setPriority((int) toLong(ev.get("priority"), 1));
+                int d = vo.getLocationFrom() == null || vo.getLocationTo() == null ? Topology.UNREACHABLE
+                        : topologyService.current().estimateMs(vo.getLocationFrom(), vo.getLocationTo());
+                taskLifecycleService.onDispatched(partition, vo, startedAt,
+                        startedAt + (d == Topology.UNREACHABLE ? DEFAULT_TRAVEL_MS : d), null);
+                long releaseAt = toLong(ev.get("releaseAt"), 0L);
+                long now = System.currentTimeMillis();
+                if (ev.get("locationTo") != null && releaseAt > now) {
+                    stationCapacityService.occupy(partition, String.valueOf(ev.get("locationTo")), code, releaseAt, now);
+                }
+                break;
+            }
+            case EV_STATUS: {
+                StatusUpdateDTO dto = new StatusUpdateDTO(code,
+                        (String) ev.get("locationFrom"), (String) ev.get("locationTo"),
+                        (String) ev.get("containerCode"), new Date(toLong(ev.get("time"), System.currentTimeMillis())));
+                statisticsService.getObject().updateStatus(dto);
+                break;
+            }
+            default:
+                break;
+        }
+        stringRedisTemplate.opsForValue().set(appliedKey, "1", APPLIED_TTL_HOURS, TimeUnit.HOURS);
+        replayedEvents.incrementAndGet();
+    }
+
+    // ===================== 内存队列 =====================
+
+    private void applyToMemory(byte type, Map<String, Object> ev) {
+        String code = String.valueOf(ev.get("instructionCode"));
+        switch (type) {
+            case EV_INGEST: {
+                InstructionExVO vo = new InstructionExVO(code, (String) ev.get("locationFrom"),
+                        (String) ev.get("locationTo"), (int) toLong(ev.get("priority"), 1),
+                        (String) ev.get("containerCode"));
+                waiting.putIfAbsent(code, new Pending(vo, toLong(ev.get("enqueueAt"), System.currentTimeMillis()),
+                        (String) ev.get("houseCode")));
+                break;
+            }
+            case EV_CANCEL:
+            case EV_DISPATCH:
+                waiting.remove(code);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private double score(Pending p, long now) {
+        int pr = p.vo.getPriority() == null ? 0 : p.vo.getPriority();
+        long waitMin = Math.max(0, (now - p.enqueueAt) / 60000);
+        return Wp * (double) pr + Ww * (double) waitMin;
+    }
+
+    /**
+     * 本机内存里的终点缓存位计划，能发返回释放时间，不能发返回 -1
+     */
+    private long planSlot(InstructionExVO vo, long now, Topology topology) {
+        if (vo.getLocationFrom() == null || vo.getLocationTo() == null) {
+            return now;
+        }
+        String node = vo.getLocationTo().trim().toUpperCase();
+        int d = topology.estimateMs(vo.getLocationFrom(), vo.getLocationTo());
+        long eta = now + (d == Topology.UNREACHABLE ? DEFAULT_TRAVEL_MS : d);
+        long[] slots = nodeSlots.computeIfAbsent(node, k -> {
+            long[] free = new long[stationCapacityService.slots(k)];
+            Arrays.fill(free, now);
+            return free;
+        });
+        int idx = 0;
+        for (int i = 1; i < slots.length; i++) {
+            if (slots[i] < slots[idx]) idx = i;
+        }
+        if (eta + SAFE_EARLY_ARRIVE_MS < slots[idx]) {
+            return -1;
+        }
+        slots[idx] = Math.max(eta, slots[idx]) + stationProperties.getDefaultProcessMs();
+        return slots[idx];
+    }
+
+    // ===================== 工具方法 =====================
+
+    private boolean append(byte type, Map<String, Object> ev) {
+        try {
+            if (wal == null) return false;
+            wal.append(type, MAPPER.writeValueAsBytes(ev));
+            walEvents.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            System.out.println("[" + ts() + "] WAL 写入失败：" + e.getMessage());
+            return false;
+        }
+    }
+
+    private Map<String, Object> event(String code) {
+        Map<String, Object> ev = new LinkedHashMap<>();
+        ev.put("id", instanceId + "-" + seq.incrementAndGet());
+        ev.put("ts", System.currentTimeMillis());
+        ev.put("instructionCode", code);
+        return ev;
+    }
+
+    /**
+     * 事件所属分区：事件里记了 houseCode 就用它，否则（降级前就在 Redis 里的指令）查 task:house 索引
+     */
+    private String partitionOf(Map<String, Object> ev, String code) {
+        Object house = ev.get("houseCode");
+        if (house != null) return TaskStore.partitionOf(String.valueOf(house));
+        String p = stringRedisTemplate.opsForValue().get(TASK_HOUSE + code);
+        return p == null ? TaskStore.DEFAULT_PARTITION : p;
+    }
+
+    private static void putVo(Map<String, Object> ev, InstructionExVO vo, long enqueueAt) {
+        Map<String, Object> m = BeanUtil.beanToMap(vo, new HashMap<>(), CopyOptions.create().ignoreNullValue());
+        ev.putAll(m);
+        ev.put("enqueueAt", enqueueAt);
+    }
+
+    private static Map<String, Object> parse(byte[] payload) {
+        try {
+            return MAPPER.readValue(payload, new TypeReference<Map<String, Object>>() {});
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private WriteAheadLog openWal() throws IOException {
+        return new WriteAheadLog(walPath(), segmentSize, syncBatch, syncIntervalMs);
+    }
+
+    private Path walPath() {
+        return Paths.get(walDir);
+    }
+
+    private static boolean isRedisUnavailable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataAccessResourceFailureException
+                    || t instanceof QueryTimeoutException
+                    || t instanceof RedisConnectionException
+                    || t instanceof RedisCommandTimeoutException
+                    || t instanceof ConnectException) {
+                return true;
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    private static long toLong(Object v, long def) {
+        if (v == null) return def;
+        try {
+            return v instanceof Number ? ((Number) v).longValue() : Long.parseLong(String.valueOf(v));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static String ts() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.BatchDecisionVO;
+import com.example.zdtx.domain.vo.BatchSizeVO;
+import com.example.zdtx.service.DispatchBatchService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+
+import static com.example.zdtx.constants.RedisConstants.MAX_TASK;
+
+/**
+ * 自适应批量控制：
+ * 1. 延后比例高 / 终点积压大 → 按比例收缩
+ * 2. 延后比例低且候选充足 → 加性增长
+ * 3. 至少补上两轮之间完成掉的任务数，在途任务不超过上限；
+ *    在途数每轮开始前按 task:running 校准，读不到时退回本实例的估计（本实例下发 - 本实例收到的完成回报）
+ * 4. 结果按阻尼系数向目标值靠拢，并夹在 [min, max] 之间
+ */
+@Service
+public class DispatchBatchServiceImpl implements DispatchBatchService {
+
+    // EMA 平滑系数
+    private static final double ALPHA = 0.3;
+
+    @Value("${zdtx.dispatch.batch.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${zdtx.dispatch.batch.min:2}")
+    private int min;
+
+    @Value("${zdtx.dispatch.batch.max:32}")
+    private int max;
+
+    @Value("${zdtx.dispatch.batch.damping:0.5}")
+    private double damping;
+
+    @Value("${zdtx.dispatch.batch.step:2}")
+    private int step;
+
+    @Value("${zdtx.dispatch.batch.defer-high:0.5}")
+    private double deferHigh;
+
+    @Value("${zdtx.dispatch.batch.defer-low:0.2}")
+    private double deferLow;
+
+    @Value("${zdtx.dispatch.batch.backlog-high-ms:30000}")
+    private long backlogHighMs;
+
+    @Value("${zdtx.dispatch.batch.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${zdtx.dispatch.batch.history-size:200}")
+    private int historySize;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private double size = MAX_TASK;
+    private int inFlight;
+    private int completionsSinceLastRound;
+    private long lastRoundAt;
+    private double completionRate;
+    private double roundIntervalMs;
+    private double deferredRatio;
+    private long nodeBacklogMs;
+    private long rounds;
+    private long dispatched;
+
+    private final Deque<BatchDecisionVO> history = new ArrayDeque<>();
+
+    @Override
+    public synchronized int nextBatchSize() {
+        if (!adaptive) {
+            return MAX_TASK;
+        }
+        return clamp((int) Math.round(size));
+    }
+
+    @Override
+    public synchronized void onRoundFinished(int candidates, int ready, int deferred, long nodeBacklogMs) {
+        long now = System.currentTimeMillis();
+        int used = nextBatchSize();
+
+        // 1) 更新信号
+        if (lastRoundAt > 0) {
+            long dt = Math.max(1L, now - lastRoundAt);
+            double rateSample = completionsSinceLastRound * 1000.0 / dt;
+            completionRate = ema(completionRate, rateSample);
+            roundIntervalMs = roundIntervalMs == 0 ? dt : ema(roundIntervalMs, dt);
+        }
+        lastRoundAt = now;
+        completionsSinceLastRound = 0;
+
+        inFlight += ready;
+        dispatched += ready;
+        rounds++;
+        this.nodeBacklogMs = nodeBacklogMs;
+        if (candidates > 0) {
+            deferredRatio = ema(deferredRatio, deferred / (double) candidates);
+        }
+
+        // 2) 计算目标值
+        double desired = size;
+        if (deferredRatio > deferHigh || nodeBacklogMs > backlogHighMs) {
+            desired = size * (1 - 0.5 * Math.max(deferredRatio, 0.2));
+        } else if (deferredRatio < deferLow && candidates >= used) {
+            desired = size + step;
+        }
+
+        // 至少补上一个调度间隔内完成掉的量，避免环线饿着
+        double keepUp = completionRate * roundIntervalMs / 1000.0;
+        desired = Math.max(desired, keepUp);
+
+        // 在途任务上限
+        if (maxInFlight > 0) {
+            desired = Math.min(desired, Math.max(min, maxInFlight - inFlight));
+        }
+
+        // 3) 阻尼 + 夹紧
+        size = size + damping * (desired - size);
+        size = Math.max(min, Math.min(max, size));
+
+        history.addLast(new BatchDecisionVO(now, used, candidates, ready, deferred,
+                inFlight, completionRate, nodeBacklogMs, nextBatchSize()));
+        while (history.size() > Math.max(1, historySize)) {
+            history.removeFirst();
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        completionsSinceLastRound++;
+        if (inFlight > 0) {
+            inFlight--;
+        }
+    }
+
+    @Override
+    public synchronized void syncInFlight(long running) {
+        if (running >= 0) {
+            inFlight = (int) Math.min(Integer.MAX_VALUE, running);
+        }
+    }
+
+    @Override
+    public synchronized BatchSizeVO snapshot() {
+        double minutes = Math.max(1L, System.currentTimeMillis() - startedAt) / 60000.0;
+        return new BatchSizeVO(
+                adaptive,
+                nextBatchSize(),
+                min,
+                max,
+                damping,
+                inFlight,
+                completionRate,
+                deferredRatio,
+                nodeBacklogMs,
+                rounds,
+                dispatched,
+                dispatched / minutes,
+                new ArrayList<>(history)
+        );
+    }
+
+    @Override
+    public DispatchBatchService fork() {
+        DispatchBatchServiceImpl c = new DispatchBatchServiceImpl();
+        c.adaptive = adaptive;
+        c.min = min;
+        c.max = max;
+        c.damping = damping;
+        c.step = step;
+        c.deferHigh = deferHigh;
+        c.deferLow = deferLow;
+        c.backlogHighMs = backlogHighMs;
+        c.maxInFlight = maxInFlight;
+        c.historySize = historySize;
+        return c;
+    }
+
+    private int clamp(int v) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static double ema(double prev, double sample) {
+        return (1 - ALPHA) * prev + ALPHA * sample;
+    }
+}
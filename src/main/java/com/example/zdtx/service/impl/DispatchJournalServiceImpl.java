@@ -0,0 +1,225 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.JournalVO;
+import com.example.zdtx.domain.vo.ReplayVO;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.utils.DispatchJournal;
+import com.example.zdtx.utils.LogHistogram;
+import com.example.zdtx.utils.WriteAheadLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 调度决策日志：
+ * 1. 调度线程只把本轮的候选、读到的 OD / 缓存位数据和结果的引用塞进 Round，交给有界队列就返回
+ * 2. 后台线程编码成二进制，追加到内存映射分段（journal-<序号>.log），写满切下一段，只保留最近 maxSegments 段
+ * 3. 不要求落盘可靠：刷盘间隔放宽，队列满时丢弃并计数，不反过来拖慢调度
+ * 4. 回放见 DispatchReplay，这里提供对本机日志的在线回放
+ * 5. 默认关闭；开启时 dir 必须是绝对路径，不随工作目录漂移、不往部署目录里写
+ */
+@Service
+@RequiredArgsConstructor
+public class DispatchJournalServiceImpl implements DispatchJournalService {
+
+    private final TopologyService topologyService;
+
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    @Value("${zdtx.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${zdtx.journal.dir:}")
+    private String dir;
+
+    @Value("${zdtx.journal.segment-size:16777216}")
+    private int segmentSize;
+
+    @Value("${zdtx.journal.max-segments:16}")
+    private int maxSegments;
+
+    @Value("${zdtx.journal.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${zdtx.journal.sync-interval-ms:1000}")
+    private long syncIntervalMs;
+
+    // 在线回放最多取最近多少轮、最多列多少条差异
+    @Value("${zdtx.journal.replay-max-rounds:2000}")
+    private int replayMaxRounds;
+
+    @Value("${zdtx.journal.replay-max-diffs:50}")
+    private int replayMaxDiffs;
+
+    // 回放用与调度相同的接续加分参数
+    @Value("${zdtx.dispatch.affinity.bonus:500}")
+    private double affinityBonus;
+
+    @Value("${zdtx.dispatch.affinity.half-life-ms:600000}")
+    private long affinityHalfLifeMs;
+
+    private WriteAheadLog log;
+    private ArrayBlockingQueue<DispatchJournal.Round> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final LogHistogram appendUs = new LogHistogram();
+    private volatile String lastError;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        if (dir == null || dir.trim().isEmpty() || !Paths.get(dir.trim()).isAbsolute()) {
+            lastError = "zdtx.journal.dir 需要配置为绝对路径（当前：" + dir + "）";
+            System.out.println("[" + ts() + "] " + lastError + "，本次不记录调度日志");
+            return;
+        }
+        dir = dir.trim();
+        try {
+            // 调度日志只留近期，不需要每条都刷盘
+            log = new WriteAheadLog(Paths.get(dir), DispatchJournal.PREFIX, segmentSize,
+                    Integer.MAX_VALUE, syncIntervalMs, maxSegments);
+        } catch (IOException e) {
+            lastError = "打开调度日志失败：" + e.getMessage();
+            System.out.println("[" + ts() + "] " + lastError + "，本次不记录调度日志");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        writer = new Thread(this::drain, "dispatch-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(2000);
+        }
+        if (log != null) {
+            // 把队列里剩下的写完再关
+            DispatchJournal.Round r;
+            while (queue != null && (r = queue.poll()) != null) {
+                append(r);
+            }
+            log.close();
+        }
+    }
+
+    @Override
+    public DispatchJournal.Round begin(byte source, int batchSize) {
+        return running ? new DispatchJournal.Round(source, batchSize) : null;
+    }
+
+    @Override
+    public void record(DispatchJournal.Round round) {
+        if (round == null || !running) return;
+        if (!queue.offer(round)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public JournalVO stats() {
+        int segments = 0;
+        long diskBytes = 0L;
+        if (log != null) {
+            try {
+                List<Path> files = log.segmentFiles();
+                segments = files.size();
+                for (Path p : files) diskBytes += Files.size(p);
+            } catch (IOException e) {
+                lastError = e.getMessage();
+            }
+        }
+        return new JournalVO(enabled && log != null, dir, segments, diskBytes,
+                rounds.get(), bytes.get(), dropped.get(), failures.get(), queue == null ? 0 : queue.size(),
+                appendUs.snapshot(), lastError);
+    }
+
+    @Override
+    public Result<ReplayVO> replay(Integer limit) {
+        if (log == null) {
+            return Result.error("调度日志未开启");
+        }
+        List<DispatchJournal.Round> rounds;
+        try {
+            rounds = recent(limit == null || limit <= 0 ? replayMaxRounds : Math.min(limit, replayMaxRounds));
+        } catch (IOException e) {
+            return Result.error("读取调度日志失败：" + e.getMessage());
+        }
+        return Result.success(DispatchReplay.replay(rounds, topologyService.current(),
+                new DispatchPlanner.Affinity(affinityBonus, affinityHalfLifeMs),
+                schedulingWeightsService.current(), replayMaxDiffs));
+    }
+
+    @Override
+    public List<DispatchJournal.Round> recent(int n) throws IOException {
+        if (log == null) return Collections.emptyList();
+        // 读之前刷一次盘，保证刚写的几轮也能读到
+        log.sync();
+        List<DispatchJournal.Round> all = DispatchReplay.load(Paths.get(dir));
+        int k = Math.min(all.size(), Math.max(0, n));
+        return new ArrayList<>(all.subList(all.size() - k, all.size()));
+    }
+
+    @Override
+    public DispatchReplay.Score evaluate(List<DispatchJournal.Round> rounds, DispatchPlanner.Weights weights) {
+        return DispatchReplay.evaluate(rounds, topologyService.current(),
+                new DispatchPlanner.Affinity(affinityBonus, affinityHalfLifeMs), weights);
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                DispatchJournal.Round r = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (r != null) append(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void append(DispatchJournal.Round r) {
+        long t0 = System.nanoTime();
+        try {
+            byte[] payload = DispatchJournal.encode(r);
+            log.append(r.source, payload);
+            rounds.incrementAndGet();
+            bytes.addAndGet(payload.length);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+        }
+        appendUs.record((System.nanoTime() - t0) / 1000);
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.InstructionExVO;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 调度核心里的纯计算部分（不碰 Redis），同步和响应式两条调度路径共用：
+ * 1. 单条打分：优先级 + 等待时间 - 历史耗时
+ * 2. 历史耗时：锚点组合里取 mean + K*std 最低的，样本不足时按比例缩小
+ * 3. 终点缓存位计划：ETA 能否赶上最早空出的缓存位，能则占用
+ * 4. 容器接续加分：起点就是该容器上一单的终点时加分，随时间衰减
+ * 5. 截止时间：deadline 模式的排序、入队时的完成时间预测
+ * 需要的数据由调用方查好（或给出查询函数）传进来；打分和规划用的权重由调用方传入当前生效的一组（Weights）
+ */
+public final class DispatchPlanner {
+
+    // ===================== 调度打分相关 =====================
+    // 下面是各权重的默认值，运行时生效的是 Weights（可在线调整 / 自动调优）
+
+    // 优先级、等待时间权重
+    public static final int Wp = 1000;  // priority 权重
+    public static final int Ww = 5;     // 等待时间(分钟) 权重
+
+    // 历史耗时（来自 stats:od:FROM|TO）
+    public static final double Wt = 0.01;  // 把毫秒缩放成分数
+    public static final double K  = 1.0;   // mean + K*std
+
+    // OD 统计冷启动
+    public static final long DEFAULT_OD_MEAN_MS = 12000L;
+    public static final long DEFAULT_OD_STD_MS  = 2000L;
+    public static final long WARMUP_N           = 5;
+
+    // ===================== 节点预估可用时间 =====================
+
+    // 没历史数据时的默认行驶时间
+    public static final long DEFAULT_TRAVEL_MS = DEFAULT_OD_MEAN_MS;
+
+    // 允许稍微提前一点的裕量
+    public static final long SAFE_EARLY_ARRIVE_MS = 5000L;
+
+    private DispatchPlanner() {
+    }
+
+    /**
+     * 一组调度权重，不可变；切换时整组替换
+     */
+    public static final class Weights {
+        public static final Weights DEFAULTS = new Weights(Wp, Ww, Wt, K, WARMUP_N, SAFE_EARLY_ARRIVE_MS, 10000L, 5L);
+
+        // 可调参数名，顺序同构造参数
+        public static final List<String> NAMES = Arrays.asList(
+                "wp", "ww", "wt", "k", "warmupN", "safeEarlyArriveMs", "defaultProcessMs", "stationWarmupN");
+
+        public final double wp;
+        public final double ww;
+        public final double wt;
+        public final double k;
+        // OD 样本数达到多少后历史耗时不再缩小
+        public final long warmupN;
+        public final long safeEarlyArriveMs;
+        // 终点没有学到停留时间时的处理时间，样本数达到 stationWarmupN 后完全用学习值
+        public final long defaultProcessMs;
+        public final long stationWarmupN;
+
+        public Weights(double wp, double ww, double wt, double k, long warmupN, long safeEarlyArriveMs,
+                       long defaultProcessMs, long stationWarmupN) {
+            this.wp = wp;
+            this.ww = ww;
+            this.wt = wt;
+            this.k = k;
+            this.warmupN = Math.max(1L, warmupN);
+            this.safeEarlyArriveMs = Math.max(0L, safeEarlyArriveMs);
+            this.defaultProcessMs = Math.max(0L, defaultProcessMs);
+            this.stationWarmupN = Math.max(1L, stationWarmupN);
+        }
+
+        public double get(String name) {
+            switch (name) {
+                case "wp": return wp;
+                case "ww": return ww;
+                case "wt": return wt;
+                case "k": return k;
+                case "warmupN": return warmupN;
+                case "safeEarlyArriveMs": return safeEarlyArriveMs;
+                case "defaultProcessMs": return defaultProcessMs;
+                case "stationWarmupN": return stationWarmupN;
+                default: throw new IllegalArgumentException("未知的调度参数：" + name);
+            }
+        }
+
+        /**
+         * 换掉其中一个参数，整数参数四舍五入
+         */
+        public Weights with(String name, double v) {
+            return new Weights(
+                    "wp".equals(name) ? v : wp,
+                    "ww".equals(name) ? v : ww,
+                    "wt".equals(name) ? v : wt,
+                    "k".equals(name) ? v : k,
+                    "warmupN".equals(name) ? Math.round(v) : warmupN,
+                    "safeEarlyArriveMs".equals(name) ? Math.round(v) : safeEarlyArriveMs,
+                    "defaultProcessMs".equals(name) ? Math.round(v) : defaultProcessMs,
+                    "stationWarmupN".equals(name) ? Math.round(v) : stationWarmupN);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Weights)) return false;
+            Weights w = (Weights) o;
+            return NAMES.stream().allMatch(n -> Double.compare(get(n), w.get(n)) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(NAMES.stream().mapToDouble(this::get).toArray());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (String n : NAMES) {
+                sb.append(sb.length() > 1 ? ", " : "").append(n).append('=').append(get(n));
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * 单条任务得分
+     */
+    public static double baseScore(Weights w, Integer priority, long enqueueAt, double histMs, long now) {
+        long waitMin = Math.max(0, (now - enqueueAt) / 60000);
+        int p = priority == null ? 0 : priority;
+        return w.wp * (double) p
+                + w.ww * (double) waitMin
+                - w.wt * histMs;
+    }
+
+    /**
+     * 容器接续加分的参数：满分 bonus，按距上一单完成的时间以 halfLifeMs 为半衰期衰减
+     */
+    public static final class Affinity {
+        // 上一单信息：stats:container:last:<容器> 的字段
+        public static final List<String> FIELDS = Arrays.asList("last_finish_ts", "last_to");
+
+        public static final Affinity NONE = new Affinity(0.0, 1L);
+
+        public final double bonus;
+        public final long halfLifeMs;
+
+        public Affinity(double bonus, long halfLifeMs) {
+            this.bonus = bonus;
+            this.halfLifeMs = Math.max(1L, halfLifeMs);
+        }
+
+        /**
+         * 指令起点等于容器上一单终点（容器刚到、正占着这个站）时的加分，其余为 0
+         *
+         * @param lastFinishAt 上一单完成时间，未知为 0
+         */
+        public double bonus(String from, String lastTo, long lastFinishAt, long now) {
+            if (bonus == 0.0 || from == null || lastTo == null || lastFinishAt <= 0) {
+                return 0.0;
+            }
+            if (!lastTo.equals(from.trim().toUpperCase())) {
+                return 0.0;
+            }
+            long age = Math.max(0L, now - lastFinishAt);
+            return bonus * Math.pow(0.5, age / (double) halfLifeMs);
+        }
+    }
+
+    /**
+     * 单个 OD 的代价：stats = {mean, std, count}，null 表示没有统计
+     */
+    public static double odCost(Weights w, double[] stats) {
+        double mean = DEFAULT_OD_MEAN_MS;
+        double std  = DEFAULT_OD_STD_MS;
+        long   cnt  = 0;
+        if (stats != null) {
+            if (!Double.isNaN(stats[0])) mean = stats[0];
+            if (!Double.isNaN(stats[1])) std  = stats[1];
+            if (!Double.isNaN(stats[2])) cnt  = (long) stats[2];
+        }
+        double base = mean + w.k * std;
+        double scale = Math.min(1.0, cnt / (double) Math.max(1, w.warmupN));
+        return base * scale;
+    }
+
+    /**
+     * 历史耗时：锚点两两组合，取代价最低的；映射不到拓扑时不加惩罚
+     */
+    public static double historicalCostMs(Weights w, List<String> fromAs, List<String> toAs,
+                                          Function<String, double[]> odStatsByKey) {
+        if (fromAs.isEmpty() || toAs.isEmpty()) {
+            return 0.0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (String f : fromAs) {
+            for (String t : toAs) {
+                double cost = odCost(w, odStatsByKey.apply(f + "|" + t));
+                if (cost < best) best = cost;
+            }
+        }
+        return Double.isInfinite(best) ? 0.0 : best;
+    }
+
+    /**
+     * 把 HMGET mean_ms / std_ms / count 的结果转成 {mean, std, count}，缺失的字段为 NaN
+     */
+    public static double[] parseOdStats(List<?> values) {
+        if (values == null || values.isEmpty() || values.stream().allMatch(v -> v == null)) {
+            return null;
+        }
+        double[] r = new double[]{Double.NaN, Double.NaN, Double.NaN};
+        for (int i = 0; i < 3 && i < values.size(); i++) {
+            Object v = values.get(i);
+            if (v == null) continue;
+            try { r[i] = Double.parseDouble(String.valueOf(v)); } catch (Exception ignore) {}
+        }
+        return r;
+    }
+
+    /**
+     * 在本轮的终点缓存位计划上判断：到达时是否有缓存位空出来。
+     * 若可以发，则把最早空出的缓存位占到 max(到达, 空出) + 处理时间。
+     *
+     * @param slotLoader    终点第一次用到时读取各缓存位空闲时间
+     * @param serviceLoader 终点第一次用到时读取处理时间
+     */
+    public static boolean reserve(Weights w,
+                                  NodePlan plan,
+                                  InstructionExVO vo,
+                                  long eta,
+                                  Function<String, long[]> slotLoader,
+                                  ToLongFunction<String> serviceLoader) {
+        String to = vo.getLocationTo();
+        if (vo.getLocationFrom() == null || to == null) {
+            // 信息不完整时先不拦
+            return true;
+        }
+        String nodeKey = to.trim().toUpperCase();
+
+        long[] slots = plan.slots.computeIfAbsent(nodeKey, k -> {
+            long[] free = slotLoader.apply(k);
+            plan.realEarliest.put(k, free[0]);
+            return free;
+        });
+
+        // 最早空出来的缓存位
+        int idx = 0;
+        for (int i = 1; i < slots.length; i++) {
+            if (slots[i] < slots[idx]) idx = i;
+        }
+        long nodeAvailableAt = slots[idx];
+
+        // 如果 ETA + buffer 还早于可用时间，说明这趟去会在那边干等，先不发
+        boolean ok = eta + w.safeEarlyArriveMs >= nodeAvailableAt;
+        if (ok) {
+            // 提前到了要在终点前干等的时间
+            if (nodeAvailableAt > eta) plan.idleMs.put(vo.getInstructionCode(), nodeAvailableAt - eta);
+            long processMs = plan.serviceMs.computeIfAbsent(nodeKey, serviceLoader::applyAsLong);
+            long releaseAt = Math.max(eta, nodeAvailableAt) + processMs;
+            slots[idx] = releaseAt;
+            plan.releaseAt.put(vo.getInstructionCode(), releaseAt);
+            plan.etaAt.put(vo.getInstructionCode(), eta);
+        }
+        return ok;
+    }
+
+    /**
+     * 平均终点积压（最早空闲缓存位 - now，负数按 0 算）
+     */
+    public static long nodeBacklogMs(NodePlan plan, long now) {
+        if (plan.realEarliest.isEmpty()) return 0L;
+        long sum = 0L;
+        for (Long availableAt : plan.realEarliest.values()) {
+            sum += Math.max(0L, availableAt - now);
+        }
+        return sum / plan.realEarliest.size();
+    }
+
+    /**
+     * deadline 模式的排序：还来得及的截止任务按余量（截止 - 预计完成）从小到大排在最前；
+     * 没有截止时间的和已经来不及的按得分排在后面，过载时先让出的是这部分
+     *
+     * @param slackMs 指令号 -> 余量，没有截止时间的不在里面
+     */
+    public static Comparator<InstructionExVO> deadlineOrder(Map<String, Double> score, Map<String, Long> slackMs) {
+        return (a, b) -> {
+            Long sa = slackMs.get(a.getInstructionCode());
+            Long sb = slackMs.get(b.getInstructionCode());
+            boolean fa = sa != null && sa >= 0, fb = sb != null && sb >= 0;
+            if (fa != fb) return fa ? -1 : 1;
+            if (fa) return Long.compare(sa, sb);
+            return Double.compare(score.getOrDefault(b.getInstructionCode(), 0.0),
+                    score.getOrDefault(a.getInstructionCode(), 0.0));
+        };
+    }
+
+    /**
+     * 预计完成时间：按完成速率排完前面 ahead 条后起调，行驶到终点，等最早的缓存位空出后处理完
+     *
+     * @param slotFreeAt 终点最早空闲缓存位的时间
+     */
+    public static long predictFinishAt(long startAt, long travelMs, long slotFreeAt, long serviceMs) {
+        return Math.max(startAt + travelMs, slotFreeAt) + serviceMs;
+    }
+
+    public static long predictStartAt(long now, long ahead, double ratePerSec) {
+        return now + (ratePerSec <= 0 ? 0L : (long) (ahead * 1000.0 / ratePerSec));
+    }
+
+    /**
+     * 一轮调度内的终点占用计划
+     */
+    public static class NodePlan {
+        // 终点 -> 各缓存位空闲时间
+        public final Map<String, long[]> slots = new HashMap<>();
+        // 终点 -> 读 Redis 时最早空闲缓存位的时间（用于积压统计）
+        public final Map<String, Long> realEarliest = new HashMap<>();
+        // 终点 -> 本轮使用的处理时间估计
+        public final Map<String, Long> serviceMs = new HashMap<>();
+        // 指令号 -> 计划释放缓存位的时间
+        public final Map<String, Long> releaseAt = new HashMap<>();
+        // 指令号 -> 预计到达终点（完成）的时间
+        public final Map<String, Long> etaAt = new HashMap<>();
+        // 指令号 -> 选定行驶路径的段 id
+        public final Map<String, List<String>> route = new HashMap<>();
+        // 指令号 -> 到达后等缓存位空出的时间（提前量内发出的）
+        public final Map<String, Long> idleMs = new HashMap<>();
+    }
+}
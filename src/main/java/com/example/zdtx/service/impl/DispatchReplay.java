@@ -0,0 +1,282 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.topology.TopologyConfigDTO;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.ReplayDiffVO;
+import com.example.zdtx.domain.vo.ReplayVO;
+import com.example.zdtx.utils.DispatchJournal;
+import com.example.zdtx.utils.LogHistogram;
+import com.example.zdtx.utils.WriteAheadLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 调度决策日志回放：把录下来的每轮输入喂给当前的 DispatchPlanner，
+ * 和当时的结果逐条比对（排序名次、是否进本批、ready / deferred），并统计纯内存跑一轮的耗时。
+ * 1. 打分：候选的优先级、入队时间、容器上一单照录制值，历史耗时用录下的 OD 统计 + 给定拓扑重新算
+ *    （拓扑为 null 时用录制值），接续加分按给定参数重新算
+ * 2. 规划：行驶时间优先用录制值；当前代码排进本批而当时没排进的，按 OD 均值 -> 拓扑 -> 默认 重新估
+ * 3. 终点缓存位、处理时间照录制值；录制时没读过的终点按全空闲 + 默认处理时间补，计入 missingNodes
+ * 上游校验照录制结果。打分和规划用给定的一组权重，evaluate 按同样的方式重跑，只汇总结果供调优比较
+ */
+public final class DispatchReplay {
+
+    private DispatchReplay() {
+    }
+
+    /**
+     * 读出目录下所有分段里的轮次（解码失败的为 null）
+     */
+    public static List<DispatchJournal.Round> load(Path dir) throws IOException {
+        List<DispatchJournal.Round> rounds = new ArrayList<>();
+        for (WriteAheadLog.Record r : WriteAheadLog.readAll(dir, DispatchJournal.PREFIX)) {
+            rounds.add(DispatchJournal.decode(r.payload));
+        }
+        return rounds;
+    }
+
+    public static ReplayVO replay(List<DispatchJournal.Round> rounds, Topology topology,
+                                  DispatchPlanner.Affinity affinity, DispatchPlanner.Weights weights, int maxDiffs) {
+        LogHistogram recordedUs = new LogHistogram();
+        LogHistogram replayUs = new LogHistogram();
+        List<ReplayDiffVO> diffs = new ArrayList<>();
+        long total = 0, skipped = 0, candidates = 0, roundsChanged = 0, decisionsChanged = 0, rankChanged = 0;
+        long nowReady = 0, nowDeferred = 0, chainedRecorded = 0, chainedReplay = 0;
+        long[] missing = new long[1];
+
+        for (DispatchJournal.Round r : rounds) {
+            if (r == null) {
+                skipped++;
+                continue;
+            }
+            total++;
+            candidates += r.candidates.size();
+            recordedUs.record(r.elapsedNanos / 1000);
+
+            long t0 = System.nanoTime();
+            Outcome out = run(r, topology, affinity, weights, missing);
+            replayUs.record((System.nanoTime() - t0) / 1000);
+
+            // 当时的结果
+            Map<Integer, Integer> recordedRank = new HashMap<>();
+            Map<Integer, Boolean> recordedReady = new HashMap<>();
+            for (int i = 0; i < r.decisions.size(); i++) {
+                DispatchJournal.Decision d = r.decisions.get(i);
+                recordedRank.put(d.index, i);
+                recordedReady.put(d.index, d.ready);
+            }
+            Set<Integer> involved = new TreeSet<>(recordedRank.keySet());
+            involved.addAll(out.rank.keySet());
+
+            boolean changed = false;
+            for (int idx : involved) {
+                if (chained(r.candidates.get(idx))) {
+                    if (Boolean.TRUE.equals(recordedReady.get(idx))) chainedRecorded++;
+                    if (Boolean.TRUE.equals(out.ready.get(idx))) chainedReplay++;
+                }
+                String was = state(recordedReady.get(idx));
+                String now = state(out.ready.get(idx));
+                int wasRank = recordedRank.getOrDefault(idx, -1);
+                int nowRank = out.rank.getOrDefault(idx, -1);
+                if (was.equals(now) && wasRank == nowRank) continue;
+                changed = true;
+                if (!was.equals(now)) {
+                    decisionsChanged++;
+                    if ("ready".equals(now)) nowReady++;
+                    else if ("ready".equals(was)) nowDeferred++;
+                } else {
+                    rankChanged++;
+                }
+                if (diffs.size() < maxDiffs) {
+                    DispatchJournal.Candidate c = r.candidates.get(idx);
+                    diffs.add(new ReplayDiffVO(r.plannedAt, c.code, wasRank, nowRank, was, now,
+                            c.score, out.score[idx]));
+                }
+            }
+            if (changed) roundsChanged++;
+        }
+        return new ReplayVO(total, skipped, candidates, roundsChanged, decisionsChanged, rankChanged,
+                nowReady, nowDeferred, missing[0], chainedRecorded, chainedReplay,
+                recordedUs.snapshot(), replayUs.snapshot(), diffs);
+    }
+
+    /**
+     * 一组权重在录制轮次上的回放结果汇总
+     */
+    public static final class Score {
+        public long rounds;
+        public long candidates;
+        public long ready;
+        // 发出去的 / 全部候选的 已等待时间之和
+        public long readyWaitMs;
+        public long candidateWaitMs;
+        // 发出去后预计在终点前干等缓存位的时间之和
+        public long idleMs;
+
+        public double readyPerRound() {
+            return rounds == 0 ? 0.0 : ready / (double) rounds;
+        }
+
+        /**
+         * 发出去的平均等待 / 候选平均等待：大于 1 表示优先发了等得久的
+         */
+        public double waitRatio() {
+            if (ready == 0 || candidates == 0 || candidateWaitMs == 0) return 1.0;
+            return (readyWaitMs / (double) ready) / (candidateWaitMs / (double) candidates);
+        }
+
+        public double idleSecPerRound() {
+            return rounds == 0 ? 0.0 : idleMs / 1000.0 / rounds;
+        }
+
+        /**
+         * 目标值：每轮发出条数，按等待比例加减，再扣掉终点前干等的时间
+         */
+        public double objective(double waitWeight, double idleWeight) {
+            return readyPerRound() * (1.0 + waitWeight * (waitRatio() - 1.0)) - idleWeight * idleSecPerRound();
+        }
+    }
+
+    public static Score evaluate(List<DispatchJournal.Round> rounds, Topology topology,
+                                 DispatchPlanner.Affinity affinity, DispatchPlanner.Weights weights) {
+        Score score = new Score();
+        long[] missing = new long[1];
+        for (DispatchJournal.Round r : rounds) {
+            if (r == null || r.candidates.isEmpty()) continue;
+            score.rounds++;
+            Outcome out = run(r, topology, affinity, weights, missing);
+            for (int i = 0; i < r.candidates.size(); i++) {
+                long wait = Math.max(0L, r.scoredAt - r.candidates.get(i).enqueueAt);
+                score.candidates++;
+                score.candidateWaitMs += wait;
+                if (Boolean.TRUE.equals(out.ready.get(i))) {
+                    score.ready++;
+                    score.readyWaitMs += wait;
+                }
+            }
+            score.idleMs += out.idleMs;
+        }
+        return score;
+    }
+
+    /**
+     * 起点就是容器上一单的终点（接着上一单发车）
+     */
+    private static boolean chained(DispatchJournal.Candidate c) {
+        return c.from != null && c.lastTo != null && c.lastTo.equals(c.from.trim().toUpperCase());
+    }
+
+    private static String state(Boolean ready) {
+        return ready == null ? "unscheduled" : ready ? "ready" : "deferred";
+    }
+
+    private static class Outcome {
+        double[] score;
+        // 候选下标 -> 本批内名次 / 是否 ready
+        final Map<Integer, Integer> rank = new HashMap<>();
+        final Map<Integer, Boolean> ready = new HashMap<>();
+        long idleMs;
+    }
+
+    /**
+     * 用当前代码重跑一轮：打分排序取前 batchSize，再在终点缓存位计划上逐条判断
+     */
+    private static Outcome run(DispatchJournal.Round r, Topology topology, DispatchPlanner.Affinity affinity,
+                               DispatchPlanner.Weights weights, long[] missing) {
+        int n = r.candidates.size();
+        Function<String, double[]> odStats = r.od::get;
+        Outcome out = new Outcome();
+        out.score = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            DispatchJournal.Candidate c = r.candidates.get(i);
+            double histMs = topology == null ? c.histMs
+                    : DispatchPlanner.historicalCostMs(weights, topology.anchors(c.from), topology.anchors(c.to), odStats);
+            out.score[i] = DispatchPlanner.baseScore(weights, c.priority, c.enqueueAt, histMs, r.scoredAt)
+                    + affinity.bonus(c.from, c.lastTo, c.lastFinishAt, r.scoredAt);
+            order[i] = i;
+        }
+        // 稳定排序：同分时保持录制时的先后
+        Arrays.sort(order, (a, b) -> Double.compare(out.score[b], out.score[a]));
+
+        Map<Integer, DispatchJournal.Decision> recorded = new HashMap<>();
+        for (DispatchJournal.Decision d : r.decisions) recorded.put(d.index, d);
+
+        DispatchPlanner.NodePlan plan = new DispatchPlanner.NodePlan();
+        int batch = Math.min(n, Math.max(0, r.batchSize));
+        for (int k = 0; k < batch; k++) {
+            int idx = order[k];
+            DispatchJournal.Candidate c = r.candidates.get(idx);
+            DispatchJournal.Decision d = recorded.get(idx);
+            InstructionExVO vo = new InstructionExVO();
+            vo.setInstructionCode(c.code);
+            vo.setLocationFrom(c.from);
+            vo.setLocationTo(c.to);
+            vo.setPriority(c.priority);
+
+            long travel = d != null && d.travelMs >= 0 ? d.travelMs : travelMs(c, r, topology);
+            boolean etaOk = DispatchPlanner.reserve(weights, plan, vo, r.plannedAt + travel,
+                    key -> {
+                        long[] s = r.slots.get(key);
+                        if (s != null) return s.clone();
+                        missing[0]++;
+                        return new long[]{r.plannedAt};
+                    },
+                    key -> r.serviceMs.getOrDefault(key, weights.defaultProcessMs));
+            out.rank.put(idx, k);
+            out.ready.put(idx, (d == null || d.upstreamOk) && etaOk);
+        }
+        for (long idle : plan.idleMs.values()) out.idleMs += idle;
+        return out;
+    }
+
+    private static long travelMs(DispatchJournal.Candidate c, DispatchJournal.Round r, Topology topology) {
+        if (c.from == null || c.to == null) return DispatchPlanner.DEFAULT_TRAVEL_MS;
+        double[] od = r.od.get(c.from.trim().toUpperCase() + "|" + c.to.trim().toUpperCase());
+        if (od != null && !Double.isNaN(od[0])) return (long) od[0];
+        if (topology == null) return DispatchPlanner.DEFAULT_TRAVEL_MS;
+        int d = topology.estimateMs(c.from, c.to);
+        return d == Topology.UNREACHABLE ? DispatchPlanner.DEFAULT_TRAVEL_MS : d;
+    }
+
+    /**
+     * 离线回放：java -cp zdtx.jar -Dloader.main=com.example.zdtx.service.impl.DispatchReplay \
+     *   org.springframework.boot.loader.PropertiesLauncher <日志目录> [差异条数] [接续加分] [加分半衰期ms]
+     * 拓扑用 classpath 下的 /topology.json
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "journal");
+        int maxDiffs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Topology topology;
+        try (InputStream in = DispatchReplay.class.getResourceAsStream("/topology.json")) {
+            topology = in == null ? null
+                    : Topology.build(new ObjectMapper().readValue(in, TopologyConfigDTO.class), null);
+        }
+
+        List<DispatchJournal.Round> rounds = load(dir);
+        DispatchPlanner.Affinity affinity = new DispatchPlanner.Affinity(
+                args.length > 2 ? Double.parseDouble(args[2]) : 500.0,
+                args.length > 3 ? Long.parseLong(args[3]) : 600000L);
+        ReplayVO vo = replay(rounds, topology, affinity, DispatchPlanner.Weights.DEFAULTS, maxDiffs);
+        System.out.println("== 回放 " + dir.toAbsolutePath() + " ==");
+        System.out.println("轮数=" + vo.getRounds() + "，跳过=" + vo.getSkipped() + "，候选=" + vo.getCandidates());
+        System.out.println("有差异的轮数=" + vo.getRoundsChanged() + "，决定变化=" + vo.getDecisionsChanged()
+                + "（变 ready " + vo.getNowReady() + "，变 deferred " + vo.getNowDeferred() + "），仅名次变化="
+                + vo.getRankChanged() + "，补默认的终点=" + vo.getMissingNodes());
+        System.out.println("接续发车 录制=" + vo.getChainedRecorded() + "，回放=" + vo.getChainedReplay());
+        System.out.println("录制耗时(us)=" + vo.getRecordedUs());
+        System.out.println("回放耗时(us)=" + vo.getReplayUs());
+        for (ReplayDiffVO d : vo.getDiffs()) {
+            System.out.println("  @" + d.getPlannedAt() + " " + d.getInstructionCode() + " "
+                    + d.getRecorded() + "#" + d.getRecordedRank() + " -> " + d.getReplayed() + "#" + d.getReplayRank()
+                    + "  score " + d.getRecordedScore() + " -> " + d.getReplayScore());
+        }
+    }
+}
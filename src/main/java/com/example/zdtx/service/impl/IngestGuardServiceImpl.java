@@ -0,0 +1,267 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.config.IngestProperties;
+import com.example.zdtx.domain.vo.IngestVO;
+import com.example.zdtx.domain.vo.SourceLimitVO;
+import com.example.zdtx.service.IngestGuardService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 入队背压：
+ * 1. 水位：后台定时读各分区等待队列的总深度，超过 high 后拒绝所有入队，降到 low 以下才恢复（滞回，避免在水位线上抖动）；
+ *    重试建议 = (深度 - low) / 各分区完成速率之和
+ * 2. 令牌桶：每个来源一个 hash（tokens, ts），用 Lua 按 Redis 服务器时间补令牌再扣，多实例看到的是同一个桶。
+ *    超过桶容量的大批等桶满后整批扣（令牌可为负，相当于预支），不直接拒绝；
+ *    多来源的批各桶不在同一个槽，逐个扣，被拒时把前面扣的退回
+ * 3. Redis 不可用时放行，交给降级模式处理
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestGuardServiceImpl implements IngestGuardService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final IngestProperties ingestProperties;
+
+    private final TaskStore taskStore;
+
+    private final PartitionService partitionService;
+
+    // 没有 systemCode 的请求共用一个桶
+    private static final String DEFAULT_SOURCE = "_default";
+
+    // 本实例记统计的来源数上限，超出的只限流不记
+    private static final int MAX_TRACKED_SOURCES = 1000;
+
+    // KEYS: bucket
+    // ARGV: ratePerSec, burst, n, ttlMs
+    // 返回 0=放行，>0=建议多少毫秒后重试；n 超过 burst 时要求桶满，扣完可为负
+    private static final String TAKE_LUA =
+            "if redis.replicate_commands then pcall(redis.replicate_commands) end\n" +
+            "local t = redis.call('TIME')\n" +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)\n" +
+            "local rate = tonumber(ARGV[1])\n" +
+            "local burst = tonumber(ARGV[2])\n" +
+            "local n = tonumber(ARGV[3])\n" +
+            "local v = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(v[1]) or burst\n" +
+            "local ts = tonumber(v[2]) or now\n" +
+            "tokens = math.min(burst, tokens + math.max(0, now - ts) * rate / 1000)\n" +
+            "local need = math.min(n, burst)\n" +
+            "local wait = 0\n" +
+            "if tokens >= need then tokens = tokens - n else wait = math.ceil((need - tokens) * 1000 / rate) end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4])\n" +
+            "return wait";
+
+    // KEYS: bucket
+    // ARGV: burst, n
+    // 退回已扣的令牌，不超过桶容量
+    private static final String REFUND_LUA =
+            "local v = tonumber(redis.call('HGET', KEYS[1], 'tokens'))\n" +
+            "if not v then return 0 end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(math.min(tonumber(ARGV[1]), v + tonumber(ARGV[2]))))\n" +
+            "return 1";
+
+    private static final DefaultRedisScript<Long> TAKE = new DefaultRedisScript<>(TAKE_LUA, Long.class);
+    private static final DefaultRedisScript<Long> REFUND = new DefaultRedisScript<>(REFUND_LUA, Long.class);
+
+    private static class SourceStats {
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+    }
+
+    private final Map<String, SourceStats> stats = new ConcurrentHashMap<>();
+
+    private volatile long waiting;
+    private volatile boolean busy;
+    private final AtomicLong rejectedDepth = new AtomicLong();
+
+    @Override
+    public Busy check(String source, int n) {
+        return checkAll(Collections.singletonMap(source, n));
+    }
+
+    @Override
+    public Busy checkAll(Map<String, Integer> bySource) {
+        if (!ingestProperties.isEnabled() || bySource == null || bySource.isEmpty()) return null;
+        Busy depth = depthBusy();
+        if (depth != null) return depth;
+        // 同一来源可能以 null / 空串 / 带空格出现，先合并
+        Map<String, Integer> merged = new LinkedHashMap<>();
+        bySource.forEach((s, n) -> {
+            if (n != null && n > 0) merged.merge(sourceOf(s), n, Integer::sum);
+        });
+        Map<String, Integer> taken = new LinkedHashMap<>();
+        Busy rejected = null;
+        for (Map.Entry<String, Integer> e : merged.entrySet()) {
+            String src = e.getKey();
+            int n = e.getValue();
+            IngestProperties.Limit limit = ingestProperties.limitOf(src);
+            Long r;
+            try {
+                r = stringRedisTemplate.execute(TAKE, Collections.singletonList(INGEST_BUCKET + src), (Object[]) takeArgs(limit, n));
+            } catch (RuntimeException ex) {
+                // Redis 不可用时放行这一个来源，交给降级模式
+                continue;
+            }
+            Busy busy = verdict(src, limit, n, r);
+            if (busy == null) {
+                taken.put(src, n);
+            } else if (rejected == null || busy.retryAfterMs > rejected.retryAfterMs) {
+                rejected = busy;
+            }
+        }
+        if (rejected != null) refund(taken);
+        return rejected;
+    }
+
+    @Override
+    public Mono<Busy> checkAsync(String source, int n) {
+        if (!ingestProperties.isEnabled() || n <= 0) return Mono.empty();
+        Busy depth = depthBusy();
+        if (depth != null) return Mono.just(depth);
+        String src = sourceOf(source);
+        IngestProperties.Limit limit = ingestProperties.limitOf(src);
+        return reactiveStringRedisTemplate
+                .execute(TAKE, Collections.singletonList(INGEST_BUCKET + src), Arrays.asList(takeArgs(limit, n)))
+                .next()
+                .onErrorResume(e -> Mono.empty())
+                .flatMap(r -> Mono.justOrEmpty(verdict(src, limit, n, r)));
+    }
+
+    /**
+     * 定时刷新等待队列深度和水位状态，入队路径上只读内存里的结果
+     */
+    @Scheduled(fixedDelayString = "${zdtx.ingest.depth-refresh-ms:500}")
+    public void refreshDepth() {
+        if (!ingestProperties.isEnabled()) return;
+        try {
+            long total = 0L;
+            for (String p : partitionService.partitions()) {
+                total += taskStore.partition(p).waitingSize();
+            }
+            waiting = total;
+        } catch (RuntimeException e) {
+            return;
+        }
+        boolean was = busy;
+        if (!was && waiting >= ingestProperties.getHighWatermark()) {
+            busy = true;
+            System.out.println("[" + ts() + "] 等待队列深度 " + waiting + " 超过高水位，暂停入队");
+        } else if (was && waiting < ingestProperties.getLowWatermark()) {
+            busy = false;
+            System.out.println("[" + ts() + "] 等待队列深度 " + waiting + " 降到低水位以下，恢复入队");
+        }
+    }
+
+    @Override
+    public IngestVO info() {
+        Set<String> sources = new TreeSet<>(stats.keySet());
+        sources.addAll(ingestProperties.getSources().keySet());
+        List<String> ordered = new ArrayList<>(sources);
+        List<Object> tokens = ordered.isEmpty() ? Collections.emptyList()
+                : stringRedisTemplate.executePipelined((RedisCallback<Object>) c -> {
+            for (String s : ordered) {
+                c.hashCommands().hGet(bytes(INGEST_BUCKET + s), bytes("tokens"));
+            }
+            return null;
+        });
+        List<SourceLimitVO> list = new ArrayList<>(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            String s = ordered.get(i);
+            IngestProperties.Limit limit = ingestProperties.limitOf(s);
+            Object t = i < tokens.size() ? tokens.get(i) : null;
+            SourceStats st = stats.get(s);
+            list.add(new SourceLimitVO(s, limit.getRatePerSec(), limit.getBurst(),
+                    t == null ? (double) limit.getBurst() : Double.parseDouble(String.valueOf(t)),
+                    st == null ? 0L : st.accepted.get(), st == null ? 0L : st.rejected.get()));
+        }
+        return new IngestVO(ingestProperties.isEnabled(), waiting, ingestProperties.getHighWatermark(),
+                ingestProperties.getLowWatermark(), busy, rejectedDepth.get(), list);
+    }
+
+    private Busy depthBusy() {
+        if (!busy) return null;
+        rejectedDepth.incrementAndGet();
+        // 深度是各分区的总和，速率也按各分区的批量控制器加起来
+        double rate = 0;
+        for (String p : partitionService.partitions()) {
+            Double r = partitionService.batchOf(p).snapshot().getCompletionRatePerSec();
+            if (r != null && r > 0) rate += r;
+        }
+        long excess = Math.max(1L, waiting - ingestProperties.getLowWatermark());
+        long retryMs = rate <= 0 ? ingestProperties.getRetryAfterMaxMs()
+                : (long) (excess * 1000.0 / rate);
+        return new Busy("等待队列已满（" + waiting + " 条）", clampRetry(retryMs));
+    }
+
+    private void refund(Map<String, Integer> taken) {
+        taken.forEach((src, n) -> {
+            try {
+                stringRedisTemplate.execute(REFUND, Collections.singletonList(INGEST_BUCKET + src),
+                        String.valueOf(ingestProperties.limitOf(src).getBurst()), String.valueOf(n));
+                SourceStats st = stats.get(src);
+                if (st != null) st.accepted.addAndGet(-n);
+            } catch (RuntimeException e) {
+                System.out.println("[" + ts() + "] 来源 " + src + " 退回 " + n + " 个令牌失败：" + e.getMessage());
+            }
+        });
+    }
+
+    private Busy verdict(String src, IngestProperties.Limit limit, int n, Long r) {
+        SourceStats st = stats.get(src);
+        if (st == null && stats.size() < MAX_TRACKED_SOURCES) {
+            st = stats.computeIfAbsent(src, k -> new SourceStats());
+        }
+        if (r == null || r == 0L) {
+            if (st != null) st.accepted.addAndGet(n);
+            return null;
+        }
+        if (st != null) st.rejected.incrementAndGet();
+        return new Busy("来源 " + src + " 入队过快（限 " + limit.getRatePerSec() + " 条/秒）", clampRetry(r));
+    }
+
+    private long clampRetry(long ms) {
+        return Math.max(1000L, Math.min(ms, ingestProperties.getRetryAfterMaxMs()));
+    }
+
+    private static String sourceOf(String source) {
+        return source == null || source.trim().isEmpty() ? DEFAULT_SOURCE : source.trim();
+    }
+
+    private static String[] takeArgs(IngestProperties.Limit limit, int n) {
+        // 桶闲置到补满后就可以过期；预支了超过容量的大批时要多留出还清的时间
+        long ttlMs = (long) Math.ceil((Math.max(n, limit.getBurst()) + limit.getBurst()) * 1000.0 / limit.getRatePerSec()) + 60000L;
+        return new String[]{String.valueOf(limit.getRatePerSec()), String.valueOf(limit.getBurst()),
+                String.valueOf(n), String.valueOf(ttlMs)};
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
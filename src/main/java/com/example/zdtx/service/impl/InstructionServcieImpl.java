@@ -2,24 +2,49 @@ package com.example.zdtx.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
+import com.example.zdtx.config.StationProperties;
 import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
 import com.example.zdtx.domain.dto.instruction.InstructionCancelDTO;
 import com.example.zdtx.domain.dto.instruction.InstructionQueryDTO;
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.dto.remote.TaskCreateDTO;
+import com.example.zdtx.domain.dto.topology.TopologyConfigDTO;
 import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.AdmissionVO;
 import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.RouteVO;
+import com.example.zdtx.domain.vo.TopologyVO;
+import com.example.zdtx.service.AdmissionService;
+import com.example.zdtx.service.DedupeService;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.DispatchBatchService;
 import com.example.zdtx.service.InstructionServcie;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.RoundTraceService;
+import com.example.zdtx.service.RouteService;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.utils.DispatchJournal;
+import com.example.zdtx.utils.RoundTrace;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.DataAccessException;
-import org.springframework.data.redis.core.RedisCallback;
-import org.springframework.data.redis.core.RedisOperations;
-import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static com.example.zdtx.constants.RedisConstants.*;
 
@@ -35,52 +60,220 @@ public class InstructionServcieImpl implements InstructionServcie {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    // ===================== 调度打分相关 =====================
+    private final TaskStore taskStore;
 
-    // 优先级、等待时间权重
-    private static final int Wp = 1000;  // priority 权重
-    private static final int Ww = 5;     // 等待时间(分钟) 权重
+    private final DispatchBatchService dispatchBatchService;
 
-    // 历史耗时（来自 stats:od:FROM|TO）
-    private static final double Wt = 0.01;  // 把毫秒缩放成分数
-    private static final double K  = 1.0;   // mean + K*std
+    private final StationCapacityService stationCapacityService;
 
-    // OD 统计冷启动
-    private static final long DEFAULT_OD_MEAN_MS = 12000L;
-    private static final long DEFAULT_OD_STD_MS  = 2000L;
-    private static final long WARMUP_N           = 5;
+    private final TopologyService topologyService;
 
-    // ===================== 节点预估可用时间 =====================
+    private final DedupeService dedupeService;
 
-    // 每个终点的预计“可再接任务”的时间
-    private static final String NODE_AVAILABLE_PREFIX = "node:available:";
+    private final DegradedModeService degradedModeService;
 
-    // 没历史数据时的默认行驶时间
-    private static final long DEFAULT_TRAVEL_MS = DEFAULT_OD_MEAN_MS;
+    private final TaskLifecycleService taskLifecycleService;
 
-    // 到站后的处理时间（简单用常量，后面可以再细化）
-    private static final long DEFAULT_PROCESS_MS = 10000L;
+    private final NotifyService notifyService;
 
-    // 允许稍微提前一点的裕量
-    private static final long SAFE_EARLY_ARRIVE_MS = 5000L;
+    private final DispatchJournalService dispatchJournalService;
+
+    private final RouteService routeService;
+
+    private final AdmissionService admissionService;
+
+    private final PartitionService partitionService;
+
+    private final RoundTraceService roundTraceService;
+
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    // 打分权重、冷启动默认值、提前到达裕量等见 DispatchPlanner
+
+    // 容器接续加分：起点就是容器上一单终点时的满分，以及衰减半衰期
+    @Value("${zdtx.dispatch.affinity.bonus:500}")
+    private double affinityBonus;
+
+    @Value("${zdtx.dispatch.affinity.half-life-ms:600000}")
+    private long affinityHalfLifeMs;
+
+    // 每轮只从等待队列顶部取 batch × factor 条打分，0 表示整队
+    @Value("${zdtx.dispatch.candidate-window-factor:8}")
+    private int candidateWindowFactor;
+
+    private static final List<String> OD_FIELDS = Arrays.asList("mean_ms", "std_ms", "count");
+
+    private static final List<String> MEAN_FIELD = Collections.singletonList("mean_ms");
 
     // ===================== 对外接口 =====================
 
     @Override
     public Result<Boolean> addInstruction(InstructionAddDTO requestparm) {
+        if (degradedModeService.isDegraded()) {
+            return degradedModeService.ingest(requestparm);
+        }
+        try {
+            return doAddInstruction(requestparm);
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return degradedModeService.ingest(requestparm);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Result<Void> addInstructions(List<InstructionAddDTO> requestparm) {
+        if (degradedModeService.isDegraded()) {
+            return ingestDegraded(requestparm);
+        }
+        try {
+            return doAddInstructions(requestparm);
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return ingestDegraded(requestparm);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, String> importChunk(List<InstructionAddDTO> chunk) {
+        if (degradedModeService.isDegraded()) {
+            return importDegraded(chunk);
+        }
+        try {
+            return enqueueBatch(chunk).rejected;
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return importDegraded(chunk);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Result<String> cancelInstruction(InstructionCancelDTO requestparm) {
+        if (degradedModeService.isDegraded()) {
+            return degradedModeService.cancel(requestparm.getInstructionCode());
+        }
+        try {
+            return doCancelInstruction(requestparm);
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return degradedModeService.cancel(requestparm.getInstructionCode());
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Result<List<InstructionExVO>> getInstructions() throws InterruptedException {
+        return getInstructions(TaskStore.DEFAULT_PARTITION);
+    }
+
+    @Override
+    public Result<List<InstructionExVO>> getInstructions(String partition) {
+        String p = TaskStore.partitionOf(partition);
+        if (!partitionService.known(p)) {
+            return Result.error("未知分区：" + p);
+        }
+        return partitionService.runRound(p, () -> dispatchPartition(p));
+    }
+
+    @Override
+    public Result<Map<String, List<InstructionExVO>>> getInstructionsAll() {
+        Map<String, List<InstructionExVO>> all = new LinkedHashMap<>();
+        partitionService.runAll(this::dispatchPartition).forEach((p, r) -> {
+            if (r.getData() != null && !r.getData().isEmpty()) all.put(p, r.getData());
+        });
+        return Result.success(all, "获取成功");
+    }
+
+    /**
+     * 降级期间非默认分区的调度请求：明确报错，让调用方改调默认分区（降级队列不分区，所有仓库的任务都从默认分区出）
+     */
+    private static Result<List<InstructionExVO>> degradedPartition(String partition) {
+        return Result.error("降级模式下不按分区调度，分区 " + partition + " 的任务请通过默认分区获取");
+    }
+
+    private Result<List<InstructionExVO>> dispatchPartition(String partition) {
+        // 降级队列不分区，只在默认分区上出
+        boolean main = partition.isEmpty();
+        if (degradedModeService.isDegraded()) {
+            return main ? degradedModeService.dispatch(dispatchBatchService.nextBatchSize())
+                    : degradedPartition(partition);
+        }
+        try {
+            return doGetInstructions(partition);
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return main ? degradedModeService.dispatch(dispatchBatchService.nextBatchSize())
+                        : degradedPartition(partition);
+            }
+            throw e;
+        }
+    }
+
+    private Result<Void> ingestDegraded(List<InstructionAddDTO> requestparm) {
+        if (requestparm == null || requestparm.isEmpty()) {
+            return Result.success();
+        }
+        for (InstructionAddDTO dto : requestparm) {
+            Result<Boolean> r = degradedModeService.ingest(dto);
+            if (r.getResponseCode() != 0) {
+                return Result.error(r.getResponseMessage());
+            }
+        }
+        return Result.success("已写入降级队列 " + requestparm.size() + " 条");
+    }
+
+    private Map<String, String> importDegraded(List<InstructionAddDTO> chunk) {
+        Map<String, String> rejected = new LinkedHashMap<>();
+        for (InstructionAddDTO dto : chunk) {
+            Result<Boolean> r = degradedModeService.ingest(dto);
+            if (r.getResponseCode() != 0) {
+                rejected.put(dto.getInstructionCode(), r.getResponseMessage());
+            }
+        }
+        return rejected;
+    }
+
+    private Result<Boolean> doAddInstruction(InstructionAddDTO requestparm) {
         System.out.println();
         System.out.println("[" + getCurrentTimestamp() + "] addInstruction 调用");
         if (requestparm == null) {
             return Result.error("指令为空");
         }
         System.out.println("[" + getCurrentTimestamp() + "] 开始入队指令：" + requestparm);
+        String invalid = TaskStore.invalidHouseCode(requestparm.getHouseCode());
+        if (invalid != null) {
+            return Result.error(invalid);
+        }
 
-        // 1) 写入等待队列（score 暂用优先级）
-        stringRedisTemplate.opsForZSet().add(
-                TASK_WAITING_ZSET,
-                requestparm.getInstructionCode(),
-                requestparm.getPriority()
-        );
+        // 0) 去重：已在队列的重复提交按幂等处理，已下发的拒绝重新入队
+        DedupeService.Verdict verdict = dedupeService.check(requestparm.getInstructionCode());
+        if (verdict == DedupeService.Verdict.WAITING) {
+            System.out.println("[" + getCurrentTimestamp() + "] 指令 " + requestparm.getInstructionCode() + " 已在队列中，忽略重复提交");
+            return Result.success(Boolean.TRUE, "指令已在队列中");
+        }
+        if (verdict == DedupeService.Verdict.DISPATCHED) {
+            System.out.println("[" + getCurrentTimestamp() + "] 指令 " + requestparm.getInstructionCode() + " 已下发，拒绝重复入队");
+            return Result.error("指令已下发，不能重复入队");
+        }
+
+        // 带截止时间的先预测能否按期完成，按配置拒绝预计超期的
+        AdmissionVO admission = requestparm.getDueAt() == null ? null : admissionService.predict(requestparm);
+        if (admission != null && !admission.getOnTime() && admissionService.rejectLate()) {
+            System.out.println("[" + getCurrentTimestamp() + "] 指令 " + requestparm.getInstructionCode() + " 预计超期，拒绝入队");
+            return Result.error("拒绝入队：" + admissionService.describe(admission));
+        }
+
+        // 1) 写入所属分区的等待队列（score 暂用优先级）
+        String partition = TaskStore.partitionOf(requestparm.getHouseCode());
+        TaskStore store = taskStore.partition(partition);
+        store.addWaiting(requestparm.getInstructionCode(), requestparm.getPriority());
+        partitionService.register(partition);
 
         // 2) DTO -> Map，全部转成 String 存 Hash
         Map<String, Object> raw = BeanUtil.beanToMap(
@@ -98,75 +291,142 @@ public class InstructionServcieImpl implements InstructionServcie {
         // 入队时间，后续算等待用
         strMap.putIfAbsent("enqueueAt", String.valueOf(System.currentTimeMillis()));
 
-        String infoKey = TASK_INFO + requestparm.getInstructionCode();
-        stringRedisTemplate.opsForHash().putAll(infoKey, strMap);
+        store.putTask(requestparm.getInstructionCode(), strMap);
+        if (requestparm.getDueAt() != null) {
+            store.addDue(Collections.singletonMap(requestparm.getInstructionCode(), requestparm.getDueAt()));
+        }
+        notifyService.create(BeanUtil.copyProperties(requestparm, TaskCreateDTO.class));
 
         System.out.println("[" + getCurrentTimestamp() + "] 指令 " + requestparm.getInstructionCode() + " 入队完成");
-        return Result.success(Boolean.TRUE, "添加成功");
+        return Result.success(Boolean.TRUE, admission == null ? "添加成功" : "添加成功，" + admissionService.describe(admission));
     }
 
-    @Override
-    public Result<Void> addInstructions(List<InstructionAddDTO> requestparm) {
+    private Result<Void> doAddInstructions(List<InstructionAddDTO> requestparm) {
         if (requestparm == null || requestparm.isEmpty()) {
             return Result.success();
         }
 
-        // 批量入队：zset + hash
-        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
-            StringRedisSerializer keySer = new StringRedisSerializer();
-            StringRedisSerializer valSer = new StringRedisSerializer();
-
-            for (InstructionAddDTO dto : requestparm) {
-                String code = dto.getInstructionCode();
-                long now = System.currentTimeMillis();
-                // score = priority + 轻量的先来后到
-                double score = dto.getPriority() * 1e13 - now;
-
-                connection.zAdd(
-                        Objects.requireNonNull(keySer.serialize(TASK_WAITING_ZSET)),
-                        score,
-                        Objects.requireNonNull(keySer.serialize(code))
-                );
-
-                String infoKey = TASK_INFO + code;
-                Map<String, Object> map = BeanUtil.beanToMap(
-                        dto,
-                        new HashMap<>(),
-                        CopyOptions.create().ignoreNullValue()
-                );
-                map.putIfAbsent("enqueueAt", now);
-
-                Map<byte[], byte[]> hash = new HashMap<>();
-                map.forEach((k, v) -> hash.put(
-                        keySer.serialize(k),
-                        valSer.serialize(String.valueOf(v))
-                ));
-
-                connection.hMSet(
-                        Objects.requireNonNull(keySer.serialize(infoKey)),
-                        hash
-                );
+        Enqueued r = enqueueBatch(requestparm);
+        if (r.accepted == 0 && r.late == 0) {
+            return Result.success("全部为重复指令，已忽略 " + r.duplicates + " 条");
+        }
+        int rejected = admissionService.rejectLate() ? r.late : 0;
+        String lateMsg = r.late == 0 ? "" : (rejected > 0 ? "，拒绝预计超期 " : "，其中预计超期 ") + r.late + " 条";
+        if (r.accepted == 0) {
+            return Result.success("入队 0 条" + lateMsg);
+        }
+        if (r.duplicates > 0) {
+            return Result.success("入队 " + r.accepted + " 条，忽略重复 " + r.duplicates + " 条" + lateMsg);
+        }
+        return r.late > 0 ? Result.success("入队 " + r.accepted + " 条" + lateMsg) : Result.success();
+    }
+
+    /**
+     * 一批指令入队的结果：没入队的指令号 → 原因（批内重复只计数，不列出）
+     */
+    private static class Enqueued {
+        final Map<String, String> rejected = new LinkedHashMap<>();
+        int accepted;
+        int duplicates;
+        int late;
+    }
+
+    private Enqueued enqueueBatch(List<InstructionAddDTO> requestparm) {
+        Enqueued result = new Enqueued();
+        // 去重：批内重复只留第一条，已在队列 / 已下发的跳过
+        Map<String, DedupeService.Verdict> verdicts = dedupeService.checkAll(
+                requestparm.stream().map(InstructionAddDTO::getInstructionCode).collect(Collectors.toList()));
+        Set<String> seen = new HashSet<>();
+        List<InstructionAddDTO> accepted = new ArrayList<>(requestparm.size());
+        for (InstructionAddDTO dto : requestparm) {
+            String code = dto.getInstructionCode();
+            if (!seen.add(code)) {
+                result.duplicates++;
+                continue;
+            }
+            String invalid = TaskStore.invalidHouseCode(dto.getHouseCode());
+            if (invalid != null) {
+                result.rejected.put(code, invalid);
+                continue;
+            }
+            DedupeService.Verdict verdict = verdicts.getOrDefault(code, DedupeService.Verdict.NEW);
+            if (verdict == DedupeService.Verdict.NEW) {
+                accepted.add(dto);
+            } else {
+                result.duplicates++;
+                result.rejected.put(code, verdict == DedupeService.Verdict.WAITING ? "指令已在队列中" : "指令已下发，不能重复入队");
+            }
+        }
+        if (accepted.isEmpty()) {
+            return result;
+        }
+
+        // 带截止时间的逐条预测（同批的互相不计入排队），按配置去掉预计超期的
+        for (Iterator<InstructionAddDTO> it = accepted.iterator(); it.hasNext(); ) {
+            InstructionAddDTO dto = it.next();
+            if (dto.getDueAt() != null && !admissionService.predict(dto).getOnTime()) {
+                result.late++;
+                if (admissionService.rejectLate()) {
+                    it.remove();
+                    result.rejected.put(dto.getInstructionCode(), "预计超期，拒绝入队");
+                }
+            }
+        }
+        if (accepted.isEmpty()) {
+            return result;
+        }
+
+        // 批量入队：按分区分组，每个分区的等待队列 + 详情一次写入，截止时间索引再一次写入
+        Map<String, List<TaskStore.Waiting>> batches = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> dues = new HashMap<>();
+        for (InstructionAddDTO dto : accepted) {
+            long now = System.currentTimeMillis();
+            // score = priority + 轻量的先来后到
+            double score = dto.getPriority() * 1e13 - now;
+
+            Map<String, Object> map = BeanUtil.beanToMap(
+                    dto,
+                    new HashMap<>(),
+                    CopyOptions.create().ignoreNullValue()
+            );
+            map.putIfAbsent("enqueueAt", now);
+            Map<String, String> fields = new HashMap<>(map.size());
+            map.forEach((k, v) -> fields.put(k, String.valueOf(v)));
+            String partition = TaskStore.partitionOf(dto.getHouseCode());
+            batches.computeIfAbsent(partition, k -> new ArrayList<>())
+                    .add(new TaskStore.Waiting(dto.getInstructionCode(), score, fields));
+            if (dto.getDueAt() != null) {
+                dues.computeIfAbsent(partition, k -> new HashMap<>()).put(dto.getInstructionCode(), dto.getDueAt());
             }
-            return null;
+        }
+        batches.forEach((partition, batch) -> {
+            TaskStore store = taskStore.partition(partition);
+            store.enqueueAll(batch);
+            store.addDue(dues.get(partition));
+            partitionService.register(partition);
         });
-        return Result.success();
+        accepted.forEach(dto -> notifyService.create(BeanUtil.copyProperties(dto, TaskCreateDTO.class)));
+        result.accepted = accepted.size();
+        return result;
     }
 
-    @Override
-    public Result<String> cancelInstruction(InstructionCancelDTO requestparm) {
+    private Result<String> doCancelInstruction(InstructionCancelDTO requestparm) {
         System.out.println();
         System.out.println("[" + getCurrentTimestamp() + "] cancelInstruction 调用");
         String instructionCode = requestparm.getInstructionCode();
-        Double score = stringRedisTemplate.opsForZSet().score(TASK_WAITING_ZSET, instructionCode);
+        // 分区按 task:house 索引查
+        TaskStore store = taskStore.partition(taskStore.partitionOfTask(instructionCode));
+        Double score = store.waitingScore(instructionCode);
 
-        // 不在等待队列里，视作已经启动
+        // 不在等待队列里，视作已经启动；在途的打上取消标记，超时回收时不再重发
         if (score == null) {
+            taskLifecycleService.markCancelled(instructionCode);
             return Result.success("指令已经启动", "指令" + instructionCode + "取消成功");
         }
 
-        stringRedisTemplate.opsForZSet().remove(TASK_WAITING_ZSET, instructionCode);
-        String infoKey = TASK_INFO + instructionCode;
-        stringRedisTemplate.delete(infoKey);
+        store.removeWaiting(instructionCode);
+        store.removeDue(instructionCode);
+        store.deleteTask(instructionCode);
         System.out.println("[" + getCurrentTimestamp() + "] 指令 " + instructionCode + " 取消完成");
         return Result.success("指令未启动", "指令" + instructionCode + "取消成功");
     }
@@ -177,15 +437,43 @@ public class InstructionServcieImpl implements InstructionServcie {
         return true;
     }
 
-    @Override
-    public Result<List<InstructionExVO>> getInstructions() throws InterruptedException {
-        System.out.println();
-        System.out.println("[" + getCurrentTimestamp() + "] getInstructions 调用");
-        System.out.println("[" + getCurrentTimestamp() + "] 开始调度");
+    private Result<List<InstructionExVO>> doGetInstructions(String partition) {
+        // 被采样的轮次记各阶段耗时和 Redis 命令数（没采中时 trace 为 null）
+        RoundTrace trace = roundTraceService.begin(partition);
+        try {
+            return doGetInstructions(partition, trace);
+        } finally {
+            roundTraceService.finish(trace);
+        }
+    }
 
-        // 1) 按打分拿一批候选指令
-        List<InstructionExVO> scheduled = getInstructionsBySchedule(MAX_TASK);
+    private Result<List<InstructionExVO>> doGetInstructions(String partition, RoundTrace trace) {
+        String label = partition.isEmpty() ? "" : "[" + partition + "] ";
+        System.out.println();
+        System.out.println("[" + getCurrentTimestamp() + "] " + label + "getInstructions 调用");
+        System.out.println("[" + getCurrentTimestamp() + "] " + label + "开始调度");
+
+        // 本分区的等待队列和批量控制器
+        TaskStore store = taskStore.partition(partition);
+        DispatchBatchService batch = partitionService.batchOf(partition);
+
+        // 在途索引按分区分开，本分区的 task:running 就是它的在途数，先校准
+        batch.syncInFlight(taskLifecycleService.runningCount(partition));
+
+        // 1) 按打分拿一批候选指令（批量由自适应控制器给出）
+        int batchSize = batch.nextBatchSize();
+        // 整轮用同一组权重，中途切换从下一轮起生效
+        DispatchPlanner.Weights weights = schedulingWeightsService.current();
+        // 本轮的输入和决定录进调度日志（未开启时为 null）
+        DispatchJournal.Round round = dispatchJournalService.begin(DispatchJournal.SOURCE_SYNC, batchSize);
+        long roundStart = System.nanoTime();
+        List<InstructionExVO> scheduled = getInstructionsBySchedule(store, batchSize, round, weights);
+        if (trace != null) {
+            trace.attribute("batchSize", batchSize);
+            trace.attribute("candidates", scheduled == null ? 0 : scheduled.size());
+        }
         if (scheduled == null || scheduled.isEmpty()) {
+            batch.onRoundFinished(0, 0, 0, 0L);
             System.out.println("[" + getCurrentTimestamp() + "] 当前没有待执行指令");
             return Result.success(Collections.emptyList(), "暂无待执行的指令");
         }
@@ -195,58 +483,105 @@ public class InstructionServcieImpl implements InstructionServcie {
         List<InstructionExVO> deferred = new ArrayList<>();
         final long now = System.currentTimeMillis();
 
-        // 本轮调度用的“节点可用时间计划”，只在内存里维护
-        Map<String, Long> nodePlan = new HashMap<>();
+        // 本轮调度用的“节点缓存位占用计划”，只在内存里维护
+        DispatchPlanner.NodePlan nodePlan = new DispatchPlanner.NodePlan();
 
+        if (trace != null) trace.enter("eta");
         for (InstructionExVO vo : scheduled) {
             Boolean upstreamOk = queryInstruction(
                     new InstructionQueryDTO(vo.getLocationFrom(), vo.getLocationTo())
             );
 
-            boolean etaOk = canArriveWhenNodeFreeInPlan(vo, now, nodePlan);
+            if (trace != null) trace.enter("eta.travel");
+            long travelMs = vo.getLocationFrom() == null || vo.getLocationTo() == null
+                    ? -1L : estimateTravelMs(vo.getLocationFrom(), vo.getLocationTo(), round);
+            if (trace != null) trace.exit("eta.travel");
+            if (trace != null) trace.enter("eta.slots");
+            boolean etaOk = canArriveWhenNodeFreeInPlan(vo, now, travelMs, nodePlan, round, weights);
+            if (trace != null) trace.exit("eta.slots");
 
-            if (Boolean.TRUE.equals(upstreamOk) && etaOk) {
+            boolean ok = Boolean.TRUE.equals(upstreamOk) && etaOk;
+            if (ok) {
                 ready.add(vo);
             } else {
                 deferred.add(vo);
             }
+            if (round != null) {
+                round.decisions.add(new DispatchJournal.Decision(round.indexOf(vo.getInstructionCode()), travelMs,
+                        Boolean.TRUE.equals(upstreamOk), ok));
+            }
+        }
+        if (trace != null) trace.exit("eta");
+        if (round != null) {
+            round.plannedAt = now;
+            round.elapsedNanos = System.nanoTime() - roundStart;
+            dispatchJournalService.record(round);
+        }
+
+        // 给 ready 的任务按当前段负载选行驶方向，同一轮选过的路径也算进负载
+        if (trace != null) trace.enter("route");
+        Map<String, Integer> segmentLoad = routeService.segmentLoad();
+        Topology topology = topologyService.current();
+        for (InstructionExVO vo : ready) {
+            if (vo.getLocationFrom() == null || vo.getLocationTo() == null) continue;
+            RouteVO route = routeService.choose(topology, vo.getLocationFrom(), vo.getLocationTo(), segmentLoad);
+            if (route != null) {
+                vo.setDirection(route.getPolicy());
+                nodePlan.route.put(vo.getInstructionCode(), route.getSegments());
+            }
         }
+        if (trace != null) trace.exit("route");
 
         // 3) ready 在前，deferred 在后
         List<InstructionExVO> ordered = new ArrayList<>(ready.size() + deferred.size());
         ordered.addAll(ready);
         ordered.addAll(deferred);
 
-        // 4) 对 ready 的任务记录启动时间，并把终点的“预计可用时间”写回 Redis
-        ready.forEach(instruction -> {
+        // 4) 对 ready 的任务记录启动时间，并在终点占一个缓存位
+        if (trace != null) trace.enter("commit");
+        int committed = 0;
+        for (InstructionExVO instruction : ready) {
             String code = instruction.getInstructionCode();
-            String key = TASK_COMPLETED_SET + code;
+            String key = key(partition, TASK_COMPLETED_SET) + code;
             System.out.println("[" + ts() + "] 记录启动时间：key = " + key + "，时间 = " + now);
 
-            Boolean firstStart = stringRedisTemplate.opsForValue()
-                    .setIfAbsent(key, String.valueOf(now));
-            Double score = stringRedisTemplate.opsForZSet().score(TASK_WAITING_ZSET, code);
-            if (Boolean.TRUE.equals(firstStart) && score != null) {
-                // 起调成功：从等待队列移除，清理详情
-                stringRedisTemplate.opsForZSet().remove(TASK_WAITING_ZSET, code);
-                stringRedisTemplate.delete(TASK_INFO + code);
+            boolean firstStart = store.markStarted(code, now);
+            Double score = store.waitingScore(code);
+            if (firstStart && score != null) {
+                // 起调成功：从等待队列移除，详情转入在途索引（按预计完成时间）
+                store.removeWaiting(code);
+                long expectedFinishAt = nodePlan.etaAt.getOrDefault(code, now + DispatchPlanner.DEFAULT_TRAVEL_MS);
+                taskLifecycleService.onDispatched(partition, instruction, now, expectedFinishAt, nodePlan.route.get(code));
+                store.dispatched(code);
+                partitionService.onDispatched(partition, 1);
+                dedupeService.markDispatched(code);
+                notifyService.confirm(BeanUtil.copyProperties(instruction, ConfirmTaskDTO.class));
                 System.out.println("[" + ts() + "] 启动时间已写入，已从等待队列移除");
 
-                // 粗略估算终点节点忙到什么时候，给下一轮参考
-                String from = instruction.getLocationFrom();
-                String to   = instruction.getLocationTo();
-                long travelMs = estimateTravelMs(from, to);
-                long processMs = DEFAULT_PROCESS_MS;
-                long availableAt = now + travelMs + processMs;
-
-                String nodeKey = NODE_AVAILABLE_PREFIX + to.trim().toUpperCase();
-                stringRedisTemplate.opsForValue().set(nodeKey, String.valueOf(availableAt));
+                // 终点缓存位占到预计释放时间，给下一轮参考
+                String to = instruction.getLocationTo();
+                Long releaseAt = nodePlan.releaseAt.get(code);
+                if (to != null && releaseAt != null) {
+                    stationCapacityService.occupy(partition, to, code, releaseAt, now);
+                }
+                committed++;
             }
-        });
+        }
 
-        // 5) 日志与返回
-        System.out.println("[" + getCurrentTimestamp() + "] 本轮调度结果：共 "
-                + ordered.size() + " 条（ready=" + ready.size() + "，deferred=" + deferred.size() + "）");
+        if (trace != null) {
+            trace.exit("commit");
+            trace.attribute("ready", ready.size());
+            trace.attribute("deferred", deferred.size());
+        }
+
+        // 5) 回报本轮信号给批量控制器
+        long nodeBacklogMs = DispatchPlanner.nodeBacklogMs(nodePlan, now);
+        batch.onRoundFinished(scheduled.size(), committed, deferred.size(), nodeBacklogMs);
+
+        // 6) 日志与返回
+        System.out.println("[" + getCurrentTimestamp() + "] " + label + "本轮调度结果：共 "
+                + ordered.size() + " 条（ready=" + ready.size() + "，deferred=" + deferred.size()
+                + "，batch=" + batchSize + "）");
         System.out.println("详情：");
         System.out.println(ordered);
 
@@ -256,163 +591,206 @@ public class InstructionServcieImpl implements InstructionServcie {
     // ===================== ETA + 节点占用判断 =====================
 
     /**
-     * 在本轮调度的节点占用计划上判断：
-     * 如果现在发这条任务，到终点时大致是否空闲。
-     * 若可以发，则顺带把 nodePlan 里该终点的可用时间往后推一段。
+     * 在本轮调度的节点缓存位计划上判断：
+     * 如果现在发这条任务，到终点时是否有缓存位空出来。
+     * 若可以发，则顺带把 nodePlan 里最早空出的缓存位占到 到达 + 处理时间。
      */
     private boolean canArriveWhenNodeFreeInPlan(InstructionExVO vo,
                                                 long now,
-                                                Map<String, Long> nodePlan) {
-        String from = vo.getLocationFrom();
-        String to   = vo.getLocationTo();
-        if (from == null || to == null) {
+                                                long travelMs,
+                                                DispatchPlanner.NodePlan nodePlan,
+                                                DispatchJournal.Round round,
+                                                DispatchPlanner.Weights weights) {
+        if (vo.getLocationFrom() == null || vo.getLocationTo() == null) {
             // 信息不完整时先不拦
             return true;
         }
-
-        String nodeKey = to.trim().toUpperCase();
-
-        // 1) 预估行驶时间 + ETA
-        long travelMs = estimateTravelMs(from, to);
+        // 预估行驶时间 + ETA；各缓存位的空闲时间本轮第一次用到该终点时从 Redis 读一次，之后在 plan 上推进
         long eta = now + travelMs;
-
-        // 2) 真实的节点可用时间（上一轮留下的），从 Redis 读一次
-        long realAvailable = getNodeAvailableAt(nodeKey, now);
-
-        // 3) 本轮前面已经“预占”的时间（如果有就用 plan，没有就用 real）
-        long planned = nodePlan.getOrDefault(nodeKey, realAvailable);
-
-        long nodeAvailableAt = Math.max(realAvailable, planned);
-
-        // 4) 如果 ETA + buffer 还早于可用时间，说明这趟去会在那边干等，先不发
-        boolean ok = eta + SAFE_EARLY_ARRIVE_MS >= nodeAvailableAt;
-        if (ok) {
-            long processMs = DEFAULT_PROCESS_MS;
-            long newAvailable = eta + processMs;
-            nodePlan.put(nodeKey, newAvailable);
-        }
-        return ok;
-    }
-
-    /**
-     * 读取终点预计“可接下一单”的时间，没有数据则视为“现在就可以”
-     */
-    private long getNodeAvailableAt(String node, long now) {
-        if (node == null) return now;
-        String key = NODE_AVAILABLE_PREFIX + node.trim().toUpperCase();
-        String v = stringRedisTemplate.opsForValue().get(key);
-        if (v == null) return now;
-        try {
-            return Long.parseLong(v);
-        } catch (Exception e) {
-            return now;
-        }
+        return DispatchPlanner.reserve(weights, nodePlan, vo, eta,
+                k -> {
+                    long[] free = stationCapacityService.slotFreeTimes(k, now);
+                    if (round != null) round.slots.put(k, free.clone());
+                    return free;
+                },
+                k -> {
+                    long ms = stationCapacityService.serviceMs(k);
+                    if (round != null) round.serviceMs.put(k, ms);
+                    return ms;
+                });
     }
 
     /**
-     * 估算 from -> to 的行驶时间（毫秒），先看 OD 统计，没有就用默认
+     * 估算 from -> to 的行驶时间（毫秒），先看 OD 统计，没有就按拓扑最短路，再没有用默认
      */
-    private long estimateTravelMs(String from, String to) {
+    private long estimateTravelMs(String from, String to, DispatchJournal.Round round) {
         if (from == null || to == null) {
-            return DEFAULT_TRAVEL_MS;
+            return DispatchPlanner.DEFAULT_TRAVEL_MS;
         }
-        String key = "stats:od:" + from.trim().toUpperCase() + "|" + to.trim().toUpperCase();
-        Object meanStr = stringRedisTemplate.opsForHash().get(key, "mean_ms");
+        String od = from.trim().toUpperCase() + "|" + to.trim().toUpperCase();
+        String meanStr = taskStore.getStats("stats:od:" + od, MEAN_FIELD).get(0);
         if (meanStr == null) {
-            return DEFAULT_TRAVEL_MS;
+            return topologyTravelMs(from, to);
         }
         try {
-            return (long) Double.parseDouble(String.valueOf(meanStr));
+            double mean = Double.parseDouble(String.valueOf(meanStr));
+            if (round != null) round.od(od, new double[]{mean, Double.NaN, Double.NaN});
+            return (long) mean;
         } catch (Exception e) {
-            return DEFAULT_TRAVEL_MS;
+            return topologyTravelMs(from, to);
         }
     }
 
+    private long topologyTravelMs(String from, String to) {
+        int d = topologyService.current().estimateMs(from, to);
+        return d == Topology.UNREACHABLE ? DispatchPlanner.DEFAULT_TRAVEL_MS : d;
+    }
+
     // ===================== 调度核心：打分排序 =====================
 
     /**
-     * 按优先级 + 等待时间 - 历史耗时 打分，直接排序
+     * 按优先级 + 等待时间 - 历史耗时 + 容器接续加分 打分，直接排序；
+     * deadline 模式下带截止时间的先算余量 = 截止 - (now + 行驶 + 终点处理)，按 DispatchPlanner.deadlineOrder 排
      */
     private void schedule(List<InstructionExVO> candidates) {
         if (candidates == null || candidates.isEmpty()) {
             return;
         }
+        List<String> codes = new ArrayList<>(candidates.size());
+        for (InstructionExVO vo : candidates) codes.add(vo.getInstructionCode());
+        List<Map<String, String>> loaded = taskStore.getTasks(codes);
+        Map<String, Map<String, String>> infos = new HashMap<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) infos.put(codes.get(i), loaded.get(i));
+        schedule(candidates, infos, null, schedulingWeightsService.current());
+    }
+
+    /**
+     * infos 是取候选时已经批量读出的详情（指令号 -> 详情），这里不再重复读
+     */
+    private void schedule(List<InstructionExVO> candidates, Map<String, Map<String, String>> infos,
+                          DispatchJournal.Round round, DispatchPlanner.Weights weights) {
+        if (candidates == null || candidates.isEmpty()) {
+            return;
+        }
 
         final long now = System.currentTimeMillis();
         Map<String, TaskCtx> ctx = new HashMap<>(candidates.size());
+        RoundTrace trace = RoundTrace.current();
+        if (trace != null) trace.enter("schedule.prefetch");
+
+        // 先把所有候选的容器上一单信息一起发出（Redis 下由网关合成少量 pipeline），再逐条取结果
+        Map<String, CompletableFuture<List<String>>> lasts = new HashMap<>();
+        for (InstructionExVO vo : candidates) {
+            if (vo.getContainerCode() != null) {
+                lasts.computeIfAbsent(vo.getContainerCode().trim().toUpperCase(), c ->
+                        taskStore.getStatsAsync(CONTAINER_LAST + c, DispatchPlanner.Affinity.FIELDS));
+            }
+        }
+        if (trace != null) trace.exit("schedule.prefetch");
+        DispatchPlanner.Affinity affinity = new DispatchPlanner.Affinity(affinityBonus, affinityHalfLifeMs);
+        boolean deadline = admissionService.deadlineMode();
+        Map<String, Long> slackMs = new HashMap<>();
+        Map<String, Long> serviceMs = new HashMap<>();
 
+        Set<String> gone = new HashSet<>();
         for (InstructionExVO vo : candidates) {
             String code = vo.getInstructionCode();
-            Map<Object, Object> m = stringRedisTemplate.opsForHash().entries(TASK_INFO + code);
+            Map<String, String> m = infos.get(code);
+            // 取候选之后被取消 / 完成，详情已删，本轮跳过
+            if (m == null || m.isEmpty()) {
+                gone.add(code);
+                continue;
+            }
 
-            long enqueueAt = 0L;
-            if (m != null && m.get("enqueueAt") != null) {
-                try {
-                    enqueueAt = Long.parseLong(String.valueOf(m.get("enqueueAt")));
-                } catch (Exception ignore) {}
+            // 缺少 / 解析不了 enqueueAt 的按刚入队算（不加等待分），不能让一条坏数据拖垮整轮
+            long enqueueAt = now;
+            String enqueueStr = m.get("enqueueAt");
+            if (enqueueStr == null) {
+                System.out.println("[" + ts() + "] 指令 " + code + " 缺少 enqueueAt，按当前时间打分");
             } else {
-                throw new RuntimeException("缺少 enqueueAt：" + code);
+                try {
+                    enqueueAt = Long.parseLong(enqueueStr.trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("[" + ts() + "] 指令 " + code + " 的 enqueueAt 无法解析：" + enqueueStr + "，按当前时间打分");
+                }
             }
             long waitMin = Math.max(0, (now - enqueueAt) / 60000);
 
-            int p = vo.getPriority() == null ? 0 : vo.getPriority();
-
-            double histMs = historicalCostMs(vo.getLocationFrom(), vo.getLocationTo());
+            if (trace != null) trace.enter("schedule.od-history");
+            double histMs = historicalCostMs(vo.getLocationFrom(), vo.getLocationTo(), round, weights);
+            if (trace != null) trace.exit("schedule.od-history");
+
+            // 容器上一单停在本单起点：优先把它接着发走，腾出站位、少跑空程
+            String lastTo = null;
+            long lastFinishAt = 0L;
+            if (vo.getContainerCode() != null) {
+                if (trace != null) trace.enter("schedule.container-last");
+                List<String> last = taskStore.await(lasts.get(vo.getContainerCode().trim().toUpperCase()));
+                if (trace != null) trace.exit("schedule.container-last");
+                if (last != null && last.size() >= 2) {
+                    lastFinishAt = parseLongOrZero(last.get(0));
+                    lastTo = last.get(1);
+                }
+            }
 
-            double base = Wp * (double) p
-                    + Ww * (double) waitMin
-                    - Wt * histMs;
+            double base = DispatchPlanner.baseScore(weights, vo.getPriority(), enqueueAt, histMs, now)
+                    + affinity.bonus(vo.getLocationFrom(), lastTo, lastFinishAt, now);
 
             ctx.put(code, new TaskCtx(vo, base, waitMin));
+            long dueAt = parseLongOrZero(m.get("dueAt"));
+            if (deadline && dueAt > 0 && vo.getLocationFrom() != null && vo.getLocationTo() != null) {
+                long travelMs = estimateTravelMs(vo.getLocationFrom(), vo.getLocationTo(), round);
+                long svc = serviceMs.computeIfAbsent(vo.getLocationTo().trim().toUpperCase(), stationCapacityService::serviceMs);
+                slackMs.put(code, dueAt - (now + travelMs + svc));
+            }
+            if (round != null) {
+                round.candidate(new DispatchJournal.Candidate(code, vo.getLocationFrom(), vo.getLocationTo(),
+                        vo.getPriority() == null ? 0 : vo.getPriority(), enqueueAt, histMs, base, lastTo, lastFinishAt));
+            }
+        }
+        if (!gone.isEmpty()) {
+            candidates.removeIf(vo -> gone.contains(vo.getInstructionCode()));
+        }
+        if (trace != null) trace.enter("schedule.sort");
+
+        if (!slackMs.isEmpty()) {
+            Map<String, Double> score = new HashMap<>(ctx.size());
+            ctx.forEach((code, c) -> score.put(code, c.baseScore));
+            candidates.sort(DispatchPlanner.deadlineOrder(score, slackMs));
+        } else {
+            // 按得分从高到低排
+            candidates.sort((a, b) -> {
+                TaskCtx ca = ctx.get(a.getInstructionCode());
+                TaskCtx cb = ctx.get(b.getInstructionCode());
+                double sa = (ca == null ? 0 : ca.baseScore);
+                double sb = (cb == null ? 0 : cb.baseScore);
+                return Double.compare(sb, sa);
+            });
+        }
+        if (trace != null) trace.exit("schedule.sort");
+        if (round != null) {
+            round.scoredAt = now;
         }
-
-        // 按得分从高到低排
-        candidates.sort((a, b) -> {
-            TaskCtx ca = ctx.get(a.getInstructionCode());
-            TaskCtx cb = ctx.get(b.getInstructionCode());
-            double sa = (ca == null ? 0 : ca.baseScore);
-            double sb = (cb == null ? 0 : cb.baseScore);
-            return Double.compare(sb, sa);
-        });
     }
 
     /**
      * 历史耗时：从 stats:od:FROM|TO 里拿 mean/std/count，按“代价最低”组合
      */
-    private double historicalCostMs(String from, String to) {
-        List<String> fromAs = normalizeToGrayAnchors(from);
-        List<String> toAs   = normalizeToGrayAnchors(to);
-        if (fromAs.isEmpty() || toAs.isEmpty()) {
-            // 映射不到主环，先不加惩罚
-            return 0.0;
-        }
-
-        double best = Double.POSITIVE_INFINITY;
-
+    private double historicalCostMs(String from, String to, DispatchJournal.Round round, DispatchPlanner.Weights weights) {
+        Topology topology = topologyService.current();
+        List<String> fromAs = topology.anchors(from);
+        List<String> toAs   = topology.anchors(to);
+        Map<String, CompletableFuture<List<String>>> stats = new HashMap<>();
         for (String f : fromAs) {
             for (String t : toAs) {
-                String key = "stats:od:" + f + "|" + t;
-
-                Object meanStr = stringRedisTemplate.opsForHash().get(key, "mean_ms");
-                Object stdStr  = stringRedisTemplate.opsForHash().get(key, "std_ms");
-                Object cntStr  = stringRedisTemplate.opsForHash().get(key, "count");
-
-                double mean = DEFAULT_OD_MEAN_MS;
-                double std  = DEFAULT_OD_STD_MS;
-                long   cnt  = 0;
-
-                try { if (meanStr != null) mean = Double.parseDouble(String.valueOf(meanStr)); } catch (Exception ignore) {}
-                try { if (stdStr  != null) std  = Double.parseDouble(String.valueOf(stdStr));  } catch (Exception ignore) {}
-                try { if (cntStr  != null) cnt  = Long.parseLong(String.valueOf(cntStr));      } catch (Exception ignore) {}
-
-                double base = mean + K * std;
-                double scale = Math.min(1.0, cnt / (double) Math.max(1, WARMUP_N));
-                double cost = base * scale;
-
-                if (cost < best) best = cost;
+                stats.computeIfAbsent(f + "|" + t, od -> taskStore.getStatsAsync("stats:od:" + od, OD_FIELDS));
             }
         }
-        return Double.isInfinite(best) ? 0.0 : best;
+        return DispatchPlanner.historicalCostMs(weights, fromAs, toAs, od -> {
+            double[] v = DispatchPlanner.parseOdStats(taskStore.await(stats.get(od)));
+            if (round != null) round.od(od, v);
+            return v;
+        });
     }
 
     private static class TaskCtx {
@@ -427,67 +805,87 @@ public class InstructionServcieImpl implements InstructionServcie {
         }
     }
 
+    /**
+     * 候选窗口大小：batch × factor，溢出或 factor <= 0 时取整队
+     */
+    static int candidateWindow(int batchSize, int factor) {
+        if (factor <= 0) return 0;
+        long n = (long) batchSize * factor;
+        return n > Integer.MAX_VALUE ? 0 : (int) n;
+    }
+
+    private static long parseLongOrZero(String s) {
+        if (s == null) return 0L;
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
     // ===================== 取候选、清理等 =====================
 
     public List<InstructionExVO> getInstructionsBySchedule(int size) {
+        return getInstructionsBySchedule(taskStore, size, null, schedulingWeightsService.current());
+    }
+
+    private List<InstructionExVO> getInstructionsBySchedule(TaskStore store, int size, DispatchJournal.Round round,
+                                                            DispatchPlanner.Weights weights) {
         if (size <= 0) return Collections.emptyList();
 
-        // 从等待队列拿候选（分数高在前）
-        Set<String> candidates = stringRedisTemplate.opsForZSet()
-                .reverseRange(TASK_WAITING_ZSET, 0, -1);
-        if (candidates == null || candidates.isEmpty()) {
+        // 从本分区等待队列顶部（按优先级）取一个窗口作为候选，详情批量取；不再每轮读整队
+        RoundTrace trace = RoundTrace.current();
+        if (trace != null) trace.enter("candidates");
+        List<String> codes = store.waitingTop(candidateWindow(size, candidateWindowFactor));
+        if (codes.isEmpty()) {
+            if (trace != null) trace.exit("candidates");
             return Collections.emptyList();
         }
-
-        List<String> codes = new ArrayList<>(candidates);
-
-        // pipeline 批量拿 Hash
-        List<Object> results = stringRedisTemplate.executePipelined(
-                new SessionCallback<Object>() {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public Object execute(RedisOperations operations) throws DataAccessException {
-                        RedisOperations<String, String> ops =
-                                (RedisOperations<String, String>) operations;
-                        for (String code : codes) {
-                            ops.opsForHash().entries(TASK_INFO + code);
-                        }
-                        return null;
-                    }
-                }
-        );
+        List<Map<String, String>> infos = store.getTasks(codes);
+        if (trace != null) {
+            trace.exit("candidates");
+            trace.attribute("waiting", codes.size());
+        }
 
         int n = codes.size();
         List<InstructionExVO> list = new ArrayList<>(n);
+        Map<String, Map<String, String>> infoByCode = new HashMap<>(n);
 
         for (int i = 0; i < n; i++) {
             String code = codes.get(i);
-            Map<Object, Object> m = null;
-            if (results != null && i < results.size() && results.get(i) instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<Object, Object> tmp = (Map<Object, Object>) results.get(i);
-                m = tmp;
+            Map<String, String> m = infos.get(i);
+
+            // 等待队列里有、详情已删（并发取消 / 完成中），不算候选
+            if (m == null || m.isEmpty()) {
+                continue;
             }
 
             InstructionExVO vo = new InstructionExVO();
             vo.setInstructionCode(code);
-
-            if (m != null && !m.isEmpty()) {
-                vo.setLocationFrom((String) m.get("locationFrom"));
-                vo.setLocationTo((String) m.get("locationTo"));
-                Object p = m.get("priority");
-                if (p != null) {
-                    try { vo.setPriority(Integer.valueOf(p.toString())); } catch (NumberFormatException ignore) {}
-                } else {
-                    vo.setPriority(1);
-                }
-                vo.setContainerCode((String) m.get("containerCode"));
+            vo.setLocationFrom(m.get("locationFrom"));
+            vo.setLocationTo(m.get("locationTo"));
+            String p = m.get("priority");
+            if (p != null) {
+                try { vo.setPriority(Integer.valueOf(p)); } catch (NumberFormatException ignore) {}
+            } else {
+                vo.setPriority(1);
             }
+            vo.setContainerCode(m.get("containerCode"));
             list.add(vo);
+            infoByCode.put(code, m);
         }
 
-        // 内存里按打分排一遍
-        schedule(list);
+        // 内存里按打分排一遍，只取前 size 条作为本轮候选
+        if (trace != null) trace.enter("schedule");
+        schedule(list, infoByCode, round, weights);
+        if (trace != null) trace.exit("schedule");
+        // 候选窗口留一份快照，Redis 掉线时给降级队列打底（降级队列不分区，只记默认分区）
+        if (store == taskStore) {
+            degradedModeService.rememberWaiting(list);
+        }
+        if (list.size() > size) {
+            return new ArrayList<>(list.subList(0, size));
+        }
         return list;
     }
 
@@ -510,148 +908,36 @@ public class InstructionServcieImpl implements InstructionServcie {
         return now.format(formatter);
     }
 
-    // ===================== 环路建模（灰点 + 出入口映射） =====================
-
-    public static class Seg {
-        public final String id;  // 无向段 id
-        public final int dir;    // +1 顺时针，-1 逆时针
-        public Seg(String id, int dir) { this.id = id; this.dir = dir; }
-        @Override public String toString(){ return "Seg{id="+id+",dir="+dir+"}"; }
-    }
-
-    public enum DirectionPolicy {
-        SHORTEST, CLOCKWISE, COUNTERCLOCKWISE
-    }
-
-    private static final List<String> RING = List.of(
-            "G01","G02","G03","G04","G05","G06","G07","G08","G09","G10",
-            "G11","G12","G13","G14","G15","G16","G17","G18","G19","G20",
-            "G21","G22","G23","G24","G25","G26","G27","G28","G29","G30",
-            "G31","G32","G33","G34","G35","G36","G37","G38","G39","G40",
-            "G41","G42","G43","G44","G45","G46","G47","G48","G49","G50",
-            "G51","G52","G53","G54","G55","G56","G57","G58","G59","G60",
-            "G61","G62","G63","G64","G65","G66","G67","G68"
-    );
-
-    private static final Map<String, List<String>> ATTACH = new HashMap<String, List<String>>() {{
-        // 下排
-        put("30", List.of("G68"));
-        put("32", List.of("G66"));
-        put("33", List.of("G65"));
-        put("35", List.of("G63"));
-        put("36", List.of("G62"));
-        put("38", List.of("G62"));
-        put("39", List.of("G59"));
-        put("310", List.of("G57"));
-        put("311", List.of("G56"));
-        put("313", List.of("G54"));
-        put("314", List.of("G53"));
-        put("316", List.of("G51"));
-        put("318", List.of("G49"));
-        put("320", List.of("G47"));
-        put("321", List.of("G46"));
-        put("323", List.of("G44"));
-        put("324", List.of("G43"));
-        put("325", List.of("G41"));
-        put("326", List.of("G40"));
-        put("328", List.of("G38"));
-
-        // 上排
-        put("00", List.of("G01"));
-        put("03", List.of("G04"));
-        put("05", List.of("G06"));
-        put("09", List.of("G10"));
-        put("011", List.of("G12"));
-        put("012", List.of("G13"));
-        put("014", List.of("G15"));
-        put("016", List.of("G17"));
-        put("019", List.of("G20"));
-        put("021", List.of("G22"));
-        put("022", List.of("G23"));
-        put("024", List.of("G25"));
-        put("025", List.of("G26"));
-        put("027", List.of("G28"));
-        put("028", List.of("G29"));
-    }};
-
-    private static final Map<String,Integer> POS = new HashMap<>();
-    static {
-        for (int i = 0; i < RING.size(); i++) POS.put(RING.get(i).toUpperCase(), i);
-    }
-
-    private static List<String> normalizeToGrayAnchors(String raw) {
-        if (raw == null) return Collections.emptyList();
-        String s = raw.trim().toUpperCase();
-
-        if (POS.containsKey(s)) return Collections.singletonList(s);
-
-        List<String> anchors = ATTACH.get(s);
-        if (anchors != null && !anchors.isEmpty()) {
-            List<String> list = new ArrayList<>(anchors.size());
-            for (String a : anchors) list.add(a.toUpperCase());
-            return list;
-        }
-        return Collections.emptyList();
-    }
-
-    private static List<Seg> computePathSegments(String from, String to) {
-        return computePathSegments(from, to, DirectionPolicy.SHORTEST);
-    }
-
-    private static List<Seg> computePathSegments(String from, String to, DirectionPolicy policy) {
-        List<String> fromAs = normalizeToGrayAnchors(from);
-        List<String> toAs   = normalizeToGrayAnchors(to);
-        if (fromAs.isEmpty() || toAs.isEmpty()) return Collections.emptyList();
-
-        List<Seg> best = null;
-        int bestLen = Integer.MAX_VALUE;
-
-        for (String F : fromAs) {
-            for (String T : toAs) {
-                List<Seg> path = pathBetweenGray(F, T, policy);
-                if (path.size() < bestLen) {
-                    best = path;
-                    bestLen = path.size();
-                }
-            }
-        }
-        return best == null ? Collections.emptyList() : best;
-    }
-
-    private static List<Seg> pathBetweenGray(String fromGray, String toGray, DirectionPolicy policy) {
-        Integer si = POS.get(fromGray);
-        Integer ti = POS.get(toGray);
-        if (si == null || ti == null || si.equals(ti)) {
-            return Collections.emptyList();
-        }
-        int n = RING.size();
-
-        List<Seg> cw = new ArrayList<>();
-        for (int i = si; i != ti; i = (i + 1) % n) {
-            int j = (i + 1) % n;
-            String a = RING.get(i), b = RING.get(j);
-            String undirected = a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a;
-            cw.add(new Seg(undirected, +1));
-        }
-
-        List<Seg> ccw = new ArrayList<>();
-        for (int i = si; i != ti; i = (i - 1 + n) % n) {
-            int j = (i - 1 + n) % n;
-            String a = RING.get(i), b = RING.get(j);
-            String undirected = a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a;
-            ccw.add(new Seg(undirected, -1));
+    public static void main(String[] args) {
+        // 本地测试用，不连 Redis 也能跑 schedule 和路径展开
+        Topology topology;
+        try (InputStream in = InstructionServcieImpl.class.getResourceAsStream("/topology.json")) {
+            topology = Topology.build(new ObjectMapper().readValue(in, TopologyConfigDTO.class), null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
+        // 存储用内存实现，拓扑直接给加载好的快照，schedule 全程不碰 Redis
+        MemoryTaskStore store = new MemoryTaskStore();
+        TopologyService topologyService = new TopologyService() {
+            @Override
+            public Topology current() {
+                return topology;
+            }
 
-        switch (policy) {
-            case CLOCKWISE:        return cw;
-            case COUNTERCLOCKWISE: return ccw;
-            default: return (ccw.size() < cw.size()) ? ccw : cw;
-        }
-    }
+            @Override
+            public CompletableFuture<TopologyVO> reload() {
+                return CompletableFuture.completedFuture(null);
+            }
 
-    public static void main(String[] args) {
-        // 本地测试用，不连 Redis 也能跑 schedule 和路径展开
-        InstructionServcieImpl svc = new InstructionServcieImpl(null);
+            @Override
+            public TopologyVO info() {
+                return null;
+            }
+        };
+        AdmissionService admission = new AdmissionServiceImpl(null, null, topologyService, null, store);
+        InstructionServcieImpl svc = new InstructionServcieImpl(null, store, null, null, topologyService,
+                null, null, null, null, null, null, admission, null, null,
+                new SchedulingWeightsServiceImpl(new StationProperties()));
 
         InstructionExVO t1 = new InstructionExVO();
         t1.setInstructionCode("T001");
@@ -676,9 +962,24 @@ public class InstructionServcieImpl implements InstructionServcie {
         list.add(t2);
         list.add(t3);
 
+        // 入队：等待队列 + 详情（enqueueAt 错开，看等待时间加分）
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < list.size(); i++) {
+            InstructionExVO vo = list.get(i);
+            Map<String, String> fields = new HashMap<>();
+            fields.put("locationFrom", vo.getLocationFrom());
+            fields.put("locationTo", vo.getLocationTo());
+            fields.put("priority", String.valueOf(vo.getPriority()));
+            fields.put("enqueueAt", String.valueOf(now - i * 60000L));
+            store.enqueueAll(Collections.singletonList(
+                    new TaskStore.Waiting(vo.getInstructionCode(), vo.getPriority(), fields)));
+        }
+        // 给 T002 一条 OD 历史，演示历史耗时扣分
+        store.putStats("stats:od:IN2_EXIT|OUT3_ENTRY", Map.of("mean_ms", "90000", "std_ms", "5000", "count", "20"));
+
         System.out.println("== 路径展开 ==");
         for (InstructionExVO vo : list) {
-            List<Seg> path = computePathSegments(vo.getLocationFrom(), vo.getLocationTo());
+            List<Topology.Seg> path = topology.path(vo.getLocationFrom(), vo.getLocationTo());
             System.out.println(vo.getInstructionCode() + " [" + vo.getLocationFrom() + " -> " + vo.getLocationTo() + "]");
             System.out.println("  段数=" + path.size() + "  详情=" + pathToString(path));
         }
@@ -694,12 +995,12 @@ public class InstructionServcieImpl implements InstructionServcie {
         }
     }
 
-    private static String pathToString(List<Seg> path) {
+    private static String pathToString(List<Topology.Seg> path) {
         if (path == null || path.isEmpty()) return "[]";
         StringBuilder sb = new StringBuilder("[");
         for (int i = 0; i < path.size(); i++) {
-            Seg s = path.get(i);
-            sb.append(s.id).append(s.dir > 0 ? "↑" : "↓");
+            Topology.Seg s = path.get(i);
+            sb.append(s.id).append(s.dir > 0 ? "↑" : s.dir < 0 ? "↓" : "→");
             if (i < path.size() - 1) sb.append(", ");
         }
         sb.append("]");
@@ -0,0 +1,507 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.TaskStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单机内存存储：
+ * 1. 等待队列 = 分数表 + 按（分数降序，指令号降序）排的跳表，写操作加锁保证两者一致，读不加锁；每个分区一份，
+ *    分区视图和根对象共用其余数据
+ * 2. 详情 / 统计 / 标记 / 终点占用 / 截止时间都是 ConcurrentHashMap；截止时间计数是整表扫一遍，只适合小产线
+ * 3. 配了 snapshot-path 时启动加载、定期和关闭时整体写一份 JSON（先写临时文件再原子替换）；没配就只在内存
+ * 4. 带过期时间的启动标记 / 统计按快照间隔清理，到期后最多多留一个间隔
+ */
+@Service
+@ConditionalOnProperty(name = "zdtx.store.type", havingValue = "memory")
+public class MemoryTaskStore implements TaskStore {
+
+    // 空串表示不落盘
+    @Value("${zdtx.store.snapshot-path:}")
+    private String snapshotPath;
+
+    private static class Entry {
+        final double score;
+        final String code;
+
+        Entry(double score, String code) {
+            this.score = score;
+            this.code = code;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        int c = Double.compare(b.score, a.score);
+        return c != 0 ? c : b.code.compareTo(a.code);
+    };
+
+    private static class Queue {
+        final Map<String, Double> scores = new ConcurrentHashMap<>();
+        final ConcurrentSkipListSet<Entry> waiting = new ConcurrentSkipListSet<>(ORDER);
+        // 入过队就算登记过，队列空了也还在
+        volatile boolean used;
+    }
+
+    // 本视图的等待队列；key 为分区名，默认分区是空串
+    private final Queue queue;
+    private final Map<String, Queue> queues;
+
+    private final Map<String, Map<String, String>> tasks;
+    private final Map<String, Long> nodes;
+    private final Map<String, Map<String, String>> stats;
+    private final Map<String, String> started;
+    // 终点 -> 指令号 -> 释放时间
+    private final Map<String, Map<String, Long>> occupancy;
+    private final Map<String, Long> due;
+
+    // 过期时间（毫秒时间戳），只记带 TTL 的
+    private final Map<String, Long> startedExpireAt;
+    private final Map<String, Long> statsExpireAt;
+
+    // 上次快照后有没有写过
+    private final AtomicBoolean dirty;
+
+    public MemoryTaskStore() {
+        this.queues = new ConcurrentHashMap<>();
+        this.queue = new Queue();
+        this.queues.put(DEFAULT_PARTITION, queue);
+        this.tasks = new ConcurrentHashMap<>();
+        this.nodes = new ConcurrentHashMap<>();
+        this.stats = new ConcurrentHashMap<>();
+        this.started = new ConcurrentHashMap<>();
+        this.occupancy = new ConcurrentHashMap<>();
+        this.due = new ConcurrentHashMap<>();
+        this.startedExpireAt = new ConcurrentHashMap<>();
+        this.statsExpireAt = new ConcurrentHashMap<>();
+        this.dirty = new AtomicBoolean();
+    }
+
+    private MemoryTaskStore(MemoryTaskStore root, Queue queue) {
+        this.queue = queue;
+        this.queues = root.queues;
+        this.tasks = root.tasks;
+        this.nodes = root.nodes;
+        this.stats = root.stats;
+        this.started = root.started;
+        this.occupancy = root.occupancy;
+        this.due = root.due;
+        this.startedExpireAt = root.startedExpireAt;
+        this.statsExpireAt = root.statsExpireAt;
+        this.dirty = root.dirty;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Data
+    public static class Snapshot {
+        private Map<String, Double> waiting;
+        // 非默认分区的等待队列
+        private Map<String, Map<String, Double>> partitions;
+        private Map<String, Map<String, String>> tasks;
+        private Map<String, Long> nodes;
+        private Map<String, Map<String, String>> stats;
+        private Map<String, String> started;
+        private Map<String, Map<String, Long>> occupancy;
+        private Map<String, Long> due;
+        private Map<String, Long> startedExpireAt;
+        private Map<String, Long> statsExpireAt;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (snapshotPath == null || snapshotPath.isEmpty()) return;
+        Path file = Paths.get(snapshotPath);
+        if (!Files.exists(file)) return;
+        try {
+            restore(MAPPER.readValue(file.toFile(), Snapshot.class));
+            System.out.println("[" + ts() + "] 内存存储已从快照恢复：等待 " + queue.scores.size() + " 条，分区 "
+                    + (queues.size() - 1) + " 个，详情 " + tasks.size() + " 条");
+        } catch (IOException e) {
+            System.out.println("[" + ts() + "] 内存存储快照读取失败，从空开始：" + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    /**
+     * 定期落盘，没有写入时跳过
+     */
+    @Scheduled(fixedDelayString = "${zdtx.store.snapshot-interval-ms:5000}")
+    public void snapshot() {
+        if (snapshotPath == null || snapshotPath.isEmpty() || !dirty.getAndSet(false)) return;
+        Path file = Paths.get(snapshotPath).toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), export());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            System.out.println("[" + ts() + "] 内存存储快照写入失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 清掉到期的启动标记、统计和已释放的终点占用
+     */
+    @Scheduled(fixedDelayString = "${zdtx.store.snapshot-interval-ms:5000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        startedExpireAt.forEach((code, at) -> {
+            if (at <= now && startedExpireAt.remove(code, at)) {
+                started.remove(code);
+                dirty.set(true);
+            }
+        });
+        statsExpireAt.forEach((key, at) -> {
+            if (at <= now && statsExpireAt.remove(key, at)) {
+                stats.remove(key);
+                dirty.set(true);
+            }
+        });
+        occupancy.values().forEach(m -> m.values().removeIf(at -> at < now));
+        occupancy.values().removeIf(Map::isEmpty);
+    }
+
+    @Override
+    public boolean shared() {
+        return false;
+    }
+
+    @Override
+    public TaskStore partition(String partition) {
+        Queue q = queues.computeIfAbsent(partition == null ? DEFAULT_PARTITION : partition, k -> new Queue());
+        return q == queue ? this : new MemoryTaskStore(this, q);
+    }
+
+    @Override
+    public Set<String> partitions() {
+        Set<String> names = new TreeSet<>();
+        queues.forEach((name, q) -> {
+            if (!name.isEmpty() && q.used) names.add(name);
+        });
+        return names;
+    }
+
+    @Override
+    public String partitionOfTask(String code) {
+        Map<String, String> m = tasks.get(code);
+        return TaskStore.partitionOf(m == null ? null : m.get("houseCode"));
+    }
+
+    // ===================== 等待队列 =====================
+
+    @Override
+    public void addWaiting(String code, double score) {
+        synchronized (queue) {
+            queue.used = true;
+            Double prev = queue.scores.put(code, score);
+            if (prev != null) queue.waiting.remove(new Entry(prev, code));
+            queue.waiting.add(new Entry(score, code));
+        }
+        dirty.set(true);
+    }
+
+    @Override
+    public Double waitingScore(String code) {
+        return queue.scores.get(code);
+    }
+
+    @Override
+    public boolean removeWaiting(String code) {
+        synchronized (queue) {
+            Double prev = queue.scores.remove(code);
+            if (prev == null) return false;
+            queue.waiting.remove(new Entry(prev, code));
+        }
+        dirty.set(true);
+        return true;
+    }
+
+    @Override
+    public List<String> waitingByScoreDesc() {
+        List<String> codes = new ArrayList<>(queue.scores.size());
+        for (Entry e : queue.waiting) {
+            codes.add(e.code);
+        }
+        return codes;
+    }
+
+    @Override
+    public List<String> waitingTop(int n) {
+        if (n <= 0) return waitingByScoreDesc();
+        List<String> codes = new ArrayList<>(Math.min(n, queue.scores.size()));
+        for (Entry e : queue.waiting) {
+            if (codes.size() >= n) break;
+            codes.add(e.code);
+        }
+        return codes;
+    }
+
+    @Override
+    public long waitingSize() {
+        return queue.scores.size();
+    }
+
+    @Override
+    public void enqueueAll(List<Waiting> batch) {
+        if (batch == null) return;
+        for (Waiting w : batch) {
+            putTask(w.code, w.fields);
+            addWaiting(w.code, w.score);
+        }
+    }
+
+    // ===================== 任务详情 =====================
+
+    @Override
+    public void putTask(String code, Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) return;
+        Map<String, String> m = tasks.computeIfAbsent(code, k -> new ConcurrentHashMap<>());
+        fields.forEach((k, v) -> {
+            if (v != null) m.put(k, v);
+        });
+        dirty.set(true);
+    }
+
+    @Override
+    public Map<String, String> getTask(String code) {
+        Map<String, String> m = tasks.get(code);
+        return m == null ? Collections.emptyMap() : new HashMap<>(m);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getTaskAsync(String code) {
+        return CompletableFuture.completedFuture(getTask(code));
+    }
+
+    @Override
+    public List<Map<String, String>> getTasks(List<String> codes) {
+        if (codes == null) return Collections.emptyList();
+        List<Map<String, String>> list = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            list.add(getTask(code));
+        }
+        return list;
+    }
+
+    @Override
+    public void deleteTask(String code) {
+        if (tasks.remove(code) != null) dirty.set(true);
+    }
+
+    @Override
+    public void dispatched(String code) {
+        deleteTask(code);
+    }
+
+    // ===================== 终点可用时间 =====================
+
+    @Override
+    public Long nodeAvailableAt(String node) {
+        return nodes.get(node);
+    }
+
+    @Override
+    public void setNodeAvailableAt(String node, long at) {
+        nodes.put(node, at);
+        dirty.set(true);
+    }
+
+    // ===================== 终点缓存位占用 =====================
+
+    @Override
+    public List<Long> occupancy(String node, long now) {
+        Map<String, Long> m = occupancy.get(node);
+        if (m == null) return Collections.emptyList();
+        List<Long> releases = new ArrayList<>(m.size());
+        for (Long at : m.values()) {
+            if (at >= now) releases.add(at);
+        }
+        return releases;
+    }
+
+    @Override
+    public void occupy(String node, String code, long releaseAt, long now) {
+        Map<String, Long> m = occupancy.computeIfAbsent(node, k -> new ConcurrentHashMap<>());
+        m.values().removeIf(at -> at < now);
+        m.put(code, releaseAt);
+        dirty.set(true);
+    }
+
+    @Override
+    public void reoccupy(String node, String code, long releaseAt) {
+        Map<String, Long> m = occupancy.get(node);
+        if (m != null && m.replace(code, releaseAt) != null) dirty.set(true);
+    }
+
+    // ===================== 截止时间索引 =====================
+
+    @Override
+    public void addDue(Map<String, Long> dueAt) {
+        if (dueAt == null || dueAt.isEmpty()) return;
+        due.putAll(dueAt);
+        dirty.set(true);
+    }
+
+    @Override
+    public void removeDue(String code) {
+        if (due.remove(code) != null) dirty.set(true);
+    }
+
+    @Override
+    public long countDue(long from, long to) {
+        long n = 0;
+        for (Long at : due.values()) {
+            if (at >= from && at <= to) n++;
+        }
+        return n;
+    }
+
+    @Override
+    public long pruneDue(long before) {
+        long n = 0;
+        for (Map.Entry<String, Long> e : due.entrySet()) {
+            if (e.getValue() < before && due.remove(e.getKey(), e.getValue())) n++;
+        }
+        if (n > 0) dirty.set(true);
+        return n;
+    }
+
+    // ===================== 统计 =====================
+
+    @Override
+    public List<String> getStats(String key, List<String> fields) {
+        Map<String, String> m = stats.get(key);
+        List<String> values = new ArrayList<>(fields.size());
+        for (String f : fields) {
+            values.add(m == null ? null : m.get(f));
+        }
+        return values;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getStatsAsync(String key, List<String> fields) {
+        return CompletableFuture.completedFuture(getStats(key, fields));
+    }
+
+    @Override
+    public void putStats(String key, Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) return;
+        Map<String, String> m = stats.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        fields.forEach((k, v) -> {
+            if (v != null) m.put(k, v);
+        });
+        dirty.set(true);
+    }
+
+    @Override
+    public void incrStats(String key, Map<String, Long> deltas, long ttlMs) {
+        if (deltas == null || deltas.isEmpty()) return;
+        Map<String, String> m = stats.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        deltas.forEach((f, d) -> m.merge(f, String.valueOf(d),
+                (a, b) -> String.valueOf(Long.parseLong(a) + Long.parseLong(b))));
+        if (ttlMs > 0) statsExpireAt.put(key, System.currentTimeMillis() + ttlMs);
+        dirty.set(true);
+    }
+
+    // ===================== 启动标记 =====================
+
+    @Override
+    public boolean markStarted(String code, long at) {
+        boolean first = started.putIfAbsent(code, String.valueOf(at)) == null;
+        if (first) dirty.set(true);
+        return first;
+    }
+
+    @Override
+    public String startMarker(String code) {
+        return started.get(code);
+    }
+
+    @Override
+    public void setStartMarker(String code, String value, long ttlMs) {
+        started.put(code, value);
+        if (ttlMs > 0) {
+            startedExpireAt.put(code, System.currentTimeMillis() + ttlMs);
+        } else {
+            startedExpireAt.remove(code);
+        }
+        dirty.set(true);
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) {
+        return future.join();
+    }
+
+    // ===================== 快照 =====================
+
+    private Snapshot export() {
+        Snapshot s = new Snapshot();
+        s.setWaiting(new HashMap<>(queue.scores));
+        Map<String, Map<String, Double>> partitions = new HashMap<>();
+        queues.forEach((name, q) -> {
+            if (!name.isEmpty() && !q.scores.isEmpty()) partitions.put(name, new HashMap<>(q.scores));
+        });
+        s.setPartitions(partitions);
+        s.setTasks(new HashMap<>(tasks));
+        s.setNodes(new HashMap<>(nodes));
+        s.setStats(new HashMap<>(stats));
+        s.setStarted(new HashMap<>(started));
+        Map<String, Map<String, Long>> occ = new HashMap<>();
+        occupancy.forEach((node, m) -> {
+            if (!m.isEmpty()) occ.put(node, new HashMap<>(m));
+        });
+        s.setOccupancy(occ);
+        s.setDue(new HashMap<>(due));
+        s.setStartedExpireAt(new HashMap<>(startedExpireAt));
+        s.setStatsExpireAt(new HashMap<>(statsExpireAt));
+        return s;
+    }
+
+    private void restore(Snapshot s) {
+        if (s.getWaiting() != null) s.getWaiting().forEach(this::addWaiting);
+        if (s.getPartitions() != null) {
+            s.getPartitions().forEach((name, scores) -> {
+                TaskStore view = partition(name);
+                scores.forEach(view::addWaiting);
+            });
+        }
+        if (s.getTasks() != null) s.getTasks().forEach(this::putTask);
+        if (s.getNodes() != null) nodes.putAll(s.getNodes());
+        if (s.getStats() != null) s.getStats().forEach(this::putStats);
+        if (s.getStarted() != null) started.putAll(s.getStarted());
+        if (s.getOccupancy() != null) s.getOccupancy().forEach((node, m) -> occupancy.put(node, new ConcurrentHashMap<>(m)));
+        if (s.getDue() != null) due.putAll(s.getDue());
+        if (s.getStartedExpireAt() != null) startedExpireAt.putAll(s.getStartedExpireAt());
+        if (s.getStatsExpireAt() != null) statsExpireAt.putAll(s.getStatsExpireAt());
+        dirty.set(false);
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
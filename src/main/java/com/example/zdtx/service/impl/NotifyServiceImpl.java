@@ -0,0 +1,436 @@
+package com.example.zdtx.service.impl;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.dto.remote.TaskCreateDTO;
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
+import com.example.zdtx.domain.vo.NotifyEndpointVO;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.utils.LogHistogram;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.zdtx.constants.RedisConstants.NOTIFY_DEAD;
+import static com.example.zdtx.constants.RedisConstants.NOTIFY_SPILL;
+
+/**
+ * 上游通知发送：
+ * 1. 每个接口一个有界内存队列 + 一个发送线程，调用方入队即返回
+ * 2. 内存队列满了先放溢出区，由发送线程批量转存到 Redis（notify:spill:接口名），队列有空位再取回，保持先进先出
+ * 3. 发送线程最多等 lingerMs 凑够 batchSize 条，整批 POST 一个 JSON 数组
+ * 4. 失败按指数退避（带抖动）重试同一批，超过 maxAttempts 次进 notify:dead:接口名
+ * 5. 停机时把没发出去的按原顺序写回 Redis，下次启动继续发
+ */
+@Service
+@RequiredArgsConstructor
+public class NotifyServiceImpl implements NotifyService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RestTemplate restTemplate;
+
+    @Value("${zdtx.notify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.notify.confirm-url:}")
+    private String confirmUrl;
+
+    @Value("${zdtx.notify.create-url:}")
+    private String createUrl;
+
+    @Value("${zdtx.notify.feedback-url:}")
+    private String feedbackUrl;
+
+    @Value("${zdtx.notify.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${zdtx.notify.batch-size:50}")
+    private int batchSize;
+
+    @Value("${zdtx.notify.linger-ms:20}")
+    private long lingerMs;
+
+    @Value("${zdtx.notify.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${zdtx.notify.backoff-ms:200}")
+    private long backoffMs;
+
+    @Value("${zdtx.notify.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    // 空闲时隔多久看一眼 Redis 里有没有上次停机 / 故障时留下的溢出
+    private static final long SPILL_CHECK_MS = 5000L;
+
+    // 一次从 Redis 取回溢出：LRANGE + LTRIM，最后一个元素是剩余条数
+    private static final String REFILL_LUA =
+            "local v = redis.call('LRANGE', KEYS[1], 0, tonumber(ARGV[1]) - 1)\n" +
+            "if #v > 0 then redis.call('LTRIM', KEYS[1], #v, -1) end\n" +
+            "table.insert(v, tostring(redis.call('LLEN', KEYS[1])))\n" +
+            "return v";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> REFILL = new DefaultRedisScript<>(REFILL_LUA, List.class);
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        endpoints.put("create", new Endpoint("create", createUrl));
+        endpoints.put("confirm", new Endpoint("confirm", confirmUrl));
+        endpoints.put("feedback", new Endpoint("feedback", feedbackUrl));
+        running = true;
+        endpoints.values().forEach(Endpoint::start);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        endpoints.values().forEach(Endpoint::stop);
+    }
+
+    // ===================== 对外接口 =====================
+
+    @Override
+    public boolean create(TaskCreateDTO dto) {
+        return endpoints.get("create").offer(dto);
+    }
+
+    @Override
+    public boolean confirm(ConfirmTaskDTO dto) {
+        return endpoints.get("confirm").offer(dto);
+    }
+
+    @Override
+    public boolean feedback(TaskFeedbackDTO dto) {
+        return endpoints.get("feedback").offer(dto);
+    }
+
+    @Override
+    public List<NotifyEndpointVO> stats() {
+        return endpoints.values().stream().map(Endpoint::stats).collect(Collectors.toList());
+    }
+
+    // ===================== 单个接口 =====================
+
+    private static class Message {
+        final String json;
+        final long enqueuedAt;
+
+        Message(String json, long enqueuedAt) {
+            this.json = json;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        String encode() {
+            return enqueuedAt + "|" + json;
+        }
+
+        static Message decode(String s) {
+            int i = s.indexOf('|');
+            try {
+                return new Message(s.substring(i + 1), Long.parseLong(s.substring(0, i)));
+            } catch (Exception e) {
+                return new Message(s, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private class Endpoint implements Runnable {
+        final String name;
+        final String url;
+        final boolean active;
+        final String spillKey;
+        final ArrayBlockingQueue<Message> queue;
+        final ConcurrentLinkedDeque<Message> overflow = new ConcurrentLinkedDeque<>();
+        final AtomicInteger overflowSize = new AtomicInteger();
+
+        // Redis 里的溢出条数（取回时以 LLEN 校准）
+        final AtomicLong spilled = new AtomicLong();
+
+        final AtomicLong enqueued = new AtomicLong();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong deadLettered = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final LogHistogram deliveryMs = new LogHistogram();
+        final LogHistogram requestMs = new LogHistogram();
+
+        // 正在发送（或退避重试中）的这一批
+        volatile List<Message> inFlight = Collections.emptyList();
+        volatile String lastError;
+        long lastSpillCheck;
+        Thread thread;
+
+        Endpoint(String name, String url) {
+            this.name = name;
+            this.url = url == null ? "" : url.trim();
+            this.active = enabled && !this.url.isEmpty();
+            this.spillKey = NOTIFY_SPILL + name;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        }
+
+        void start() {
+            if (!active) return;
+            try {
+                Long len = stringRedisTemplate.opsForList().size(spillKey);
+                spilled.set(len == null ? 0 : len);
+            } catch (RuntimeException e) {
+                System.out.println("[" + ts() + "] 上游通知 " + name + " 读取溢出队列失败：" + e.getMessage());
+            }
+            thread = new Thread(this, "notify-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean offer(Object dto) {
+            if (!active) return false;
+            Message m = new Message(JSONUtil.toJsonStr(dto), System.currentTimeMillis());
+            enqueued.incrementAndGet();
+            // Redis 或溢出区里还有更早的消息时，新消息只能排在它们后面
+            if (spilled.get() > 0 || overflowSize.get() > 0 || !queue.offer(m)) {
+                overflow.addLast(m);
+                overflowSize.incrementAndGet();
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    moveOverflow();
+                    refill(false);
+                    List<Message> batch = nextBatch();
+                    if (batch.isEmpty()) {
+                        refill(true);
+                        continue;
+                    }
+                    deliver(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    lastError = e.getMessage();
+                    System.out.println("[" + ts() + "] 上游通知 " + name + " 发送线程异常：" + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 溢出区：Redis 里没有积压时直接回内存队列，否则整体追加到 Redis 尾部
+         */
+        private void moveOverflow() {
+            if (spilled.get() == 0) {
+                Message m;
+                while ((m = overflow.peekFirst()) != null && queue.offer(m)) {
+                    overflow.pollFirst();
+                    overflowSize.decrementAndGet();
+                }
+            }
+            if (overflowSize.get() == 0) return;
+
+            List<Message> moving = new ArrayList<>();
+            Message m;
+            while ((m = overflow.pollFirst()) != null) {
+                moving.add(m);
+            }
+            overflowSize.addAndGet(-moving.size());
+            try {
+                stringRedisTemplate.opsForList().rightPushAll(spillKey,
+                        moving.stream().map(Message::encode).collect(Collectors.toList()));
+                spilled.addAndGet(moving.size());
+            } catch (RuntimeException e) {
+                // Redis 不可用：放回溢出区，超过队列容量的部分丢掉最老的
+                for (int i = moving.size() - 1; i >= 0; i--) {
+                    overflow.addFirst(moving.get(i));
+                }
+                overflowSize.addAndGet(moving.size());
+                while (overflowSize.get() > queueCapacity && overflow.pollFirst() != null) {
+                    overflowSize.decrementAndGet();
+                    dropped.incrementAndGet();
+                }
+                lastError = "溢出到 Redis 失败：" + e.getMessage();
+            }
+        }
+
+        /**
+         * 内存队列有一批的空位时，从 Redis 取回溢出
+         */
+        @SuppressWarnings("unchecked")
+        private void refill(boolean idle) {
+            long now = System.currentTimeMillis();
+            boolean check = idle && now - lastSpillCheck >= SPILL_CHECK_MS;
+            if (spilled.get() == 0 && !check) return;
+            int room = Math.min(batchSize, queue.remainingCapacity());
+            if (room < batchSize) return;
+            lastSpillCheck = now;
+            List<String> r;
+            try {
+                r = (List<String>) stringRedisTemplate.execute(REFILL, Collections.singletonList(spillKey),
+                        String.valueOf(room));
+            } catch (RuntimeException e) {
+                lastError = "从 Redis 取回溢出失败：" + e.getMessage();
+                return;
+            }
+            if (r == null || r.isEmpty()) return;
+            for (int i = 0; i < r.size() - 1; i++) {
+                if (!queue.offer(Message.decode(r.get(i)))) {
+                    dropped.incrementAndGet();
+                }
+            }
+            spilled.set(Long.parseLong(r.get(r.size() - 1)));
+        }
+
+        private List<Message> nextBatch() throws InterruptedException {
+            List<Message> batch = new ArrayList<>(batchSize);
+            Message first = queue.poll(200, TimeUnit.MILLISECONDS);
+            if (first == null) return batch;
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long left = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || left <= 0) break;
+                Message next = queue.poll(left, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+                batch.add(next);
+            }
+            return batch;
+        }
+
+        private void deliver(List<Message> batch) throws InterruptedException {
+            inFlight = batch;
+            String body = batch.stream().map(m -> m.json).collect(Collectors.joining(",", "[", "]"));
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<String> entity = new HttpEntity<>(body, headers);
+
+            for (int attempt = 1; ; attempt++) {
+                long t0 = System.currentTimeMillis();
+                try {
+                    ResponseEntity<String> resp = restTemplate.postForEntity(url, entity, String.class);
+                    checkResponse(resp.getBody());
+                    long now = System.currentTimeMillis();
+                    requestMs.record(now - t0);
+                    batches.incrementAndGet();
+                    sent.addAndGet(batch.size());
+                    batch.forEach(m -> deliveryMs.record(now - m.enqueuedAt));
+                    inFlight = Collections.emptyList();
+                    return;
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                    lastError = e.getMessage();
+                }
+                if (attempt >= maxAttempts) {
+                    deadLetter(batch);
+                    inFlight = Collections.emptyList();
+                    return;
+                }
+                retries.incrementAndGet();
+                // 退避期间被停机打断时，这一批留在 inFlight，由 stop() 写回 Redis
+                Thread.sleep(backoff(attempt));
+            }
+        }
+
+        private void checkResponse(String body) {
+            if (body == null || !JSONUtil.isTypeJSONObject(body)) return;
+            JSONObject json = JSONUtil.parseObj(body);
+            Integer code = json.getInt("responseCode");
+            if (code != null && code != 0) {
+                throw new IllegalStateException("上游返回失败：" + json.getStr("responseMessage"));
+            }
+        }
+
+        private long backoff(int attempt) {
+            long base = backoffMs << Math.min(attempt - 1, 20);
+            long capped = Math.min(maxBackoffMs, Math.max(1L, base));
+            // 在 [capped/2, capped] 之间抖动，避免多个接口同时重试
+            return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        }
+
+        private void deadLetter(List<Message> batch) {
+            try {
+                stringRedisTemplate.opsForList().rightPushAll(NOTIFY_DEAD + name,
+                        batch.stream().map(Message::encode).collect(Collectors.toList()));
+                deadLettered.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                dropped.addAndGet(batch.size());
+            }
+            System.out.println("[" + ts() + "] 上游通知 " + name + " 重试 " + maxAttempts + " 次仍失败，"
+                    + batch.size() + " 条进入死信：" + lastError);
+        }
+
+        void stop() {
+            if (thread == null) return;
+            thread.interrupt();
+            try {
+                thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 正在发的一批和内存队列比 Redis 里的溢出更早，放到头部；溢出区最新，放到尾部
+            List<Message> head = new ArrayList<>(inFlight);
+            queue.drainTo(head);
+            List<Message> tail = new ArrayList<>(overflow);
+            if (head.isEmpty() && tail.isEmpty()) return;
+            try {
+                if (!head.isEmpty()) {
+                    List<String> reversed = head.stream().map(Message::encode).collect(Collectors.toList());
+                    Collections.reverse(reversed);
+                    stringRedisTemplate.opsForList().leftPushAll(spillKey, reversed);
+                }
+                if (!tail.isEmpty()) {
+                    stringRedisTemplate.opsForList().rightPushAll(spillKey,
+                            tail.stream().map(Message::encode).collect(Collectors.toList()));
+                }
+                System.out.println("[" + ts() + "] 上游通知 " + name + " 停机，" + (head.size() + tail.size())
+                        + " 条未发送的已写回 Redis");
+            } catch (RuntimeException e) {
+                System.out.println("[" + ts() + "] 上游通知 " + name + " 停机写回失败，丢弃 "
+                        + (head.size() + tail.size()) + " 条：" + e.getMessage());
+            }
+        }
+
+        NotifyEndpointVO stats() {
+            long now = System.currentTimeMillis();
+            List<Message> current = inFlight;
+            Message oldest = !current.isEmpty() ? current.get(0) : queue.peek();
+            long lag = oldest == null ? 0L : Math.max(0L, now - oldest.enqueuedAt);
+            return new NotifyEndpointVO(name, url, active, queue.size(), overflowSize.get(), spilled.get(), lag,
+                    enqueued.get(), sent.get(), batches.get(), failures.get(), retries.get(), deadLettered.get(),
+                    dropped.get(), lastError, deliveryMs.snapshot(), requestMs.snapshot());
+        }
+    }
+
+    private static String ts() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
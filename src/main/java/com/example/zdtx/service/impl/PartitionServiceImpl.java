@@ -0,0 +1,234 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.BatchSizeVO;
+import com.example.zdtx.domain.vo.PartitionStatVO;
+import com.example.zdtx.domain.vo.PartitionVO;
+import com.example.zdtx.service.DispatchBatchService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.example.zdtx.service.TaskStore.DEFAULT_PARTITION;
+
+/**
+ * 分区调度：
+ * 1. 每个分区一份状态：批量控制器（默认分区用全局的，其余 fork 一份）、调度锁、轮次统计
+ * 2. 单分区调度在调用线程上拿锁执行，同分区的请求排队，别的分区不受影响；
+ *    /rx 的响应式调度拿同一把锁（信号量，允许在别的线程上释放），和阻塞接口互斥
+ * 3. 全部分区调度时每个分区一个任务提交到 ForkJoinPool（work-stealing），拿不到锁的分区跳过
+ * 4. 已知分区 = 配置的 + 入队登记的 + 定时从存储里扫出来的（别的实例入队的），只有 register 会建分区状态，
+ *    调度 / 取控制器时传未知分区直接拒绝，不会被任意参数撑出状态
+ * 5. 完成回报由调用方按存储里的 task:house 索引查出分区再喂回该分区的控制器，本实例不记下发过的任务，
+ *    多实例下任意实例收到回报都能喂对分区
+ */
+@Service
+@RequiredArgsConstructor
+public class PartitionServiceImpl implements PartitionService {
+
+    private final TaskStore taskStore;
+
+    private final DispatchBatchService dispatchBatchService;
+
+    // 0 表示按 CPU 核数
+    @Value("${zdtx.partition.parallelism:0}")
+    private int parallelism;
+
+    // 启动时就认识的分区（仓库编码，逗号分隔）
+    @Value("${zdtx.partition.names:}")
+    private String names;
+
+    private static class State {
+        final DispatchBatchService batch;
+        final Semaphore lock = new Semaphore(1);
+        final AtomicLong rounds = new AtomicLong();
+        final AtomicLong dispatched = new AtomicLong();
+        volatile long lastRoundMs;
+
+        State(DispatchBatchService batch) {
+            this.batch = batch;
+        }
+    }
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        int n = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(n, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("partition-dispatch-" + t.getPoolIndex());
+            return t;
+        }, null, false);
+        register(DEFAULT_PARTITION);
+        for (String name : names.split(",")) {
+            if (!name.trim().isEmpty()) register(TaskStore.partitionOf(name));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /**
+     * 定时把存储里已有等待队列的分区补进来
+     */
+    @Scheduled(fixedDelayString = "${zdtx.partition.refresh-ms:30000}", initialDelay = 1000)
+    public void refresh() {
+        try {
+            taskStore.partitions().forEach(this::register);
+        } catch (RuntimeException e) {
+            System.out.println("[" + ts() + "] 分区列表刷新跳过：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void register(String partition) {
+        String p = partition == null ? DEFAULT_PARTITION : partition;
+        states.computeIfAbsent(p, k -> new State(k.isEmpty() ? dispatchBatchService : dispatchBatchService.fork()));
+    }
+
+    @Override
+    public Set<String> partitions() {
+        return new TreeSet<>(states.keySet());
+    }
+
+    @Override
+    public boolean known(String partition) {
+        String p = partition == null ? DEFAULT_PARTITION : partition;
+        if (states.containsKey(p)) return true;
+        if (!taskStore.partitions().contains(p)) return false;
+        register(p);
+        return true;
+    }
+
+    @Override
+    public DispatchBatchService batchOf(String partition) {
+        return state(partition).batch;
+    }
+
+    @Override
+    public <T> T runRound(String partition, Supplier<T> round) {
+        State s = state(partition);
+        s.lock.acquireUninterruptibly();
+        try {
+            return timed(s, round);
+        } finally {
+            s.lock.release();
+        }
+    }
+
+    @Override
+    public <T> Mono<T> runRoundAsync(String partition, Supplier<Mono<T>> round) {
+        State s = state(partition);
+        // 等锁会阻塞，放到 boundedElastic 上，不占事件循环线程
+        return Mono.using(() -> {
+                    s.lock.acquireUninterruptibly();
+                    return System.currentTimeMillis();
+                },
+                start -> Mono.defer(round),
+                start -> {
+                    s.rounds.incrementAndGet();
+                    s.lastRoundMs = System.currentTimeMillis() - start;
+                    s.lock.release();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public <T> Map<String, T> runAll(Function<String, T> round) {
+        Map<String, ForkJoinTask<Optional<T>>> tasks = new LinkedHashMap<>();
+        for (String p : partitions()) {
+            State s = state(p);
+            tasks.put(p, pool.submit(() -> {
+                if (!s.lock.tryAcquire()) {
+                    skipped.incrementAndGet();
+                    return Optional.<T>empty();
+                }
+                try {
+                    return Optional.ofNullable(timed(s, () -> round.apply(p)));
+                } finally {
+                    s.lock.release();
+                }
+            }));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        tasks.forEach((p, task) -> task.join().ifPresent(r -> results.put(p, r)));
+        return results;
+    }
+
+    @Override
+    public void onDispatched(String partition, int n) {
+        state(partition).dispatched.addAndGet(n);
+    }
+
+    @Override
+    public void onCompleted(String partition) {
+        // 别的实例入队的分区本实例可能还没登记，known 会顺便登记；存储里也没有的（索引已过期）喂全局控制器
+        String p = partition != null && known(partition) ? partition : DEFAULT_PARTITION;
+        batchOf(p).onCompleted();
+    }
+
+    @Override
+    public long dispatched() {
+        long total = 0;
+        for (State s : states.values()) total += s.dispatched.get();
+        return total;
+    }
+
+    @Override
+    public PartitionVO info() {
+        List<PartitionStatVO> list = new ArrayList<>();
+        for (String p : partitions()) {
+            State s = state(p);
+            BatchSizeVO b = s.batch.snapshot();
+            list.add(new PartitionStatVO(p, taskStore.partition(p).waitingSize(), b.getCurrent(),
+                    b.getInFlight(), s.rounds.get(), s.dispatched.get(), s.lastRoundMs, s.lock.availablePermits() == 0));
+        }
+        return new PartitionVO(pool.getParallelism(), skipped.get(), list);
+    }
+
+    private State state(String partition) {
+        String p = partition == null ? DEFAULT_PARTITION : partition;
+        State s = states.get(p);
+        if (s == null) throw new IllegalArgumentException("未知分区：" + p);
+        return s;
+    }
+
+    private static <T> T timed(State s, Supplier<T> round) {
+        long start = System.currentTimeMillis();
+        try {
+            return round.get();
+        } finally {
+            s.rounds.incrementAndGet();
+            s.lastRoundMs = System.currentTimeMillis() - start;
+        }
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
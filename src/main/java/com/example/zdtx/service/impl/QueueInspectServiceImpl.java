@@ -0,0 +1,198 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.instruction.QueueBrowseDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.QueuePageVO;
+import com.example.zdtx.service.QueueInspectService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.example.zdtx.constants.RedisConstants.TASK_INFO;
+import static com.example.zdtx.constants.RedisConstants.key;
+
+/**
+ * 等待队列游标分页：
+ * 1. 游标 = 上一页最后一条的 score + 指令号；脚本里用 ZREVRANK 定位（O(log N)），
+ *    这条已被调度走时退回到 ZCOUNT 第一个 score 不高于它的位置（同分的可能重复，不会漏）
+ * 2. 每页只取一个固定大小的窗口（size * scan-factor，不超过 max-scan），再用一个 pipeline HMGET 详情
+ * 3. 过滤在窗口内做，凑不满 size 也返回游标，由调用方继续翻
+ * 4. houseCode 选看哪个分区的等待队列，不传是默认分区
+ * 只读，不碰 task:completed / 缓存位，和调度互不影响
+ */
+@Service
+@RequiredArgsConstructor
+public class QueueInspectServiceImpl implements QueueInspectService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${zdtx.queue-browse.default-size:50}")
+    private int defaultSize;
+
+    @Value("${zdtx.queue-browse.max-size:200}")
+    private int maxSize;
+
+    // 有过滤条件时每页最多扫 size * scanFactor 条
+    @Value("${zdtx.queue-browse.scan-factor:4}")
+    private int scanFactor;
+
+    @Value("${zdtx.queue-browse.max-scan:1000}")
+    private int maxScan;
+
+    private static final List<String> INFO_FIELDS = Arrays.asList(
+            "instructionCode", "locationFrom", "locationTo", "priority", "containerCode", "enqueueAt");
+
+    // 返回 {总数, 窗口起点, member1, score1, member2, score2, ...}
+    private static final String WINDOW_LUA =
+            "local start = 0\n" +
+            "if ARGV[1] ~= '' then\n" +
+            "  local r = redis.call('ZREVRANK', KEYS[1], ARGV[1])\n" +
+            "  if r then start = r + 1 else start = redis.call('ZCOUNT', KEYS[1], '(' .. ARGV[2], '+inf') end\n" +
+            "end\n" +
+            "local res = {tostring(redis.call('ZCARD', KEYS[1])), tostring(start)}\n" +
+            "local win = redis.call('ZREVRANGE', KEYS[1], start, start + tonumber(ARGV[3]) - 1, 'WITHSCORES')\n" +
+            "for i = 1, #win do res[#res + 1] = win[i] end\n" +
+            "return res";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> WINDOW = new DefaultRedisScript<>(WINDOW_LUA, List.class);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Result<QueuePageVO> browse(QueueBrowseDTO query) {
+        QueueBrowseDTO q = query == null ? new QueueBrowseDTO() : query;
+        int size = Math.min(Math.max(1, q.getSize() == null ? defaultSize : q.getSize()), Math.max(1, maxSize));
+        int window = hasFilter(q) ? Math.min(Math.max(size, size * scanFactor), Math.max(size, maxScan)) : size;
+
+        String afterMember = "";
+        String afterScore = "+inf";
+        if (q.getCursor() != null && !q.getCursor().isBlank()) {
+            String[] c = decodeCursor(q.getCursor());
+            if (c == null) {
+                return Result.error("游标无效");
+            }
+            afterScore = c[0];
+            afterMember = c[1];
+        }
+
+        // 1) 定位 + 取窗口：一次脚本调用
+        String partition = TaskStore.partitionOf(q.getHouseCode());
+        List<Object> raw = stringRedisTemplate.execute(WINDOW, Collections.singletonList(RedisTaskStore.waitingKey(partition)),
+                afterMember, afterScore, String.valueOf(window));
+        if (raw == null || raw.size() < 2) {
+            return Result.success(new QueuePageVO(0L, 0, null, Collections.emptyList()));
+        }
+        long total = Long.parseLong(String.valueOf(raw.get(0)));
+        List<String> members = new ArrayList<>(window);
+        List<String> scores = new ArrayList<>(window);
+        for (int i = 2; i + 1 < raw.size(); i += 2) {
+            members.add(String.valueOf(raw.get(i)));
+            scores.add(String.valueOf(raw.get(i + 1)));
+        }
+        if (members.isEmpty()) {
+            return Result.success(new QueuePageVO(total, 0, null, Collections.emptyList()));
+        }
+
+        // 2) 详情：一个 pipeline
+        byte[][] fields = INFO_FIELDS.stream().map(QueueInspectServiceImpl::bytes).toArray(byte[][]::new);
+        List<Object> infos = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String code : members) {
+                connection.hashCommands().hMGet(bytes(key(partition, TASK_INFO) + code), fields);
+            }
+            return null;
+        });
+
+        // 3) 过滤，凑满 size 就停，游标落在最后一条返回的记录上
+        long now = System.currentTimeMillis();
+        List<InstructionExVO> items = new ArrayList<>(size);
+        int last = -1;
+        for (int i = 0; i < members.size() && items.size() < size; i++) {
+            last = i;
+            List<String> info = i < infos.size() ? (List<String>) infos.get(i) : null;
+            if (info == null || info.stream().allMatch(Objects::isNull)) {
+                // 刚被调度或取消，详情已删
+                continue;
+            }
+            InstructionExVO vo = new InstructionExVO(
+                    info.get(0) != null ? info.get(0) : members.get(i),
+                    info.get(1), info.get(2), parseInt(info.get(3)), info.get(4));
+            if (matches(q, vo, parseLong(info.get(5)), now)) {
+                items.add(vo);
+            }
+        }
+        boolean end = last == members.size() - 1 && members.size() < window;
+        String next = end ? null : encodeCursor(scores.get(last), members.get(last));
+        return Result.success(new QueuePageVO(total, last + 1, next, items));
+    }
+
+    private static boolean hasFilter(QueueBrowseDTO q) {
+        return q.getLocationFrom() != null || q.getLocationTo() != null
+                || q.getMinPriority() != null || q.getMaxPriority() != null
+                || q.getMinAgeMs() != null || q.getMaxAgeMs() != null;
+    }
+
+    private static boolean matches(QueueBrowseDTO q, InstructionExVO vo, Long enqueueAt, long now) {
+        if (q.getLocationFrom() != null && !sameNode(q.getLocationFrom(), vo.getLocationFrom())) return false;
+        if (q.getLocationTo() != null && !sameNode(q.getLocationTo(), vo.getLocationTo())) return false;
+        int p = vo.getPriority() == null ? 0 : vo.getPriority();
+        if (q.getMinPriority() != null && p < q.getMinPriority()) return false;
+        if (q.getMaxPriority() != null && p > q.getMaxPriority()) return false;
+        if (q.getMinAgeMs() != null || q.getMaxAgeMs() != null) {
+            if (enqueueAt == null) return false;
+            long age = now - enqueueAt;
+            if (q.getMinAgeMs() != null && age < q.getMinAgeMs()) return false;
+            if (q.getMaxAgeMs() != null && age > q.getMaxAgeMs()) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameNode(String a, String b) {
+        return b != null && a.trim().equalsIgnoreCase(b.trim());
+    }
+
+    private static String encodeCursor(String score, String member) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((score + "\n" + member).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String s = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int i = s.indexOf('\n');
+            if (i <= 0 || i == s.length() - 1) return null;
+            String score = s.substring(0, i);
+            Double.parseDouble(score);
+            return new String[]{score, s.substring(i + 1)};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Integer parseInt(String s) {
+        try {
+            return s == null ? null : Integer.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long parseLong(String s) {
+        try {
+            return s == null ? null : Long.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,679 @@
+package com.example.zdtx.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.example.zdtx.domain.dto.instruction.InstructionAddDTO;
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.dto.remote.TaskCreateDTO;
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.AdmissionVO;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LimiterVO;
+import com.example.zdtx.domain.vo.RouteVO;
+import com.example.zdtx.service.AdmissionService;
+import com.example.zdtx.service.DedupeService;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.DispatchBatchService;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.ReactiveInstructionService;
+import com.example.zdtx.service.RetentionService;
+import com.example.zdtx.service.RouteService;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.utils.DispatchJournal;
+import com.example.zdtx.utils.EmaStats;
+import com.example.zdtx.utils.InFlightLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.example.zdtx.constants.ParameterConstants.*;
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 响应式调度实现（/rx 接口）：
+ * 1. 入队、回报、调度都用 ReactiveStringRedisTemplate 异步组合，等待 Redis 时不占线程
+ * 2. 调度先把候选、OD 统计、终点缓存位一次性并发读回，再用 DispatchPlanner 纯内存规划，最后异步提交
+ * 3. 并发由 InFlightLimiter 控制：超出上限的排队，队列满直接返回繁忙；调度单飞
+ * 4. Redis 不可用时和阻塞路径一样切到降级模式
+ * 全程直接读写 Redis，内存存储（zdtx.store.type=memory）下三个接口一律拒绝，请用阻塞接口
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveInstructionServiceImpl implements ReactiveInstructionService {
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final DispatchBatchService dispatchBatchService;
+
+    private final StationCapacityService stationCapacityService;
+
+    private final TopologyService topologyService;
+
+    private final DedupeService dedupeService;
+
+    private final DegradedModeService degradedModeService;
+
+    private final TaskLifecycleService taskLifecycleService;
+
+    private final NotifyService notifyService;
+
+    private final DispatchJournalService dispatchJournalService;
+
+    private final RouteService routeService;
+
+    private final AdmissionService admissionService;
+
+    private final PartitionService partitionService;
+
+    private final RetentionService retentionService;
+
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    private final TaskStore taskStore;
+
+    @Value("${zdtx.reactive.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("${zdtx.reactive.max-queue:1024}")
+    private int maxQueue;
+
+    @Value("${zdtx.reactive.dispatch-max-queue:8}")
+    private int dispatchMaxQueue;
+
+    // 预取时对 Redis 的并发请求数
+    @Value("${zdtx.reactive.prefetch-concurrency:64}")
+    private int prefetchConcurrency;
+
+    // 容器接续加分，与同步调度同一组配置
+    @Value("${zdtx.dispatch.affinity.bonus:500}")
+    private double affinityBonus;
+
+    @Value("${zdtx.dispatch.affinity.half-life-ms:600000}")
+    private long affinityHalfLifeMs;
+
+    // 候选窗口，与同步调度同一配置
+    @Value("${zdtx.dispatch.candidate-window-factor:8}")
+    private int candidateWindowFactor;
+
+    private static final List<String> OD_FIELDS = Arrays.asList("mean_ms", "std_ms", "count");
+
+    private static final String OD_KEY_PREFIX = "stats:od:";
+
+    private static final String MEMORY_STORE = "内存存储模式下不支持 /rx 接口";
+
+    // 调度轮只跑默认分区
+    private static final String DEFAULT_WAITING = key(TaskStore.DEFAULT_PARTITION, TASK_WAITING_ZSET);
+    private static final String DEFAULT_INFO = key(TaskStore.DEFAULT_PARTITION, TASK_INFO);
+    private static final String DEFAULT_COMPLETED = key(TaskStore.DEFAULT_PARTITION, TASK_COMPLETED_SET);
+    private static final String DEFAULT_RUNNING = key(TaskStore.DEFAULT_PARTITION, TASK_RUNNING_ZSET);
+
+    private InFlightLimiter requestLimiter;
+
+    private InFlightLimiter dispatchLimiter;
+
+    @PostConstruct
+    public void init() {
+        requestLimiter = new InFlightLimiter("request", maxInFlight, maxQueue);
+        // 同时只跑一轮调度，避免两轮规划同一批终点
+        dispatchLimiter = new InFlightLimiter("dispatch", 1, dispatchMaxQueue);
+    }
+
+    // ===================== 对外接口 =====================
+
+    @Override
+    public Mono<Result<Boolean>> addInstruction(InstructionAddDTO requestparm) {
+        if (requestparm == null) {
+            return Mono.just(Result.error("指令为空"));
+        }
+        if (!taskStore.shared()) return Mono.just(Result.error(MEMORY_STORE));
+        return limited(requestLimiter, () -> degradedOr(
+                () -> doAddInstruction(requestparm),
+                () -> degradedModeService.ingest(requestparm)));
+    }
+
+    @Override
+    public Mono<Result<List<InstructionExVO>>> getInstructions() {
+        if (!taskStore.shared()) return Mono.just(Result.error(MEMORY_STORE));
+        // 和阻塞接口 / 全部分区调度共用默认分区的调度锁，同一时刻只有一轮在跑
+        return limited(dispatchLimiter, () -> partitionService.runRoundAsync(TaskStore.DEFAULT_PARTITION, () -> {
+            int batchSize = dispatchBatchService.nextBatchSize();
+            return degradedOr(
+                    () -> doGetInstructions(batchSize),
+                    () -> degradedModeService.dispatch(batchSize));
+        }));
+    }
+
+    @Override
+    public Mono<Result<Boolean>> updateStatus(StatusUpdateDTO requestparm) {
+        if (requestparm == null
+                || isBlank(requestparm.getInstructionCode())
+                || isBlank(requestparm.getLocationFrom())
+                || isBlank(requestparm.getLocationTo())) {
+            return Mono.just(Result.error("参数非法：指令号/起点/终点不能为空"));
+        }
+        if (!taskStore.shared()) return Mono.just(Result.error(MEMORY_STORE));
+        return limited(requestLimiter, () -> degradedOr(
+                () -> doUpdateStatus(requestparm),
+                () -> degradedModeService.status(requestparm)));
+    }
+
+    @Override
+    public List<LimiterVO> limiters() {
+        return Arrays.asList(toVO(requestLimiter), toVO(dispatchLimiter));
+    }
+
+    private static LimiterVO toVO(InFlightLimiter l) {
+        return new LimiterVO(l.getName(), l.getMaxInFlight(), l.getMaxQueue(),
+                l.getInFlight(), l.getQueued(), l.getAccepted(), l.getRejected());
+    }
+
+    private static <T> Mono<Result<T>> limited(InFlightLimiter limiter, Supplier<Mono<Result<T>>> task) {
+        return limiter.submit(task)
+                .onErrorResume(InFlightLimiter.BusyException.class, e -> Mono.just(Result.error(e.getMessage())));
+    }
+
+    /**
+     * 已降级直接走降级路径；正常路径遇到 Redis 不可用时进入降级再走一次。
+     * 降级路径会写本地 WAL，放到 boundedElastic 上执行，不卡 Redis 的 IO 线程
+     */
+    private <T> Mono<T> degradedOr(Supplier<Mono<T>> normal, Supplier<T> degraded) {
+        Mono<T> fallback = Mono.fromSupplier(degraded).subscribeOn(Schedulers.boundedElastic());
+        if (degradedModeService.isDegraded()) {
+            return fallback;
+        }
+        return Mono.defer(normal)
+                .onErrorResume(e -> Mono.fromCallable(() -> degradedModeService.tryEnter(e))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(entered -> entered ? fallback : Mono.error(e)));
+    }
+
+    // ===================== 入队 =====================
+
+    private Mono<Result<Boolean>> doAddInstruction(InstructionAddDTO requestparm) {
+        String code = requestparm.getInstructionCode();
+        String invalid = TaskStore.invalidHouseCode(requestparm.getHouseCode());
+        if (invalid != null) {
+            return Mono.just(Result.error(invalid));
+        }
+        return dedupeService.checkAsync(code).flatMap(verdict -> {
+            if (verdict == DedupeService.Verdict.WAITING) {
+                return Mono.just(Result.success(Boolean.TRUE, "指令已在队列中"));
+            }
+            if (verdict == DedupeService.Verdict.DISPATCHED) {
+                return Mono.just(Result.<Boolean>error("指令已下发，不能重复入队"));
+            }
+            if (requestparm.getDueAt() == null) {
+                return enqueue(requestparm, null);
+            }
+            // 带截止时间的先预测能否按期完成，按配置拒绝预计超期的
+            return admissionService.predictAsync(requestparm).flatMap(admission ->
+                    !admission.getOnTime() && admissionService.rejectLate()
+                            ? Mono.just(Result.<Boolean>error("拒绝入队：" + admissionService.describe(admission)))
+                            : enqueue(requestparm, admission));
+        });
+    }
+
+    private Mono<Result<Boolean>> enqueue(InstructionAddDTO requestparm, AdmissionVO admission) {
+        String code = requestparm.getInstructionCode();
+        Map<String, Object> raw = BeanUtil.beanToMap(
+                requestparm,
+                new HashMap<>(),
+                CopyOptions.create()
+                        .ignoreNullValue()
+                        .setFieldNameEditor(name -> name)
+        );
+        Map<String, String> strMap = new HashMap<>(raw.size() + 1);
+        raw.forEach((k, v) -> {
+            if (v != null) strMap.put(k, String.valueOf(v));
+        });
+        strMap.putIfAbsent("enqueueAt", String.valueOf(System.currentTimeMillis()));
+
+        // 和阻塞接口一样进所属分区的等待队列；非默认分区写 task:house 索引并登记分区，完成 / 回收时按它找回分区
+        String partition = TaskStore.partitionOf(requestparm.getHouseCode());
+        partitionService.register(partition);
+        Mono<Boolean> due = requestparm.getDueAt() == null ? Mono.just(Boolean.TRUE)
+                : reactiveStringRedisTemplate.opsForZSet().add(key(partition, TASK_DUE_ZSET), code, requestparm.getDueAt());
+        Mono<Boolean> house = partition.isEmpty() ? Mono.just(Boolean.TRUE)
+                : reactiveStringRedisTemplate.opsForSet().add(PARTITIONS, partition)
+                .then(reactiveStringRedisTemplate.opsForValue().set(TASK_HOUSE + code, partition));
+        return house
+                .then(reactiveStringRedisTemplate.opsForZSet().add(RedisTaskStore.waitingKey(partition), code, requestparm.getPriority()))
+                .then(hashOps().putAll(key(partition, TASK_INFO) + code, strMap))
+                .then(due)
+                .doOnSuccess(v -> notifyService.create(BeanUtil.copyProperties(requestparm, TaskCreateDTO.class)))
+                .thenReturn(Result.success(Boolean.TRUE,
+                        admission == null ? "添加成功" : "添加成功，" + admissionService.describe(admission)));
+    }
+
+    // ===================== 完成回报 =====================
+
+    private Mono<Result<Boolean>> doUpdateStatus(StatusUpdateDTO requestparm) {
+        String code = requestparm.getInstructionCode().trim();
+        long now = requestparm.getTime() != null
+                ? requestparm.getTime().getTime()
+                : System.currentTimeMillis();
+
+        // 启动标记在任务所属分区下，分区按 task:house 索引查
+        return reactiveStringRedisTemplate.opsForValue().get(TASK_HOUSE + code)
+                .defaultIfEmpty(TaskStore.DEFAULT_PARTITION)
+                .flatMap(partition -> doUpdateStatus(requestparm, code, now, partition));
+    }
+
+    private Mono<Result<Boolean>> doUpdateStatus(StatusUpdateDTO requestparm, String code, long now, String partition) {
+        return reactiveStringRedisTemplate.opsForValue().get(key(partition, TASK_COMPLETED_SET) + code)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(startedStr -> {
+                    long startedAt;
+                    try {
+                        startedAt = Long.parseLong(startedStr.orElse(null));
+                    } catch (Exception e) {
+                        startedAt = now;
+                    }
+                    long deltaMs = Math.max(0L, now - startedAt);
+                    partitionService.onCompleted(partition);
+
+                    String from = normalize(requestparm.getLocationFrom());
+                    String to = normalize(requestparm.getLocationTo());
+
+                    Mono<Void> writeDelta = retentionService.onFinishedAsync(partition, code, deltaMs, now);
+                    // 站点作业时间要用更新后的 OD 均值，容器统计排在 OD 之后
+                    Mono<Void> stats = updateEmaStats(OD_KEY_PREFIX + from + "|" + to, deltaMs)
+                            .flatMap(odMean -> updateContainerStats(
+                                    normalize(requestparm.getContainerCode()), from, to, now, odMean));
+
+                    Mono<Boolean> lifecycle = taskLifecycleService.onCompletedAsync(code, requestparm.getLocationTo(), now);
+
+                    return Mono.when(writeDelta, stats, lifecycle)
+                            .doOnSuccess(v -> notifyService.feedback(new TaskFeedbackDTO(null, null, null,
+                                    code, requestparm.getContainerCode(), "finish")))
+                            .thenReturn(Result.success(Boolean.TRUE, "完成更新"));
+                });
+    }
+
+    /**
+     * 容器连续任务 + 站点作业统计，口径与 StatisticsServiceImpl 一致
+     */
+    private Mono<Void> updateContainerStats(String container, String from, String to, long now, double odMean) {
+        String containerLastKey = CONTAINER_LAST + container;
+        return hashOps().multiGet(containerLastKey, Arrays.asList("last_finish_ts", "last_to"))
+                .defaultIfEmpty(Collections.emptyList())
+                .flatMap(last -> {
+                    String lastFinishStr = last.size() > 0 ? last.get(0) : null;
+                    String lastToStr = last.size() > 1 ? last.get(1) : null;
+                    List<Mono<Void>> updates = new ArrayList<>(2);
+
+                    if (lastFinishStr != null && lastToStr != null && lastToStr.equals(from)) {
+                        long lastFinish = parseOrDefault(lastFinishStr, now);
+                        long containerDelta = Math.max(0L, now - lastFinish);
+                        if (containerDelta >= STATS_PROCESSING_TIME_LOWER && containerDelta <= STATS_PROCESSING_TIME_UPPER) {
+                            updates.add(updateEmaStats(CONTAINER_DURATION + container, containerDelta).then());
+                        }
+                        long service = containerDelta - (long) odMean;
+                        if (service >= 0 && service <= STATS_STATION_DWELL_UPPER) {
+                            updates.add(updateEmaStats(STATION_SERVICE + from, service).then());
+                        }
+                    }
+
+                    Map<String, String> lastInfo = new HashMap<>(4);
+                    lastInfo.put("last_finish_ts", String.valueOf(now));
+                    lastInfo.put("last_to", to);
+                    return Mono.when(updates).then(hashOps().putAll(containerLastKey, lastInfo)).then();
+                });
+    }
+
+    /**
+     * 更新 EMA 统计，返回更新后的均值
+     */
+    private Mono<Double> updateEmaStats(String hashKey, long sampleMs) {
+        return hashOps().multiGet(hashKey, EmaStats.FIELDS)
+                .defaultIfEmpty(Collections.emptyList())
+                .flatMap(current -> {
+                    Map<String, String> next = EmaStats.next(current, sampleMs);
+                    return hashOps().putAll(hashKey, next)
+                            .thenReturn(Double.parseDouble(next.get(EmaStats.F_MEAN)));
+                });
+    }
+
+    // ===================== 调度 =====================
+
+    private Mono<Result<List<InstructionExVO>>> doGetInstructions(int batchSize) {
+        final long now = System.currentTimeMillis();
+        final long roundStart = System.nanoTime();
+        final Topology topology = topologyService.current();
+
+        // 先按默认分区的 task:running 校准批量控制器的在途数
+        return reactiveStringRedisTemplate.opsForZSet().size(DEFAULT_RUNNING).onErrorReturn(-1L)
+                .doOnNext(dispatchBatchService::syncInFlight)
+                .thenMany(reactiveStringRedisTemplate.opsForZSet().reverseRange(DEFAULT_WAITING,
+                        Range.closed(0L, InstructionServcieImpl.candidateWindow(batchSize, candidateWindowFactor) - 1L)))
+                .flatMapSequential(this::loadCandidate, prefetchConcurrency)
+                .collectList()
+                .flatMap(candidates -> {
+                    if (candidates.isEmpty()) {
+                        dispatchBatchService.onRoundFinished(0, 0, 0, 0L);
+                        return Mono.just(Result.success(Collections.<InstructionExVO>emptyList(), "暂无待执行的指令"));
+                    }
+                    return Mono.zip(prefetchOdStats(candidates, topology), prefetchContainerLast(candidates),
+                                    prefetchDueServiceMs(candidates))
+                            .flatMap(t -> plan(candidates, topology, t.getT1(), t.getT2(), t.getT3(),
+                                    batchSize, now, roundStart));
+                });
+    }
+
+    private Mono<Candidate> loadCandidate(String code) {
+        return hashOps().entries(DEFAULT_INFO + code)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(m -> {
+                    // 取候选之后被取消 / 完成，详情已删，本轮跳过
+                    if (m.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    // 缺少 enqueueAt 的按刚入队算，不能让一条坏数据拖垮整轮
+                    long now = System.currentTimeMillis();
+                    String enqueueStr = m.get("enqueueAt");
+                    if (enqueueStr == null) {
+                        System.out.println("[" + ts() + "] 指令 " + code + " 缺少 enqueueAt，按当前时间打分");
+                    }
+                    InstructionExVO vo = new InstructionExVO();
+                    vo.setInstructionCode(code);
+                    vo.setLocationFrom(m.get("locationFrom"));
+                    vo.setLocationTo(m.get("locationTo"));
+                    vo.setContainerCode(m.get("containerCode"));
+                    vo.setPriority(1);
+                    if (m.get("priority") != null) {
+                        try { vo.setPriority(Integer.valueOf(m.get("priority"))); } catch (NumberFormatException ignore) {}
+                    }
+                    Candidate c = new Candidate(vo, parseOrDefault(enqueueStr, now));
+                    c.dueAt = parseOrDefault(m.get("dueAt"), 0L);
+                    return Mono.just(c);
+                });
+    }
+
+    /**
+     * 一次性并发读回本轮要用到的 OD 统计：锚点组合（打分用）+ 起终点本身（估算行驶时间用）
+     */
+    private Mono<Map<String, double[]>> prefetchOdStats(List<Candidate> candidates, Topology topology) {
+        Set<String> keys = new HashSet<>();
+        for (Candidate c : candidates) {
+            String from = c.vo.getLocationFrom();
+            String to = c.vo.getLocationTo();
+            for (String f : topology.anchors(from)) {
+                for (String t : topology.anchors(to)) {
+                    keys.add(f + "|" + t);
+                }
+            }
+            if (from != null && to != null) {
+                keys.add(normalize(from) + "|" + normalize(to));
+            }
+        }
+        return Flux.fromIterable(keys)
+                .flatMap(k -> hashOps().multiGet(OD_KEY_PREFIX + k, OD_FIELDS)
+                        .map(v -> Tuples.of(k, Optional.ofNullable(DispatchPlanner.parseOdStats(v)))), prefetchConcurrency)
+                .filter(t -> t.getT2().isPresent())
+                .collectMap(t -> t.getT1(), t -> t.getT2().get());
+    }
+
+    /**
+     * 一次性并发读回各候选容器的上一单（终点、完成时间），给接续加分用
+     */
+    private Mono<Map<String, List<String>>> prefetchContainerLast(List<Candidate> candidates) {
+        Set<String> containers = new HashSet<>();
+        for (Candidate c : candidates) {
+            if (c.vo.getContainerCode() != null) {
+                containers.add(normalize(c.vo.getContainerCode()));
+            }
+        }
+        return Flux.fromIterable(containers)
+                .flatMap(k -> hashOps().multiGet(CONTAINER_LAST + k, DispatchPlanner.Affinity.FIELDS)
+                        .map(v -> Tuples.of(k, v)), prefetchConcurrency)
+                .collectMap(t -> t.getT1(), t -> t.getT2());
+    }
+
+    /**
+     * deadline 模式下，读回带截止时间的候选终点的处理时间，算余量用；其余情况为空
+     */
+    private Mono<Map<String, Long>> prefetchDueServiceMs(List<Candidate> candidates) {
+        if (!admissionService.deadlineMode()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        Set<String> nodes = new HashSet<>();
+        for (Candidate c : candidates) {
+            if (c.dueAt > 0 && c.vo.getLocationFrom() != null && c.vo.getLocationTo() != null) {
+                nodes.add(normalize(c.vo.getLocationTo()));
+            }
+        }
+        return Flux.fromIterable(nodes)
+                .flatMap(n -> stationCapacityService.serviceMsAsync(n).map(ms -> Tuples.of(n, ms)), prefetchConcurrency)
+                .collectMap(t -> t.getT1(), t -> t.getT2());
+    }
+
+    private Mono<Result<List<InstructionExVO>>> plan(List<Candidate> candidates,
+                                                     Topology topology,
+                                                     Map<String, double[]> od,
+                                                     Map<String, List<String>> containerLast,
+                                                     Map<String, Long> dueServiceMs,
+                                                     int batchSize,
+                                                     long now,
+                                                     long roundStart) {
+        // 1) 打分排序（候选窗口内，deadline 模式下带截止时间的按余量），留一份快照给降级模式，取前 batchSize 条
+        Function<String, double[]> odStats = od::get;
+        Map<String, Double> score = new HashMap<>(candidates.size());
+        Map<String, Double> hist = new HashMap<>(candidates.size());
+        Map<String, Long> slackMs = new HashMap<>();
+        DispatchPlanner.Affinity affinity = new DispatchPlanner.Affinity(affinityBonus, affinityHalfLifeMs);
+        // 整轮用同一组权重
+        DispatchPlanner.Weights weights = schedulingWeightsService.current();
+        for (Candidate c : candidates) {
+            double histMs = DispatchPlanner.historicalCostMs(weights,
+                    topology.anchors(c.vo.getLocationFrom()), topology.anchors(c.vo.getLocationTo()), odStats);
+            hist.put(c.vo.getInstructionCode(), histMs);
+            List<String> last = c.vo.getContainerCode() == null ? null
+                    : containerLast.get(normalize(c.vo.getContainerCode()));
+            if (last != null && last.size() >= 2) {
+                c.lastFinishAt = parseOrDefault(last.get(0), 0L);
+                c.lastTo = last.get(1);
+            }
+            score.put(c.vo.getInstructionCode(), DispatchPlanner.baseScore(weights, c.vo.getPriority(), c.enqueueAt, histMs, now)
+                    + affinity.bonus(c.vo.getLocationFrom(), c.lastTo, c.lastFinishAt, now));
+            Long svc = c.dueAt > 0 && c.vo.getLocationFrom() != null && c.vo.getLocationTo() != null
+                    ? dueServiceMs.get(normalize(c.vo.getLocationTo())) : null;
+            if (svc != null) {
+                long travelMs = estimateTravelMs(c.vo.getLocationFrom(), c.vo.getLocationTo(), topology, od);
+                slackMs.put(c.vo.getInstructionCode(), c.dueAt - (now + travelMs + svc));
+            }
+        }
+        List<InstructionExVO> all = new ArrayList<>(candidates.size());
+        candidates.forEach(c -> all.add(c.vo));
+        if (!slackMs.isEmpty()) {
+            all.sort(DispatchPlanner.deadlineOrder(score, slackMs));
+        } else {
+            all.sort((a, b) -> Double.compare(score.get(b.getInstructionCode()), score.get(a.getInstructionCode())));
+        }
+        degradedModeService.rememberWaiting(all);
+        List<InstructionExVO> scheduled = all.size() > batchSize ? new ArrayList<>(all.subList(0, batchSize)) : all;
+
+        // 本轮的输入录进调度日志（未开启时为 null）：预取的 OD 统计就是本轮用到的全部
+        DispatchJournal.Round round = dispatchJournalService.begin(DispatchJournal.SOURCE_REACTIVE, batchSize);
+        if (round != null) {
+            round.scoredAt = now;
+            round.plannedAt = now;
+            for (Candidate c : candidates) {
+                String code = c.vo.getInstructionCode();
+                round.candidate(new DispatchJournal.Candidate(code, c.vo.getLocationFrom(), c.vo.getLocationTo(),
+                        c.vo.getPriority() == null ? 0 : c.vo.getPriority(), c.enqueueAt, hist.get(code), score.get(code),
+                        c.lastTo, c.lastFinishAt));
+            }
+            od.forEach(round::od);
+        }
+
+        // 2) 并发读回本批终点的缓存位和处理时间，以及各段在途数
+        Set<String> nodes = new HashSet<>();
+        for (InstructionExVO vo : scheduled) {
+            if (vo.getLocationFrom() != null && vo.getLocationTo() != null) {
+                nodes.add(normalize(vo.getLocationTo()));
+            }
+        }
+        return Mono.zip(Flux.fromIterable(nodes)
+                        .flatMap(n -> Mono.zip(stationCapacityService.slotFreeTimesAsync(n, now),
+                                stationCapacityService.serviceMsAsync(n)).map(t -> Tuples.of(n, t)), prefetchConcurrency)
+                        .collectMap(t -> t.getT1(), t -> t.getT2()), routeService.segmentLoadAsync())
+                .flatMap(loaded -> {
+                    Map<String, Tuple2<long[], Long>> station = loaded.getT1();
+                    Map<String, Integer> segmentLoad = loaded.getT2();
+                    // 3) 纯内存规划 ready / deferred
+                    DispatchPlanner.NodePlan nodePlan = new DispatchPlanner.NodePlan();
+                    List<InstructionExVO> ready = new ArrayList<>(scheduled.size());
+                    List<InstructionExVO> deferred = new ArrayList<>();
+                    for (InstructionExVO vo : scheduled) {
+                        // 上游校验（queryInstruction）目前默认放行，这里只看终点缓存位
+                        boolean complete = vo.getLocationFrom() != null && vo.getLocationTo() != null;
+                        long travelMs = complete
+                                ? estimateTravelMs(vo.getLocationFrom(), vo.getLocationTo(), topology, od) : -1L;
+                        boolean etaOk = !complete
+                                || DispatchPlanner.reserve(weights, nodePlan, vo, now + travelMs,
+                                k -> station.get(k).getT1().clone(),
+                                k -> station.get(k).getT2());
+                        (etaOk ? ready : deferred).add(vo);
+                        // 能发的按段负载选行驶方向
+                        RouteVO route = etaOk && complete
+                                ? routeService.choose(topology, vo.getLocationFrom(), vo.getLocationTo(), segmentLoad) : null;
+                        if (route != null) {
+                            vo.setDirection(route.getPolicy());
+                            nodePlan.route.put(vo.getInstructionCode(), route.getSegments());
+                        }
+                        if (round != null) {
+                            round.decisions.add(new DispatchJournal.Decision(
+                                    round.indexOf(vo.getInstructionCode()), travelMs, true, etaOk));
+                        }
+                    }
+                    if (round != null) {
+                        station.forEach((k, t) -> {
+                            round.slots.put(k, t.getT1());
+                            round.serviceMs.put(k, t.getT2());
+                        });
+                        round.elapsedNanos = System.nanoTime() - roundStart;
+                        dispatchJournalService.record(round);
+                    }
+                    List<InstructionExVO> ordered = new ArrayList<>(ready.size() + deferred.size());
+                    ordered.addAll(ready);
+                    ordered.addAll(deferred);
+
+                    // 4) 异步提交 ready，完成后回报批量控制器
+                    return Flux.fromIterable(ready)
+                            .concatMap(vo -> commit(vo, nodePlan, now))
+                            .filter(Boolean::booleanValue)
+                            .count()
+                            .map(committed -> {
+                                dispatchBatchService.onRoundFinished(scheduled.size(), committed.intValue(), deferred.size(),
+                                        DispatchPlanner.nodeBacklogMs(nodePlan, now));
+                                return Result.success(ordered, "获取成功");
+                            });
+                });
+    }
+
+    /**
+     * 起调提交：记录启动时间，出队、详情转入在途索引、刷新去重标记、终点占一个缓存位
+     *
+     * @return 是否起调成功（已被别的轮次起调或已出队的为 false）
+     */
+    private Mono<Boolean> commit(InstructionExVO vo, DispatchPlanner.NodePlan nodePlan, long now) {
+        String code = vo.getInstructionCode();
+        return reactiveStringRedisTemplate.opsForValue()
+                .setIfAbsent(DEFAULT_COMPLETED + code, String.valueOf(now))
+                .zipWith(reactiveStringRedisTemplate.opsForZSet().score(DEFAULT_WAITING, code)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()))
+                .flatMap(t -> {
+                    if (!Boolean.TRUE.equals(t.getT1()) || t.getT2().isEmpty()) {
+                        return Mono.just(false);
+                    }
+                    Long releaseAt = nodePlan.releaseAt.get(code);
+                    long expectedFinishAt = nodePlan.etaAt.getOrDefault(code, now + DispatchPlanner.DEFAULT_TRAVEL_MS);
+                    Mono<Void> occupy = vo.getLocationTo() != null && releaseAt != null
+                            ? stationCapacityService.occupyAsync(TaskStore.DEFAULT_PARTITION, vo.getLocationTo(), code, releaseAt, now)
+                            : Mono.empty();
+                    return reactiveStringRedisTemplate.opsForZSet().remove(DEFAULT_WAITING, code)
+                            .then(taskLifecycleService.onDispatchedAsync(TaskStore.DEFAULT_PARTITION, vo, now, expectedFinishAt, nodePlan.route.get(code)))
+                            .then(dedupeService.markDispatchedAsync(code))
+                            .doOnSuccess(v -> notifyService.confirm(BeanUtil.copyProperties(vo, ConfirmTaskDTO.class)))
+                            .then(occupy)
+                            .thenReturn(true);
+                });
+    }
+
+    /**
+     * 同 InstructionServcieImpl.estimateTravelMs：OD 统计 -> 拓扑最短路 -> 默认值
+     */
+    private static long estimateTravelMs(String from, String to, Topology topology, Map<String, double[]> od) {
+        double[] stats = od.get(normalize(from) + "|" + normalize(to));
+        if (stats != null && !Double.isNaN(stats[0])) {
+            return (long) stats[0];
+        }
+        int d = topology.estimateMs(from, to);
+        return d == Topology.UNREACHABLE ? DispatchPlanner.DEFAULT_TRAVEL_MS : d;
+    }
+
+    private static class Candidate {
+        final InstructionExVO vo;
+        final long enqueueAt;
+        // 容器上一单（打分时从预取结果填入）
+        String lastTo;
+        long lastFinishAt;
+        // 截止时间，没有为 0
+        long dueAt;
+
+        Candidate(InstructionExVO vo, long enqueueAt) {
+            this.vo = vo;
+            this.enqueueAt = enqueueAt;
+        }
+    }
+
+    // ---------------- 工具方法 ----------------
+
+    private ReactiveHashOperations<String, String, String> hashOps() {
+        return reactiveStringRedisTemplate.opsForHash();
+    }
+
+    private static String normalize(String s) {
+        if (s == null) return "NULL";
+        return s.trim().toUpperCase();
+    }
+
+    private static long parseOrDefault(String s, long def) {
+        try { return s == null ? def : Long.parseLong(s); }
+        catch (Exception e) { return def; }
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.RedisGatewayVO;
+import com.example.zdtx.service.RedisGatewayService;
+import com.example.zdtx.service.RedisKeyspaceService;
+import com.example.zdtx.utils.LogHistogram;
+import com.example.zdtx.utils.RoundTrace;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis 读命令合并网关：
+ * 1. 调用方把命令放进队列后等待自己的 future
+ * 2. 收集线程拿到第一条后最多再等 windowUs 微秒（或凑满 maxBatch 条），整批交给发送线程
+ * 3. 发送线程按“命令 + key + 字段”去重后用一个 pipeline 发出，结果按组回填给每个调用方
+ * 4. 同时最多 flushers 个 pipeline 在途，都忙时收集线程继续攒批
+ * 5. 连 Redis Cluster 时一批按 key 所在主节点拆开，各节点的 pipeline 并行发出，一个节点出错不影响其他节点的结果
+ * 只合并读；写命令仍由调用方直接发，保证自己的读写顺序
+ */
+@Service
+@RequiredArgsConstructor
+public class RedisGatewayServiceImpl implements RedisGatewayService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisKeyspaceService redisKeyspaceService;
+
+    @Value("${zdtx.redis.gateway.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.redis.gateway.window-us:100}")
+    private long windowUs;
+
+    @Value("${zdtx.redis.gateway.max-batch:128}")
+    private int maxBatch;
+
+    @Value("${zdtx.redis.gateway.flushers:4}")
+    private int flushers;
+
+    // 调用方最长等待，超时按 Redis 超时处理（会触发降级判断）
+    @Value("${zdtx.redis.gateway.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private enum Kind { GET, HGET, HMGET, HGETALL }
+
+    private static class Op {
+        final Kind kind;
+        final String key;
+        final List<String> fields;
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Op(Kind kind, String key, List<String> fields) {
+            this.kind = kind;
+            this.key = key;
+            this.fields = fields;
+        }
+
+        String dedupeKey() {
+            return kind + "\u0000" + key + "\u0000" + (fields == null ? "" : String.join("\u0000", fields));
+        }
+    }
+
+    private final LinkedBlockingQueue<Op> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final LogHistogram waitUs = new LogHistogram();
+    private final LogHistogram pipelineUs = new LogHistogram();
+    private final LogHistogram batchSize = new LogHistogram();
+    private final Map<String, AtomicLong> sentByNode = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread collector;
+    private ExecutorService flusherPool;
+    // 集群模式下除第一个节点外的子 pipeline 在这里并行发
+    private ExecutorService shardPool;
+    private Semaphore permits;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        permits = new Semaphore(Math.max(1, flushers));
+        flusherPool = Executors.newFixedThreadPool(Math.max(1, flushers), r -> {
+            Thread t = new Thread(r, "redis-gateway-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        shardPool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "redis-gateway-shard");
+            t.setDaemon(true);
+            return t;
+        });
+        collector = new Thread(this::collect, "redis-gateway-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (collector != null) collector.interrupt();
+        if (flusherPool != null) flusherPool.shutdown();
+        if (shardPool != null) shardPool.shutdown();
+        Op op;
+        while ((op = queue.poll()) != null) {
+            op.future.completeExceptionally(new RedisSystemException("Redis 网关已关闭", null));
+        }
+    }
+
+    // ===================== 对外接口 =====================
+
+    @Override
+    public String get(String key) {
+        return (String) await(submit(new Op(Kind.GET, key, null)));
+    }
+
+    @Override
+    public String hget(String key, String field) {
+        return (String) await(submit(new Op(Kind.HGET, key, Collections.singletonList(field))));
+    }
+
+    @Override
+    public List<String> hmget(String key, List<String> fields) {
+        return await(hmgetAsync(key, fields));
+    }
+
+    @Override
+    public Map<String, String> hgetAll(String key) {
+        return await(hgetAllAsync(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<String>> hmgetAsync(String key, List<String> fields) {
+        return submit(new Op(Kind.HMGET, key, fields)).thenApply(r -> (List<String>) r);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Map<String, String>> hgetAllAsync(String key) {
+        return submit(new Op(Kind.HGETALL, key, null))
+                .thenApply(r -> r == null ? Collections.<String, String>emptyMap() : (Map<String, String>) r);
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RedisSystemException("Redis 合并请求失败", cause);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Redis 合并请求等待超时 " + timeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Redis 合并请求等待被中断");
+        }
+    }
+
+    @Override
+    public RedisGatewayVO stats() {
+        long c = commands.get();
+        long s = sent.get();
+        Map<String, Long> byNode = new TreeMap<>();
+        sentByNode.forEach((node, n) -> byNode.put(node, n.get()));
+        return new RedisGatewayVO(enabled, windowUs, maxBatch, flushers, c, s, c - s, batches.get(), errors.get(),
+                waitUs.snapshot(), pipelineUs.snapshot(), batchSize.snapshot(), byNode);
+    }
+
+    // ===================== 攒批与发送 =====================
+
+    private CompletableFuture<Object> submit(Op op) {
+        if (!enabled || !running) {
+            // 关闭合并时在调用线程上单条发送，便于对比
+            flush(Collections.singletonList(op));
+        } else {
+            // 由收集线程发出，Lettuce 监听看不到调用方，在这里记到调用方正在采样的一轮上
+            RoundTrace.redis(1);
+            queue.add(op);
+        }
+        return op.future;
+    }
+
+    private void collect() {
+        long windowNs = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowUs));
+        int limit = Math.max(1, maxBatch);
+        while (running) {
+            try {
+                List<Op> batch = new ArrayList<>(limit);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNs;
+                while (batch.size() < limit) {
+                    queue.drainTo(batch, limit - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= limit || left <= 0) break;
+                    Op next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                permits.acquire();
+                flusherPool.execute(() -> {
+                    try {
+                        flush(batch);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    private void flush(List<Op> batch) {
+        Map<String, List<Op>> groups = new LinkedHashMap<>();
+        for (Op op : batch) {
+            groups.computeIfAbsent(op.dedupeKey(), k -> new ArrayList<>(1)).add(op);
+        }
+        List<List<Op>> unique = new ArrayList<>(groups.values());
+        commands.addAndGet(batch.size());
+        sent.addAndGet(unique.size());
+        batches.incrementAndGet();
+        batchSize.record(unique.size());
+
+        Map<String, List<List<Op>>> byNode = splitByNode(unique);
+        if (byNode.size() <= 1) {
+            send(unique);
+            return;
+        }
+        Iterator<List<List<Op>>> parts = byNode.values().iterator();
+        List<List<Op>> first = parts.next();
+        List<CompletableFuture<Void>> others = new ArrayList<>(byNode.size() - 1);
+        while (parts.hasNext()) {
+            List<List<Op>> part = parts.next();
+            others.add(CompletableFuture.runAsync(() -> send(part), shardPool));
+        }
+        send(first);
+        // 等各节点都回来再释放发送名额，在途 pipeline 数仍受 flushers 限制
+        others.forEach(CompletableFuture::join);
+    }
+
+    /**
+     * 集群模式下按 key 所在主节点分组；单机或拓扑还没拿到时整批一组
+     */
+    private Map<String, List<List<Op>>> splitByNode(List<List<Op>> unique) {
+        Map<String, List<List<Op>>> byNode = new LinkedHashMap<>();
+        boolean clustered = redisKeyspaceService.clustered();
+        for (List<Op> group : unique) {
+            String node = clustered ? redisKeyspaceService.nodeOf(group.get(0).key) : null;
+            byNode.computeIfAbsent(node == null ? "" : node, k -> new ArrayList<>()).add(group);
+        }
+        if (clustered) {
+            byNode.forEach((node, part) -> sentByNode.computeIfAbsent(node, k -> new AtomicLong()).addAndGet(part.size()));
+        }
+        return byNode;
+    }
+
+    /**
+     * 一个 pipeline 发出这些命令（每组一条），结果回填给组内每个调用方
+     */
+    private void send(List<List<Op>> unique) {
+        long t0 = System.nanoTime();
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (List<Op> group : unique) {
+                    Op op = group.get(0);
+                    byte[] key = bytes(op.key);
+                    switch (op.kind) {
+                        case GET:
+                            connection.stringCommands().get(key);
+                            break;
+                        case HGET:
+                            connection.hashCommands().hGet(key, bytes(op.fields.get(0)));
+                            break;
+                        case HMGET:
+                            connection.hashCommands().hMGet(key, op.fields.stream().map(RedisGatewayServiceImpl::bytes).toArray(byte[][]::new));
+                            break;
+                        default:
+                            connection.hashCommands().hGetAll(key);
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            for (List<Op> group : unique) {
+                for (Op op : group) {
+                    op.future.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        pipelineUs.record((now - t0) / 1000);
+
+        for (int i = 0; i < unique.size(); i++) {
+            Object r = results != null && i < results.size() ? results.get(i) : null;
+            for (Op op : unique.get(i)) {
+                waitUs.record((now - op.submittedAt) / 1000);
+                op.future.complete(r);
+            }
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.KeyspaceVO;
+import com.example.zdtx.service.RedisKeyspaceService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.utils.RedisKeyspace;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * Redis key 布局：
+ * 1. 旧布局迁移（单机 Redis，启动时按 keyspace:version 逐级做，完成后写版本号，以后启动直接跳过）：
+ *    v1 → v2：不带 hash tag 的旧 key（task:*、node:occupancy:*、route:load、stats:completed:legacy、dedupe:bloom:*）
+ *    按 pipeline 批量 RENAMENX 到 {zdtx} 下；
+ *    v2 → v3：{zdtx} 下的工作集拆到各分区的 tag 下。详情按 houseCode 定分区并写 task:house 索引，
+ *    在途 / 截止时间 / 死信 / 取消 / 占用按指令号拆（按批查 task:house，不在堆上攒全量映射），
+ *    段负载按在途详情里的路径重算，找不到分区的归默认分区。
+ *    多实例同时启动时用 {zdtx}keyspace:version:lock（SET NX + 租期，每扫一页续一次）保证只有一个实例在迁，
+ *    其余实例等版本号写好再继续启动；所有实例要一起升级，否则老实例还会写旧名字
+ * 2. 集群拓扑：定时读 CLUSTER NODES 建槽 → 主节点表，合并网关按它把一批命令拆给各节点；
+ *    重新分片期间表可能短暂过期，只影响拆批，命令本身仍由 Lettuce 按 MOVED 重定向
+ */
+@Service
+@RequiredArgsConstructor
+public class RedisKeyspaceServiceImpl implements RedisKeyspaceService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${zdtx.redis.keyspace.migrate:true}")
+    private boolean migrate;
+
+    @Value("${zdtx.redis.keyspace.migrate-batch:1000}")
+    private int migrateBatch;
+
+    // 迁移锁租期；也是没抢到锁的实例最多等多久
+    @Value("${zdtx.redis.keyspace.migrate-lock-ms:600000}")
+    private long migrateLockMs;
+
+    private static final int VERSION = 3;
+
+    // v2 布局：工作集都在 {zdtx} 下
+    private static final String V2 = "{zdtx}";
+
+    /**
+     * v1 名字的匹配模式 → v2 名字（返回 null 的不动）
+     */
+    private static final Map<String, UnaryOperator<String>> LEGACY = new LinkedHashMap<>();
+
+    static {
+        LEGACY.put("task:*", k -> k.startsWith(TASK_HOUSE) ? null : V2 + k);
+        LEGACY.put("node:occupancy:*", k -> V2 + k);
+        LEGACY.put("route:load", k -> V2 + k);
+        LEGACY.put("stats:completed:legacy", k -> V2 + k);
+        LEGACY.put("dedupe:bloom:*", k -> DEDUPE_BLOOM + k.substring("dedupe:bloom:".length()));
+    }
+
+    // 在途详情、截止时间、死信详情的 TTL 跟着 RENAME 走；占用时间线重写后按这个设
+    private static final long OCCUPANCY_TTL_SECONDS = 24 * 3600;
+
+    // 只有锁还是自己的才续期 / 释放
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    // 本实例持有迁移锁时的锁值
+    private String lockOwner;
+
+    private boolean clustered;
+
+    // 下标为槽号，值为主节点 host:port
+    private volatile String[] owners;
+    private volatile long topologyRefreshedAt;
+
+    private long migrated;
+    private long migrateConflicts;
+    private long migrateMs;
+
+    @PostConstruct
+    public void init() {
+        RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+        clustered = factory instanceof LettuceConnectionFactory && ((LettuceConnectionFactory) factory).isClusterAware();
+        if (clustered) {
+            refreshTopology();
+        } else if (migrate) {
+            migrateLocked();
+        }
+    }
+
+    @Override
+    public boolean clustered() {
+        return clustered;
+    }
+
+    @Override
+    public String nodeOf(String key) {
+        String[] table = owners;
+        return table == null ? null : table[RedisKeyspace.slot(key)];
+    }
+
+    @Override
+    public KeyspaceVO info() {
+        Map<String, Integer> slots = new TreeMap<>();
+        String[] table = owners;
+        if (table != null) {
+            for (String node : table) {
+                if (node != null) slots.merge(node, 1, Integer::sum);
+            }
+        }
+        String waiting = RedisTaskStore.waitingKey(TaskStore.DEFAULT_PARTITION);
+        return new KeyspaceVO(clustered, RedisKeyspace.slot(waiting), nodeOf(waiting), slots,
+                clustered ? topologyRefreshedAt : null, migrated, migrateConflicts, migrateMs);
+    }
+
+    @Scheduled(fixedDelayString = "${zdtx.redis.keyspace.topology-refresh-ms:30000}")
+    public void scheduledRefresh() {
+        if (!clustered) return;
+        try {
+            refreshTopology();
+        } catch (RuntimeException e) {
+            System.out.println("[" + ts() + "] Redis 集群拓扑刷新失败：" + e.getMessage());
+        }
+    }
+
+    private void refreshTopology() {
+        String[] table = new String[RedisKeyspace.SLOTS];
+        RedisConnectionFactory factory = Objects.requireNonNull(stringRedisTemplate.getConnectionFactory());
+        try (RedisClusterConnection connection = factory.getClusterConnection()) {
+            for (RedisClusterNode node : connection.clusterGetNodes()) {
+                if (!node.isMaster()) continue;
+                for (int slot : node.getSlotRange().getSlotsArray()) {
+                    if (slot >= 0 && slot < table.length) table[slot] = node.asString();
+                }
+            }
+        }
+        owners = table;
+        topologyRefreshedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 抢到锁的实例迁移；没抢到的等别的实例迁完（版本号写好）或锁过期后再抢，等满租期还没好就放弃，照常启动
+     */
+    private void migrateLocked() {
+        String owner = UUID.randomUUID().toString();
+        long giveUpAt = System.currentTimeMillis() + migrateLockMs;
+        while (parseVersion(stringRedisTemplate.opsForValue().get(KEYSPACE_VERSION)) < VERSION) {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(KEYSPACE_MIGRATE_LOCK, owner, migrateLockMs, TimeUnit.MILLISECONDS))) {
+                lockOwner = owner;
+                try {
+                    migrateLegacy();
+                } finally {
+                    lockOwner = null;
+                    stringRedisTemplate.execute(RELEASE, Collections.singletonList(KEYSPACE_MIGRATE_LOCK), owner);
+                }
+                return;
+            }
+            if (System.currentTimeMillis() >= giveUpAt) {
+                System.out.println("[" + ts() + "] 等待其他实例迁移 Redis key 布局超时，本实例跳过迁移");
+                return;
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void renewLock() {
+        String owner = lockOwner;
+        if (owner == null) return;
+        Long ok = stringRedisTemplate.execute(RENEW, Collections.singletonList(KEYSPACE_MIGRATE_LOCK),
+                owner, String.valueOf(migrateLockMs));
+        if (ok == null || ok == 0L) {
+            throw new IllegalStateException("Redis key 布局迁移锁已丢失，停止迁移");
+        }
+    }
+
+    private void migrateLegacy() {
+        long start = System.currentTimeMillis();
+        int version = parseVersion(stringRedisTemplate.opsForValue().get(KEYSPACE_VERSION));
+        if (version >= VERSION) return;
+        if (version < 2) {
+            for (Map.Entry<String, UnaryOperator<String>> e : LEGACY.entrySet()) {
+                scan(e.getKey(), keys -> rename(keys, e.getValue()));
+            }
+        }
+        migratePartitions();
+        stringRedisTemplate.opsForValue().set(KEYSPACE_VERSION, String.valueOf(VERSION));
+        migrateMs = System.currentTimeMillis() - start;
+        if (migrated > 0 || migrateConflicts > 0) {
+            System.out.println("[" + ts() + "] Redis key 布局迁移完成：改名 " + migrated + " 个，新名字已存在跳过 "
+                    + migrateConflicts + " 个，耗时 " + migrateMs + "ms");
+        }
+    }
+
+    /**
+     * v2 → v3：{zdtx} 下的工作集按分区拆开
+     */
+    private void migratePartitions() {
+        // 1) 详情带 houseCode，非默认分区的任务按批写 task:house 索引，后面各步按批查它，不在堆上攒全量映射
+        Set<String> partitions = new TreeSet<>();
+        for (String prefix : Arrays.asList(TASK_INFO, TASK_RUNNING_INFO, TASK_DEAD_INFO)) {
+            scan(V2 + prefix + "*", keys -> {
+                List<Object> houses = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (byte[] k : keys) connection.hashCommands().hGet(k, bytes("houseCode"));
+                    return null;
+                });
+                Map<String, String> batch = new HashMap<>();
+                for (int i = 0; i < keys.size(); i++) {
+                    String house = houses.get(i) == null ? null : String.valueOf(houses.get(i));
+                    String p = TaskStore.invalidHouseCode(house) == null ? TaskStore.partitionOf(house) : TaskStore.DEFAULT_PARTITION;
+                    if (!p.isEmpty()) batch.put(string(keys.get(i)).substring((V2 + prefix).length()), p);
+                }
+                partitions.addAll(batch.values());
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    batch.forEach((code, p) -> connection.stringCommands().set(bytes(TASK_HOUSE + code), bytes(p)));
+                    return null;
+                });
+            });
+        }
+
+        // 2) 按指令号一条一个 key 的：改名到所属分区
+        for (String prefix : Arrays.asList(TASK_INFO, TASK_RUNNING_INFO, TASK_DEAD_INFO, TASK_COMPLETED_SET)) {
+            scan(V2 + prefix + "*", keys -> {
+                List<String> codes = new ArrayList<>(keys.size());
+                for (byte[] k : keys) codes.add(string(k).substring((V2 + prefix).length()));
+                Map<String, String> partitionOf = partitionsOf(codes);
+                rename(keys, k -> {
+                    String code = k.substring((V2 + prefix).length());
+                    return key(partitionOf.get(code), prefix) + code;
+                });
+            });
+        }
+
+        // 3) 等待队列本来就按分区分开，只改名
+        List<byte[]> queues = new ArrayList<>();
+        scan(V2 + TASK_WAITING_ZSET + "*", queues::addAll);
+        rename(queues, k -> {
+            String rest = k.substring((V2 + TASK_WAITING_ZSET).length());
+            if (rest.isEmpty()) return RedisTaskStore.waitingKey(TaskStore.DEFAULT_PARTITION);
+            if (!rest.startsWith(":")) return null;
+            partitions.add(rest.substring(1));
+            return RedisTaskStore.waitingKey(rest.substring(1));
+        });
+
+        // 4) 多个任务共用的索引：按成员拆
+        for (String suffix : Arrays.asList(TASK_RUNNING_ZSET, TASK_DUE_ZSET, TASK_DEAD_ZSET)) {
+            splitZSet(V2 + suffix, suffix, false);
+        }
+        scan(V2 + NODE_OCCUPANCY + "*", keys -> keys.forEach(k -> {
+            String suffix = string(k).substring(V2.length());
+            splitZSet(string(k), suffix, true);
+        }));
+        List<String> cancelled = new ArrayList<>();
+        try (Cursor<String> it = stringRedisTemplate.opsForSet().scan(V2 + TASK_CANCELLED_SET,
+                ScanOptions.scanOptions().count(Math.max(1, migrateBatch)).build())) {
+            while (it.hasNext()) {
+                cancelled.add(it.next());
+                if (cancelled.size() >= Math.max(1, migrateBatch) || !it.hasNext()) {
+                    partitionsOf(cancelled).forEach((code, p) ->
+                            stringRedisTemplate.opsForSet().add(key(p, TASK_CANCELLED_SET), code));
+                    migrated += cancelled.size();
+                    cancelled.clear();
+                    renewLock();
+                }
+            }
+        }
+        stringRedisTemplate.delete(V2 + TASK_CANCELLED_SET);
+
+        // 5) 段负载按各分区在途详情里记的路径重算
+        if (Boolean.TRUE.equals(stringRedisTemplate.delete(V2 + ROUTE_LOAD))) {
+            List<String> all = new ArrayList<>(partitions);
+            all.add(TaskStore.DEFAULT_PARTITION);
+            for (String p : all) {
+                Set<String> running = stringRedisTemplate.opsForZSet().range(key(p, TASK_RUNNING_ZSET), 0, -1);
+                if (running == null) continue;
+                for (String code : running) {
+                    Object route = stringRedisTemplate.opsForHash().get(key(p, TASK_RUNNING_INFO) + code, "route");
+                    if (route == null) continue;
+                    for (String seg : String.valueOf(route).split(",")) {
+                        if (!seg.isEmpty()) stringRedisTemplate.opsForHash().increment(key(p, ROUTE_LOAD), seg, 1);
+                    }
+                }
+            }
+        }
+
+        // 6) 存量耗时汇总归默认分区
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(V2 + STATS_COMPLETED_LEGACY))) {
+            rename(Collections.singletonList(bytes(V2 + STATS_COMPLETED_LEGACY)),
+                    k -> key(TaskStore.DEFAULT_PARTITION, STATS_COMPLETED_LEGACY));
+        }
+
+        if (!partitions.isEmpty()) stringRedisTemplate.opsForSet().add(PARTITIONS, partitions.toArray(new String[0]));
+    }
+
+    /**
+     * 把 v2 的一个 ZSET 按成员所属分区拆到 key(分区, suffix)，再删掉原 key；按 migrate-batch 分页读，
+     * 原 key 在拆完之前不改，分页下标稳定
+     */
+    private void splitZSet(String from, String suffix, boolean expire) {
+        int batch = Math.max(1, migrateBatch);
+        Set<String> touched = new HashSet<>();
+        for (long offset = 0; ; offset += batch) {
+            Set<ZSetOperations.TypedTuple<String>> page =
+                    stringRedisTemplate.opsForZSet().rangeWithScores(from, offset, offset + batch - 1);
+            if (page == null || page.isEmpty()) break;
+            List<String> codes = new ArrayList<>(page.size());
+            page.forEach(t -> codes.add(t.getValue()));
+            Map<String, String> partitionOf = partitionsOf(codes);
+            Map<String, Set<ZSetOperations.TypedTuple<String>>> groups = new HashMap<>();
+            for (ZSetOperations.TypedTuple<String> t : page) {
+                groups.computeIfAbsent(partitionOf.get(t.getValue()), p -> new HashSet<>()).add(t);
+            }
+            groups.forEach((p, group) -> {
+                stringRedisTemplate.opsForZSet().add(key(p, suffix), group);
+                touched.add(key(p, suffix));
+            });
+            migrated += page.size();
+            renewLock();
+            if (page.size() < batch) break;
+        }
+        if (expire) touched.forEach(k -> stringRedisTemplate.expire(k, OCCUPANCY_TTL_SECONDS, TimeUnit.SECONDS));
+        stringRedisTemplate.delete(from);
+    }
+
+    /**
+     * 按 task:house 索引批量查指令所属分区，查不到的归默认分区
+     */
+    private Map<String, String> partitionsOf(List<String> codes) {
+        List<String> keys = new ArrayList<>(codes.size());
+        for (String code : codes) keys.add(TASK_HOUSE + code);
+        List<String> houses = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<String, String> result = new HashMap<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            String p = houses == null ? null : houses.get(i);
+            result.put(codes.get(i), p == null ? TaskStore.DEFAULT_PARTITION : p);
+        }
+        return result;
+    }
+
+    private void scan(String pattern, Consumer<List<byte[]>> each) {
+        int batch = Math.max(1, migrateBatch);
+        ScanCursor cursor = ScanCursor.INITIAL;
+        do {
+            KeyScanCursor<byte[]> page = RedisKeyspace.scanPage(stringRedisTemplate, cursor, pattern, batch);
+            if (!page.getKeys().isEmpty()) each.accept(page.getKeys());
+            renewLock();
+            cursor = page;
+        } while (!cursor.isFinished());
+    }
+
+    private void rename(List<byte[]> keys, UnaryOperator<String> target) {
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] k : keys) {
+                    String to = target.apply(string(k));
+                    if (to != null) connection.keyCommands().renameNX(k, bytes(to));
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // 扫到之后过期的 key 报 no such key，其余照常
+            results = e.getPipelineResult();
+        }
+        for (Object r : results) {
+            if (Boolean.TRUE.equals(r)) migrated++;
+            else migrateConflicts++;
+        }
+    }
+
+    private static int parseVersion(String v) {
+        try {
+            return v == null ? 0 : Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
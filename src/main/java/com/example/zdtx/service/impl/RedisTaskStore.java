@@ -0,0 +1,371 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.RedisGatewayService;
+import com.example.zdtx.service.TaskStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * Redis 存储：读走合并网关，写直接发；批量读写用 pipeline。
+ * 每个视图对应一个分区，等待队列、详情、截止时间、启动标记、占用都用 {分区} tag 的 key（默认分区是 {_default}），
+ * 和在途脚本用到的 key 同槽；非默认分区入队时写 task:house:<code> 索引，并登记到 {zdtx}partitions
+ */
+@Service
+@ConditionalOnProperty(name = "zdtx.store.type", havingValue = "redis", matchIfMissing = true)
+public class RedisTaskStore implements TaskStore {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisGatewayService redisGatewayService;
+
+    private final String partition;
+
+    // 已登记的非默认分区，各视图共用；本进程写入时登记，partitions() 定期从 Redis 补
+    private final Set<String> known;
+    private final AtomicLong knownRefreshedAt;
+
+    @Autowired
+    public RedisTaskStore(StringRedisTemplate stringRedisTemplate, RedisGatewayService redisGatewayService) {
+        this(stringRedisTemplate, redisGatewayService, DEFAULT_PARTITION, ConcurrentHashMap.newKeySet(), new AtomicLong());
+    }
+
+    private RedisTaskStore(StringRedisTemplate stringRedisTemplate, RedisGatewayService redisGatewayService,
+                           String partition, Set<String> known, AtomicLong knownRefreshedAt) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisGatewayService = redisGatewayService;
+        this.partition = partition;
+        this.known = known;
+        this.knownRefreshedAt = knownRefreshedAt;
+    }
+
+    // 占用时间线保留时长，防止终点下线后 key 残留
+    private static final long OCCUPANCY_TTL_HOURS = 24;
+
+    // 分区列表的本地缓存时长
+    private static final long PARTITIONS_CACHE_MS = 5000;
+
+    /**
+     * 分区的等待队列 key（在途回收重新入队时也要用）
+     */
+    public static String waitingKey(String partition) {
+        return key(partition, TASK_WAITING_ZSET);
+    }
+
+    @Override
+    public boolean shared() {
+        return true;
+    }
+
+    @Override
+    public TaskStore partition(String partition) {
+        String p = partition == null ? DEFAULT_PARTITION : partition;
+        return p.equals(this.partition) ? this
+                : new RedisTaskStore(stringRedisTemplate, redisGatewayService, p, known, knownRefreshedAt);
+    }
+
+    @Override
+    public Set<String> partitions() {
+        long now = System.currentTimeMillis();
+        if (now - knownRefreshedAt.get() >= PARTITIONS_CACHE_MS) {
+            Set<String> members = stringRedisTemplate.opsForSet().members(PARTITIONS);
+            if (members != null) known.addAll(members);
+            knownRefreshedAt.set(now);
+        }
+        return new TreeSet<>(known);
+    }
+
+    @Override
+    public String partitionOfTask(String code) {
+        String p = redisGatewayService.get(TASK_HOUSE + code);
+        return p == null ? DEFAULT_PARTITION : p;
+    }
+
+    @Override
+    public void addWaiting(String code, double score) {
+        register();
+        stringRedisTemplate.opsForZSet().add(waitingKey(partition), code, score);
+    }
+
+    @Override
+    public Double waitingScore(String code) {
+        return stringRedisTemplate.opsForZSet().score(waitingKey(partition), code);
+    }
+
+    @Override
+    public boolean removeWaiting(String code) {
+        Long n = stringRedisTemplate.opsForZSet().remove(waitingKey(partition), code);
+        return n != null && n > 0;
+    }
+
+    @Override
+    public List<String> waitingByScoreDesc() {
+        Set<String> codes = stringRedisTemplate.opsForZSet().reverseRange(waitingKey(partition), 0, -1);
+        return codes == null ? Collections.emptyList() : new ArrayList<>(codes);
+    }
+
+    @Override
+    public List<String> waitingTop(int n) {
+        Set<String> codes = stringRedisTemplate.opsForZSet().reverseRange(waitingKey(partition), 0, n <= 0 ? -1 : n - 1);
+        return codes == null ? Collections.emptyList() : new ArrayList<>(codes);
+    }
+
+    @Override
+    public long waitingSize() {
+        Long n = stringRedisTemplate.opsForZSet().zCard(waitingKey(partition));
+        return n == null ? 0L : n;
+    }
+
+    @Override
+    public void enqueueAll(List<Waiting> batch) {
+        if (batch == null || batch.isEmpty()) return;
+        register();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Waiting w : batch) {
+                connection.zSetCommands().zAdd(bytes(waitingKey(partition)), w.score, bytes(w.code));
+                if (w.fields != null && !w.fields.isEmpty()) {
+                    connection.hashCommands().hMSet(bytes(infoKey(w.code)), toBytes(w.fields));
+                }
+                if (!partition.isEmpty()) {
+                    connection.stringCommands().set(bytes(TASK_HOUSE + w.code), bytes(partition));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void putTask(String code, Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) return;
+        register();
+        stringRedisTemplate.<String, String>opsForHash().putAll(infoKey(code), fields);
+        if (!partition.isEmpty()) stringRedisTemplate.opsForValue().set(TASK_HOUSE + code, partition);
+    }
+
+    @Override
+    public Map<String, String> getTask(String code) {
+        return redisGatewayService.hgetAll(infoKey(code));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getTaskAsync(String code) {
+        return redisGatewayService.hgetAllAsync(infoKey(code));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Map<String, String>> getTasks(List<String> codes) {
+        if (codes == null || codes.isEmpty()) return Collections.emptyList();
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String code : codes) {
+                    ops.opsForHash().entries(infoKey(code));
+                }
+                return null;
+            }
+        });
+        List<Map<String, String>> list = new ArrayList<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            Object r = results != null && i < results.size() ? results.get(i) : null;
+            list.add(r instanceof Map ? (Map<String, String>) r : Collections.emptyMap());
+        }
+        return list;
+    }
+
+    @Override
+    public void deleteTask(String code) {
+        if (partition.isEmpty()) {
+            stringRedisTemplate.delete(infoKey(code));
+        } else {
+            stringRedisTemplate.delete(Arrays.asList(infoKey(code), TASK_HOUSE + code));
+        }
+    }
+
+    @Override
+    public void dispatched(String code) {
+        // TaskLifecycleServiceImpl 的下发脚本里已 DEL task:info
+    }
+
+    @Override
+    public Long nodeAvailableAt(String node) {
+        String v = stringRedisTemplate.opsForValue().get(NODE_AVAILABLE + node);
+        try {
+            return v == null ? null : Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void setNodeAvailableAt(String node, long at) {
+        stringRedisTemplate.opsForValue().set(NODE_AVAILABLE + node, String.valueOf(at));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> occupancy(String node, long now) {
+        List<String> keys = new ArrayList<>();
+        keys.add(key(DEFAULT_PARTITION, NODE_OCCUPANCY) + node);
+        for (String p : partitions()) keys.add(key(p, NODE_OCCUPANCY) + node);
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String k : keys) {
+                    ops.opsForZSet().rangeByScoreWithScores(k, now, Double.MAX_VALUE);
+                }
+                return null;
+            }
+        });
+        List<Long> releases = new ArrayList<>();
+        for (Object r : results) {
+            if (!(r instanceof Set)) continue;
+            for (ZSetOperations.TypedTuple<String> t : (Set<ZSetOperations.TypedTuple<String>>) r) {
+                if (t.getScore() != null) releases.add(t.getScore().longValue());
+            }
+        }
+        return releases;
+    }
+
+    @Override
+    public void occupy(String node, String code, long releaseAt, long now) {
+        byte[] key = bytes(key(partition, NODE_OCCUPANCY) + node);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zRemRangeByScore(key, 0, now - 1);
+            connection.zSetCommands().zAdd(key, releaseAt, bytes(code));
+            connection.keyCommands().expire(key, TimeUnit.HOURS.toSeconds(OCCUPANCY_TTL_HOURS));
+            return null;
+        });
+    }
+
+    @Override
+    public void reoccupy(String node, String code, long releaseAt) {
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zSetCommands()
+                .zAdd(bytes(key(partition, NODE_OCCUPANCY) + node), releaseAt, bytes(code), RedisZSetCommands.ZAddArgs.ifExists()));
+    }
+
+    @Override
+    public void addDue(Map<String, Long> dueAt) {
+        if (dueAt == null || dueAt.isEmpty()) return;
+        byte[] key = bytes(key(partition, TASK_DUE_ZSET));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            dueAt.forEach((code, at) -> connection.zSetCommands().zAdd(key, at, bytes(code)));
+            return null;
+        });
+    }
+
+    @Override
+    public void removeDue(String code) {
+        stringRedisTemplate.opsForZSet().remove(key(partition, TASK_DUE_ZSET), code);
+    }
+
+    @Override
+    public long countDue(long from, long to) {
+        Long n = stringRedisTemplate.opsForZSet().count(key(partition, TASK_DUE_ZSET), from, to);
+        return n == null ? 0L : n;
+    }
+
+    @Override
+    public long pruneDue(long before) {
+        Long n = stringRedisTemplate.opsForZSet().removeRangeByScore(key(partition, TASK_DUE_ZSET), Double.NEGATIVE_INFINITY, before - 1);
+        return n == null ? 0L : n;
+    }
+
+    @Override
+    public List<String> getStats(String key, List<String> fields) {
+        return redisGatewayService.hmget(key, fields);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getStatsAsync(String key, List<String> fields) {
+        return redisGatewayService.hmgetAsync(key, fields);
+    }
+
+    @Override
+    public void putStats(String key, Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) return;
+        stringRedisTemplate.<String, String>opsForHash().putAll(key, fields);
+    }
+
+    @Override
+    public void incrStats(String key, Map<String, Long> deltas, long ttlMs) {
+        if (deltas == null || deltas.isEmpty()) return;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] k = bytes(key);
+            deltas.forEach((f, d) -> connection.hashCommands().hIncrBy(k, bytes(f), d));
+            if (ttlMs > 0) connection.keyCommands().pExpire(k, ttlMs);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean markStarted(String code, long at) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(key(partition, TASK_COMPLETED_SET) + code, String.valueOf(at)));
+    }
+
+    @Override
+    public String startMarker(String code) {
+        return redisGatewayService.get(key(partition, TASK_COMPLETED_SET) + code);
+    }
+
+    @Override
+    public void setStartMarker(String code, String value, long ttlMs) {
+        String k = key(partition, TASK_COMPLETED_SET) + code;
+        if (ttlMs > 0) {
+            stringRedisTemplate.opsForValue().set(k, value, ttlMs, TimeUnit.MILLISECONDS);
+            // 分区索引跟启动标记一起过期，去重精确检查期间还找得到分区
+            if (!partition.isEmpty()) stringRedisTemplate.expire(TASK_HOUSE + code, ttlMs, TimeUnit.MILLISECONDS);
+        } else {
+            stringRedisTemplate.opsForValue().set(k, value);
+        }
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) {
+        return redisGatewayService.await(future);
+    }
+
+    private String infoKey(String code) {
+        return key(partition, TASK_INFO) + code;
+    }
+
+    /**
+     * 非默认分区第一次写入时登记
+     */
+    private void register() {
+        if (partition.isEmpty() || known.contains(partition)) return;
+        stringRedisTemplate.opsForSet().add(PARTITIONS, partition);
+        known.add(partition);
+    }
+
+    private static Map<byte[], byte[]> toBytes(Map<String, String> fields) {
+        Map<byte[], byte[]> hash = new HashMap<>(fields.size());
+        fields.forEach((k, v) -> {
+            if (v != null) hash.put(bytes(k), bytes(v));
+        });
+        return hash;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.CompletedDayVO;
+import com.example.zdtx.domain.vo.HistogramVO;
+import com.example.zdtx.domain.vo.RetentionVO;
+import com.example.zdtx.service.RetentionService;
+import com.example.zdtx.service.TaskStore;
+import com.example.zdtx.utils.LogHistogram;
+import com.example.zdtx.utils.RedisKeyspace;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * task:completed:<code> 的保留策略：
+ * 1. 完成回报时改写成耗时并设 TTL（默认 2 天，不短于去重窗口的 2 倍，保证去重精确检查仍然有效），
+ *    耗时按完成日期计入 stats:completed:yyyyMMdd（计数 / 总和 / 对数分桶），汇总本身保留 rollup-days 天
+ * 2. 后台按 SCAN 游标分批压缩存量（没有 TTL 的）key：已是耗时的收进所在分区的 stats:completed:legacy 后设 TTL；
+ *    启动时间超过 stale-start-ms 且不在所在分区在途索引里的（没回报、死信、取消）直接设 TTL；其余还在用，跳过。
+ *    一页扫出的 key 按分区分组，每组一次脚本，脚本只碰一个槽
+ * 3. 游标按实例保存，多个实例一起压缩也只是重复检查，脚本里先看 PTTL，不会重复计入汇总
+ */
+@Service
+@RequiredArgsConstructor
+public class RetentionServiceImpl implements RetentionService {
+
+    private final TaskStore taskStore;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    // false 时完成回报照旧永久保留，也不做汇总和压缩
+    @Value("${zdtx.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.retention.completed-ttl-ms:172800000}")
+    private long completedTtlMs;
+
+    @Value("${zdtx.retention.stale-start-ms:604800000}")
+    private long staleStartMs;
+
+    @Value("${zdtx.retention.rollup-days:90}")
+    private int rollupDays;
+
+    // 每次压缩最多扫多少个 key
+    @Value("${zdtx.retention.compact-batch:1000}")
+    private int compactBatch;
+
+    @Value("${zdtx.dedupe.window-ms:86400000}")
+    private long dedupeWindowMs;
+
+    // 小于它的值是耗时，否则是启动时间戳（2001 年以后的毫秒数）
+    private static final long START_FLOOR = 1_000_000_000_000L;
+
+    private static final int SCAN_COUNT = 200;
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // KEYS: running, legacy, task:completed:*...
+    // ARGV: now, staleStartMs, ttlMs, startFloor, keyPrefix
+    // 返回 {已有 TTL, 已完成设 TTL, 超期未回报设 TTL, 还在用}
+    private static final String COMPACT_LUA =
+            "local r = {0, 0, 0, 0}\n" +
+            "for i = 3, #KEYS do\n" +
+            "  local k = KEYS[i]\n" +
+            "  if redis.call('PTTL', k) ~= -1 then\n" +
+            "    r[1] = r[1] + 1\n" +
+            "  else\n" +
+            "    local v = tonumber(redis.call('GET', k) or '')\n" +
+            "    if v and v < tonumber(ARGV[4]) then\n" +
+            "      local b, x = 0, v\n" +
+            "      while x >= 1 do x = math.floor(x / 2); b = b + 1 end\n" +
+            "      redis.call('HINCRBY', KEYS[2], 'count', 1)\n" +
+            "      redis.call('HINCRBY', KEYS[2], 'sum_ms', v)\n" +
+            "      redis.call('HINCRBY', KEYS[2], 'b' .. b, 1)\n" +
+            "      redis.call('PEXPIRE', k, ARGV[3])\n" +
+            "      r[2] = r[2] + 1\n" +
+            "    elseif ((not v) or tonumber(ARGV[1]) - v > tonumber(ARGV[2]))\n" +
+            "        and not redis.call('ZSCORE', KEYS[1], string.sub(k, #ARGV[5] + 1)) then\n" +
+            "      redis.call('PEXPIRE', k, ARGV[3])\n" +
+            "      r[3] = r[3] + 1\n" +
+            "    else\n" +
+            "      r[4] = r[4] + 1\n" +
+            "    end\n" +
+            "  end\n" +
+            "end\n" +
+            "return r";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> COMPACT = new DefaultRedisScript<>(COMPACT_LUA, List.class);
+
+    // 集群模式下游标里带着扫到哪个节点，要把上一页的游标对象原样传回
+    private volatile ScanCursor cursor = ScanCursor.INITIAL;
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong withTtl = new AtomicLong();
+    private final AtomicLong expiredFinished = new AtomicLong();
+    private final AtomicLong expiredStale = new AtomicLong();
+    private final AtomicLong live = new AtomicLong();
+    private volatile long lastRunAt;
+    private volatile long lastRunMs;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        if (enabled && completedTtlMs < 2 * dedupeWindowMs) {
+            System.out.println("[" + ts() + "] 注意：completed-ttl-ms（" + completedTtlMs + "）短于去重窗口的 2 倍，"
+                    + "过期后同号指令可能被当成新指令重新入队");
+        }
+    }
+
+    // ===================== 完成回报 =====================
+
+    @Override
+    public void onFinished(String partition, String instructionCode, long durationMs, long finishedAt) {
+        taskStore.partition(partition).setStartMarker(instructionCode, String.valueOf(durationMs), enabled ? completedTtlMs : 0L);
+        if (!enabled) return;
+        taskStore.incrStats(dayKey(finishedAt), rollup(durationMs), rollupTtlMs());
+    }
+
+    @Override
+    public Mono<Void> onFinishedAsync(String partition, String instructionCode, long durationMs, long finishedAt) {
+        String key = key(partition, TASK_COMPLETED_SET) + instructionCode;
+        String value = String.valueOf(durationMs);
+        if (!enabled) {
+            return reactiveStringRedisTemplate.opsForValue().set(key, value).then();
+        }
+        String day = dayKey(finishedAt);
+        ReactiveHashOperations<String, String, String> hash = reactiveStringRedisTemplate.opsForHash();
+        // 分区索引跟启动标记一起过期，同 RedisTaskStore.setStartMarker
+        Mono<Boolean> house = partition.isEmpty() ? Mono.just(Boolean.TRUE)
+                : reactiveStringRedisTemplate.expire(TASK_HOUSE + instructionCode, Duration.ofMillis(completedTtlMs));
+        return Mono.when(
+                        reactiveStringRedisTemplate.opsForValue().set(key, value, Duration.ofMillis(completedTtlMs)),
+                        house,
+                        hash.increment(day, "count", 1L),
+                        hash.increment(day, "sum_ms", durationMs),
+                        hash.increment(day, "b" + LogHistogram.bucketOf(durationMs), 1L))
+                .then(reactiveStringRedisTemplate.expire(day, Duration.ofMillis(rollupTtlMs())))
+                .then();
+    }
+
+    // ===================== 压缩 =====================
+
+    @Scheduled(fixedDelayString = "${zdtx.retention.compact-interval-ms:60000}", initialDelay = 30000)
+    public void scheduledCompact() {
+        if (enabled) compact();
+    }
+
+    @Override
+    public synchronized RetentionVO compact() {
+        long start = System.currentTimeMillis();
+        try {
+            int budget = Math.max(1, compactBatch);
+            while (budget > 0) {
+                KeyScanCursor<byte[]> page = RedisKeyspace.scanPage(stringRedisTemplate, cursor, "*" + TASK_COMPLETED_SET + "*", SCAN_COUNT);
+                Map<String, List<String>> groups = new HashMap<>();
+                for (byte[] k : page.getKeys()) {
+                    String name = new String(k, StandardCharsets.UTF_8);
+                    String p = partitionOfKey(name);
+                    if (p == null || !name.startsWith(key(p, TASK_COMPLETED_SET))) continue;
+                    groups.computeIfAbsent(p, x -> new ArrayList<>(Arrays.asList(
+                            key(x, TASK_RUNNING_ZSET), key(x, STATS_COMPLETED_LEGACY)))).add(name);
+                }
+                groups.forEach((p, keys) -> apply(p, keys, start));
+                budget -= page.getKeys().size();
+                cursor = page;
+                if (page.isFinished()) {
+                    cursor = ScanCursor.INITIAL;
+                    passes.incrementAndGet();
+                    break;
+                }
+            }
+            lastError = null;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            System.out.println("[" + ts() + "] task:completed 压缩跳过：" + e.getMessage());
+        } finally {
+            lastRunAt = start;
+            lastRunMs = System.currentTimeMillis() - start;
+        }
+        return info();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(String partition, List<String> keys, long now) {
+        List<Long> r = (List<Long>) stringRedisTemplate.execute(COMPACT, keys,
+                String.valueOf(now), String.valueOf(staleStartMs), String.valueOf(completedTtlMs),
+                String.valueOf(START_FLOOR), key(partition, TASK_COMPLETED_SET));
+        if (r == null || r.size() < 4) return;
+        scanned.addAndGet(keys.size() - 2L);
+        withTtl.addAndGet(r.get(0));
+        expiredFinished.addAndGet(r.get(1));
+        expiredStale.addAndGet(r.get(2));
+        live.addAndGet(r.get(3));
+    }
+
+    // ===================== 查询 =====================
+
+    @Override
+    public RetentionVO info() {
+        return new RetentionVO(enabled, completedTtlMs, staleStartMs, rollupDays, cursor.getCursor(), passes.get(),
+                scanned.get(), withTtl.get(), expiredFinished.get(), expiredStale.get(), live.get(),
+                lastRunAt, lastRunMs, lastError);
+    }
+
+    @Override
+    public List<CompletedDayVO> days(int days) {
+        int n = Math.max(1, Math.min(days, rollupDays));
+        List<String> fields = new ArrayList<>(LogHistogram.BUCKETS + 2);
+        fields.add("count");
+        fields.add("sum_ms");
+        for (int i = 0; i < LogHistogram.BUCKETS; i++) {
+            fields.add("b" + i);
+        }
+        List<CompletedDayVO> list = new ArrayList<>(n + 1);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < n; i++) {
+            String day = today.minusDays(i).format(DAY);
+            list.add(new CompletedDayVO(day, histogram(taskStore.getStats(STATS_COMPLETED + day, fields))));
+        }
+        // 存量耗时按分区记，合起来看
+        List<String> partitions = new ArrayList<>();
+        partitions.add(TaskStore.DEFAULT_PARTITION);
+        partitions.addAll(taskStore.partitions());
+        long[] legacy = new long[fields.size()];
+        for (String p : partitions) {
+            List<String> values = taskStore.getStats(key(p, STATS_COMPLETED_LEGACY), fields);
+            for (int i = 0; i < legacy.length; i++) legacy[i] += parse(values.get(i));
+        }
+        List<String> merged = new ArrayList<>(legacy.length);
+        for (long v : legacy) merged.add(String.valueOf(v));
+        list.add(new CompletedDayVO("legacy", histogram(merged)));
+        return list;
+    }
+
+    private static HistogramVO histogram(List<String> values) {
+        long[] b = new long[LogHistogram.BUCKETS];
+        long max = 0;
+        for (int i = 0; i < b.length; i++) {
+            b[i] = parse(values.get(i + 2));
+            if (b[i] > 0) max = i == 0 ? 0L : (1L << i) - 1;
+        }
+        return LogHistogram.of(b, parse(values.get(0)), parse(values.get(1)), max);
+    }
+
+    // ===================== 工具方法 =====================
+
+    private static Map<String, Long> rollup(long durationMs) {
+        Map<String, Long> m = new HashMap<>(4);
+        m.put("count", 1L);
+        m.put("sum_ms", durationMs);
+        m.put("b" + LogHistogram.bucketOf(durationMs), 1L);
+        return m;
+    }
+
+    private static String dayKey(long at) {
+        return STATS_COMPLETED + Instant.ofEpochMilli(at).atZone(ZoneId.systemDefault()).toLocalDate().format(DAY);
+    }
+
+    // 当天最后一次写入后再留 rollup-days 天
+    private long rollupTtlMs() {
+        return Math.max(1, rollupDays) * 86_400_000L;
+    }
+
+    private static long parse(String s) {
+        try { return s == null ? 0L : Long.parseLong(s); }
+        catch (NumberFormatException e) { return 0L; }
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
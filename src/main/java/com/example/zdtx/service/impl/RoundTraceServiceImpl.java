@@ -0,0 +1,297 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.RoundTraceVO;
+import com.example.zdtx.domain.vo.TraceStageVO;
+import com.example.zdtx.domain.vo.TraceVO;
+import com.example.zdtx.service.RoundTraceService;
+import com.example.zdtx.utils.LogHistogram;
+import com.example.zdtx.utils.PooledHttpClient;
+import com.example.zdtx.utils.RoundTrace;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 调度轮次追踪：
+ * 1. begin 时按 sample-rate 掷一次骰子，没采中直接返回 null，调度代码里的埋点全部跳过（未采样只多一次随机数）
+ * 2. 采中的轮次结束后进“最慢 keep-slowest 轮”的小顶堆，再交给有界队列，满了丢弃，不拖慢调度
+ * 3. 后台线程按 export 导出：json 追加到 json-dir/trace-yyyyMMdd.ndjson，一轮一行；
+ *    otlp 按 OTLP/HTTP JSON 攒批 POST 到本地 collector，一轮一个根 span，各阶段为子 span
+ */
+@Service
+@RequiredArgsConstructor
+public class RoundTraceServiceImpl implements RoundTraceService {
+
+    private final PooledHttpClient pooledHttpClient;
+
+    @Value("${zdtx.trace.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.trace.sample-rate:0.01}")
+    private double initialSampleRate;
+
+    @Value("${zdtx.trace.keep-slowest:50}")
+    private int keepSlowest;
+
+    // none / json / otlp
+    @Value("${zdtx.trace.export:none}")
+    private String export;
+
+    @Value("${zdtx.trace.json-dir:trace}")
+    private String jsonDir;
+
+    @Value("${zdtx.trace.otlp-endpoint:http://127.0.0.1:4318/v1/traces}")
+    private String otlpEndpoint;
+
+    @Value("${zdtx.trace.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${zdtx.trace.export-batch:64}")
+    private int exportBatch;
+
+    @Value("${spring.application.name:zdtx}")
+    private String serviceName;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private volatile double sampleRate;
+
+    // 按耗时的小顶堆，堆顶是留下的里面最快的一轮
+    private final PriorityQueue<RoundTraceVO> slowest = new PriorityQueue<>(Comparator.comparingLong(RoundTraceVO::getElapsedUs));
+
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong exportFailures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final LogHistogram roundUs = new LogHistogram();
+    private volatile String lastError;
+
+    private ArrayBlockingQueue<RoundTraceVO> queue;
+    private Thread exporter;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        sampleRate = enabled ? Math.max(0.0, Math.min(1.0, initialSampleRate)) : 0.0;
+        if (!enabled || "none".equalsIgnoreCase(export)) return;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        exporter = new Thread(this::exportLoop, "round-trace-exporter");
+        exporter.setDaemon(true);
+        exporter.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (exporter != null) exporter.interrupt();
+    }
+
+    @Override
+    public RoundTrace begin(String partition) {
+        double rate = sampleRate;
+        if (rate <= 0.0 || (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return null;
+        }
+        RoundTrace trace = new RoundTrace(partition);
+        trace.attach();
+        return trace;
+    }
+
+    @Override
+    public void finish(RoundTrace trace) {
+        if (trace == null) return;
+        trace.finish();
+        RoundTraceVO vo = toVO(trace);
+        sampled.incrementAndGet();
+        roundUs.record(vo.getElapsedUs());
+        synchronized (slowest) {
+            if (slowest.size() < Math.max(1, keepSlowest)) {
+                slowest.add(vo);
+            } else if (slowest.peek().getElapsedUs() < vo.getElapsedUs()) {
+                slowest.poll();
+                slowest.add(vo);
+            }
+        }
+        if (queue != null && !queue.offer(vo)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public TraceVO stats() {
+        return new TraceVO(enabled, sampleRate, export, sampled.get(), exported.get(), exportFailures.get(),
+                dropped.get(), roundUs.snapshot(), lastError);
+    }
+
+    @Override
+    public List<RoundTraceVO> slowest(int n) {
+        List<RoundTraceVO> list;
+        synchronized (slowest) {
+            list = new ArrayList<>(slowest);
+        }
+        list.sort(Comparator.comparingLong(RoundTraceVO::getElapsedUs).reversed());
+        return list.size() > n ? new ArrayList<>(list.subList(0, Math.max(0, n))) : list;
+    }
+
+    @Override
+    public TraceVO sample(double rate) {
+        if (enabled) {
+            sampleRate = Math.max(0.0, Math.min(1.0, rate));
+            System.out.println("[" + ts() + "] 调度追踪采样比例调整为 " + sampleRate);
+        }
+        return stats();
+    }
+
+    private static RoundTraceVO toVO(RoundTrace trace) {
+        List<TraceStageVO> stages = trace.stages().stream()
+                .map(s -> new TraceStageVO(s.name, s.parent, s.depth, TimeUnit.NANOSECONDS.toMicros(s.firstStartNanos),
+                        TimeUnit.NANOSECONDS.toMicros(s.totalNanos), s.calls, s.redisCommands))
+                .collect(Collectors.toList());
+        return new RoundTraceVO(trace.traceId, trace.partition, trace.startedAtMs,
+                TimeUnit.NANOSECONDS.toMicros(trace.elapsedNanos), trace.redisCommands,
+                new LinkedHashMap<>(trace.attributes), stages);
+    }
+
+    // ===================== 导出 =====================
+
+    private void exportLoop() {
+        List<RoundTraceVO> batch = new ArrayList<>();
+        while (running) {
+            try {
+                RoundTraceVO first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, Math.max(1, exportBatch) - 1);
+                if ("otlp".equalsIgnoreCase(export)) {
+                    postOtlp(batch);
+                } else {
+                    appendJson(batch);
+                }
+                exported.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                exportFailures.addAndGet(batch.size());
+                lastError = e.getMessage();
+                System.out.println("[" + ts() + "] 调度追踪导出失败（" + batch.size() + " 轮）：" + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void appendJson(List<RoundTraceVO> batch) throws IOException {
+        Path dir = Paths.get(jsonDir);
+        Files.createDirectories(dir);
+        StringBuilder lines = new StringBuilder();
+        for (RoundTraceVO vo : batch) {
+            lines.append(MAPPER.writeValueAsString(vo)).append('\n');
+        }
+        Path file = dir.resolve("trace-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + ".ndjson");
+        Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    private void postOtlp(List<RoundTraceVO> batch) throws IOException {
+        ObjectNode root = MAPPER.createObjectNode();
+        ObjectNode resourceSpans = root.putArray("resourceSpans").addObject();
+        attr(resourceSpans.putObject("resource").putArray("attributes"), "service.name", serviceName);
+        ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", "zdtx.dispatch");
+        ArrayNode spans = scopeSpans.putArray("spans");
+
+        for (RoundTraceVO vo : batch) {
+            long startNs = TimeUnit.MILLISECONDS.toNanos(vo.getStartedAt());
+            String rootId = spanId(vo.getTraceId(), "");
+            ObjectNode span = span(spans, vo.getTraceId(), rootId, null, "dispatch.round",
+                    startNs, startNs + TimeUnit.MICROSECONDS.toNanos(vo.getElapsedUs()));
+            ArrayNode attrs = span.putArray("attributes");
+            attr(attrs, "zdtx.partition", vo.getPartition());
+            attr(attrs, "zdtx.redis_commands", vo.getRedisCommands());
+            vo.getAttributes().forEach((k, v) -> attr(attrs, "zdtx." + k, v));
+
+            // 同名阶段是累计值：span 覆盖第一次进入到累计结束，真实占用放在 zdtx.total_us
+            for (TraceStageVO s : vo.getStages()) {
+                String id = spanId(vo.getTraceId(), s.getName());
+                String parent = s.getParent() == null ? rootId : spanId(vo.getTraceId(), s.getParent());
+                long from = startNs + TimeUnit.MICROSECONDS.toNanos(s.getOffsetUs());
+                ObjectNode child = span(spans, vo.getTraceId(), id, parent, s.getName(),
+                        from, from + TimeUnit.MICROSECONDS.toNanos(s.getTotalUs()));
+                ArrayNode ca = child.putArray("attributes");
+                attr(ca, "zdtx.total_us", s.getTotalUs());
+                attr(ca, "zdtx.calls", s.getCalls());
+                attr(ca, "zdtx.redis_commands", s.getRedisCommands());
+            }
+        }
+
+        Map<String, String> headers = Collections.singletonMap("Content-Type", "application/json");
+        PooledHttpClient.Response resp = pooledHttpClient.execute("POST", otlpEndpoint, headers,
+                MAPPER.writeValueAsBytes(root));
+        if (resp.status() / 100 != 2) {
+            throw new IOException("collector 返回 HTTP " + resp.status());
+        }
+    }
+
+    private static ObjectNode span(ArrayNode spans, String traceId, String spanId, String parentId, String name,
+                                   long startNs, long endNs) {
+        ObjectNode span = spans.addObject();
+        span.put("traceId", traceId);
+        span.put("spanId", spanId);
+        if (parentId != null) span.put("parentSpanId", parentId);
+        span.put("name", name);
+        // SPAN_KIND_INTERNAL
+        span.put("kind", 1);
+        span.put("startTimeUnixNano", String.valueOf(startNs));
+        span.put("endTimeUnixNano", String.valueOf(endNs));
+        return span;
+    }
+
+    private static void attr(ArrayNode attrs, String key, Object value) {
+        ObjectNode a = attrs.addObject();
+        a.put("key", key);
+        if (value instanceof Number) {
+            a.putObject("value").put("intValue", String.valueOf(((Number) value).longValue()));
+        } else {
+            a.putObject("value").put("stringValue", value == null ? "" : String.valueOf(value));
+        }
+    }
+
+    /**
+     * 由 traceId 和阶段名推出 16 位十六进制的 span id，同一轮里各阶段互不相同
+     */
+    private static String spanId(String traceId, String stage) {
+        long h = 1125899906842597L;
+        for (char c : (traceId + "/" + stage).toCharArray()) {
+            h = 31 * h + c;
+        }
+        String s = Long.toHexString(h == 0 ? 1 : h);
+        return "0000000000000000".substring(s.length()) + s;
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.RouteLoadVO;
+import com.example.zdtx.domain.vo.RouteVO;
+import com.example.zdtx.service.RouteService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.zdtx.constants.RedisConstants.ROUTE_LOAD;
+import static com.example.zdtx.constants.RedisConstants.key;
+
+/**
+ * 拥堵感知的行驶方向选择：
+ * 1. 段负载 = route:load 里该段的在途任务数，由 TaskLifecycleServiceImpl 的下发 / 完成 / 回收脚本原子增减；
+ *    route:load 按分区分开，各分区的车走同一张拓扑，这里把各分区的加起来
+ * 2. 候选路径：顺时针、逆时针（同一环线上才有）、最短路，路径相同的只算一次
+ * 3. 预计用时 = Σ 段行驶毫秒 × (1 + congestionFactor × 段在途数)，取最小的
+ * 4. 滞回：同一起终点对上次选的方向保持至少 minHoldMs，且新方向要快出 hysteresis 比例才换
+ * 内存存储下生命周期脚本不跑，没有段负载，退化成按静态用时选
+ */
+@Service
+@RequiredArgsConstructor
+public class RouteServiceImpl implements RouteService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final TaskStore taskStore;
+
+    // false 时一律走最短路，但段负载照常统计
+    @Value("${zdtx.route.congestion-aware:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.route.congestion-factor:0.5}")
+    private double congestionFactor;
+
+    @Value("${zdtx.route.hysteresis:0.15}")
+    private double hysteresis;
+
+    @Value("${zdtx.route.min-hold-ms:10000}")
+    private long minHoldMs;
+
+    // 记方向的起终点对上限，超过就整体清掉重新记
+    private static final int MAX_STICKY = 10000;
+
+    private static final Topology.DirectionPolicy[] POLICIES = {
+            Topology.DirectionPolicy.CLOCKWISE,
+            Topology.DirectionPolicy.COUNTERCLOCKWISE,
+            Topology.DirectionPolicy.SHORTEST
+    };
+
+    private static class Sticky {
+        final Topology.DirectionPolicy policy;
+        final long since;
+
+        Sticky(Topology.DirectionPolicy policy, long since) {
+            this.policy = policy;
+            this.since = since;
+        }
+    }
+
+    private final Map<String, Sticky> sticky = new ConcurrentHashMap<>();
+
+    private final AtomicLong chosen = new AtomicLong();
+    private final AtomicLong switched = new AtomicLong();
+    private final AtomicLong held = new AtomicLong();
+
+    @Override
+    public Map<String, Integer> segmentLoad() {
+        if (!taskStore.shared()) return Collections.emptyMap();
+        Map<String, Integer> load = new HashMap<>();
+        addLoad(load, stringRedisTemplate.<String, String>opsForHash().entries(key(TaskStore.DEFAULT_PARTITION, ROUTE_LOAD)));
+        for (String p : taskStore.partitions()) {
+            addLoad(load, stringRedisTemplate.<String, String>opsForHash().entries(key(p, ROUTE_LOAD)));
+        }
+        return load;
+    }
+
+    @Override
+    public Mono<Map<String, Integer>> segmentLoadAsync() {
+        return Mono.fromCallable(taskStore::partitions)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(partitions -> Flux.concat(Flux.just(TaskStore.DEFAULT_PARTITION), Flux.fromIterable(partitions)))
+                .flatMap(p -> reactiveStringRedisTemplate.<String, String>opsForHash().entries(key(p, ROUTE_LOAD)))
+                .collectList()
+                .map(entries -> {
+                    Map<String, Integer> load = new HashMap<>();
+                    for (Map.Entry<String, String> e : entries) addLoad(load, Collections.singletonMap(e.getKey(), e.getValue()));
+                    return load;
+                });
+    }
+
+    @Override
+    public RouteVO choose(Topology topology, String from, String to, Map<String, Integer> load) {
+        if (topology.anchors(from).isEmpty() || topology.anchors(to).isEmpty()) {
+            return null;
+        }
+
+        // 各方向的路径与拥堵后的预计用时
+        Map<Topology.DirectionPolicy, List<Topology.Seg>> paths = new EnumMap<>(Topology.DirectionPolicy.class);
+        Map<Topology.DirectionPolicy, Long> cost = new EnumMap<>(Topology.DirectionPolicy.class);
+        Set<List<String>> seen = new HashSet<>();
+        for (Topology.DirectionPolicy policy : enabled ? POLICIES : new Topology.DirectionPolicy[]{Topology.DirectionPolicy.SHORTEST}) {
+            List<Topology.Seg> path = topology.path(from, to, policy);
+            if (!seen.add(ids(path))) continue;
+            paths.put(policy, path);
+            cost.put(policy, expectedMs(topology, path, load));
+        }
+        Topology.DirectionPolicy best = null;
+        for (Topology.DirectionPolicy p : cost.keySet()) {
+            if (best == null || cost.get(p) < cost.get(best)) best = p;
+        }
+
+        // 滞回：没到保持时间、或者快得不够多，就继续用上次的方向
+        long now = System.currentTimeMillis();
+        String key = from.trim().toUpperCase() + "|" + to.trim().toUpperCase();
+        Sticky prev = sticky.get(key);
+        Topology.DirectionPolicy pick = best;
+        if (prev != null && prev.policy != best && cost.containsKey(prev.policy)) {
+            long prevCost = cost.get(prev.policy);
+            if (now - prev.since < minHoldMs || cost.get(best) >= prevCost * (1.0 - hysteresis)) {
+                pick = prev.policy;
+                held.incrementAndGet();
+            } else {
+                switched.incrementAndGet();
+            }
+        }
+        if (prev == null || prev.policy != pick) {
+            if (sticky.size() >= MAX_STICKY) sticky.clear();
+            sticky.put(key, new Sticky(pick, now));
+        }
+        chosen.incrementAndGet();
+
+        List<String> segments = ids(paths.get(pick));
+        for (String seg : segments) {
+            load.merge(seg, 1, Integer::sum);
+        }
+        return new RouteVO(from, to, pick.name(), cost.get(pick), segments);
+    }
+
+    @Override
+    public RouteLoadVO info() {
+        Map<String, Integer> load = new TreeMap<>(segmentLoad());
+        return new RouteLoadVO(enabled, congestionFactor, hysteresis, minHoldMs, load,
+                chosen.get(), switched.get(), held.get(), sticky.size());
+    }
+
+    private long expectedMs(Topology topology, List<Topology.Seg> path, Map<String, Integer> load) {
+        double sum = 0;
+        for (Topology.Seg s : path) {
+            sum += topology.segMs(s) * (1.0 + congestionFactor * load.getOrDefault(s.id, 0));
+        }
+        return Math.round(sum);
+    }
+
+    private static List<String> ids(List<Topology.Seg> path) {
+        return path.stream().map(s -> s.id).collect(Collectors.toList());
+    }
+
+    private static void addLoad(Map<String, Integer> load, Map<String, String> raw) {
+        if (raw == null) return;
+        raw.forEach((k, v) -> {
+            try {
+                int n = Integer.parseInt(v);
+                if (n > 0) load.merge(k, n, Integer::sum);
+            } catch (NumberFormatException ignore) {
+            }
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.config.StationProperties;
+import com.example.zdtx.domain.vo.SchedulingWeightsVO;
+import com.example.zdtx.domain.vo.WeightsChangeVO;
+import com.example.zdtx.service.SchedulingWeightsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 调度权重：整组放在一个 AtomicReference 里，切换是一次引用替换，
+ * 一轮调度开始时取一次，整轮用同一组，不会出现半新半旧
+ */
+@Service
+@RequiredArgsConstructor
+public class SchedulingWeightsServiceImpl implements SchedulingWeightsService {
+
+    private final StationProperties stationProperties;
+
+    @Value("${zdtx.dispatch.weights.wp:1000}")
+    private double wp;
+
+    @Value("${zdtx.dispatch.weights.ww:5}")
+    private double ww;
+
+    @Value("${zdtx.dispatch.weights.wt:0.01}")
+    private double wt;
+
+    @Value("${zdtx.dispatch.weights.k:1.0}")
+    private double k;
+
+    @Value("${zdtx.dispatch.weights.warmup-n:5}")
+    private long warmupN;
+
+    @Value("${zdtx.dispatch.weights.safe-early-arrive-ms:5000}")
+    private long safeEarlyArriveMs;
+
+    private static final int MAX_HISTORY = 50;
+
+    private final AtomicReference<DispatchPlanner.Weights> current = new AtomicReference<>(DispatchPlanner.Weights.DEFAULTS);
+
+    private final Deque<WeightsChangeVO> history = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        // 终点处理时间的两个参数沿用 zdtx.station 下的配置
+        apply(new DispatchPlanner.Weights(wp, ww, wt, k, warmupN, safeEarlyArriveMs,
+                stationProperties.getDefaultProcessMs(), stationProperties.getWarmupN()), "启动配置");
+    }
+
+    @Override
+    public DispatchPlanner.Weights current() {
+        return current.get();
+    }
+
+    @Override
+    public DispatchPlanner.Weights apply(DispatchPlanner.Weights weights, String reason) {
+        DispatchPlanner.Weights previous = current.getAndSet(weights);
+        synchronized (history) {
+            history.addFirst(new WeightsChangeVO(System.currentTimeMillis(), reason, toVO(weights)));
+            while (history.size() > MAX_HISTORY) history.removeLast();
+        }
+        System.out.println("[" + ts() + "] 调度权重切换（" + reason + "）：" + weights);
+        return previous;
+    }
+
+    @Override
+    public List<WeightsChangeVO> history() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    @Override
+    public SchedulingWeightsVO toVO(DispatchPlanner.Weights w) {
+        return new SchedulingWeightsVO(w.wp, w.ww, w.wt, w.k, w.warmupN, w.safeEarlyArriveMs,
+                w.defaultProcessMs, w.stationWarmupN);
+    }
+
+    @Override
+    public DispatchPlanner.Weights merge(DispatchPlanner.Weights base, SchedulingWeightsVO vo) {
+        if (vo == null) return base;
+        return new DispatchPlanner.Weights(
+                vo.getWp() != null ? vo.getWp() : base.wp,
+                vo.getWw() != null ? vo.getWw() : base.ww,
+                vo.getWt() != null ? vo.getWt() : base.wt,
+                vo.getK() != null ? vo.getK() : base.k,
+                vo.getWarmupN() != null ? vo.getWarmupN() : base.warmupN,
+                vo.getSafeEarlyArriveMs() != null ? vo.getSafeEarlyArriveMs() : base.safeEarlyArriveMs,
+                vo.getDefaultProcessMs() != null ? vo.getDefaultProcessMs() : base.defaultProcessMs,
+                vo.getStationWarmupN() != null ? vo.getStationWarmupN() : base.stationWarmupN);
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
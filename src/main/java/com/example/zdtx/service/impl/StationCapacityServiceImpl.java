@@ -0,0 +1,137 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.config.StationProperties;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 终点多缓存位容量模型：
+ * 1. 每个终点有若干缓存位，占用情况存在 TaskStore 里（Redis 下是各分区的 {分区}node:occupancy:<to> ZSET，
+ *    member=指令号，score=预计释放时间，读的时候汇总各分区）；响应式版本也走 TaskStore，
+ *    统计用它的异步读，占用的读写放到 boundedElastic 上，memory 模式下不碰 Redis
+ * 2. 处理时间从 stats:station:service:<to> 学习（容器连续任务间隔减去 OD 行驶时间，即在该站的作业时间）
+ * 3. node:available:<to> 保留为“最早空闲缓存位”的时间，兼容旧逻辑
+ */
+@Service
+@RequiredArgsConstructor
+public class StationCapacityServiceImpl implements StationCapacityService {
+
+    private final StationProperties stationProperties;
+
+    private final TaskStore taskStore;
+
+    // 默认处理时间和学习样本门槛随调度权重一起调整
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    @Override
+    public int slots(String node) {
+        if (node == null) return Math.max(1, stationProperties.getDefaultSlots());
+        Integer n = stationProperties.getSlots().get(normalize(node));
+        if (n == null) n = stationProperties.getSlots().get(node.trim());
+        return Math.max(1, n == null ? stationProperties.getDefaultSlots() : n);
+    }
+
+    @Override
+    public long serviceMs(String node) {
+        if (node == null) return schedulingWeightsService.current().defaultProcessMs;
+        return blendServiceMs(taskStore.getStats(STATION_SERVICE + normalize(node), Arrays.asList("mean_ms", "count")));
+    }
+
+    @Override
+    public Mono<Long> serviceMsAsync(String node) {
+        if (node == null) return Mono.just(schedulingWeightsService.current().defaultProcessMs);
+        return Mono.fromFuture(() -> taskStore.getStatsAsync(STATION_SERVICE + normalize(node), Arrays.asList("mean_ms", "count")))
+                .map(this::blendServiceMs)
+                .defaultIfEmpty(schedulingWeightsService.current().defaultProcessMs);
+    }
+
+    /**
+     * HMGET mean_ms / count 的结果按样本数和默认值混合
+     */
+    private long blendServiceMs(List<?> vals) {
+        DispatchPlanner.Weights w = schedulingWeightsService.current();
+        long def = w.defaultProcessMs;
+        if (vals == null || vals.size() < 2 || vals.get(0) == null) {
+            return def;
+        }
+        try {
+            double mean = Double.parseDouble(String.valueOf(vals.get(0)));
+            long cnt = vals.get(1) == null ? 0 : Long.parseLong(String.valueOf(vals.get(1)));
+            double scale = Math.min(1.0, cnt / (double) Math.max(1, w.stationWarmupN));
+            return (long) (scale * mean + (1 - scale) * def);
+        } catch (Exception e) {
+            return def;
+        }
+    }
+
+    @Override
+    public long[] slotFreeTimes(String node, long now) {
+        int s = slots(node);
+        if (node == null) return toSlotFreeTimes(s, now, List.of());
+
+        return toSlotFreeTimes(s, now, taskStore.occupancy(normalize(node), now));
+    }
+
+    @Override
+    public Mono<long[]> slotFreeTimesAsync(String node, long now) {
+        int s = slots(node);
+        if (node == null) return Mono.just(toSlotFreeTimes(s, now, List.of()));
+        String n = normalize(node);
+        return Mono.fromCallable(() -> toSlotFreeTimes(s, now, taskStore.occupancy(n, now)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 占用者的释放时间 -> 各缓存位空闲时间（升序）
+     */
+    private static long[] toSlotFreeTimes(int s, long now, Collection<? extends Number> scores) {
+        long[] free = new long[s];
+        Arrays.fill(free, now);
+        // 升序的释放时间，取最大的 s 个：前面的占用者先走，最后 s 个决定各缓存位何时空出来
+        long[] releases = scores.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Number::longValue)
+                .sorted()
+                .toArray();
+        int k = releases.length;
+        for (int i = 0; i < Math.min(s, k); i++) {
+            free[s - 1 - i] = Math.max(now, releases[k - 1 - i]);
+        }
+        Arrays.sort(free);
+        return free;
+    }
+
+    @Override
+    public void occupy(String partition, String node, String instructionCode, long releaseAt, long now) {
+        if (node == null || instructionCode == null) return;
+        String n = normalize(node);
+        taskStore.partition(partition).occupy(n, instructionCode, releaseAt, now);
+
+        long earliest = slotFreeTimes(n, now)[0];
+        taskStore.setNodeAvailableAt(n, earliest);
+    }
+
+    @Override
+    public Mono<Void> occupyAsync(String partition, String node, String instructionCode, long releaseAt, long now) {
+        if (node == null || instructionCode == null) return Mono.empty();
+        return Mono.fromRunnable(() -> occupy(partition, node, instructionCode, releaseAt, now))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toUpperCase();
+    }
+}
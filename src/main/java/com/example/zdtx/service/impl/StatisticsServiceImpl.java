@@ -1,16 +1,28 @@
 package com.example.zdtx.service.impl;
 
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
 import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
 import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.RetentionService;
 import com.example.zdtx.service.StatisticsService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.service.TaskStore;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.example.zdtx.utils.EmaStats;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.example.zdtx.constants.ParameterConstants.STATS_PROCESSING_TIME_LOWER;
+import static com.example.zdtx.constants.ParameterConstants.STATS_STATION_DWELL_UPPER;
 import static com.example.zdtx.constants.ParameterConstants.STATS_PROCESSING_TIME_UPPER;
 import static com.example.zdtx.constants.RedisConstants.*;
 
@@ -18,17 +30,17 @@ import static com.example.zdtx.constants.RedisConstants.*;
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final StringRedisTemplate stringRedisTemplate;
+    private final TaskStore taskStore;
 
-    // 平滑系数（0<alpha<=1）
-    private static final double ALPHA = 0.1;
+    private final DegradedModeService degradedModeService;
 
-    // Hash 字段名
-    private static final String F_EMA1 = "ema_x";
-    private static final String F_EMA2 = "ema_x2";
-    private static final String F_MEAN = "mean_ms";
-    private static final String F_STD  = "std_ms";
-    private static final String F_CNT  = "count";
+    private final TaskLifecycleService taskLifecycleService;
+
+    private final NotifyService notifyService;
+
+    private final PartitionService partitionService;
+
+    private final RetentionService retentionService;
 
     private static final String OD_KEY_PREFIX = "stats:od:";
 
@@ -43,13 +55,29 @@ public class StatisticsServiceImpl implements StatisticsService {
             return Result.error("参数非法：指令号/起点/终点不能为空");
         }
 
+        if (degradedModeService.isDegraded()) {
+            return degradedModeService.status(requestparm);
+        }
+        try {
+            return doUpdateStatus(requestparm);
+        } catch (RuntimeException e) {
+            if (degradedModeService.tryEnter(e)) {
+                return degradedModeService.status(requestparm);
+            }
+            throw e;
+        }
+    }
+
+    private Result<Boolean> doUpdateStatus(StatusUpdateDTO requestparm) {
+
         String code = requestparm.getInstructionCode().trim();
         long now = requestparm.getTime() != null
                 ? requestparm.getTime().getTime()
                 : System.currentTimeMillis();
 
-        // 单条任务耗时：读取起始时间 → now - startedAt
-        String startedStr = stringRedisTemplate.opsForValue().get(TASK_COMPLETED_SET + code);
+        // 单条任务耗时：读取起始时间 → now - startedAt（启动标记在任务所属分区下）
+        String partition = taskStore.partitionOfTask(code);
+        String startedStr = taskStore.partition(partition).startMarker(code);
         long startedAt;
         try {
             startedAt = Long.parseLong(startedStr);
@@ -58,15 +86,21 @@ public class StatisticsServiceImpl implements StatisticsService {
         }
         long deltaMs = Math.max(0L, now - startedAt);
 
-        // 回写本条任务耗时
-        stringRedisTemplate.opsForValue().set(TASK_COMPLETED_SET + code, String.valueOf(deltaMs));
+        // 回写本条任务耗时（带过期时间），并计入当天汇总
+        retentionService.onFinished(partition, code, deltaMs, now);
+
+        // 完成回报喂给所属分区的批量控制器（完成速率 / 在途数），默认分区的就是全局的
+        partitionService.onCompleted(partition);
+
+        // 移出在途索引，终点缓存位改按实际到达时间占用
+        taskLifecycleService.onCompleted(code, requestparm.getLocationTo(), now);
 
         // ---------------- OD 耗时统计 ----------------
         String from = requestparm.getLocationFrom();
         String to   = requestparm.getLocationTo();
         String odKey = buildOdKey(from, to);
 
-        updateEmaStats(odKey, deltaMs,
+        double odMean = updateEmaStats(odKey, deltaMs,
                 "OD统计 → " + odKey);
 
         // ---------------- 容器连续任务统计 ----------------
@@ -75,10 +109,9 @@ public class StatisticsServiceImpl implements StatisticsService {
         String containerDurationKey = CONTAINER_DURATION + container;
 
         // 读取该容器上一次的结束时间 + 上一次任务的 to
-        String lastFinishStr = (String) stringRedisTemplate.opsForHash()
-                .get(containerLastKey, "last_finish_ts");
-        String lastToStr = (String) stringRedisTemplate.opsForHash()
-                .get(containerLastKey, "last_to");
+        List<String> last = taskStore.getStats(containerLastKey, Arrays.asList("last_finish_ts", "last_to"));
+        String lastFinishStr = last == null || last.isEmpty() ? null : last.get(0);
+        String lastToStr = last == null || last.size() < 2 ? null : last.get(1);
 
         // 是否连续：上一次的 to 必须等于当前 from（均 normalize）
         String currFrom = normalize(from);
@@ -98,42 +131,43 @@ public class StatisticsServiceImpl implements StatisticsService {
                         "容器连续任务统计 → " + container
                 );
             }
+
+            // 站点作业时间：同一个容器连续任务间隔减去本段 OD 的行驶时间（EMA），剩下的是在 currFrom 的作业时间；
+            // 间隔按自己的上限过滤，不受上面连续任务统计区间的限制
+            long service = containerDelta - (long) odMean;
+            if (service >= 0 && service <= STATS_STATION_DWELL_UPPER) {
+                updateEmaStats(
+                        STATION_SERVICE + currFrom,
+                        service,
+                        "站点作业统计 → " + currFrom
+                );
+            }
         }
 
         // 无论是否连续，都更新容器 last 信息
-        stringRedisTemplate.opsForHash().put(containerLastKey, "last_finish_ts", String.valueOf(now));
-        stringRedisTemplate.opsForHash().put(containerLastKey, "last_to", normalize(to));
-
+        Map<String, String> lastInfo = new HashMap<>(2);
+        lastInfo.put("last_finish_ts", String.valueOf(now));
+        lastInfo.put("last_to", normalize(to));
+        taskStore.putStats(containerLastKey, lastInfo);
+
+        if (!degradedModeService.isReplaying()) {
+            notifyService.feedback(new TaskFeedbackDTO(null, null, null,
+                    code, requestparm.getContainerCode(), "finish"));
+        }
         return Result.success(Boolean.TRUE, "完成更新");
     }
 
-    // ---------------- 通用 EMA 统计 ----------------
-    private void updateEmaStats(String hashKey, long sampleMs, String logPrefix) {
-        String ema1Str = (String) stringRedisTemplate.opsForHash().get(hashKey, F_EMA1);
-        String ema2Str = (String) stringRedisTemplate.opsForHash().get(hashKey, F_EMA2);
-        String cntStr  = (String) stringRedisTemplate.opsForHash().get(hashKey, F_CNT);
-
-        double ema1 = parseOrDefault(ema1Str, (double) sampleMs);
-        double ema2 = parseOrDefault(ema2Str, (double) sampleMs * sampleMs);
-        long cnt    = parseOrDefault(cntStr, 0L);
-
-        double newEma1 = (1 - ALPHA) * ema1 + ALPHA * sampleMs;
-        double newEma2 = (1 - ALPHA) * ema2 + ALPHA * (sampleMs * 1.0 * sampleMs);
-
-        double var = newEma2 - newEma1 * newEma1;
-        if (var < 0) var = 0;
-        double std = Math.sqrt(var);
-
-        stringRedisTemplate.opsForHash().put(hashKey, F_EMA1, String.valueOf(newEma1));
-        stringRedisTemplate.opsForHash().put(hashKey, F_EMA2, String.valueOf(newEma2));
-        stringRedisTemplate.opsForHash().put(hashKey, F_MEAN, String.valueOf(newEma1));
-        stringRedisTemplate.opsForHash().put(hashKey, F_STD,  String.valueOf(std));
-        stringRedisTemplate.opsForHash().put(hashKey, F_CNT,  String.valueOf(cnt + 1));
+    // ---------------- 通用 EMA 统计，返回更新后的均值 ----------------
+    private double updateEmaStats(String hashKey, long sampleMs, String logPrefix) {
+        List<String> current = taskStore.getStats(hashKey, EmaStats.FIELDS);
+        Map<String, String> next = EmaStats.next(current, sampleMs);
+        taskStore.putStats(hashKey, next);
 
         System.out.println("[" + ts() + "] " + logPrefix
-                + " mean=" + (long)newEma1
-                + " std=" + (long)std
-                + " count=" + (cnt + 1));
+                + " mean=" + (long) Double.parseDouble(next.get(EmaStats.F_MEAN))
+                + " std=" + (long) Double.parseDouble(next.get(EmaStats.F_STD))
+                + " count=" + next.get(EmaStats.F_CNT));
+        return Double.parseDouble(next.get(EmaStats.F_MEAN));
     }
 
     // ---------------- 工具方法 ----------------
@@ -146,11 +180,6 @@ public class StatisticsServiceImpl implements StatisticsService {
         return s.trim().toUpperCase();
     }
 
-    private static double parseOrDefault(String s, double def) {
-        try { return s == null ? def : Double.parseDouble(s); }
-        catch (Exception e) { return def; }
-    }
-
     private static long parseOrDefault(String s, long def) {
         try { return s == null ? def : Long.parseLong(s); }
         catch (Exception e) { return def; }
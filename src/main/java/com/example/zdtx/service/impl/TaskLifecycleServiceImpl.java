@@ -0,0 +1,484 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.remote.TaskFeedbackDTO;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.LifecycleVO;
+import com.example.zdtx.domain.vo.RunningTaskVO;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.service.TaskStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+
+/**
+ * 在途任务索引：
+ * 1. 下发时进 task:running（score=预计完成时间），详情从 task:info 转到 task:running:info
+ * 2. 完成回报时移出，终点缓存位改成“实际到达 + 处理时间”
+ * 3. 后台回收：超过预计完成时间但在宽限期内的，续占终点缓存位；超过宽限期的释放缓存位，
+ *    按次数重新入队，次数用完进死信；启动后被取消的直接丢弃
+ * 4. 下发时把选定路径的各段在 route:load 上 +1，完成 / 回收时减回去（见 RouteServiceImpl）
+ * 各步骤都是单个 Lua 脚本，多实例同时回收也不会重复处理。以上 key 都按任务所属分区带 tag，一个脚本只碰一个槽；
+ * 回收和查询逐个分区做，完成回报 / 取消只有指令号，先查 task:house 找分区。
+ * memory 存储（TaskStore.shared() 为 false）时任务详情不在 Redis，这里不建在途索引、不回收、不记段负载：
+ * 下发只从截止时间索引移除，完成只把终点缓存位改按实际到达时间占用
+ */
+@Service
+@RequiredArgsConstructor
+public class TaskLifecycleServiceImpl implements TaskLifecycleService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final StationCapacityService stationCapacityService;
+
+    private final NotifyService notifyService;
+
+    private final TaskStore taskStore;
+
+    @Value("${zdtx.lifecycle.reaper-enabled:true}")
+    private boolean reaperEnabled;
+
+    // 超过预计完成时间多久算卡住
+    @Value("${zdtx.lifecycle.grace-ms:120000}")
+    private long graceMs;
+
+    // 超时后最多重新入队几次，之后进死信
+    @Value("${zdtx.lifecycle.max-requeue:2}")
+    private int maxRequeue;
+
+    // 每轮最多处理多少条
+    @Value("${zdtx.lifecycle.reap-batch:200}")
+    private int reapBatch;
+
+    // 在途 / 死信详情的保留时长
+    private static final long INFO_TTL_SECONDS = 7 * 24 * 3600L;
+
+    private static final List<String> VO_FIELDS = Arrays.asList(
+            "instructionCode", "containerCode", "locationFrom", "locationTo", "priority");
+
+    // KEYS: running, taskInfo, runningInfo, routeLoad, due
+    // ARGV: code, expectedFinishAt, dispatchedAt, ttlSeconds, route（逗号分隔的段 id，可为空）, 字段1, 值1, ...
+    private static final String DISPATCH_LUA =
+            "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])\n" +
+            "local enq = redis.call('HGET', KEYS[2], 'enqueueAt')\n" +
+            "local due = redis.call('HGET', KEYS[2], 'dueAt')\n" +
+            "local house = redis.call('HGET', KEYS[2], 'houseCode')\n" +
+            "local args = {'dispatchedAt', ARGV[3], 'expectedFinishAt', ARGV[2]}\n" +
+            "for i = 6, #ARGV do table.insert(args, ARGV[i]) end\n" +
+            "if enq then table.insert(args, 'enqueueAt'); table.insert(args, enq) end\n" +
+            "if due then table.insert(args, 'dueAt'); table.insert(args, due) end\n" +
+            "if house then table.insert(args, 'houseCode'); table.insert(args, house) end\n" +
+            "if ARGV[5] ~= '' and redis.call('HEXISTS', KEYS[3], 'route') == 0 then\n" +
+            "  table.insert(args, 'route'); table.insert(args, ARGV[5])\n" +
+            "  for seg in string.gmatch(ARGV[5], '[^,]+') do redis.call('HINCRBY', KEYS[4], seg, 1) end\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[3], unpack(args))\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "redis.call('ZREM', KEYS[5], ARGV[1])\n" +
+            "redis.call('EXPIRE', KEYS[3], ARGV[4])\n" +
+            "return 1";
+
+    // 把在途详情里记的路径从段负载上减掉；info 为在途详情 key，load 为 route:load
+    private static String releaseRouteLua(String info, String load) {
+        return "local route = redis.call('HGET', " + info + ", 'route')\n" +
+                "if route then\n" +
+                "  for seg in string.gmatch(route, '[^,]+') do\n" +
+                "    if redis.call('HINCRBY', " + load + ", seg, -1) <= 0 then redis.call('HDEL', " + load + ", seg) end\n" +
+                "  end\n" +
+                "  redis.call('HDEL', " + info + ", 'route')\n" +
+                "end\n";
+    }
+
+    // KEYS: running, runningInfo, cancelled, waiting, taskInfo, occupancy, routeLoad, due
+    // ARGV: code, releaseAt
+    // 返回 1=在途完成，2=已被超时重发但晚到的完成（撤回重发），0=不在途
+    private static final String COMPLETE_LUA =
+            "local was = redis.call('ZREM', KEYS[1], ARGV[1])\n" +
+            releaseRouteLua("KEYS[2]", "KEYS[7]") +
+            "redis.call('DEL', KEYS[2])\n" +
+            "redis.call('SREM', KEYS[3], ARGV[1])\n" +
+            "if was == 0 and redis.call('HEXISTS', KEYS[5], 'attempts') == 1 then\n" +
+            "  redis.call('ZREM', KEYS[4], ARGV[1])\n" +
+            "  redis.call('ZREM', KEYS[8], ARGV[1])\n" +
+            "  redis.call('DEL', KEYS[5])\n" +
+            "  was = 2\n" +
+            "end\n" +
+            "redis.call('ZADD', KEYS[6], 'XX', ARGV[2], ARGV[1])\n" +
+            "return was";
+
+    // KEYS: running, runningInfo, occupancy, cancelled, waiting（任务所属分区的）, taskInfo, completed, dead, deadInfo, routeLoad, due
+    // ARGV: code, cutoff, maxRequeue, now, ttlSeconds
+    // 返回 0=已不需要处理，1=重新入队，2=死信，3=已取消丢弃；后两种启动标记和死信详情一样保留 ttlSeconds
+    private static final String REAP_LUA =
+            "local s = redis.call('ZSCORE', KEYS[1], ARGV[1])\n" +
+            "if (not s) or tonumber(s) > tonumber(ARGV[2]) then return 0 end\n" +
+            "redis.call('ZREM', KEYS[1], ARGV[1])\n" +
+            "redis.call('ZREM', KEYS[3], ARGV[1])\n" +
+            releaseRouteLua("KEYS[2]", "KEYS[10]") +
+            "if redis.call('SREM', KEYS[4], ARGV[1]) == 1 then\n" +
+            "  redis.call('DEL', KEYS[2])\n" +
+            "  redis.call('EXPIRE', KEYS[7], ARGV[5])\n" +
+            "  return 3\n" +
+            "end\n" +
+            "local attempts = tonumber(redis.call('HGET', KEYS[2], 'attempts') or '0')\n" +
+            "if attempts < tonumber(ARGV[3]) then\n" +
+            "  local names = {'instructionCode', 'containerCode', 'locationFrom', 'locationTo', 'priority', 'enqueueAt', 'dueAt', 'houseCode'}\n" +
+            "  local vals = redis.call('HMGET', KEYS[2], unpack(names))\n" +
+            "  local args = {'attempts', tostring(attempts + 1)}\n" +
+            "  for i = 1, #names do\n" +
+            "    if vals[i] then table.insert(args, names[i]); table.insert(args, vals[i]) end\n" +
+            "  end\n" +
+            "  if not vals[6] then table.insert(args, 'enqueueAt'); table.insert(args, ARGV[4]) end\n" +
+            "  redis.call('HSET', KEYS[6], unpack(args))\n" +
+            "  redis.call('HINCRBY', KEYS[2], 'attempts', 1)\n" +
+            "  redis.call('ZADD', KEYS[5], tonumber(vals[5] or '1'), ARGV[1])\n" +
+            "  if vals[7] then redis.call('ZADD', KEYS[11], vals[7], ARGV[1]) end\n" +
+            "  redis.call('DEL', KEYS[7])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+            "  redis.call('RENAME', KEYS[2], KEYS[9])\n" +
+            "  redis.call('EXPIRE', KEYS[9], ARGV[5])\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[7], ARGV[5])\n" +
+            "redis.call('ZADD', KEYS[8], ARGV[4], ARGV[1])\n" +
+            "return 2";
+
+    private static final DefaultRedisScript<Long> DISPATCH = new DefaultRedisScript<>(DISPATCH_LUA, Long.class);
+    private static final DefaultRedisScript<Long> COMPLETE = new DefaultRedisScript<>(COMPLETE_LUA, Long.class);
+    private static final DefaultRedisScript<Long> REAP = new DefaultRedisScript<>(REAP_LUA, Long.class);
+
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong cancelledReaped = new AtomicLong();
+    private final AtomicLong extended = new AtomicLong();
+
+    // ===================== 下发 / 完成 / 取消 =====================
+
+    @Override
+    public void onDispatched(String partition, InstructionExVO vo, long dispatchedAt, long expectedFinishAt, List<String> route) {
+        String code = vo.getInstructionCode();
+        if (!taskStore.shared()) {
+            taskStore.partition(partition).removeDue(code);
+            return;
+        }
+        stringRedisTemplate.execute(DISPATCH, dispatchKeys(partition, code),
+                dispatchArgs(vo, dispatchedAt, expectedFinishAt, route));
+    }
+
+    @Override
+    public Mono<Void> onDispatchedAsync(String partition, InstructionExVO vo, long dispatchedAt, long expectedFinishAt,
+                                        List<String> route) {
+        String code = vo.getInstructionCode();
+        return reactiveStringRedisTemplate
+                .execute(DISPATCH, dispatchKeys(partition, code),
+                        Arrays.asList(dispatchArgs(vo, dispatchedAt, expectedFinishAt, route)))
+                .then();
+    }
+
+    @Override
+    public boolean onCompleted(String instructionCode, String locationTo, long now) {
+        String node = normalize(locationTo);
+        long releaseAt = now + stationCapacityService.serviceMs(node);
+        if (!taskStore.shared()) {
+            taskStore.reoccupy(node, instructionCode, releaseAt);
+            return false;
+        }
+        Long r = stringRedisTemplate.execute(COMPLETE,
+                completeKeys(taskStore.partitionOfTask(instructionCode), instructionCode, node),
+                instructionCode, String.valueOf(releaseAt));
+        logLateCompletion(instructionCode, r);
+        return r != null && r > 0;
+    }
+
+    @Override
+    public Mono<Boolean> onCompletedAsync(String instructionCode, String locationTo, long now) {
+        String node = normalize(locationTo);
+        return Mono.zip(stationCapacityService.serviceMsAsync(node), partitionOfAsync(instructionCode))
+                .flatMap(t -> reactiveStringRedisTemplate
+                        .execute(COMPLETE, completeKeys(t.getT2(), instructionCode, node),
+                                Arrays.asList(instructionCode, String.valueOf(now + t.getT1())))
+                        .next())
+                .doOnNext(r -> logLateCompletion(instructionCode, r))
+                .map(r -> r > 0)
+                .defaultIfEmpty(Boolean.FALSE);
+    }
+
+    @Override
+    public boolean markCancelled(String instructionCode) {
+        if (!taskStore.shared()) return false;
+        String p = taskStore.partitionOfTask(instructionCode);
+        Double score = stringRedisTemplate.opsForZSet().score(key(p, TASK_RUNNING_ZSET), instructionCode);
+        if (score == null) {
+            return false;
+        }
+        stringRedisTemplate.opsForSet().add(key(p, TASK_CANCELLED_SET), instructionCode);
+        return true;
+    }
+
+    // ===================== 后台回收 =====================
+
+    @Scheduled(fixedDelayString = "${zdtx.lifecycle.reap-interval-ms:5000}")
+    public void reap() {
+        if (!reaperEnabled || !taskStore.shared()) return;
+        try {
+            long now = System.currentTimeMillis();
+            List<String> partitions = new ArrayList<>();
+            partitions.add(TaskStore.DEFAULT_PARTITION);
+            partitions.addAll(taskStore.partitions());
+            for (String p : partitions) {
+                extendOverdue(p, now);
+                reapStuck(p, now);
+            }
+        } catch (RuntimeException e) {
+            // Redis 不可用时等降级模式处理，这里只跳过本轮
+            System.out.println("[" + ts() + "] 在途任务回收跳过：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 已过预计完成时间、仍在宽限期内：车还在路上，终点缓存位续占到 now + 处理时间
+     */
+    private void extendOverdue(String p, long now) {
+        Set<String> overdue = stringRedisTemplate.opsForZSet()
+                .rangeByScore(key(p, TASK_RUNNING_ZSET), now - graceMs, now, 0, reapBatch);
+        if (overdue == null || overdue.isEmpty()) return;
+
+        List<String> codes = new ArrayList<>(overdue);
+        List<Object> tos = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String code : codes) {
+                    ops.opsForHash().get(key(p, TASK_RUNNING_INFO) + code, "locationTo");
+                }
+                return null;
+            }
+        });
+
+        Map<String, Long> serviceMs = new HashMap<>();
+        Map<String, String> nodeOf = new LinkedHashMap<>();
+        for (int i = 0; i < codes.size(); i++) {
+            Object to = i < tos.size() ? tos.get(i) : null;
+            if (to == null) continue;
+            String node = normalize(String.valueOf(to));
+            nodeOf.put(codes.get(i), node);
+            serviceMs.computeIfAbsent(node, stationCapacityService::serviceMs);
+        }
+        // ZADD XX：只续占还在时间线上的，不会把已释放的加回来
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            nodeOf.forEach((code, node) -> connection.zSetCommands().zAdd(
+                    bytes(key(p, NODE_OCCUPANCY) + node), now + serviceMs.get(node), bytes(code),
+                    RedisZSetCommands.ZAddArgs.ifExists()));
+            return null;
+        });
+        extended.addAndGet(nodeOf.size());
+    }
+
+    /**
+     * 超过宽限期：释放缓存位，重新入队 / 死信 / 丢弃
+     */
+    private void reapStuck(String p, long now) {
+        long cutoff = now - graceMs;
+        Set<String> stuck = stringRedisTemplate.opsForZSet()
+                .rangeByScore(key(p, TASK_RUNNING_ZSET), Double.NEGATIVE_INFINITY, cutoff, 0, reapBatch);
+        if (stuck == null || stuck.isEmpty()) return;
+
+        for (String code : stuck) {
+            List<Object> info = stringRedisTemplate.opsForHash()
+                    .multiGet(key(p, TASK_RUNNING_INFO) + code, Arrays.asList("locationTo", "containerCode"));
+            Object to = info.get(0);
+            String node = to == null ? "NULL" : normalize(String.valueOf(to));
+            Long r = stringRedisTemplate.execute(REAP,
+                    Arrays.asList(key(p, TASK_RUNNING_ZSET), key(p, TASK_RUNNING_INFO) + code,
+                            key(p, NODE_OCCUPANCY) + node, key(p, TASK_CANCELLED_SET), key(p, TASK_WAITING_ZSET),
+                            key(p, TASK_INFO) + code, key(p, TASK_COMPLETED_SET) + code,
+                            key(p, TASK_DEAD_ZSET), key(p, TASK_DEAD_INFO) + code, key(p, ROUTE_LOAD), key(p, TASK_DUE_ZSET)),
+                    code, String.valueOf(cutoff), String.valueOf(maxRequeue), String.valueOf(now),
+                    String.valueOf(INFO_TTL_SECONDS));
+            if (r == null || r == 0L) continue;
+            // 死信 / 丢弃的不会再回到队列，分区索引和启动标记一起过期
+            if (r != 1L && !p.isEmpty()) stringRedisTemplate.expire(TASK_HOUSE + code, INFO_TTL_SECONDS, TimeUnit.SECONDS);
+            if (r == 1L) {
+                requeued.incrementAndGet();
+                System.out.println("[" + ts() + "] 在途任务 " + code + " 超时未回报，已重新入队");
+            } else if (r == 2L) {
+                deadLettered.incrementAndGet();
+                notifyService.feedback(new TaskFeedbackDTO(null, null, null, code,
+                        info.get(1) == null ? null : String.valueOf(info.get(1)), "exception"));
+                System.out.println("[" + ts() + "] 在途任务 " + code + " 超时且重发次数用完，进入死信");
+            } else {
+                cancelledReaped.incrementAndGet();
+                System.out.println("[" + ts() + "] 在途任务 " + code + " 已取消且超时，丢弃");
+            }
+        }
+    }
+
+    // ===================== 查询 =====================
+
+    @Override
+    public long runningCount(String partition) {
+        if (!taskStore.shared()) return -1L;
+        try {
+            Long n = stringRedisTemplate.opsForZSet().zCard(key(partition, TASK_RUNNING_ZSET));
+            return n == null ? -1L : n;
+        } catch (RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    @Override
+    public LifecycleVO info(int limit) {
+        if (!taskStore.shared()) {
+            return new LifecycleVO(0L, 0L, 0L, 0L, graceMs, maxRequeue, 0L, 0L, 0L, 0L, Collections.emptyList());
+        }
+        long now = System.currentTimeMillis();
+        List<String> partitions = new ArrayList<>();
+        partitions.add(TaskStore.DEFAULT_PARTITION);
+        partitions.addAll(taskStore.partitions());
+        ZSetOperations<String, String> zset = stringRedisTemplate.opsForZSet();
+        long running = 0, overdue = 0, stuck = 0, dead = 0;
+        // 各分区取最早的 limit 条，合起来再按预计完成时间取前 limit 条
+        List<Object[]> oldest = new ArrayList<>();
+        for (String p : partitions) {
+            String runningKey = key(p, TASK_RUNNING_ZSET);
+            running += orZero(zset.zCard(runningKey));
+            overdue += orZero(zset.count(runningKey, Double.NEGATIVE_INFINITY, now));
+            stuck += orZero(zset.count(runningKey, Double.NEGATIVE_INFINITY, now - graceMs));
+            dead += orZero(zset.zCard(key(p, TASK_DEAD_ZSET)));
+            Set<ZSetOperations.TypedTuple<String>> head = zset.rangeWithScores(runningKey, 0, Math.max(0, limit - 1));
+            if (head == null) continue;
+            for (ZSetOperations.TypedTuple<String> t : head) {
+                oldest.add(new Object[]{p, t.getValue(), t.getScore() == null ? now : t.getScore().longValue()});
+            }
+        }
+        oldest.sort(Comparator.comparingLong(o -> (Long) o[2]));
+        if (oldest.size() > limit) oldest = oldest.subList(0, Math.max(0, limit));
+        List<String> owners = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        List<Long> finishAt = new ArrayList<>();
+        for (Object[] o : oldest) {
+            owners.add((String) o[0]);
+            codes.add((String) o[1]);
+            finishAt.add((Long) o[2]);
+        }
+        List<Object> details = codes.isEmpty() ? Collections.emptyList()
+                : stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (int i = 0; i < codes.size(); i++) {
+                    ops.opsForHash().entries(key(owners.get(i), TASK_RUNNING_INFO) + codes.get(i));
+                    ops.opsForSet().isMember(key(owners.get(i), TASK_CANCELLED_SET), codes.get(i));
+                }
+                return null;
+            }
+        });
+
+        List<RunningTaskVO> list = new ArrayList<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> m = details.size() > 2 * i && details.get(2 * i) instanceof Map
+                    ? (Map<Object, Object>) details.get(2 * i) : Collections.emptyMap();
+            Object cancelled = details.size() > 2 * i + 1 ? details.get(2 * i + 1) : null;
+            long expected = finishAt.get(i);
+            list.add(new RunningTaskVO(codes.get(i),
+                    (String) m.get("containerCode"), (String) m.get("locationFrom"), (String) m.get("locationTo"),
+                    toLong(m.get("dispatchedAt")), expected, Math.max(0L, now - expected),
+                    (int) (long) Optional.ofNullable(toLong(m.get("attempts"))).orElse(0L),
+                    Boolean.TRUE.equals(cancelled)));
+        }
+        return new LifecycleVO(running, overdue, stuck, dead, graceMs, maxRequeue,
+                requeued.get(), deadLettered.get(), cancelledReaped.get(), extended.get(), list);
+    }
+
+    // ===================== 工具方法 =====================
+
+    private static List<String> dispatchKeys(String p, String code) {
+        return Arrays.asList(key(p, TASK_RUNNING_ZSET), key(p, TASK_INFO) + code, key(p, TASK_RUNNING_INFO) + code,
+                key(p, ROUTE_LOAD), key(p, TASK_DUE_ZSET));
+    }
+
+    private static Object[] dispatchArgs(InstructionExVO vo, long dispatchedAt, long expectedFinishAt,
+                                         List<String> route) {
+        List<Object> args = new ArrayList<>(5 + 2 * VO_FIELDS.size());
+        args.add(vo.getInstructionCode());
+        args.add(String.valueOf(expectedFinishAt));
+        args.add(String.valueOf(dispatchedAt));
+        args.add(String.valueOf(INFO_TTL_SECONDS));
+        args.add(route == null ? "" : String.join(",", route));
+        Object[] values = {vo.getInstructionCode(), vo.getContainerCode(), vo.getLocationFrom(),
+                vo.getLocationTo(), vo.getPriority()};
+        for (int i = 0; i < VO_FIELDS.size(); i++) {
+            if (values[i] != null) {
+                args.add(VO_FIELDS.get(i));
+                args.add(String.valueOf(values[i]));
+            }
+        }
+        return args.toArray();
+    }
+
+    private static List<String> completeKeys(String p, String code, String node) {
+        return Arrays.asList(key(p, TASK_RUNNING_ZSET), key(p, TASK_RUNNING_INFO) + code, key(p, TASK_CANCELLED_SET),
+                key(p, TASK_WAITING_ZSET), key(p, TASK_INFO) + code, key(p, NODE_OCCUPANCY) + node,
+                key(p, ROUTE_LOAD), key(p, TASK_DUE_ZSET));
+    }
+
+    private Mono<String> partitionOfAsync(String code) {
+        return reactiveStringRedisTemplate.opsForValue().get(TASK_HOUSE + code).defaultIfEmpty(TaskStore.DEFAULT_PARTITION);
+    }
+
+    private static long orZero(Long n) {
+        return n == null ? 0L : n;
+    }
+
+    private static void logLateCompletion(String code, Long r) {
+        if (r != null && r == 2L) {
+            System.out.println("[" + ts() + "] 任务 " + code + " 超时重发后才回报完成，已撤回重发");
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Long toLong(Object v) {
+        if (v == null) return null;
+        try { return Long.parseLong(String.valueOf(v)); } catch (Exception e) { return null; }
+    }
+
+    private static String normalize(String s) {
+        if (s == null) return "NULL";
+        return s.trim().toUpperCase();
+    }
+
+    private static String ts() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.topology.TopologyConfigDTO;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.TopologyVO;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.utils.RedisKeyspace;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 拓扑加载：
+ * 1. 从 zdtx.topology.location 读取 JSON 配置，构建带权图并预计算全源最短路
+ * 2. 重载在单独线程里构建新快照，完成后原子替换，调度线程始终读到完整的快照
+ * 3. 可选用 stats:od 学到的站点间行驶时间摊到最短路各边上，覆盖配置边权
+ */
+@Service
+@RequiredArgsConstructor
+public class TopologyServiceImpl implements TopologyService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ResourceLoader resourceLoader;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Value("${zdtx.topology.location:classpath:topology.json}")
+    private String location;
+
+    @Value("${zdtx.topology.learned-weights:false}")
+    private boolean learnedWeights;
+
+    @Value("${zdtx.topology.learned-min-count:5}")
+    private long learnedMinCount;
+
+    // 学习边权最多读多少个 OD 统计
+    @Value("${zdtx.topology.learned-max-keys:20000}")
+    private int learnedMaxKeys;
+
+    // 没有 OD 统计时用最短路距离估计行驶时间；关闭（默认）则用固定默认值 DispatchPlanner.DEFAULT_TRAVEL_MS
+    @Value("${zdtx.topology.cold-estimate:false}")
+    private boolean coldEstimate;
+
+    private static final String OD_PREFIX = "stats:od:";
+
+    private static final int SCAN_COUNT = 500;
+
+    private final AtomicReference<Topology> current = new AtomicReference<>();
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "topology-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long lastModified;
+
+    @PostConstruct
+    public void init() {
+        // 启动时先用配置权重同步加载一次，保证调度一开始就有拓扑
+        current.set(build(false));
+        System.out.println("[" + ts() + "] 拓扑加载完成：" + info());
+        if (learnedWeights) {
+            reload();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    @Override
+    public Topology current() {
+        return current.get();
+    }
+
+    @Override
+    public CompletableFuture<TopologyVO> reload() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Topology t = build(learnedWeights);
+                current.set(t);
+                TopologyVO vo = info();
+                System.out.println("[" + ts() + "] 拓扑已重载：" + vo);
+                return vo;
+            } catch (RuntimeException e) {
+                System.out.println("[" + ts() + "] 拓扑重载失败，继续使用旧版本：" + e.getMessage());
+                throw e;
+            }
+        }, loader);
+    }
+
+    /**
+     * 配置文件在磁盘上时，按修改时间自动重载
+     */
+    @Scheduled(fixedDelayString = "${zdtx.topology.watch-interval-ms:10000}")
+    public void watch() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            if (!resource.isFile()) return;
+            long lm = resource.lastModified();
+            if (lastModified != 0 && lm != lastModified) {
+                lastModified = lm;
+                reload();
+            }
+        } catch (Exception ignore) {}
+    }
+
+    @Override
+    public TopologyVO info() {
+        Topology t = current.get();
+        if (t == null) return new TopologyVO();
+        return new TopologyVO(t.getVersion(), location, t.nodeCount(), t.edgeCount(), t.loopCount(),
+                t.stationCount(), learnedWeights, t.getBuiltAt(), t.getBuildMs());
+    }
+
+    private Topology build(boolean withLearned) {
+        Resource resource = resourceLoader.getResource(location);
+        TopologyConfigDTO cfg;
+        try (InputStream in = resource.getInputStream()) {
+            cfg = MAPPER.readValue(in, TopologyConfigDTO.class);
+            if (resource.isFile()) lastModified = resource.lastModified();
+        } catch (Exception e) {
+            throw new IllegalStateException("拓扑配置读取失败：" + location + "，" + e.getMessage(), e);
+        }
+        Map<String, Integer> learned = withLearned ? loadLearnedWeights(cfg) : Collections.emptyMap();
+        return Topology.build(cfg, learned, coldEstimate);
+    }
+
+    /**
+     * 学习边权：stats:od 记的是站点到站点的行驶时间，按配置权重把每个 OD 均值摊到它最短路经过的各条边上，
+     * 同一条边的摊分值按样本数加权平均，边上累计样本不少于 learned-min-count 才覆盖配置权重（一次 pipeline 读完）
+     */
+    private Map<String, Integer> loadLearnedWeights(TopologyConfigDTO cfg) {
+        Topology base = Topology.build(cfg, Collections.emptyMap());
+        List<String> keys = new ArrayList<>();
+        List<Object> results;
+        try {
+            RedisKeyspace.scan(stringRedisTemplate, OD_PREFIX + "*", SCAN_COUNT,
+                    k -> keys.add(k) && keys.size() < learnedMaxKeys);
+            if (keys.isEmpty()) return Collections.emptyMap();
+            results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (String k : keys) {
+                        ops.opsForHash().multiGet(k, Arrays.asList("mean_ms", "count"));
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            System.out.println("[" + ts() + "] 读取学习边权失败，使用配置权重：" + e.getMessage());
+            return Collections.emptyMap();
+        }
+
+        // 有向边 "A|B" -> {Σ 样本数 × 摊分毫秒, Σ 样本数}
+        Map<String, double[]> acc = new HashMap<>();
+        for (int i = 0; i < keys.size() && i < results.size(); i++) {
+            if (!(results.get(i) instanceof List)) continue;
+            List<?> v = (List<?>) results.get(i);
+            if (v.size() < 2 || v.get(0) == null || v.get(1) == null) continue;
+            String[] od = keys.get(i).substring(OD_PREFIX.length()).split("\\|");
+            if (od.length != 2) continue;
+            double mean;
+            long cnt;
+            try {
+                mean = Double.parseDouble(String.valueOf(v.get(0)));
+                cnt = Long.parseLong(String.valueOf(v.get(1)));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (cnt <= 0 || mean <= 0) continue;
+            List<String> nodes = base.nodePath(od[0], od[1]);
+            long cost = 0;
+            for (int j = 1; j < nodes.size(); j++) cost += base.edgeMs(nodes.get(j - 1), nodes.get(j));
+            if (cost <= 0 || cost >= Topology.UNREACHABLE) continue;
+            for (int j = 1; j < nodes.size(); j++) {
+                String edge = nodes.get(j - 1) + "|" + nodes.get(j);
+                double share = mean * base.edgeMs(nodes.get(j - 1), nodes.get(j)) / cost;
+                double[] a = acc.computeIfAbsent(edge, k -> new double[2]);
+                a[0] += cnt * share;
+                a[1] += cnt;
+            }
+        }
+
+        Map<String, Integer> learned = new HashMap<>();
+        acc.forEach((edge, a) -> {
+            if (a[1] >= learnedMinCount) learned.put(edge, (int) Math.round(a[0] / a[1]));
+        });
+        return learned;
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "NULL" : s.trim().toUpperCase();
+    }
+
+    private static String ts() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
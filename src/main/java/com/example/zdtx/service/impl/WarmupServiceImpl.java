@@ -0,0 +1,281 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.instruction.QueueBrowseDTO;
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.domain.entity.Topology;
+import com.example.zdtx.domain.vo.InstructionExVO;
+import com.example.zdtx.domain.vo.QueuePageVO;
+import com.example.zdtx.domain.vo.WarmupVO;
+import com.example.zdtx.service.QueueInspectService;
+import com.example.zdtx.service.RedisGatewayService;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.StationCapacityService;
+import com.example.zdtx.service.TopologyService;
+import com.example.zdtx.service.WarmupService;
+import com.example.zdtx.utils.RedisKeyspace;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static com.example.zdtx.constants.RedisConstants.NODE_AVAILABLE;
+import static com.example.zdtx.constants.RedisConstants.NODE_OCCUPANCY;
+
+/**
+ * 启动预热（ApplicationRunner，Spring 在所有 runner 跑完后才发布 ACCEPTING_TRAFFIC）：
+ * 1. 建好同步 / 响应式 Redis 连接
+ * 2. SCAN stats:od:*、node:available:*、各分区的 node:occupancy:*，按批走合并网关 / pipeline 读一遍，
+ *    终点缓存位走 StationCapacityService 的真实读路径
+ * 3. 用 QueueInspectService 按页读出等待队列（只读，不提交调度）
+ * 4. 拿读到的数据做 rounds 轮模拟调度：锚点映射、历史耗时、打分排序、路径展开、缓存位计划，全部在内存里，不写 Redis
+ * 读到的 od / slots / serviceMs 只给第 4 步的模拟用，跑完即丢：调度每轮仍然实时读 Redis（多实例共享、
+ * 完成回报随时在改），不引入本地缓存，预热只把连接、线程、服务端热数据和热点代码提前跑起来
+ */
+@Service
+@RequiredArgsConstructor
+public class WarmupServiceImpl implements WarmupService, ApplicationRunner {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final RedisGatewayService redisGatewayService;
+
+    private final TopologyService topologyService;
+
+    private final StationCapacityService stationCapacityService;
+
+    private final QueueInspectService queueInspectService;
+
+    private final ApplicationAvailability applicationAvailability;
+
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    @Value("${zdtx.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${zdtx.warmup.rounds:200}")
+    private int rounds;
+
+    // 每种键、等待队列最多预加载多少条
+    @Value("${zdtx.warmup.max-keys:20000}")
+    private int maxKeys;
+
+    @Value("${zdtx.warmup.scan-count:500}")
+    private int scanCount;
+
+    // 预热总时长上限，超时直接结束，不拖住启动
+    @Value("${zdtx.warmup.max-ms:30000}")
+    private long maxMs;
+
+    private static final List<String> OD_FIELDS = Arrays.asList("mean_ms", "std_ms", "count");
+    private static final String OD_PREFIX = "stats:od:";
+    private static final int BATCH = 256;
+
+    private volatile String state = "PENDING";
+    private volatile boolean done;
+    private volatile long startedAt;
+    private volatile long elapsedMs;
+    private volatile int odKeys;
+    private volatile int nodeKeys;
+    private volatile int waiting;
+    private volatile int roundsRun;
+    private volatile long firstRoundUs;
+    private volatile long lastRoundUs;
+    private volatile String error;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        startedAt = System.currentTimeMillis();
+        if (!enabled) {
+            state = "SKIPPED";
+            done = true;
+            return;
+        }
+        state = "RUNNING";
+        long deadline = startedAt + maxMs;
+        try {
+            warm(deadline);
+            state = "DONE";
+        } catch (RuntimeException e) {
+            // Redis 不可用等情况不阻止启动，降级逻辑照常生效
+            state = "FAILED";
+            error = e.getMessage();
+        } finally {
+            elapsedMs = System.currentTimeMillis() - startedAt;
+            done = true;
+            System.out.println("[" + ts() + "] 启动预热" + ("DONE".equals(state) ? "完成" : "结束（" + state + "）")
+                    + "：od=" + odKeys + "，node=" + nodeKeys + "，waiting=" + waiting + "，rounds=" + roundsRun
+                    + "，首轮 " + firstRoundUs + "us / 末轮 " + lastRoundUs + "us，耗时 " + elapsedMs + "ms"
+                    + (error == null ? "" : "，" + error));
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return done && applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+    }
+
+    @Override
+    public WarmupVO info() {
+        long elapsed = done ? elapsedMs : (startedAt == 0 ? 0 : System.currentTimeMillis() - startedAt);
+        return new WarmupVO(state, isReady(), startedAt, elapsed, odKeys, nodeKeys, waiting,
+                roundsRun, firstRoundUs, lastRoundUs, error);
+    }
+
+    // ===================== 预热步骤 =====================
+
+    private void warm(long deadline) {
+        // 1) 连接
+        stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+        reactiveStringRedisTemplate.hasKey(NODE_AVAILABLE + "warmup").block(Duration.ofSeconds(5));
+
+        // 2) OD 统计：每批一次性提交给合并网关，由网关合成 pipeline
+        Map<String, double[]> od = new HashMap<>();
+        List<String> keys = scan(OD_PREFIX + "*", deadline);
+        odKeys = keys.size();
+        for (int i = 0; i < keys.size() && System.currentTimeMillis() < deadline; i += BATCH) {
+            List<String> chunk = keys.subList(i, Math.min(keys.size(), i + BATCH));
+            List<CompletableFuture<List<String>>> futures = new ArrayList<>(chunk.size());
+            for (String k : chunk) {
+                futures.add(redisGatewayService.hmgetAsync(k, OD_FIELDS));
+            }
+            for (int j = 0; j < chunk.size(); j++) {
+                double[] stats = DispatchPlanner.parseOdStats(redisGatewayService.await(futures.get(j)));
+                if (stats != null) od.put(chunk.get(j).substring(OD_PREFIX.length()), stats);
+            }
+        }
+
+        // 3) 终点：node:available 用 MGET 分批读，缓存位和处理时间走真实读路径
+        List<String> available = scan(NODE_AVAILABLE + "*", deadline);
+        for (int i = 0; i < available.size(); i += BATCH) {
+            stringRedisTemplate.opsForValue().multiGet(available.subList(i, Math.min(available.size(), i + BATCH)));
+        }
+        Set<String> nodes = new TreeSet<>();
+        available.forEach(k -> nodes.add(k.substring(NODE_AVAILABLE.length())));
+        // 占用按分区带 tag：{分区}node:occupancy:<终点>
+        scan("*" + NODE_OCCUPANCY + "*", deadline)
+                .forEach(k -> nodes.add(k.substring(k.indexOf(NODE_OCCUPANCY) + NODE_OCCUPANCY.length())));
+        nodeKeys = nodes.size();
+        long now = System.currentTimeMillis();
+        Map<String, long[]> slots = new HashMap<>();
+        Map<String, Long> serviceMs = new HashMap<>();
+        for (String node : nodes) {
+            if (System.currentTimeMillis() >= deadline) break;
+            slots.put(node, stationCapacityService.slotFreeTimes(node, now));
+            serviceMs.put(node, stationCapacityService.serviceMs(node));
+        }
+
+        // 4) 等待队列
+        List<InstructionExVO> candidates = loadWaiting(deadline);
+        waiting = candidates.size();
+        if (candidates.isEmpty()) {
+            candidates = synthetic(topologyService.current());
+        }
+
+        // 5) 模拟调度
+        simulate(candidates, od, slots, serviceMs, deadline);
+    }
+
+    private List<String> scan(String pattern, long deadline) {
+        List<String> keys = new ArrayList<>();
+        RedisKeyspace.scan(stringRedisTemplate, pattern, scanCount, k -> {
+            keys.add(k);
+            return keys.size() < maxKeys && System.currentTimeMillis() < deadline;
+        });
+        return keys;
+    }
+
+    private List<InstructionExVO> loadWaiting(long deadline) {
+        List<InstructionExVO> list = new ArrayList<>();
+        QueueBrowseDTO query = new QueueBrowseDTO();
+        query.setSize(200);
+        while (list.size() < maxKeys && System.currentTimeMillis() < deadline) {
+            Result<QueuePageVO> r = queueInspectService.browse(query);
+            if (r.getData() == null) break;
+            list.addAll(r.getData().getItems());
+            if (r.getData().getNextCursor() == null) break;
+            query.setCursor(r.getData().getNextCursor());
+        }
+        return list;
+    }
+
+    /**
+     * 队列为空时按拓扑站点两两组合造候选，保证热点代码也能跑到
+     */
+    private static List<InstructionExVO> synthetic(Topology topology) {
+        List<String> stations = topology.stations();
+        List<InstructionExVO> list = new ArrayList<>();
+        for (int i = 0; i < stations.size() && list.size() < 500; i++) {
+            for (int j = 0; j < stations.size() && list.size() < 500; j += 7) {
+                if (i == j) continue;
+                list.add(new InstructionExVO("WARMUP-" + i + "-" + j, stations.get(i), stations.get(j), (i + j) % 3, null));
+            }
+        }
+        return list;
+    }
+
+    private void simulate(List<InstructionExVO> candidates, Map<String, double[]> od,
+                          Map<String, long[]> slots, Map<String, Long> serviceMs, long deadline) {
+        if (candidates.isEmpty()) return;
+        Topology topology = topologyService.current();
+        int batch = Math.min(candidates.size(), 32);
+        DispatchPlanner.Weights weights = schedulingWeightsService.current();
+        for (int r = 0; r < rounds && System.currentTimeMillis() < deadline; r++) {
+            long t0 = System.nanoTime();
+            long now = System.currentTimeMillis();
+            int offset = (r * batch) % candidates.size();
+            List<InstructionExVO> round = new ArrayList<>(batch);
+            for (int i = 0; i < batch; i++) {
+                round.add(candidates.get((offset + i) % candidates.size()));
+            }
+
+            // 打分排序
+            Map<InstructionExVO, Double> score = new IdentityHashMap<>();
+            for (InstructionExVO vo : round) {
+                double hist = DispatchPlanner.historicalCostMs(weights,
+                        topology.anchors(vo.getLocationFrom()), topology.anchors(vo.getLocationTo()), od::get);
+                score.put(vo, DispatchPlanner.baseScore(weights, vo.getPriority(), now, hist, now));
+            }
+            round.sort((a, b) -> Double.compare(score.get(b), score.get(a)));
+
+            // 路径 + 缓存位计划（本地副本，不写回）
+            DispatchPlanner.NodePlan plan = new DispatchPlanner.NodePlan();
+            for (InstructionExVO vo : round) {
+                topology.path(vo.getLocationFrom(), vo.getLocationTo());
+                int d = vo.getLocationFrom() == null || vo.getLocationTo() == null ? Topology.UNREACHABLE
+                        : topology.estimateMs(vo.getLocationFrom(), vo.getLocationTo());
+                long eta = now + (d == Topology.UNREACHABLE ? DispatchPlanner.DEFAULT_TRAVEL_MS : d);
+                DispatchPlanner.reserve(weights, plan, vo, eta,
+                        node -> {
+                            long[] free = slots.get(node);
+                            return free == null ? new long[]{now} : free.clone();
+                        },
+                        node -> serviceMs.getOrDefault(node, weights.defaultProcessMs));
+            }
+            DispatchPlanner.nodeBacklogMs(plan, now);
+
+            long us = (System.nanoTime() - t0) / 1000;
+            if (r == 0) firstRoundUs = us;
+            lastRoundUs = us;
+            roundsRun = r + 1;
+        }
+    }
+
+    private static String ts() {
+        LocalDateTime now = LocalDateTime.now();
+        return now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.ReplayScoreVO;
+import com.example.zdtx.domain.vo.SchedulingWeightsVO;
+import com.example.zdtx.domain.vo.TuningRunVO;
+import com.example.zdtx.domain.vo.TuningVO;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.SchedulingWeightsService;
+import com.example.zdtx.service.WeightTunerService;
+import com.example.zdtx.utils.DispatchJournal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 调度权重自动调参：
+ * 1. 取本机调度日志最近 rounds 轮，用 DispatchReplay 按候选权重重跑打分和终点规划，
+ *    目标值 = 每轮发出条数 ×（1 + wait-weight ×（等待比例 - 1））- idle-weight × 每轮终点前干等秒数
+ * 2. 从当前权重出发逐个参数乘 0.5 / 0.8 / 1.25 / 2 做爬山，有提升就挪过去，直到一圈都没提升或评估次数用完
+ * 3. 相对提升不低于 min-improvement 才整组切换（一次引用替换）
+ * 4. 回滚守护：定时采样本机累计下发条数，切换后观察 guard-window-ms，每分钟下发条数比切换前同样长的窗口
+ *    降了超过 max-drop 就退回切换前的权重
+ * 终点处理时间的两个参数回放里照录制值，评估不出来，只能手工调；每个实例按自己的日志各调各的
+ */
+@Service
+@RequiredArgsConstructor
+public class WeightTunerServiceImpl implements WeightTunerService {
+
+    private final SchedulingWeightsService schedulingWeightsService;
+
+    private final DispatchJournalService dispatchJournalService;
+
+    private final PartitionService partitionService;
+
+    // 定时自动调参，默认关闭，只能手工触发
+    @Value("${zdtx.tuning.auto-enabled:false}")
+    private boolean autoEnabled;
+
+    @Value("${zdtx.tuning.rounds:500}")
+    private int rounds;
+
+    // 日志不足这么多轮不调
+    @Value("${zdtx.tuning.min-rounds:50}")
+    private int minRounds;
+
+    @Value("${zdtx.tuning.max-evaluations:60}")
+    private int maxEvaluations;
+
+    @Value("${zdtx.tuning.min-improvement:0.02}")
+    private double minImprovement;
+
+    @Value("${zdtx.tuning.wait-weight:0.5}")
+    private double waitWeight;
+
+    @Value("${zdtx.tuning.idle-weight:0.1}")
+    private double idleWeight;
+
+    @Value("${zdtx.tuning.params:ww,wt,k,warmupN,safeEarlyArriveMs}")
+    private String params;
+
+    @Value("${zdtx.tuning.guard-window-ms:300000}")
+    private long guardWindowMs;
+
+    @Value("${zdtx.tuning.max-drop:0.2}")
+    private double maxDrop;
+
+    private static final double[] FACTORS = {0.5, 0.8, 1.25, 2.0};
+
+    /**
+     * 某一时刻的累计下发条数
+     */
+    private static class Sample {
+        final long at;
+        final long total;
+
+        Sample(long at, long total) {
+            this.at = at;
+            this.total = total;
+        }
+    }
+
+    private final Deque<Sample> samples = new ArrayDeque<>();
+
+    private volatile TuningRunVO lastRun;
+
+    // 上一次切换前的权重，rollback 退回它
+    private DispatchPlanner.Weights previous;
+
+    // 观察中的切换：切换后的权重、切换时刻的累计下发、切换前的速率（条/毫秒）
+    private DispatchPlanner.Weights guarded;
+    private Sample guardStart;
+    private double guardBaselineRate;
+    private double guardObservedRate;
+
+    @Override
+    public TuningVO info() {
+        synchronized (samples) {
+            boolean guarding = guarded != null;
+            return new TuningVO(autoEnabled, schedulingWeightsService.toVO(schedulingWeightsService.current()),
+                    guarding,
+                    guarding ? guardBaselineRate * 60000 : null,
+                    guarding ? guardObservedRate * 60000 : null,
+                    guarding ? guardStart.at + guardWindowMs : null,
+                    lastRun, schedulingWeightsService.history());
+        }
+    }
+
+    @Override
+    public synchronized TuningRunVO run(boolean apply) {
+        long start = System.currentTimeMillis();
+        TuningRunVO run = new TuningRunVO();
+        run.setStartedAt(start);
+        run.setApplied(false);
+        DispatchPlanner.Weights base = schedulingWeightsService.current();
+        run.setBaseline(schedulingWeightsService.toVO(base));
+
+        List<DispatchJournal.Round> recorded;
+        try {
+            recorded = dispatchJournalService.recent(rounds);
+        } catch (IOException e) {
+            return finish(run, start, "读取调度日志失败：" + e.getMessage());
+        }
+        run.setRounds(recorded.size());
+        if (recorded.size() < Math.max(1, minRounds)) {
+            return finish(run, start, "调度日志只有 " + recorded.size() + " 轮，不足 " + minRounds + " 轮");
+        }
+
+        DispatchReplay.Score baseScore = dispatchJournalService.evaluate(recorded, base);
+        double baseJ = baseScore.objective(waitWeight, idleWeight);
+        DispatchPlanner.Weights best = base;
+        DispatchReplay.Score bestScore = baseScore;
+        double bestJ = baseJ;
+        int evaluations = 1;
+        boolean improved = true;
+        while (improved && evaluations < maxEvaluations) {
+            improved = false;
+            for (String name : tunedParams()) {
+                for (double f : FACTORS) {
+                    if (evaluations >= maxEvaluations) break;
+                    DispatchPlanner.Weights candidate = clamp(best.with(name, best.get(name) * f));
+                    if (candidate.equals(best)) continue;
+                    DispatchReplay.Score score = dispatchJournalService.evaluate(recorded, candidate);
+                    evaluations++;
+                    double j = score.objective(waitWeight, idleWeight);
+                    if (j > bestJ + 1e-9) {
+                        best = candidate;
+                        bestScore = score;
+                        bestJ = j;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        run.setEvaluations(evaluations);
+        run.setBaselineScore(toVO(baseScore, baseJ));
+        run.setBest(schedulingWeightsService.toVO(best));
+        run.setBestScore(toVO(bestScore, bestJ));
+        double improvement = (bestJ - baseJ) / Math.max(Math.abs(baseJ), 1e-9);
+        run.setImprovement(improvement);
+
+        if (best.equals(base) || improvement < minImprovement) {
+            return finish(run, start, "没有找到提升超过 " + minImprovement + " 的权重");
+        }
+        if (!apply) return finish(run, start, "只给出建议，未切换");
+        // 搜索期间被手工改过就不覆盖
+        if (!schedulingWeightsService.current().equals(base)) {
+            return finish(run, start, "搜索期间权重已被修改，未切换");
+        }
+        switchTo(best, "自动调参，目标值提升 " + String.format("%.1f%%", improvement * 100), true);
+        run.setApplied(true);
+        return finish(run, start, "已切换，观察 " + guardWindowMs / 1000 + " 秒");
+    }
+
+    @Override
+    public TuningVO set(SchedulingWeightsVO vo) {
+        switchTo(schedulingWeightsService.merge(schedulingWeightsService.current(), vo), "手工调整", false);
+        return info();
+    }
+
+    @Override
+    public TuningVO rollback() {
+        synchronized (samples) {
+            if (previous == null) return null;
+            DispatchPlanner.Weights target = previous;
+            previous = null;
+            guarded = null;
+            schedulingWeightsService.apply(target, "手工回滚");
+        }
+        return info();
+    }
+
+    /**
+     * 定时采样累计下发条数，并检查观察中的切换
+     */
+    @Scheduled(fixedDelayString = "${zdtx.tuning.sample-interval-ms:10000}")
+    public void sample() {
+        long now = System.currentTimeMillis();
+        Sample s = new Sample(now, partitionService.dispatched());
+        synchronized (samples) {
+            samples.addLast(s);
+            // 只留一个观察窗口多一点，够算切换前的速率
+            while (samples.size() > 2 && samples.peekFirst().at < now - guardWindowMs * 2) samples.removeFirst();
+            if (guarded == null) return;
+            guardObservedRate = rate(guardStart, s);
+            if (now < guardStart.at + guardWindowMs) return;
+            DispatchPlanner.Weights tuned = guarded;
+            guarded = null;
+            if (!schedulingWeightsService.current().equals(tuned)) return;
+            if (guardObservedRate < guardBaselineRate * (1 - maxDrop)) {
+                System.out.println("[" + ts() + "] 调参后下发速率 " + String.format("%.1f", guardObservedRate * 60000)
+                        + " 条/分钟，低于切换前 " + String.format("%.1f", guardBaselineRate * 60000) + " 条/分钟，回滚");
+                schedulingWeightsService.apply(previous, "回滚守护");
+                previous = null;
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${zdtx.tuning.interval-ms:3600000}", fixedDelayString = "${zdtx.tuning.interval-ms:3600000}")
+    public void autoRun() {
+        if (!autoEnabled) return;
+        synchronized (samples) {
+            if (guarded != null) return;
+        }
+        try {
+            run(true);
+        } catch (Exception e) {
+            System.out.println("[" + ts() + "] 自动调参失败：" + e.getMessage());
+        }
+    }
+
+    private void switchTo(DispatchPlanner.Weights weights, String reason, boolean guard) {
+        synchronized (samples) {
+            long now = System.currentTimeMillis();
+            Sample at = new Sample(now, partitionService.dispatched());
+            // 切换前一个观察窗口内最早的采样，不够一个采样间隔就没有基线，不做守护
+            Sample from = null;
+            for (Sample s : samples) {
+                if (s.at >= now - guardWindowMs) {
+                    from = s;
+                    break;
+                }
+            }
+            previous = schedulingWeightsService.apply(weights, reason);
+            guarded = null;
+            if (guard && from != null && now - from.at >= 1000) {
+                guarded = weights;
+                guardStart = at;
+                guardBaselineRate = rate(from, at);
+                guardObservedRate = 0;
+            }
+        }
+    }
+
+    private List<String> tunedParams() {
+        List<String> list = new ArrayList<>();
+        for (String p : params.split(",")) {
+            String name = p.trim();
+            if (DispatchPlanner.Weights.NAMES.contains(name) && !list.contains(name)) list.add(name);
+        }
+        return list;
+    }
+
+    /**
+     * 样本数至少为 1，其余不为负
+     */
+    private static DispatchPlanner.Weights clamp(DispatchPlanner.Weights w) {
+        for (String name : Arrays.asList("warmupN", "stationWarmupN")) {
+            if (w.get(name) < 1) w = w.with(name, 1);
+        }
+        for (String name : DispatchPlanner.Weights.NAMES) {
+            if (w.get(name) < 0) w = w.with(name, 0);
+        }
+        return w;
+    }
+
+    private static double rate(Sample from, Sample to) {
+        long ms = to.at - from.at;
+        return ms <= 0 ? 0.0 : (to.total - from.total) / (double) ms;
+    }
+
+    private static ReplayScoreVO toVO(DispatchReplay.Score s, double objective) {
+        return new ReplayScoreVO(s.readyPerRound(), s.waitRatio(), s.idleSecPerRound(), objective);
+    }
+
+    private TuningRunVO finish(TuningRunVO run, long start, String message) {
+        run.setElapsedMs(System.currentTimeMillis() - start);
+        run.setMessage(message);
+        lastRun = run;
+        System.out.println("[" + ts() + "] 调参结束：回放 " + run.getRounds() + " 轮，评估 " + run.getEvaluations()
+                + " 组，" + message);
+        return run;
+    }
+
+    private static String ts() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+}
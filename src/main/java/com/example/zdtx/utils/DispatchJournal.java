@@ -0,0 +1,233 @@
+package com.example.zdtx.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 调度决策日志的一轮记录及其二进制编码：
+ * 1. 输入：打分 / 规划时刻、批量、全部候选（按排序前的队列顺序，回放时同分的先后才一致）、用到的 OD 统计、终点缓存位和处理时间
+ * 2. 输出：本批每条的行驶时间估计、上游是否放行、ready / deferred
+ * 3. 编码：定长数字 + [short 长度][UTF-8] 字符串（-1 表示 null），由 WriteAheadLog 负责分段、校验和刷盘
+ * 录制时只往 Round 里塞引用和数字，编码放到后台线程做
+ */
+public final class DispatchJournal {
+
+    // 分段文件名前缀
+    public static final String PREFIX = "journal-";
+
+    public static final byte SOURCE_SYNC = 1;
+    public static final byte SOURCE_REACTIVE = 2;
+
+    // 2：候选带上容器上一单的终点和完成时间
+    private static final byte VERSION = 2;
+
+    private DispatchJournal() {
+    }
+
+    public static class Candidate {
+        public final String code;
+        public final String from;
+        public final String to;
+        public final int priority;
+        public final long enqueueAt;
+        public final double histMs;
+        public final double score;
+        // 容器上一单的终点和完成时间（未知为 null / 0）
+        public final String lastTo;
+        public final long lastFinishAt;
+
+        public Candidate(String code, String from, String to, int priority, long enqueueAt, double histMs, double score,
+                         String lastTo, long lastFinishAt) {
+            this.code = code;
+            this.from = from;
+            this.to = to;
+            this.priority = priority;
+            this.enqueueAt = enqueueAt;
+            this.histMs = histMs;
+            this.score = score;
+            this.lastTo = lastTo;
+            this.lastFinishAt = lastFinishAt;
+        }
+    }
+
+    public static class Decision {
+        // 对应 candidates 的下标；decisions 的先后就是本批排序后的先后
+        public final int index;
+        // -1 表示信息不完整、没有估算
+        public final long travelMs;
+        public final boolean upstreamOk;
+        public final boolean ready;
+
+        public Decision(int index, long travelMs, boolean upstreamOk, boolean ready) {
+            this.index = index;
+            this.travelMs = travelMs;
+            this.upstreamOk = upstreamOk;
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * 一轮调度。录制侧非线程安全，一轮只在一个线程里填
+     */
+    public static class Round {
+        public byte source;
+        public long scoredAt;
+        public long plannedAt;
+        public int batchSize;
+        // 从开始打分到得出 ready / deferred 的耗时（不含提交）
+        public long elapsedNanos;
+        public final List<Candidate> candidates = new ArrayList<>();
+        // OD key（FROM|TO）-> {mean, std, count}，只记查到的
+        public final Map<String, double[]> od = new LinkedHashMap<>();
+        // 终点 -> 第一次用到时读到的各缓存位空闲时间
+        public final Map<String, long[]> slots = new LinkedHashMap<>();
+        // 终点 -> 处理时间（只有真正占用过缓存位的终点才会读）
+        public final Map<String, Long> serviceMs = new LinkedHashMap<>();
+        public final List<Decision> decisions = new ArrayList<>();
+        // 指令号 -> candidates 下标，只在录制时用，不编码
+        private final Map<String, Integer> index = new HashMap<>();
+
+        public Round(byte source, int batchSize) {
+            this.source = source;
+            this.batchSize = batchSize;
+        }
+
+        public void candidate(Candidate c) {
+            index.put(c.code, candidates.size());
+            candidates.add(c);
+        }
+
+        public int indexOf(String code) {
+            return index.getOrDefault(code, -1);
+        }
+
+        public void od(String key, double[] stats) {
+            if (stats != null) od.putIfAbsent(key, stats);
+        }
+    }
+
+    public static byte[] encode(Round r) {
+        int size = 1 + 1 + 8 + 8 + 4 + 8 + 4 + 4 + 4 + 4 + 4;
+        for (Candidate c : r.candidates) {
+            size += len(c.code) + len(c.from) + len(c.to) + 4 + 8 + 8 + 8 + len(c.lastTo) + 8;
+        }
+        for (String k : r.od.keySet()) size += len(k) + 24;
+        for (Map.Entry<String, long[]> e : r.slots.entrySet()) size += len(e.getKey()) + 4 + 8 * e.getValue().length;
+        for (String k : r.serviceMs.keySet()) size += len(k) + 8;
+        size += r.decisions.size() * (4 + 8 + 1);
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(VERSION).put(r.source).putLong(r.scoredAt).putLong(r.plannedAt)
+                .putInt(r.batchSize).putLong(r.elapsedNanos);
+        buf.putInt(r.candidates.size());
+        for (Candidate c : r.candidates) {
+            putStr(buf, c.code);
+            putStr(buf, c.from);
+            putStr(buf, c.to);
+            buf.putInt(c.priority).putLong(c.enqueueAt).putDouble(c.histMs).putDouble(c.score);
+            putStr(buf, c.lastTo);
+            buf.putLong(c.lastFinishAt);
+        }
+        buf.putInt(r.od.size());
+        r.od.forEach((k, v) -> {
+            putStr(buf, k);
+            buf.putDouble(v[0]).putDouble(v[1]).putDouble(v[2]);
+        });
+        buf.putInt(r.slots.size());
+        r.slots.forEach((k, v) -> {
+            putStr(buf, k);
+            buf.putInt(v.length);
+            for (long t : v) buf.putLong(t);
+        });
+        buf.putInt(r.serviceMs.size());
+        r.serviceMs.forEach((k, v) -> {
+            putStr(buf, k);
+            buf.putLong(v);
+        });
+        buf.putInt(r.decisions.size());
+        for (Decision d : r.decisions) {
+            buf.putInt(d.index).putLong(d.travelMs)
+                    .put((byte) ((d.upstreamOk ? 1 : 0) | (d.ready ? 2 : 0)));
+        }
+        return buf.array();
+    }
+
+    /**
+     * 解码一条记录（兼容旧版本）；版本不认识或内容截断时返回 null
+     */
+    public static Round decode(byte[] payload) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(payload);
+            byte version = buf.get();
+            if (version < 1 || version > VERSION) return null;
+            Round r = new Round(buf.get(), 0);
+            r.scoredAt = buf.getLong();
+            r.plannedAt = buf.getLong();
+            r.batchSize = buf.getInt();
+            r.elapsedNanos = buf.getLong();
+            int n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                String code = getStr(buf), from = getStr(buf), to = getStr(buf);
+                int priority = buf.getInt();
+                long enqueueAt = buf.getLong();
+                double histMs = buf.getDouble(), score = buf.getDouble();
+                String lastTo = version >= 2 ? getStr(buf) : null;
+                long lastFinishAt = version >= 2 ? buf.getLong() : 0L;
+                r.candidates.add(new Candidate(code, from, to, priority, enqueueAt, histMs, score, lastTo, lastFinishAt));
+            }
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                r.od.put(getStr(buf), new double[]{buf.getDouble(), buf.getDouble(), buf.getDouble()});
+            }
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                String k = getStr(buf);
+                long[] v = new long[buf.getInt()];
+                for (int j = 0; j < v.length; j++) v[j] = buf.getLong();
+                r.slots.put(k, v);
+            }
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                r.serviceMs.put(getStr(buf), buf.getLong());
+            }
+            n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                int index = buf.getInt();
+                long travel = buf.getLong();
+                byte flags = buf.get();
+                r.decisions.add(new Decision(index, travel, (flags & 1) != 0, (flags & 2) != 0));
+            }
+            return r;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static int len(String s) {
+        return 2 + (s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putStr(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) b.length);
+        buf.put(b);
+    }
+
+    private static String getStr(ByteBuffer buf) {
+        int n = buf.getShort();
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
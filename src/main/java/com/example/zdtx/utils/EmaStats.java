@@ -0,0 +1,69 @@
+package com.example.zdtx.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EMA 均值 / 标准差统计（stats:od、容器连续任务、终点停留共用）：
+ * 读 FIELDS 三个字段，喂一个样本，得到要写回的整组字段
+ */
+public final class EmaStats {
+
+    // 平滑系数（0<alpha<=1）
+    public static final double ALPHA = 0.1;
+
+    // Hash 字段名
+    public static final String F_EMA1 = "ema_x";
+    public static final String F_EMA2 = "ema_x2";
+    public static final String F_MEAN = "mean_ms";
+    public static final String F_STD  = "std_ms";
+    public static final String F_CNT  = "count";
+
+    // HMGET 顺序：ema_x, ema_x2, count
+    public static final List<String> FIELDS = Arrays.asList(F_EMA1, F_EMA2, F_CNT);
+
+    private EmaStats() {
+    }
+
+    /**
+     * @param current HMGET FIELDS 的结果（可为 null / 含 null）
+     * @return 写回用的字段（ema_x, ema_x2, mean_ms, std_ms, count）
+     */
+    public static Map<String, String> next(List<?> current, long sampleMs) {
+        double ema1 = parseOrDefault(valueAt(current, 0), (double) sampleMs);
+        double ema2 = parseOrDefault(valueAt(current, 1), (double) sampleMs * sampleMs);
+        long cnt    = parseOrDefault(valueAt(current, 2), 0L);
+
+        double newEma1 = (1 - ALPHA) * ema1 + ALPHA * sampleMs;
+        double newEma2 = (1 - ALPHA) * ema2 + ALPHA * (sampleMs * 1.0 * sampleMs);
+
+        double var = newEma2 - newEma1 * newEma1;
+        if (var < 0) var = 0;
+        double std = Math.sqrt(var);
+
+        Map<String, String> out = new HashMap<>(8);
+        out.put(F_EMA1, String.valueOf(newEma1));
+        out.put(F_EMA2, String.valueOf(newEma2));
+        out.put(F_MEAN, String.valueOf(newEma1));
+        out.put(F_STD,  String.valueOf(std));
+        out.put(F_CNT,  String.valueOf(cnt + 1));
+        return out;
+    }
+
+    private static String valueAt(List<?> values, int i) {
+        if (values == null || i >= values.size() || values.get(i) == null) return null;
+        return String.valueOf(values.get(i));
+    }
+
+    private static double parseOrDefault(String s, double def) {
+        try { return s == null ? def : Double.parseDouble(s); }
+        catch (Exception e) { return def; }
+    }
+
+    private static long parseOrDefault(String s, long def) {
+        try { return s == null ? def : Long.parseLong(s); }
+        catch (Exception e) { return def; }
+    }
+}
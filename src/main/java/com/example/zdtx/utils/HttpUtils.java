@@ -1,57 +1,70 @@
 package com.example.zdtx.utils;
 
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpUtil;
 import cn.hutool.http.ContentType;
+import cn.hutool.http.HttpException;
+import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONUtil;
-import org.springframework.http.HttpMethod;
+import com.example.zdtx.domain.vo.HttpHostVO;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * 对外 HTTP 的静态入口，底层是共用的 PooledHttpClient（连接复用、按 host 限并发、超时、统计）。
+ * Spring 启动时由 RestTemplateConfig 按配置替换客户端；启动前用默认配置
+ */
 public class HttpUtils{
 
+    private static volatile PooledHttpClient client = PooledHttpClient.defaults();
+
+    // getCustom 带的 Bearer token（zdtx.http.auth-token），为空时不带
+    private static volatile String authToken = "";
+
+    public static void use(PooledHttpClient pooledHttpClient, String token) {
+        client = pooledHttpClient;
+        authToken = token == null ? "" : token.trim();
+    }
+
+    public static List<HttpHostVO> stats() {
+        return client.stats();
+    }
+
     /**
      * 简单 GET 带查询参数
      */
     public static String get(String url, Map<String, Object> params) {
         // 自动拼接 ?key=value
-        return HttpUtil.get(url, params);
+        return send("GET", withQuery(url, params), null, null);
     }
 
     /**
-     * GET 并自定义 Header、超时等
+     * GET 并带上配置的 Authorization
      */
     public static String getCustom(String url, Map<String, Object> params) {
-        HttpResponse resp = HttpRequest.get(url)
-                .addHeaders(Map.of("Authorization", "Bearer abc123"))
-                .form(params)            // 也可以 .body() 发原始字符串
-                .timeout(5_000)          // 5 秒超时
-                .execute();
-        return resp.body();
+        Map<String, String> headers = new HashMap<>();
+        if (!authToken.isEmpty()) {
+            headers.put("Authorization", "Bearer " + authToken);
+        }
+        return send("GET", withQuery(url, params), headers, null);
     }
 
     /**
      * POST 表单提交
      */
     public static String postForm(String url, Map<String, Object> formParams) {
-        return HttpRequest.post(url)
-                .contentType(ContentType.FORM_URLENCODED.toString())
-                .form(formParams)       // 自动把 Map 转成 x-www-form-urlencoded
-                .execute()
-                .body();
+        return send("POST", url, Map.of("Content-Type", ContentType.FORM_URLENCODED.toString()),
+                HttpUtil.toParams(formParams, StandardCharsets.UTF_8));
     }
 
     /**
      * POST JSON 提交
      */
     public static String postJson(String url, Object jsonBody) {
-        return HttpRequest.post(url)
-                .contentType(ContentType.JSON.toString())
-                .body(JSONUtil.toJsonStr(jsonBody))
-                .execute()
-                .body();
+        return send("POST", url, Map.of("Content-Type", ContentType.JSON.toString()),
+                JSONUtil.toJsonStr(jsonBody));
     }
 
     /**
@@ -62,36 +75,39 @@ public class HttpUtils{
                           Map<String, String> headers,
                           Map<String, Object> formParams,
                           Object jsonBody) {
-        // 1. 先准备 HttpRequest 对象
-        HttpRequest req;
+        Map<String, String> all = new HashMap<>();
+        if (headers != null) {
+            all.putAll(headers);
+        }
         if ("GET".equalsIgnoreCase(method)) {
             // 带参 GET
-            req = HttpRequest.get(url).form(formParams);
+            return send("GET", withQuery(url, formParams), all, null);
         } else if ("POST".equalsIgnoreCase(method)) {
             if (jsonBody != null) {
                 // JSON POST
-                req = HttpRequest.post(url)
-                        .contentType(ContentType.JSON.toString())
-                        .body(JSONUtil.toJsonStr(jsonBody));
-            } else {
-                // 表单 POST
-                req = HttpRequest.post(url)
-                        .contentType(ContentType.FORM_URLENCODED.toString())
-                        .form(formParams);
+                all.putIfAbsent("Content-Type", ContentType.JSON.toString());
+                return send("POST", url, all, JSONUtil.toJsonStr(jsonBody));
             }
-        } else {
-            // 其它 HTTP 方法，Hutool 在老版本里可能不支持 of(...)
-            throw new UnsupportedOperationException("Unsupported method: " + method);
+            // 表单 POST
+            all.putIfAbsent("Content-Type", ContentType.FORM_URLENCODED.toString());
+            return send("POST", url, all, HttpUtil.toParams(formParams, StandardCharsets.UTF_8));
         }
+        throw new UnsupportedOperationException("Unsupported method: " + method);
+    }
 
-        // 2. 公共设置：headers、超时
-        if (headers != null) {
-            req.addHeaders(headers);
+    private static String send(String method, String url, Map<String, String> headers, String body) {
+        try {
+            return client.execute(method, url, headers,
+                    body == null ? null : body.getBytes(StandardCharsets.UTF_8)).bodyString();
+        } catch (IOException e) {
+            throw new HttpException(e);
         }
-        req.timeout(10_000);  // 10 秒超时
+    }
 
-        // 3. 发送并返回
-        HttpResponse resp = req.execute();
-        return resp.body();
+    private static String withQuery(String url, Map<String, Object> params) {
+        if (params == null || params.isEmpty()) {
+            return url;
+        }
+        return HttpUtil.urlWithForm(url, params, StandardCharsets.UTF_8, true);
     }
-}
\ No newline at end of file
+}
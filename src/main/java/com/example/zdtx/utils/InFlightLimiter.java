@@ -0,0 +1,125 @@
+package com.example.zdtx.utils;
+
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * 响应式请求的显式背压：
+ * 1. 同时执行的请求数不超过 maxInFlight
+ * 2. 超出的请求进有界等待队列（不占线程），前面的完成后依次放行
+ * 3. 等待队列也满时立即拒绝（BusyException），由调用方转成“系统繁忙”
+ */
+public class InFlightLimiter {
+
+    public static class BusyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public BusyException(String name) {
+            super(name + " 繁忙，请稍后重试");
+        }
+    }
+
+    private final String name;
+    private final int maxInFlight;
+    private final int maxQueue;
+
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    // 本线程正在放行队列时记下嵌套 release 的次数，由外层循环接着处理（同步完成的任务不会层层递归）
+    private final ThreadLocal<int[]> draining = new ThreadLocal<>();
+    private long accepted;
+    private long rejected;
+
+    public InFlightLimiter(String name, int maxInFlight, int maxQueue) {
+        this.name = name;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    public <T> Mono<T> submit(Supplier<Mono<T>> task) {
+        return Mono.create(sink -> {
+            Runnable start = () -> Mono.defer(task)
+                    .doFinally(s -> release())
+                    .subscribe(sink::success, sink::error, sink::success);
+            synchronized (this) {
+                if (inFlight >= maxInFlight) {
+                    if (waiting.size() >= maxQueue) {
+                        rejected++;
+                        sink.error(new BusyException(name));
+                        return;
+                    }
+                    waiting.addLast(start);
+                    accepted++;
+                    // 排队期间客户端断开就不再执行
+                    sink.onCancel(() -> {
+                        synchronized (this) {
+                            waiting.remove(start);
+                        }
+                    });
+                    return;
+                }
+                inFlight++;
+                accepted++;
+            }
+            start.run();
+        });
+    }
+
+    private void release() {
+        int[] pending = draining.get();
+        if (pending != null) {
+            pending[0]++;
+            return;
+        }
+        pending = new int[]{1};
+        draining.set(pending);
+        try {
+            while (pending[0] > 0) {
+                pending[0]--;
+                Runnable next;
+                synchronized (this) {
+                    next = waiting.pollFirst();
+                    if (next == null) {
+                        inFlight--;
+                        continue;
+                    }
+                }
+                // 名额直接转给队首，inFlight 不变
+                next.run();
+            }
+        } finally {
+            draining.remove();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    public synchronized long getAccepted() {
+        return accepted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.zdtx.utils;
+
+import com.example.zdtx.domain.vo.HistogramVO;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的以 2 为底的对数分桶直方图：桶 i 记录 [2^(i-1), 2^i) 的样本，
+ * 分位数取桶上界，误差不超过 2 倍，够看数量级和长尾
+ */
+public class LogHistogram {
+
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        buckets.incrementAndGet(bucketOf(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public HistogramVO snapshot() {
+        long[] b = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            b[i] = buckets.get(i);
+        }
+        return of(b, count.get(), sum.get(), max.get());
+    }
+
+    /**
+     * 样本所在的桶
+     */
+    public static int bucketOf(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * 从已有的桶计数还原（例如存在 Redis 里的汇总）；不知道最大值时传最高非空桶的上界
+     */
+    public static HistogramVO of(long[] b, long count, long sum, long max) {
+        long total = 0;
+        for (long n : b) {
+            total += n;
+        }
+        double mean = count == 0 ? 0.0 : sum / (double) count;
+        return new HistogramVO(count, mean,
+                percentile(b, total, max, 0.50), percentile(b, total, max, 0.90), percentile(b, total, max, 0.99), max);
+    }
+
+    private static long percentile(long[] b, long total, long max, double q) {
+        if (total == 0) return 0L;
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < b.length; i++) {
+            seen += b[i];
+            if (seen >= rank) {
+                return i == 0 ? 0L : Math.min(max, (1L << i) - 1);
+            }
+        }
+        return max;
+    }
+}
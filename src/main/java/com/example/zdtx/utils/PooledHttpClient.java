@@ -0,0 +1,200 @@
+package com.example.zdtx.utils;
+
+import com.example.zdtx.domain.vo.HttpHostVO;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 全进程共用的 HTTP 客户端（JDK HttpClient，HTTP/1.1 长连接复用）：
+ * 1. 连接按 host 复用，不再每次请求新建连接
+ * 2. 每个 host 最多 maxPerHost 个并发请求（也就限制了到这个 host 的连接数），
+ *    等 acquireTimeoutMs 仍拿不到名额直接失败，不把调用线程挂住
+ * 3. 连接超时 / 读超时统一配置
+ * 4. 可选 gzip：请求带 Accept-Encoding，响应按 Content-Encoding 解压
+ * 5. 按 host 统计请求数、失败、超时、排队拒绝和耗时分布
+ */
+public class PooledHttpClient {
+
+    public static class HostBusyException extends IOException {
+        public HostBusyException(String host, long waitMs) {
+            super(host + " 并发请求已满，等待 " + waitMs + "ms 未拿到名额");
+        }
+    }
+
+    /**
+     * 响应：状态码、响应头（小写 key）、已解压的 body
+     */
+    public static class Response {
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        Response(int status, Map<String, List<String>> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int status() {
+            return status;
+        }
+
+        public Map<String, List<String>> headers() {
+            return headers;
+        }
+
+        public byte[] body() {
+            return body;
+        }
+
+        public String bodyString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    // JDK 客户端自己管理的头，不能手动设置
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "content-length", "expect", "host", "upgrade"));
+
+    private final HttpClient client;
+    private final long readTimeoutMs;
+    private final int maxPerHost;
+    private final long acquireTimeoutMs;
+    private final boolean compression;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public PooledHttpClient(long connectTimeoutMs, long readTimeoutMs, int maxPerHost, long acquireTimeoutMs,
+                            boolean compression) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.max(1, connectTimeoutMs)))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.readTimeoutMs = Math.max(1, readTimeoutMs);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.acquireTimeoutMs = Math.max(0, acquireTimeoutMs);
+        this.compression = compression;
+    }
+
+    /**
+     * 默认配置：连接 2s、读 5s、每个 host 32 并发、gzip 开
+     */
+    public static PooledHttpClient defaults() {
+        return new PooledHttpClient(2000, 5000, 32, 1000, true);
+    }
+
+    public Response execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        URI uri = URI.create(url);
+        Host host = hosts.computeIfAbsent(hostKey(uri), Host::new);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .method(method.toUpperCase(Locale.ROOT), body == null || body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        Map<String, String> all = new LinkedHashMap<>();
+        if (compression) all.put("Accept-Encoding", "gzip");
+        if (headers != null) all.putAll(headers);
+        all.forEach((k, v) -> {
+            if (v != null && !RESTRICTED_HEADERS.contains(k.toLowerCase(Locale.ROOT))) builder.header(k, v);
+        });
+
+        acquire(host);
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> resp = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            host.latencyMs.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+            host.bytesIn.addAndGet(resp.body().length);
+            if (resp.statusCode() >= 500) host.errors.incrementAndGet();
+            return decode(resp);
+        } catch (HttpTimeoutException e) {
+            host.timeouts.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            host.errors.incrementAndGet();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("HTTP 请求被中断：" + url);
+        } finally {
+            host.permits.release();
+            host.inFlight.decrementAndGet();
+        }
+    }
+
+    public List<HttpHostVO> stats() {
+        return hosts.values().stream()
+                .sorted(Comparator.comparing(h -> h.key))
+                .map(h -> new HttpHostVO(h.key, maxPerHost, h.inFlight.get(), h.requests.get(), h.errors.get(),
+                        h.timeouts.get(), h.rejected.get(), h.bytesIn.get(), h.latencyMs.snapshot()))
+                .collect(Collectors.toList());
+    }
+
+    private void acquire(Host host) throws IOException {
+        host.requests.incrementAndGet();
+        try {
+            if (!host.permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                host.rejected.incrementAndGet();
+                throw new HostBusyException(host.key, acquireTimeoutMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待 " + host.key + " 并发名额时被中断");
+        }
+        host.inFlight.incrementAndGet();
+    }
+
+    private static Response decode(HttpResponse<byte[]> resp) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        resp.headers().map().forEach((k, v) -> headers.put(k.toLowerCase(Locale.ROOT), v));
+        byte[] body = resp.body();
+        List<String> encoding = headers.get("content-encoding");
+        if (encoding != null && encoding.stream().anyMatch(e -> e.equalsIgnoreCase("gzip")) && body.length > 0) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+            headers.remove("content-encoding");
+            headers.put("content-length", Collections.singletonList(String.valueOf(body.length)));
+        }
+        return new Response(resp.statusCode(), headers, body);
+    }
+
+    private static String hostKey(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private class Host {
+        final String key;
+        final Semaphore permits = new Semaphore(maxPerHost);
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final LogHistogram latencyMs = new LogHistogram();
+
+        Host(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.zdtx.utils;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * 单机和 Redis Cluster 通用的 key 工具：
+ * 1. slot：按 hash tag 规则算 key 所在的槽
+ * 2. SCAN：Spring 的 scan 在集群下只扫一个节点，这里直接用 Lettuce 的命令，并把上一页返回的游标对象原样传回，
+ *    集群模式下 Lettuce 据此逐个节点扫完；单机时就是普通的 SCAN
+ */
+public class RedisKeyspace {
+
+    public static final int SLOTS = SlotHash.SLOT_COUNT;
+
+    private static final long SCAN_TIMEOUT_SECONDS = 5;
+
+    private RedisKeyspace() {
+    }
+
+    public static int slot(String key) {
+        return SlotHash.getSlot(key);
+    }
+
+    /**
+     * 从 from 接着扫一页（第一页传 ScanCursor.INITIAL）
+     */
+    @SuppressWarnings("unchecked")
+    public static KeyScanCursor<byte[]> scanPage(StringRedisTemplate template, ScanCursor from, String pattern, int count) {
+        return template.execute((RedisCallback<KeyScanCursor<byte[]>>) connection -> {
+            RedisKeyAsyncCommands<byte[], byte[]> commands = (RedisKeyAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            ScanArgs args = ScanArgs.Builder.matches(pattern).limit(count);
+            try {
+                return commands.scan(from, args).get(SCAN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("SCAN 被中断", e);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("SCAN 失败：" + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 扫出匹配的全部 key，each 返回 false 时提前结束
+     */
+    public static void scan(StringRedisTemplate template, String pattern, int count, Predicate<String> each) {
+        ScanCursor cursor = ScanCursor.INITIAL;
+        do {
+            KeyScanCursor<byte[]> page = scanPage(template, cursor, pattern, count);
+            for (byte[] k : page.getKeys()) {
+                if (!each.test(new String(k, StandardCharsets.UTF_8))) return;
+            }
+            cursor = page;
+        } while (!cursor.isFinished());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.zdtx.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一轮调度的分阶段耗时：
+ * 1. 被采样的轮次在调度线程上挂一个 RoundTrace（ThreadLocal），没采样时 current() 为 null，埋点处判空直接跳过
+ * 2. 同名阶段在一轮里可能进出多次（例如逐条候选的 HGETALL），累加耗时和次数，记第一次进入和最后一次退出的时间
+ * 3. 阶段可以嵌套，Redis 命令数记在当时最内层的阶段上，由 Lettuce 命令监听和合并网关在调用线程上上报
+ * 只在一个线程上读写，不加锁
+ */
+public class RoundTrace {
+
+    private static final ThreadLocal<RoundTrace> CURRENT = new ThreadLocal<>();
+
+    public static class Stage {
+        public final String name;
+        // 第一次进入时外层的阶段，直接属于本轮时为 null
+        public final String parent;
+        public final int depth;
+        // 相对本轮开始的纳秒
+        public long firstStartNanos = -1L;
+        public long lastEndNanos;
+        public long totalNanos;
+        public int calls;
+        public int redisCommands;
+
+        private long enteredAt;
+        private Stage outer;
+
+        Stage(String name, Stage parent) {
+            this.name = name;
+            this.parent = parent == null ? null : parent.name;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+    }
+
+    public final String traceId;
+    public final String partition;
+    public final long startedAtMs;
+    public final long startNanos;
+    public long elapsedNanos;
+    public int redisCommands;
+    // 批量、候选数、ready / deferred 数等
+    public final Map<String, Long> attributes = new LinkedHashMap<>();
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private Stage open;
+
+    public RoundTrace(String partition) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        this.traceId = hex(r.nextLong()) + hex(r.nextLong());
+        this.partition = partition == null ? "" : partition;
+        this.startedAtMs = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 当前线程上正在记录的一轮；没采样时为 null
+     */
+    public static RoundTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前线程发出 count 条 Redis 命令
+     */
+    public static void redis(int count) {
+        RoundTrace t = CURRENT.get();
+        if (t != null) t.onRedis(count);
+    }
+
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 结束本轮：补齐没退出的阶段，从当前线程摘下
+     */
+    public void finish() {
+        long now = System.nanoTime();
+        while (open != null) {
+            exit(open.name, now);
+        }
+        elapsedNanos = now - startNanos;
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+
+    public void enter(String name) {
+        long now = System.nanoTime();
+        Stage s = stages.get(name);
+        if (s == null) {
+            s = new Stage(name, open);
+            stages.put(name, s);
+        }
+        if (s.firstStartNanos < 0) s.firstStartNanos = now - startNanos;
+        s.enteredAt = now;
+        s.outer = open;
+        open = s;
+    }
+
+    public void exit(String name) {
+        exit(name, System.nanoTime());
+    }
+
+    private void exit(String name, long now) {
+        Stage target = open;
+        while (target != null && !target.name.equals(name)) {
+            target = target.outer;
+        }
+        if (target == null) return;
+        // 中途抛异常没退出的内层阶段一并结束
+        while (open != null) {
+            Stage s = open;
+            s.totalNanos += now - s.enteredAt;
+            s.lastEndNanos = now - startNanos;
+            s.calls++;
+            open = s.outer;
+            s.outer = null;
+            if (s.name.equals(name)) return;
+        }
+    }
+
+    public void attribute(String key, long value) {
+        attributes.put(key, value);
+    }
+
+    public List<Stage> stages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    private void onRedis(int count) {
+        redisCommands += count;
+        if (open != null) open.redisCommands += count;
+    }
+
+    private static String hex(long v) {
+        String s = Long.toHexString(v);
+        return "0000000000000000".substring(s.length()) + s;
+    }
+}
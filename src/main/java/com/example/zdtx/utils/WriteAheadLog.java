@@ -0,0 +1,199 @@
+package com.example.zdtx.utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地追加日志（内存映射 + 批量刷盘）：
+ * 1. 文件按固定大小分段：wal-<序号>.log，写满自动切下一段
+ * 2. 记录格式：[int 长度][int crc32][byte 类型][payload]，长度为 0 表示段尾
+ * 3. 累计 syncBatch 条或每隔 syncIntervalMs 调一次 force()
+ * 4. 可选只保留最近 maxSegments 段（调度日志这类只需留近期的场景），0 表示不删
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER = 4 + 4 + 1;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    public static class Record {
+        public final byte type;
+        public final byte[] payload;
+        public Record(byte type, byte[] payload) { this.type = type; this.payload = payload; }
+    }
+
+    private final Path dir;
+    private final String prefix;
+    private final int maxSegments;
+    private final int segmentSize;
+    private final int syncBatch;
+    private final ScheduledExecutorService flusher;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentSeq;
+    private int unsynced;
+
+    public WriteAheadLog(Path dir, int segmentSize, int syncBatch, long syncIntervalMs) throws IOException {
+        this(dir, PREFIX, segmentSize, syncBatch, syncIntervalMs, 0);
+    }
+
+    public WriteAheadLog(Path dir, String prefix, int segmentSize, int syncBatch, long syncIntervalMs,
+                         int maxSegments) throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.maxSegments = Math.max(0, maxSegments);
+        this.segmentSize = segmentSize;
+        this.syncBatch = Math.max(1, syncBatch);
+        Files.createDirectories(dir);
+        List<Path> existing = segments(dir, prefix);
+        this.segmentSeq = existing.isEmpty() ? 0 : seqOf(existing.get(existing.size() - 1), prefix) + 1;
+        openSegment();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, prefix + "flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void append(byte type, byte[] payload) throws IOException {
+        int need = HEADER + payload.length;
+        if (need + 4 > segmentSize) {
+            throw new IOException("WAL 记录过大：" + need);
+        }
+        if (buffer.remaining() < need + 4) {
+            rotate();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        buffer.putInt(payload.length + 1);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        if (++unsynced >= syncBatch) {
+            sync();
+        }
+    }
+
+    public synchronized void sync() {
+        if (unsynced > 0 && buffer != null) {
+            buffer.force();
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * 关闭并删除所有分段（回放完成后调用）
+     */
+    public synchronized void closeAndDelete() throws IOException {
+        flusher.shutdownNow();
+        closeSegment();
+        for (Path p : segments(dir, prefix)) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        sync();
+        closeSegment();
+    }
+
+    /**
+     * 按顺序读出目录下所有分段的有效记录（遇到段尾或校验失败即停在该段）
+     */
+    public static List<Record> readAll(Path dir) throws IOException {
+        return readAll(dir, PREFIX);
+    }
+
+    public static List<Record> readAll(Path dir, String prefix) throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return records;
+        for (Path p : segments(dir, prefix)) {
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                while (buf.remaining() >= HEADER) {
+                    int len = buf.getInt();
+                    if (len <= 0 || len - 1 > buf.remaining() - 5) break;
+                    int crcVal = buf.getInt();
+                    byte type = buf.get();
+                    byte[] payload = new byte[len - 1];
+                    buf.get(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(type);
+                    crc.update(payload);
+                    if ((int) crc.getValue() != crcVal) break;
+                    records.add(new Record(type, payload));
+                }
+            }
+        }
+        return records;
+    }
+
+    public static boolean hasSegments(Path dir) throws IOException {
+        return Files.isDirectory(dir) && !segments(dir, PREFIX).isEmpty();
+    }
+
+    /**
+     * 当前各分段文件（按序号升序）
+     */
+    public synchronized List<Path> segmentFiles() throws IOException {
+        return segments(dir, prefix);
+    }
+
+    private void rotate() throws IOException {
+        buffer.force();
+        unsynced = 0;
+        closeSegment();
+        segmentSeq++;
+        openSegment();
+        if (maxSegments > 0) {
+            List<Path> all = segments(dir, prefix);
+            for (int i = 0; i < all.size() - maxSegments; i++) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path file = dir.resolve(prefix + String.format("%012d", segmentSeq) + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private static List<Path> segments(Path dir, String prefix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            List<Path> list = new ArrayList<>();
+            s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(prefix) && n.endsWith(SUFFIX);
+            }).sorted().forEach(list::add);
+            return list;
+        }
+    }
+
+    private static long seqOf(Path p, String prefix) {
+        String n = p.getFileName().toString();
+        return Long.parseLong(n.substring(prefix.length(), n.length() - SUFFIX.length()));
+    }
+}
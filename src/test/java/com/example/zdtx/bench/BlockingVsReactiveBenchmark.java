@@ -0,0 +1,165 @@
+package com.example.zdtx.bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 阻塞接口（/instruction、/status）与响应式接口（/rx）的高并发对比。
+ * 会写入 BENCH- 开头的指令和对应统计 key，只能指向一台临时 Redis：
+ * mvn test -Dtest=BlockingVsReactiveBenchmark -Dzdtx.bench.redis-host=127.0.0.1 [-Dzdtx.bench.concurrency=512 -Dzdtx.bench.requests=20000 -Dzdtx.bench.paths=blocking,reactive]
+ * 每种路径先入队 requests 条，再并发发 requests 次回报，期间每 10 次回报夹一次调度，输出吞吐和 p50/p99/max
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "zdtx.bench.redis-host", matches = ".+")
+class BlockingVsReactiveBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("zdtx.bench.concurrency", 512);
+    private static final int REQUESTS = Integer.getInteger("zdtx.bench.requests", 20000);
+    private static final String PATHS = System.getProperty("zdtx.bench.paths", "blocking,reactive");
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", () -> System.getProperty("zdtx.bench.redis-host"));
+        registry.add("spring.redis.port", () -> Integer.getInteger("zdtx.bench.redis-port", 6379));
+        // 阻塞路径的 servlet 线程要足够多，否则比的只是线程数
+        registry.add("server.tomcat.threads.max", () -> Math.max(200, CONCURRENCY));
+        registry.add("zdtx.reactive.max-queue", () -> REQUESTS);
+    }
+
+    @Test
+    void compare() throws Exception {
+        // 预热一轮，避免 JIT / 连接建立算进第一种路径
+        run("warmup", "/instruction/addInstruction", "/status/update", "/instruction/getInstructions", 1000);
+        List<Stats> results = new ArrayList<>();
+        if (PATHS.contains("blocking")) {
+            results.add(run("blocking", "/instruction/addInstruction", "/status/update", "/instruction/getInstructions", REQUESTS));
+        }
+        if (PATHS.contains("reactive")) {
+            results.add(run("reactive", "/rx/instruction/addInstruction", "/rx/status/update", "/rx/instruction/getInstructions", REQUESTS));
+        }
+
+        System.out.println("==== 并发 " + CONCURRENCY + "，请求 " + REQUESTS + " ====");
+        results.forEach(System.out::println);
+    }
+
+    private Stats run(String name, String addPath, String statusPath, String dispatchPath, int n) throws Exception {
+        String prefix = "BENCH-" + name + "-" + System.currentTimeMillis() + "-";
+        Stats ingest = fire(name + " ingest", n, i -> post(addPath, "{\"instructionCode\":\"" + prefix + i
+                + "\",\"containerCode\":\"C" + (i % 200) + "\",\"locationFrom\":\"G" + pad(i % 68 + 1)
+                + "\",\"locationTo\":\"G" + pad((i * 7) % 68 + 1) + "\",\"priority\":" + (i % 3) + "}"));
+        Stats mixed = fire(name + " feedback+dispatch", n, i -> i % 10 == 0
+                ? get(dispatchPath)
+                : post(statusPath, "{\"instructionCode\":\"" + prefix + i + "\",\"containerCode\":\"C" + (i % 200)
+                + "\",\"locationFrom\":\"G" + pad(i % 68 + 1) + "\",\"locationTo\":\"G" + pad((i * 7) % 68 + 1) + "\"}"));
+        System.out.println(ingest);
+        System.out.println(mixed);
+        return ingest.merge(name, mixed);
+    }
+
+    private Stats fire(String name, int n, java.util.function.IntFunction<HttpRequest> req) throws Exception {
+        Semaphore permits = new Semaphore(CONCURRENCY);
+        long[] latencies = new long[n];
+        AtomicInteger errors = new AtomicInteger();
+        Map<String, Integer> errorKinds = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> all = new ArrayList<>(n);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            permits.acquire();
+            final int idx = i;
+            final long start = System.nanoTime();
+            all.add(client.sendAsync(req.apply(i), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((r, e) -> {
+                        latencies[idx] = System.nanoTime() - start;
+                        if (e != null || r.statusCode() != 200 || !r.body().contains("\"responseCode\":0")) {
+                            errors.incrementAndGet();
+                            String kind = e != null ? e.getClass().getSimpleName()
+                                    : r.statusCode() != 200 ? "HTTP " + r.statusCode() : messageOf(r.body());
+                            errorKinds.merge(kind, 1, Integer::sum);
+                        }
+                        permits.release();
+                    }));
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).handle((v, e) -> null).join();
+        if (!errorKinds.isEmpty()) {
+            System.out.println(name + " errors: " + errorKinds);
+        }
+        return new Stats(name, latencies, errors.get(), System.nanoTime() - t0);
+    }
+
+    private static String messageOf(String body) {
+        int i = body.indexOf("\"responseMessage\":");
+        if (i < 0) return body.length() > 80 ? body.substring(0, 80) : body;
+        int end = body.indexOf(',', i);
+        return body.substring(i + 18, end < 0 ? body.length() : end);
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).GET().build();
+    }
+
+    private static String pad(int i) {
+        return i < 10 ? "0" + i : String.valueOf(i);
+    }
+
+    private static class Stats {
+        final String name;
+        final long[] latencies;
+        final int errors;
+        final long elapsedNs;
+
+        Stats(String name, long[] latencies, int errors, long elapsedNs) {
+            this.name = name;
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedNs = elapsedNs;
+        }
+
+        Stats merge(String name, Stats other) {
+            long[] l = Arrays.copyOf(latencies, latencies.length + other.latencies.length);
+            System.arraycopy(other.latencies, 0, l, latencies.length, other.latencies.length);
+            return new Stats(name, l, errors + other.errors, elapsedNs + other.elapsedNs);
+        }
+
+        @Override
+        public String toString() {
+            long[] s = latencies.clone();
+            Arrays.sort(s);
+            double secs = elapsedNs / 1e9;
+            return String.format("%-28s %8.0f req/s  p50=%6.1fms  p99=%7.1fms  max=%7.1fms  errors=%d",
+                    name, s.length / secs, s[s.length / 2] / 1e6, s[(int) (s.length * 0.99)] / 1e6,
+                    s[s.length - 1] / 1e6, errors);
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.example.zdtx.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 混合负载 / 长稳（soak）压测：按固定到达率（开环）发 addInstruction / addInstructions / getInstructions /
+ * cancelInstruction / status/update，每个接口记两份延迟直方图：
+ * - 修正后：从计划发出时间算起（发送被前面的慢请求或并发上限拖住的那段也算进去，避免协调遗漏）
+ * - 服务时间：从实际发出算起，和修正后的差距就是排队被掩盖的部分
+ * 定期采样各接口区间分位数、老年代 GC 后占用、Redis key 数 / 内存（可按前缀分），长跑时看有没有持续增长。
+ * 会写入 LOAD- 开头的指令，只能指向一台临时 Redis：
+ * mvn test -Dtest=LoadSoakHarness -Dzdtx.load.redis-host=127.0.0.1 [-Dzdtx.load.rate=200 -Dzdtx.load.duration-s=60
+ *   -Dzdtx.load.mix=add=40,batch=5,dispatch=20,cancel=5,status=30 -Dzdtx.load.store=memory ...]
+ * 长稳：-Dzdtx.load.duration-s=14400 -Dzdtx.load.sample-s=60；采样明细写到 target/load/soak-*.csv
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "zdtx.load.redis-host", matches = ".+")
+class LoadSoakHarness {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("zdtx.load.rate", "200"));
+    private static final long DURATION_S = Long.getLong("zdtx.load.duration-s", 60L);
+    // 预热期内的请求不计入总直方图
+    private static final long WARMUP_S = Long.getLong("zdtx.load.warmup-s", 10L);
+    private static final long SAMPLE_S = Long.getLong("zdtx.load.sample-s", 10L);
+    private static final String MIX = System.getProperty("zdtx.load.mix", "add=40,batch=5,dispatch=20,cancel=5,status=30");
+    private static final int BATCH_SIZE = Integer.getInteger("zdtx.load.batch-size", 20);
+    private static final int MAX_OUTSTANDING = Integer.getInteger("zdtx.load.max-outstanding", 1024);
+    private static final long SEED = Long.getLong("zdtx.load.seed", 42L);
+    // 采样时按 key 前缀 SCAN 计数，key 很多时可以关掉只看 DBSIZE
+    private static final boolean KEY_SCAN = Boolean.parseBoolean(System.getProperty("zdtx.load.key-scan", "true"));
+    // 默认放开入队限流，测的是调度本身；要连限流一起测时设 true
+    private static final boolean KEEP_LIMITS = Boolean.getBoolean("zdtx.load.keep-limits");
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String[] OPS = {"add", "batch", "dispatch", "cancel", "status"};
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newFixedThreadPool(8))
+            .build();
+
+    private final String prefix = "LOAD-" + System.currentTimeMillis() + "-";
+    private final AtomicLong seq = new AtomicLong();
+    // 可取消的（已入队）和可回报完成的（调度返回过的）指令号，各自有上限
+    private final Deque<Long> waiting = new ConcurrentLinkedDeque<>();
+    private final Queue<Long> dispatched = new ConcurrentLinkedQueue<>();
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private volatile boolean measuring;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", () -> System.getProperty("zdtx.load.redis-host"));
+        registry.add("spring.redis.port", () -> Integer.getInteger("zdtx.load.redis-port", 6379));
+        registry.add("zdtx.store.type", () -> System.getProperty("zdtx.load.store", "redis"));
+        registry.add("server.tomcat.threads.max", () -> Math.max(200, MAX_OUTSTANDING));
+        // 测试配置里关掉了在途回收，长跑要和线上一样打开
+        registry.add("zdtx.lifecycle.reaper-enabled", () -> true);
+        if (!KEEP_LIMITS) {
+            registry.add("zdtx.ingest.default-rate-per-sec", () -> 1_000_000);
+            registry.add("zdtx.ingest.default-burst", () -> 1_000_000);
+            registry.add("zdtx.ingest.high-watermark", () -> Long.MAX_VALUE / 2);
+            registry.add("zdtx.ingest.low-watermark", () -> Long.MAX_VALUE / 4);
+        }
+    }
+
+    @Test
+    void soak() throws Exception {
+        for (String op : OPS) {
+            endpoints.put(op, new Endpoint(op));
+        }
+        double[] weights = parseMix(MIX);
+        Random random = new Random(SEED);
+        Semaphore permits = new Semaphore(MAX_OUTSTANDING);
+        List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+
+        Path out = Paths.get("target", "load");
+        Files.createDirectories(out);
+        Path csv = out.resolve("soak-" + System.currentTimeMillis() + ".csv");
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        long begin = System.nanoTime();
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+            w.println(csvHeader());
+            sampler.scheduleAtFixedRate(() -> {
+                Sample s = sample((System.nanoTime() - begin) / 1_000_000_000L);
+                samples.add(s);
+                System.out.println(s);
+                synchronized (w) {
+                    w.println(s.csv());
+                    w.flush();
+                }
+            }, SAMPLE_S, SAMPLE_S, TimeUnit.SECONDS);
+
+            // 开环：第 i 个请求的计划时间 = begin + i / rate，不管前面的有没有返回
+            long intervalNs = (long) (1_000_000_000L / RATE);
+            long endNs = begin + DURATION_S * 1_000_000_000L;
+            long warmupEnd = begin + WARMUP_S * 1_000_000_000L;
+            for (long i = 0; ; i++) {
+                long intended = begin + i * intervalNs;
+                if (intended >= endNs) break;
+                if (!measuring && intended >= warmupEnd) {
+                    endpoints.values().forEach(Endpoint::reset);
+                    measuring = true;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                String op = OPS[pick(weights, random.nextDouble())];
+                permits.acquire();
+                send(op, intended).whenComplete((v, e) -> permits.release());
+            }
+            permits.acquire(MAX_OUTSTANDING);
+            sampler.shutdown();
+            sampler.awaitTermination(SAMPLE_S + 5, TimeUnit.SECONDS);
+            Sample last = sample((System.nanoTime() - begin) / 1_000_000_000L);
+            samples.add(last);
+            synchronized (w) {
+                w.println(last.csv());
+            }
+        }
+
+        System.out.println("==== 到达率 " + RATE + "/s，时长 " + DURATION_S + "s（预热 " + WARMUP_S + "s 不计），混合 " + MIX + " ====");
+        for (Endpoint e : endpoints.values()) {
+            System.out.println(e.summary());
+        }
+        System.out.println(growth(samples));
+        System.out.println("采样明细：" + csv.toAbsolutePath());
+    }
+
+    // ===================== 请求 =====================
+
+    private CompletableFuture<Void> send(String op, long intended) {
+        switch (op) {
+            case "batch": {
+                StringBuilder body = new StringBuilder("[");
+                long[] codes = new long[BATCH_SIZE];
+                for (int k = 0; k < BATCH_SIZE; k++) {
+                    codes[k] = seq.incrementAndGet();
+                    body.append(k == 0 ? "" : ",").append(addJson(codes[k]));
+                }
+                return call(op, post("/instruction/addInstructions", body.append(']').toString()), intended,
+                        r -> Arrays.stream(codes).forEach(this::remember));
+            }
+            case "dispatch":
+                return call(op, get("/instruction/getInstructions"), intended, r -> {
+                    for (JsonNode n : r.path("data")) {
+                        Long code = codeOf(n.path("instructionCode").asText(""));
+                        if (code != null && dispatched.size() < 100_000) dispatched.add(code);
+                    }
+                });
+            case "cancel": {
+                Long code = waiting.pollLast();
+                if (code == null) return send("add", intended);
+                return call(op, delete("/instruction/cancelInstruction",
+                        "{\"instructionCode\":\"" + prefix + code + "\"}"), intended, r -> { });
+            }
+            case "status": {
+                Long code = dispatched.poll();
+                if (code == null) return send("dispatch", intended);
+                return call(op, post("/status/update", statusJson(code)), intended, r -> { });
+            }
+            default: {
+                long code = seq.incrementAndGet();
+                return call("add", post("/instruction/addInstruction", addJson(code)), intended, r -> remember(code));
+            }
+        }
+    }
+
+    private CompletableFuture<Void> call(String op, HttpRequest req, long intended,
+                                         java.util.function.Consumer<JsonNode> onOk) {
+        Endpoint ep = endpoints.get(op);
+        long sent = System.nanoTime();
+        return client.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .handle((r, e) -> {
+                    long done = System.nanoTime();
+                    ep.record(done - intended, done - sent);
+                    if (e != null) {
+                        ep.error(e.getClass().getSimpleName());
+                        return null;
+                    }
+                    if (r.statusCode() == 429) {
+                        ep.error("HTTP 429");
+                        return null;
+                    }
+                    try {
+                        JsonNode body = MAPPER.readTree(r.body());
+                        if (r.statusCode() != 200 || body.path("responseCode").asInt(-1) != 0) {
+                            ep.error(r.statusCode() != 200 ? "HTTP " + r.statusCode() : body.path("responseMessage").asText());
+                        } else {
+                            onOk.accept(body);
+                        }
+                    } catch (IOException ex) {
+                        ep.error("响应不是 JSON");
+                    }
+                    return null;
+                });
+    }
+
+    private void remember(long code) {
+        waiting.addLast(code);
+        if (waiting.size() > 100_000) waiting.pollFirst();
+    }
+
+    private Long codeOf(String code) {
+        if (!code.startsWith(prefix)) return null;
+        try {
+            return Long.parseLong(code.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // 起终点、容器由序号推出来，回报时不用另外记
+    private String addJson(long n) {
+        return "{\"instructionCode\":\"" + prefix + n + "\",\"containerCode\":\"C" + (n % 200)
+                + "\",\"locationFrom\":\"G" + pad(n % 68 + 1) + "\",\"locationTo\":\"G" + pad((n * 7) % 68 + 1)
+                + "\",\"priority\":" + (n % 3) + "}";
+    }
+
+    private String statusJson(long n) {
+        return "{\"instructionCode\":\"" + prefix + n + "\",\"containerCode\":\"C" + (n % 200)
+                + "\",\"locationFrom\":\"G" + pad(n % 68 + 1) + "\",\"locationTo\":\"G" + pad((n * 7) % 68 + 1) + "\"}";
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest delete(String path, String json) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).timeout(TIMEOUT).GET().build();
+    }
+
+    private static String pad(long i) {
+        return i < 10 ? "0" + i : String.valueOf(i);
+    }
+
+    private static double[] parseMix(String mix) {
+        double[] w = new double[OPS.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            int i = Arrays.asList(OPS).indexOf(kv[0].trim());
+            if (i < 0 || kv.length != 2) throw new IllegalArgumentException("zdtx.load.mix 无法识别：" + part);
+            w[i] = Double.parseDouble(kv[1].trim());
+        }
+        double sum = Arrays.stream(w).sum();
+        for (int i = 0; i < w.length; i++) {
+            w[i] = w[i] / sum + (i > 0 ? w[i - 1] : 0);
+        }
+        return w;
+    }
+
+    private static int pick(double[] cumulative, double r) {
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+
+    // ===================== 采样 =====================
+
+    private Sample sample(long elapsedS) {
+        Sample s = new Sample();
+        s.elapsedS = elapsedS;
+        for (Endpoint e : endpoints.values()) {
+            s.intervals.put(e.name, e.interval.drain());
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        s.heapUsedMb = heap.getUsed() / 1048576.0;
+        s.oldAfterGcMb = oldGenAfterGc() / 1048576.0;
+        try {
+            Long keys = stringRedisTemplate.execute((RedisCallback<Long>) c -> c.serverCommands().dbSize());
+            s.redisKeys = keys == null ? -1 : keys;
+            Properties mem = stringRedisTemplate.execute((RedisCallback<Properties>) c -> c.serverCommands().info("memory"));
+            s.redisMemMb = mem == null ? -1 : Long.parseLong(mem.getProperty("used_memory", "-1").trim()) / 1048576.0;
+            if (KEY_SCAN) s.prefixes = keysByPrefix();
+        } catch (RuntimeException e) {
+            s.redisKeys = -1;
+        }
+        return s;
+    }
+
+    // 老年代上次 GC 后的占用，比 heap used 稳，长跑时持续上涨才算泄漏
+    private static long oldGenAfterGc() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && (name.contains("Old") || name.contains("Tenured"))
+                    && pool.getCollectionUsage() != null) {
+                return pool.getCollectionUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    // 按前两段（如 task:info、stats:od）计数
+    private Map<String, Long> keysByPrefix() {
+        Map<String, Long> counts = new TreeMap<>();
+        stringRedisTemplate.execute((RedisCallback<Void>) c -> {
+            try (Cursor<byte[]> cursor = c.keyCommands().scan(ScanOptions.scanOptions().count(1000).build())) {
+                while (cursor.hasNext()) {
+                    String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                    int first = key.indexOf(':');
+                    int second = first < 0 ? -1 : key.indexOf(':', first + 1);
+                    counts.merge(second < 0 ? key : key.substring(0, second), 1L, Long::sum);
+                }
+            }
+            return null;
+        });
+        return counts;
+    }
+
+    private String csvHeader() {
+        StringBuilder b = new StringBuilder("elapsed_s");
+        for (String op : OPS) {
+            b.append(',').append(op).append("_count,").append(op).append("_p50_ms,")
+                    .append(op).append("_p99_ms,").append(op).append("_max_ms");
+        }
+        return b.append(",heap_used_mb,old_after_gc_mb,redis_keys,redis_mem_mb").toString();
+    }
+
+    /**
+     * 采样点上老年代和 Redis key 数的线性拟合斜率（每小时），跳过预热期
+     */
+    private static String growth(List<Sample> samples) {
+        List<Sample> steady = new ArrayList<>();
+        for (Sample s : samples) {
+            if (s.elapsedS >= WARMUP_S) steady.add(s);
+        }
+        if (steady.size() < 2) return "采样点太少，看不出增长趋势";
+        Sample first = steady.get(0);
+        Sample last = steady.get(steady.size() - 1);
+        StringBuilder b = new StringBuilder(String.format(
+                "增长（%d 个采样点）：老年代 GC 后 %.1f → %.1f MB（%+.1f MB/h），Redis key %d → %d（%+.0f /h），Redis 内存 %.1f → %.1f MB（%+.1f MB/h）",
+                steady.size(), first.oldAfterGcMb, last.oldAfterGcMb, slope(steady, s -> s.oldAfterGcMb),
+                first.redisKeys, last.redisKeys, slope(steady, s -> (double) s.redisKeys),
+                first.redisMemMb, last.redisMemMb, slope(steady, s -> s.redisMemMb)));
+        if (!last.prefixes.isEmpty()) {
+            b.append("\n  key 前缀：");
+            last.prefixes.forEach((p, n) -> b.append(p).append('=')
+                    .append(first.prefixes.getOrDefault(p, 0L)).append("→").append(n).append("  "));
+        }
+        return b.toString();
+    }
+
+    private static double slope(List<Sample> samples, java.util.function.ToDoubleFunction<Sample> f) {
+        double n = samples.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (Sample s : samples) {
+            double x = s.elapsedS / 3600.0, y = f.applyAsDouble(s);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        double d = n * sxx - sx * sx;
+        return d == 0 ? 0 : (n * sxy - sx * sy) / d;
+    }
+
+    private static class Sample {
+        long elapsedS;
+        final Map<String, long[]> intervals = new LinkedHashMap<>();
+        double heapUsedMb;
+        double oldAfterGcMb;
+        long redisKeys;
+        double redisMemMb;
+        Map<String, Long> prefixes = Collections.emptyMap();
+
+        String csv() {
+            StringBuilder b = new StringBuilder().append(elapsedS);
+            intervals.forEach((op, h) -> b.append(',').append(LatencyHistogram.count(h))
+                    .append(',').append(ms(LatencyHistogram.percentile(h, 0.50)))
+                    .append(',').append(ms(LatencyHistogram.percentile(h, 0.99)))
+                    .append(',').append(ms(LatencyHistogram.percentile(h, 1.0))));
+            return b.append(String.format(",%.1f,%.1f,%d,%.1f", heapUsedMb, oldAfterGcMb, redisKeys, redisMemMb)).toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder(String.format("[%6ds]", elapsedS));
+            intervals.forEach((op, h) -> b.append(String.format("  %s n=%d p99=%sms", op, LatencyHistogram.count(h),
+                    ms(LatencyHistogram.percentile(h, 0.99)))));
+            return b.append(String.format("  heap=%.0fMB old=%.0fMB keys=%d redis=%.1fMB",
+                    heapUsedMb, oldAfterGcMb, redisKeys, redisMemMb)).toString();
+        }
+    }
+
+    private static String ms(long us) {
+        return String.format("%.1f", us / 1000.0);
+    }
+
+    // ===================== 直方图 =====================
+
+    private static class Endpoint {
+        final String name;
+        // 修正后（从计划时间算）/ 服务时间（从实际发出算）/ 采样区间内的修正后延迟
+        final LatencyHistogram corrected = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final LatencyHistogram interval = new LatencyHistogram();
+        final Map<String, Long> errors = new ConcurrentHashMap<>();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void record(long correctedNs, long serviceNs) {
+            corrected.record(correctedNs / 1000);
+            service.record(serviceNs / 1000);
+            interval.record(correctedNs / 1000);
+        }
+
+        void error(String kind) {
+            errors.merge(kind.length() > 60 ? kind.substring(0, 60) : kind, 1L, Long::sum);
+        }
+
+        void reset() {
+            corrected.drain();
+            service.drain();
+            errors.clear();
+        }
+
+        String summary() {
+            long[] c = corrected.drain();
+            long[] s = service.drain();
+            long n = LatencyHistogram.count(c);
+            long errs = errors.values().stream().mapToLong(Long::longValue).sum();
+            return String.format("%-9s n=%-8d 修正后 p50=%7sms p90=%7sms p99=%7sms p99.9=%7sms max=%8sms | 服务时间 p99=%7sms | 错误 %d%s",
+                    name, n, ms(LatencyHistogram.percentile(c, 0.50)), ms(LatencyHistogram.percentile(c, 0.90)),
+                    ms(LatencyHistogram.percentile(c, 0.99)), ms(LatencyHistogram.percentile(c, 0.999)),
+                    ms(LatencyHistogram.percentile(c, 1.0)), ms(LatencyHistogram.percentile(s, 0.99)),
+                    errs, errors.isEmpty() ? "" : " " + errors);
+        }
+    }
+
+    /**
+     * 对数-线性分桶（微秒）：64 以下每个值一个桶，往上每个 2 的幂再分 32 份，相对误差约 3%
+     */
+    static class LatencyHistogram {
+        private static final int SUB = 32;
+        private static final int SIZE = 2 * SUB + 58 * SUB;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(SIZE);
+
+        void record(long us) {
+            buckets.incrementAndGet(index(Math.max(0L, us)));
+        }
+
+        /**
+         * 取出当前计数并清零
+         */
+        long[] drain() {
+            long[] b = new long[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                b[i] = buckets.getAndSet(i, 0L);
+            }
+            return b;
+        }
+
+        static int index(long v) {
+            if (v < 2 * SUB) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) ((v >>> (e - 5)) & (SUB - 1));
+            return 2 * SUB + (e - 6) * SUB + sub;
+        }
+
+        static long upper(int i) {
+            if (i < 2 * SUB) return i;
+            int e = (i - 2 * SUB) / SUB + 6;
+            int sub = (i - 2 * SUB) % SUB;
+            return ((SUB + sub + 1L) << (e - 5)) - 1;
+        }
+
+        static long count(long[] b) {
+            long n = 0;
+            for (long x : b) n += x;
+            return n;
+        }
+
+        static long percentile(long[] b, double q) {
+            long total = count(b);
+            if (total == 0) return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < b.length; i++) {
+                seen += b[i];
+                if (seen >= rank) return upper(i);
+            }
+            return upper(b.length - 1);
+        }
+    }
+}
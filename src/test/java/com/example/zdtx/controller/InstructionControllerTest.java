@@ -0,0 +1,23 @@
+package com.example.zdtx.controller;
+
+import com.example.zdtx.domain.entity.Result;
+import com.example.zdtx.service.IngestGuardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 入队被拒：429 加 Retry-After（秒，向上取整）
+ */
+class InstructionControllerTest {
+
+    @Test
+    void rejectedIs429WithRetryAfterRoundedUp() {
+        ResponseEntity<Result<Void>> resp = InstructionController.rejected(new IngestGuardService.Busy("来源 A 限流", 3200));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, resp.getStatusCode());
+        assertEquals("4", resp.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
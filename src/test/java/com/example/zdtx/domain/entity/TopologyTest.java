@@ -0,0 +1,59 @@
+package com.example.zdtx.domain.entity;
+
+import com.example.zdtx.domain.dto.topology.TopologyConfigDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 冷启动行驶时间估计：开启时按最短路（学到的边权优先于配置），关闭时返回 UNREACHABLE 让调用方用固定默认值
+ */
+class TopologyTest {
+
+    /**
+     * 双向闭环 N1-N2-N3-N4，每段 1000ms；站点 S1 挂 N1，S3 挂 N3
+     */
+    private static TopologyConfigDTO ring() {
+        TopologyConfigDTO cfg = new TopologyConfigDTO();
+        cfg.setVersion("t");
+        cfg.setDefaultEdgeMs(500);
+        cfg.getLoops().add(new TopologyConfigDTO.LoopDTO("main", true, true, 1000,
+                Arrays.asList("N1", "N2", "N3", "N4")));
+        cfg.getAttach().put("S1", Collections.singletonList("N1"));
+        cfg.getAttach().put("S3", Collections.singletonList("N3"));
+        return cfg;
+    }
+
+    @Test
+    void coldEstimateUsesShortestPath() {
+        Topology t = Topology.build(ring(), null, true);
+        assertEquals(2000, t.estimateMs("s1", "s3"));
+        assertEquals(t.distanceMs("S1", "S3"), t.estimateMs("S1", "S3"));
+        assertEquals(Topology.UNREACHABLE, t.estimateMs("S1", "NOWHERE"));
+    }
+
+    @Test
+    void coldEstimateOffLeavesDefaultToCaller() {
+        Topology t = Topology.build(ring(), null, false);
+        assertEquals(Topology.UNREACHABLE, t.estimateMs("S1", "S3"));
+        // 最短路本身照算，只是不拿来当行驶时间估计
+        assertEquals(2000, t.distanceMs("S1", "S3"));
+    }
+
+    @Test
+    void learnedEdgeOverridesConfig() {
+        Map<String, Integer> learned = new HashMap<>();
+        learned.put("N1|N2", 200);
+        learned.put("N2|N3", 300);
+        Topology t = Topology.build(ring(), learned, true);
+        assertEquals(500, t.estimateMs("S1", "S3"));
+        // 反方向没学到，仍按配置，N3 → N4 → N1 也是 2000
+        assertEquals(2000, t.estimateMs("S3", "S1"));
+        assertEquals(1000, t.edgeMs("N2", "N1"));
+    }
+}
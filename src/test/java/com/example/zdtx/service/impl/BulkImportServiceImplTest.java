@@ -0,0 +1,100 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.ImportVO;
+import com.example.zdtx.service.IngestGuardService;
+import com.example.zdtx.service.InstructionServcie;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 流式导入：限流要等太久时停在被拒那一段的第一条，调用方从 resumeFrom 重发后接着入队；等得起的就等
+ */
+class BulkImportServiceImplTest {
+
+    private static final IngestGuardService.Busy LONG = new IngestGuardService.Busy("来源 WMS 限流", 5000);
+    private static final IngestGuardService.Busy SHORT = new IngestGuardService.Busy("来源 WMS 限流", 20);
+
+    private InstructionServcie instructionServcie;
+    private IngestGuardService ingestGuardService;
+    private BulkImportServiceImpl bulkImportService;
+
+    @BeforeEach
+    void setUp() {
+        instructionServcie = Mockito.mock(InstructionServcie.class);
+        ingestGuardService = Mockito.mock(IngestGuardService.class);
+        when(instructionServcie.importChunk(anyList())).thenReturn(Collections.emptyMap());
+        bulkImportService = new BulkImportServiceImpl(instructionServcie, ingestGuardService,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+        ReflectionTestUtils.setField(bulkImportService, "chunkSize", 2);
+        ReflectionTestUtils.setField(bulkImportService, "maxWaitMs", 100L);
+        ReflectionTestUtils.setField(bulkImportService, "maxErrors", 100);
+    }
+
+    @Test
+    void stopsAtFirstItemOfThrottledChunkAndResumes() {
+        // 第 2 条缺优先级，第二段是 3、4
+        List<String> lines = IntStream.range(0, 6)
+                .mapToObj(i -> i == 2 ? item(i).replace(",\"priority\":1", "") : item(i))
+                .collect(Collectors.toList());
+        when(ingestGuardService.checkAll(anyMap())).thenReturn(null, LONG);
+
+        ImportVO first = bulkImportService.importStream(ndjson(lines));
+        assertEquals(2, first.getAccepted());
+        assertEquals(1, first.getInvalid());
+        assertEquals(1, first.getChunks());
+        assertEquals(3, first.getResumeFrom());
+        assertEquals(5000L, first.getRetryAfterMs());
+        assertNotNull(first.getStopped());
+        // 停下的那一段整段没入队
+        verify(instructionServcie, times(1)).importChunk(anyList());
+        verify(ingestGuardService, times(2)).checkAll(Collections.singletonMap("WMS", 2));
+
+        reset(ingestGuardService);
+        ImportVO resumed = bulkImportService.importStream(ndjson(lines.subList(first.getResumeFrom(), lines.size())));
+        assertNull(resumed.getStopped());
+        assertEquals(3, resumed.getAccepted());
+        assertEquals(2, resumed.getChunks());
+    }
+
+    @Test
+    void shortWaitIsRetriedInPlace() {
+        when(ingestGuardService.checkAll(anyMap())).thenReturn(SHORT, SHORT, null);
+        ImportVO vo = bulkImportService.importStream(ndjson(List.of(item(0), item(1))));
+        assertNull(vo.getStopped());
+        assertEquals(2, vo.getAccepted());
+        verify(ingestGuardService, times(3)).checkAll(anyMap());
+    }
+
+    @Test
+    void rejectedByChunkAreReportedWithIndex() {
+        when(instructionServcie.importChunk(anyList())).thenReturn(Collections.singletonMap("I1", "重复指令"));
+        ImportVO vo = bulkImportService.importStream(ndjson(List.of(item(0), item(1))));
+        assertEquals(1, vo.getAccepted());
+        assertEquals(1, vo.getRejected());
+        assertEquals(1, vo.getErrors().get(0).getIndex());
+    }
+
+    private static String item(int i) {
+        return "{\"instructionCode\":\"I" + i + "\",\"containerCode\":\"C" + i + "\",\"locationFrom\":\"A\","
+                + "\"locationTo\":\"B\",\"priority\":1,\"systemCode\":\"WMS\"}";
+    }
+
+    private static ByteArrayInputStream ndjson(List<String> lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.config.IngestProperties;
+import com.example.zdtx.domain.vo.BatchSizeVO;
+import com.example.zdtx.service.DispatchBatchService;
+import com.example.zdtx.service.IngestGuardService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static com.example.zdtx.constants.RedisConstants.INGEST_BUCKET;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 入队令牌桶（本机 Redis）：超过桶容量的大批预支、多来源被拒时退回；水位背压的重试建议按各分区完成速率之和算
+ */
+class IngestGuardServiceImplTest {
+
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private IngestProperties properties;
+    private PartitionService partitionService;
+    private IngestGuardServiceImpl guard;
+
+    @BeforeAll
+    static void connect() {
+        factory = LocalRedis.connect();
+        template = new StringRedisTemplate(factory);
+    }
+
+    @AfterAll
+    static void close() {
+        if (factory != null) factory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        LocalRedis.flush(template);
+        properties = new IngestProperties();
+        properties.getSources().put("A", limit(1, 5));
+        properties.getSources().put("B", limit(1, 5));
+        partitionService = Mockito.mock(PartitionService.class);
+        guard = new IngestGuardServiceImpl(template, null, properties, Mockito.mock(TaskStore.class), partitionService);
+    }
+
+    @Test
+    void oversizedBatchBorrowsInsteadOfBeingRejected() {
+        // 桶满时超过容量的一批放行，令牌记成负数
+        assertNull(guard.check("A", 8));
+        assertTrue(tokens("A") < 0);
+
+        // 之后的请求要等欠下的补回来：欠 3 个、再要 1 个，按每秒 1 个约 4 秒
+        IngestGuardService.Busy busy = guard.check("A", 1);
+        assertNotNull(busy);
+        assertTrue(busy.retryAfterMs > 3500 && busy.retryAfterMs <= 4000, "retryAfterMs=" + busy.retryAfterMs);
+    }
+
+    @Test
+    void multiSourceRejectRefundsEarlierSources() {
+        // B 先用光
+        assertNull(guard.check("B", 5));
+
+        Map<String, Integer> bySource = new LinkedHashMap<>();
+        bySource.put("A", 3);
+        bySource.put("B", 2);
+        assertNotNull(guard.checkAll(bySource));
+
+        // A 已扣的 3 个退回，桶还是满的
+        assertEquals(5.0, tokens("A"), 0.5);
+        assertNull(guard.check("A", 5));
+    }
+
+    @Test
+    void depthRetryAfterUsesAllPartitionRates() {
+        properties.setLowWatermark(100);
+        ReflectionTestUtils.setField(guard, "busy", true);
+        ReflectionTestUtils.setField(guard, "waiting", 300L);
+        DispatchBatchService main = batchWithRate(1.0);
+        DispatchBatchService wh1 = batchWithRate(3.0);
+        Mockito.when(partitionService.partitions()).thenReturn(new TreeSet<>(Arrays.asList("", "WH1")));
+        Mockito.when(partitionService.batchOf("")).thenReturn(main);
+        Mockito.when(partitionService.batchOf("WH1")).thenReturn(wh1);
+
+        // 超出 low 200 条，各分区合计每秒完成 4 条
+        IngestGuardService.Busy busy = guard.check("A", 1);
+        assertNotNull(busy);
+        assertEquals(50_000L, busy.retryAfterMs);
+    }
+
+    private static DispatchBatchService batchWithRate(double ratePerSec) {
+        DispatchBatchService batch = Mockito.mock(DispatchBatchService.class);
+        BatchSizeVO vo = new BatchSizeVO();
+        vo.setCompletionRatePerSec(ratePerSec);
+        Mockito.when(batch.snapshot()).thenReturn(vo);
+        return batch;
+    }
+
+    private static IngestProperties.Limit limit(double rate, int burst) {
+        IngestProperties.Limit l = new IngestProperties.Limit();
+        l.setRatePerSec(rate);
+        l.setBurst(burst);
+        return l;
+    }
+
+    private static double tokens(String source) {
+        Object v = template.opsForHash().get(INGEST_BUCKET + source, "tokens");
+        return v == null ? Double.NaN : Double.parseDouble(String.valueOf(v));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.zdtx.service.impl;
+
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 用到真实 Redis 的用例共用：连本机 Redis 第 15 号库，本机没有 Redis 时跳过
+ */
+final class LocalRedis {
+
+    private LocalRedis() {
+    }
+
+    static LettuceConnectionFactory connect() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        config.setDatabase(15);
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        boolean up;
+        try {
+            up = "PONG".equals(new StringRedisTemplate(factory).execute((RedisCallback<String>) c -> c.ping()));
+        } catch (RuntimeException e) {
+            up = false;
+        }
+        if (!up) factory.destroy();
+        Assumptions.assumeTrue(up, "本机 Redis 不可用");
+        return factory;
+    }
+
+    static void flush(StringRedisTemplate template) {
+        template.execute((RedisCallback<Object>) c -> {
+            c.serverCommands().flushDb();
+            return null;
+        });
+    }
+}
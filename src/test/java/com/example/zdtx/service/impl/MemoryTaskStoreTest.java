@@ -0,0 +1,61 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryTaskStoreTest extends TaskStoreContractTest {
+
+    @TempDir
+    Path dir;
+
+    @Override
+    protected TaskStore createStore() {
+        return new MemoryTaskStore();
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        Path file = dir.resolve("store.json");
+        MemoryTaskStore a = new MemoryTaskStore();
+        ReflectionTestUtils.setField(a, "snapshotPath", file.toString());
+        a.addWaiting("T1", 1);
+        a.addWaiting("T2", 2);
+        a.putTask("T1", Collections.singletonMap("locationFrom", "A"));
+        a.setNodeAvailableAt("30", 1000L);
+        a.putStats("stats:od:A|B", Collections.singletonMap("mean_ms", "100"));
+        a.markStarted("T0", 50L);
+        a.snapshot();
+        assertTrue(Files.exists(file));
+
+        MemoryTaskStore b = new MemoryTaskStore();
+        ReflectionTestUtils.setField(b, "snapshotPath", file.toString());
+        b.load();
+        assertEquals(Arrays.asList("T2", "T1"), b.waitingByScoreDesc());
+        assertEquals("A", b.getTask("T1").get("locationFrom"));
+        assertEquals(1000L, b.nodeAvailableAt("30"));
+        assertEquals("100", b.getStats("stats:od:A|B", Collections.singletonList("mean_ms")).get(0));
+        assertEquals("50", b.startMarker("T0"));
+    }
+
+    @Test
+    void expiredMarkersAndStatsPurged() throws InterruptedException {
+        MemoryTaskStore store = new MemoryTaskStore();
+        store.setStartMarker("T1", "50", 1L);
+        store.setStartMarker("T2", "60", 0L);
+        store.incrStats("stats:completed:20260101", Collections.singletonMap("count", 1L), 1L);
+        Thread.sleep(5);
+        store.expire();
+        assertNull(store.startMarker("T1"));
+        assertEquals("60", store.startMarker("T2"));
+        assertNull(store.getStats("stats:completed:20260101", Collections.singletonList("count")).get(0));
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.zdtx.service.impl;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.example.zdtx.config.PooledClientHttpRequestFactory;
+import com.example.zdtx.domain.dto.remote.ConfirmTaskDTO;
+import com.example.zdtx.domain.vo.NotifyEndpointVO;
+import com.example.zdtx.utils.PooledHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上游通知：用本地桩服务器代替 WMS，验证攒批、顺序和失败重试。Redis 用 mock，不涉及溢出
+ */
+class NotifyServiceImplTest {
+
+    private HttpServer server;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    // 前几次请求返回 500
+    private final AtomicInteger failFirst = new AtomicInteger();
+    private NotifyServiceImpl notifyService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/confirm", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.incrementAndGet();
+            boolean fail = failFirst.getAndDecrement() > 0;
+            if (!fail) {
+                JSONArray arr = JSONUtil.parseArray(body);
+                for (int i = 0; i < arr.size(); i++) {
+                    received.add(arr.getJSONObject(i).getStr("instructionCode"));
+                }
+            }
+            byte[] resp = (fail ? "{\"responseCode\":1,\"responseMessage\":\"busy\"}" : "{\"responseCode\":0}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(fail ? 500 : 200, resp.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(resp);
+            }
+        });
+        server.start();
+
+        notifyService = new NotifyServiceImpl(Mockito.mock(StringRedisTemplate.class),
+                new RestTemplate(new PooledClientHttpRequestFactory(PooledHttpClient.defaults())));
+        ReflectionTestUtils.setField(notifyService, "enabled", true);
+        ReflectionTestUtils.setField(notifyService, "confirmUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/confirm");
+        ReflectionTestUtils.setField(notifyService, "createUrl", "");
+        ReflectionTestUtils.setField(notifyService, "feedbackUrl", "");
+        ReflectionTestUtils.setField(notifyService, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(notifyService, "batchSize", 20);
+        ReflectionTestUtils.setField(notifyService, "lingerMs", 50L);
+        ReflectionTestUtils.setField(notifyService, "maxAttempts", 5);
+        ReflectionTestUtils.setField(notifyService, "backoffMs", 10L);
+        ReflectionTestUtils.setField(notifyService, "maxBackoffMs", 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifyService.stop();
+        server.stop(0);
+    }
+
+    @Test
+    void batchesInOrder() throws Exception {
+        notifyService.start();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(notifyService.confirm(confirm("N" + i)));
+        }
+        NotifyEndpointVO stats = awaitSent(100);
+
+        assertEquals(100, received.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("N" + i, received.get(i));
+        }
+        assertTrue(requests.get() < 100, "应当合并成批，实际请求 " + requests.get() + " 次");
+        assertEquals(0L, stats.getLagMs());
+        assertFalse(notifyService.create(null), "没配置 url 的接口不入队");
+    }
+
+    @Test
+    void retriesWithBackoff() throws Exception {
+        failFirst.set(2);
+        notifyService.start();
+        for (int i = 0; i < 5; i++) {
+            notifyService.confirm(confirm("R" + i));
+        }
+        NotifyEndpointVO stats = awaitSent(5);
+
+        assertEquals(List.of("R0", "R1", "R2", "R3", "R4"), received);
+        assertEquals(2L, stats.getFailures());
+        assertEquals(2L, stats.getRetries());
+        assertEquals(0L, stats.getDeadLettered());
+    }
+
+    private NotifyEndpointVO awaitSent(long n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            NotifyEndpointVO stats = confirmStats();
+            if (stats.getSent() >= n) return stats;
+            Thread.sleep(20);
+        }
+        fail("10 秒内未送达，当前 " + confirmStats());
+        return null;
+    }
+
+    private NotifyEndpointVO confirmStats() {
+        return notifyService.stats().stream().filter(s -> "confirm".equals(s.getEndpoint())).findFirst().orElseThrow();
+    }
+
+    private static ConfirmTaskDTO confirm(String code) {
+        return new ConfirmTaskDTO(null, null, null, code, "C1", "G01", "G02");
+    }
+}
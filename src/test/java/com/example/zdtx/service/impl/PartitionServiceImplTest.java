@@ -0,0 +1,94 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.DispatchBatchService;
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分区路由：完成回报按 task:house 查出的分区喂回该分区 fork 出来的控制器，存储里没有的分区喂全局控制器
+ */
+class PartitionServiceImplTest {
+
+    private MemoryTaskStore store;
+    private DispatchBatchService global;
+    private DispatchBatchService wh1;
+    private DispatchBatchService wh2;
+    private PartitionServiceImpl partitionService;
+
+    @BeforeEach
+    void setUp() {
+        store = new MemoryTaskStore();
+        global = Mockito.mock(DispatchBatchService.class);
+        wh1 = Mockito.mock(DispatchBatchService.class);
+        wh2 = Mockito.mock(DispatchBatchService.class);
+        when(global.fork()).thenReturn(wh1, wh2);
+        partitionService = new PartitionServiceImpl(store, global);
+        ReflectionTestUtils.setField(partitionService, "parallelism", 2);
+        ReflectionTestUtils.setField(partitionService, "names", "wh1");
+        partitionService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        partitionService.shutdown();
+    }
+
+    @Test
+    void completionFeedsPartitionOfTask() {
+        enqueue("M1", "wh1");
+        partitionService.onCompleted(store.partitionOfTask("M1"));
+        verify(wh1).onCompleted();
+        verify(global, never()).onCompleted();
+    }
+
+    @Test
+    void unknownPartitionFallsBackToGlobal() {
+        partitionService.onCompleted("NOPE");
+        partitionService.onCompleted(store.partitionOfTask("GONE"));
+        verify(global, times(2)).onCompleted();
+        verify(wh1, never()).onCompleted();
+        assertFalse(partitionService.partitions().contains("NOPE"));
+    }
+
+    @Test
+    void partitionEnqueuedElsewhereIsRegisteredOnCompletion() {
+        // 别的实例入队的分区：本实例没登记，但存储里有
+        enqueue("M2", "wh2");
+        assertFalse(partitionService.partitions().contains("WH2"));
+        partitionService.onCompleted(store.partitionOfTask("M2"));
+        verify(wh2).onCompleted();
+        assertTrue(partitionService.partitions().contains("WH2"));
+    }
+
+    @Test
+    void dispatchedIsSummedAcrossPartitions() {
+        partitionService.onDispatched(TaskStore.DEFAULT_PARTITION, 3);
+        partitionService.onDispatched("WH1", 2);
+        assertEquals(5, partitionService.dispatched());
+        assertThrows(IllegalArgumentException.class, () -> partitionService.onDispatched("NOPE", 1));
+    }
+
+    @Test
+    void runAllVisitsEveryPartition() {
+        Map<String, String> results = partitionService.runAll(p -> "ok:" + p);
+        assertEquals("ok:", results.get(TaskStore.DEFAULT_PARTITION));
+        assertEquals("ok:WH1", results.get("WH1"));
+        assertEquals(2, results.size());
+    }
+
+    private void enqueue(String code, String houseCode) {
+        String p = TaskStore.partitionOf(houseCode);
+        store.partition(p).enqueueAll(Collections.singletonList(
+                new TaskStore.Waiting(code, 1.0, Collections.singletonMap("houseCode", houseCode))));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * key 布局迁移 v2 → v3（本机 Redis）：{zdtx} 下的工作集按 houseCode 拆到各分区 tag 下，索引按成员拆；
+ * 迁移锁被别的实例持有时等它迁完或等满租期放弃
+ */
+class RedisKeyspaceServiceImplTest {
+
+    private static final String V2 = "{zdtx}";
+    private static final String DEF = TaskStore.DEFAULT_PARTITION;
+
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private RedisKeyspaceServiceImpl keyspace;
+
+    @BeforeAll
+    static void connect() {
+        factory = LocalRedis.connect();
+        template = new StringRedisTemplate(factory);
+    }
+
+    @AfterAll
+    static void close() {
+        if (factory != null) factory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        LocalRedis.flush(template);
+        keyspace = new RedisKeyspaceServiceImpl(template);
+        ReflectionTestUtils.setField(keyspace, "migrate", true);
+        // 每页 2 个，走到分页
+        ReflectionTestUtils.setField(keyspace, "migrateBatch", 2);
+        ReflectionTestUtils.setField(keyspace, "migrateLockMs", 60000L);
+        seedV2();
+    }
+
+    @Test
+    void splitsWorkingSetByPartition() {
+        keyspace.init();
+
+        assertEquals("3", template.opsForValue().get(KEYSPACE_VERSION));
+        assertFalse(template.hasKey(KEYSPACE_MIGRATE_LOCK));
+        assertTrue(template.keys(V2 + "task:*").isEmpty());
+        assertTrue(template.keys(V2 + "node:*").isEmpty());
+
+        // 详情按 houseCode 定分区并写 task:house，默认分区不写
+        assertEquals("wh9", template.opsForHash().get(key("WH9", TASK_INFO) + "M1", "houseCode"));
+        assertTrue(template.hasKey(key("WH9", TASK_RUNNING_INFO) + "M2"));
+        assertTrue(template.hasKey(key(DEF, TASK_INFO) + "M3"));
+        assertEquals("WH9", template.opsForValue().get(TASK_HOUSE + "M1"));
+        assertEquals("WH9", template.opsForValue().get(TASK_HOUSE + "M2"));
+        assertNull(template.opsForValue().get(TASK_HOUSE + "M3"));
+
+        assertEquals(Set.of("M1"), template.opsForZSet().range(RedisTaskStore.waitingKey("WH9"), 0, -1));
+        assertEquals(Set.of("M1", "M2"), template.opsForZSet().range(key("WH9", TASK_RUNNING_ZSET), 0, -1));
+        assertEquals(Set.of("M4", "M5", "M6"), template.opsForZSet().range(key(DEF, TASK_RUNNING_ZSET), 0, -1));
+        assertEquals(Double.valueOf(2), template.opsForZSet().score(key("WH9", TASK_RUNNING_ZSET), "M2"));
+        assertEquals(Set.of("M1"), template.opsForSet().members(key("WH9", TASK_CANCELLED_SET)));
+        assertEquals(Set.of("M3", "M5", "M6"), template.opsForSet().members(key(DEF, TASK_CANCELLED_SET)));
+
+        String occupancy = key("WH9", NODE_OCCUPANCY) + "X";
+        assertEquals(Set.of("M2"), template.opsForZSet().range(occupancy, 0, -1));
+        assertTrue(template.getExpire(occupancy, TimeUnit.SECONDS) > 0);
+
+        // 段负载按在途详情里的路径重算
+        assertEquals("1", template.opsForHash().get(key("WH9", ROUTE_LOAD), "a"));
+        assertEquals("1", template.opsForHash().get(key("WH9", ROUTE_LOAD), "b"));
+        assertTrue(template.opsForSet().isMember(PARTITIONS, "WH9"));
+    }
+
+    @Test
+    void secondStartSkipsMigratedKeyspace() {
+        keyspace.init();
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "LATE", 1);
+        new RedisKeyspaceServiceImpl(template).init();
+        assertTrue(template.hasKey(V2 + TASK_RUNNING_ZSET));
+    }
+
+    @Test
+    void waitsForLockHolderToFinish() throws InterruptedException {
+        template.opsForValue().set(KEYSPACE_MIGRATE_LOCK, "other", 60, TimeUnit.SECONDS);
+        Thread holder = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                return;
+            }
+            template.opsForValue().set(KEYSPACE_VERSION, "3");
+        });
+        holder.start();
+        long start = System.currentTimeMillis();
+        keyspace.init();
+        holder.join();
+        assertTrue(System.currentTimeMillis() - start >= 500);
+        // 别的实例负责迁移，本实例一个 key 都没动
+        assertTrue(template.hasKey(V2 + TASK_INFO + "M1"));
+        assertEquals("other", template.opsForValue().get(KEYSPACE_MIGRATE_LOCK));
+    }
+
+    @Test
+    void givesUpAfterLeaseWhenLockIsHeld() {
+        ReflectionTestUtils.setField(keyspace, "migrateLockMs", 1500L);
+        template.opsForValue().set(KEYSPACE_MIGRATE_LOCK, "other", 60, TimeUnit.SECONDS);
+        long start = System.currentTimeMillis();
+        keyspace.init();
+        long waited = System.currentTimeMillis() - start;
+        assertTrue(waited >= 1500 && waited < 10000, "waited=" + waited);
+        assertEquals("2", template.opsForValue().get(KEYSPACE_VERSION));
+        assertTrue(template.hasKey(V2 + TASK_INFO + "M1"));
+    }
+
+    /**
+     * v2 布局：M1 在 wh9 等待，M2 在 WH9 执行，M3 默认分区，M4/M5/M6 没有详情
+     */
+    private static void seedV2() {
+        template.opsForValue().set(KEYSPACE_VERSION, "2");
+        template.opsForHash().put(V2 + TASK_INFO + "M1", "houseCode", "wh9");
+        template.opsForHash().put(V2 + TASK_INFO + "M3", "houseCode", "");
+        template.opsForHash().put(V2 + TASK_RUNNING_INFO + "M2", "houseCode", "WH9");
+        template.opsForHash().put(V2 + TASK_RUNNING_INFO + "M2", "route", "a,b");
+        template.opsForZSet().add(V2 + TASK_WAITING_ZSET + ":WH9", "M1", 1);
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "M1", 1);
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "M2", 2);
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "M4", 4);
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "M5", 5);
+        template.opsForZSet().add(V2 + TASK_RUNNING_ZSET, "M6", 6);
+        template.opsForSet().add(V2 + TASK_CANCELLED_SET, "M1", "M3", "M5", "M6");
+        template.opsForZSet().add(V2 + NODE_OCCUPANCY + "X", "M2", 100);
+        template.opsForHash().put(V2 + ROUTE_LOAD, "a", "7");
+    }
+}
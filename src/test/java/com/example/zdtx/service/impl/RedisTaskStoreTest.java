@@ -0,0 +1,53 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 连本机 Redis 的第 15 号库跑同一套约定，每条用例前清库；本机没有 Redis 时跳过
+ */
+class RedisTaskStoreTest extends TaskStoreContractTest {
+
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    @BeforeAll
+    static void connect() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        config.setDatabase(15);
+        factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+        boolean up;
+        try {
+            up = "PONG".equals(template.execute((RedisCallback<String>) c -> c.ping()));
+        } catch (RuntimeException e) {
+            up = false;
+        }
+        Assumptions.assumeTrue(up, "本机 Redis 不可用");
+    }
+
+    @AfterAll
+    static void close() {
+        if (factory != null) factory.destroy();
+    }
+
+    @Override
+    protected TaskStore createStore() {
+        template.execute((RedisCallback<Object>) c -> {
+            c.serverCommands().flushDb();
+            return null;
+        });
+        // 网关不启动时在调用线程上直接发
+        RedisGatewayServiceImpl gateway = new RedisGatewayServiceImpl(template, new RedisKeyspaceServiceImpl(template));
+        ReflectionTestUtils.setField(gateway, "timeoutMs", 5000L);
+        return new RedisTaskStore(template, gateway);
+    }
+}
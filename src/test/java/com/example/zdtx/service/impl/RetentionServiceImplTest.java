@@ -0,0 +1,110 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.vo.RetentionVO;
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.zdtx.constants.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * task:completed 存量压缩（本机 Redis）：耗时收进所在分区的 legacy 汇总、超期未回报的设 TTL、在途和近期的不动、已有 TTL 的跳过
+ */
+class RetentionServiceImplTest {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate template;
+
+    private RetentionServiceImpl retentionService;
+
+    @BeforeAll
+    static void connect() {
+        factory = LocalRedis.connect();
+        template = new StringRedisTemplate(factory);
+    }
+
+    @AfterAll
+    static void close() {
+        if (factory != null) factory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        LocalRedis.flush(template);
+        retentionService = new RetentionServiceImpl(Mockito.mock(TaskStore.class), template, null);
+        ReflectionTestUtils.setField(retentionService, "enabled", true);
+        ReflectionTestUtils.setField(retentionService, "completedTtlMs", 2 * DAY_MS);
+        ReflectionTestUtils.setField(retentionService, "staleStartMs", 7 * DAY_MS);
+        ReflectionTestUtils.setField(retentionService, "rollupDays", 90);
+        ReflectionTestUtils.setField(retentionService, "compactBatch", 1000);
+        ReflectionTestUtils.setField(retentionService, "dedupeWindowMs", DAY_MS);
+    }
+
+    @Test
+    void compactClassifiesEveryKeyOncePerPartition() {
+        long now = System.currentTimeMillis();
+        String def = TaskStore.DEFAULT_PARTITION;
+        set(completed(def, "D1"), "1500");
+        set(completed(def, "S1"), String.valueOf(now - 8 * DAY_MS));
+        set(completed(def, "R1"), String.valueOf(now - 8 * DAY_MS));
+        template.opsForZSet().add(key(def, TASK_RUNNING_ZSET), "R1", now);
+        set(completed(def, "F1"), String.valueOf(now - 60_000));
+        template.opsForValue().set(completed("WH1", "T1"), "200", 1, TimeUnit.HOURS);
+        set(completed("WH1", "W1"), "300");
+
+        RetentionVO vo = retentionService.compact();
+        assertNull(vo.getLastError());
+        assertEquals(6, vo.getScanned());
+        assertEquals(1, vo.getWithTtl());
+        assertEquals(2, vo.getExpiredFinished());
+        assertEquals(1, vo.getExpiredStale());
+        assertEquals(2, vo.getLive());
+
+        assertTtlSet(completed(def, "D1"));
+        assertTtlSet(completed(def, "S1"));
+        assertTtlSet(completed("WH1", "W1"));
+        assertEquals(-1L, template.getExpire(completed(def, "R1")));
+        assertEquals(-1L, template.getExpire(completed(def, "F1")));
+
+        // 耗时按所在分区汇总，1500 落在 2^10..2^11 桶
+        assertEquals("1", template.opsForHash().get(key(def, STATS_COMPLETED_LEGACY), "count"));
+        assertEquals("1500", template.opsForHash().get(key(def, STATS_COMPLETED_LEGACY), "sum_ms"));
+        assertEquals("1", template.opsForHash().get(key(def, STATS_COMPLETED_LEGACY), "b11"));
+        assertEquals("300", template.opsForHash().get(key("WH1", STATS_COMPLETED_LEGACY), "sum_ms"));
+    }
+
+    @Test
+    void secondPassDoesNotCountTwice() {
+        set(completed(TaskStore.DEFAULT_PARTITION, "D1"), "1500");
+        retentionService.compact();
+        RetentionVO vo = retentionService.compact();
+        assertEquals(1, vo.getExpiredFinished());
+        assertEquals(1, vo.getWithTtl());
+        assertEquals("1", template.opsForHash().get(key(TaskStore.DEFAULT_PARTITION, STATS_COMPLETED_LEGACY), "count"));
+    }
+
+    private static String completed(String partition, String code) {
+        return key(partition, TASK_COMPLETED_SET) + code;
+    }
+
+    private static void set(String key, String value) {
+        template.opsForValue().set(key, value);
+    }
+
+    private static void assertTtlSet(String key) {
+        Long ttl = template.getExpire(key, TimeUnit.MILLISECONDS);
+        assertNotNull(ttl);
+        assertTrue(ttl > DAY_MS && ttl <= 2 * DAY_MS, key + " ttl=" + ttl);
+    }
+}
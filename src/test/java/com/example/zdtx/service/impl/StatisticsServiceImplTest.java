@@ -0,0 +1,80 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.domain.dto.status.StatusUpdateDTO;
+import com.example.zdtx.service.DegradedModeService;
+import com.example.zdtx.service.NotifyService;
+import com.example.zdtx.service.PartitionService;
+import com.example.zdtx.service.RetentionService;
+import com.example.zdtx.service.TaskLifecycleService;
+import com.example.zdtx.utils.EmaStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static com.example.zdtx.constants.RedisConstants.CONTAINER_DURATION;
+import static com.example.zdtx.constants.RedisConstants.STATION_SERVICE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 站点作业时间学习：同一容器连续两段的间隔减去本段 OD 均值，计入起点站；不受容器连续任务统计区间限制
+ */
+class StatisticsServiceImplTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private MemoryTaskStore store;
+    private StatisticsServiceImpl statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        store = new MemoryTaskStore();
+        statisticsService = new StatisticsServiceImpl(store, Mockito.mock(DegradedModeService.class),
+                Mockito.mock(TaskLifecycleService.class), Mockito.mock(NotifyService.class),
+                Mockito.mock(PartitionService.class), Mockito.mock(RetentionService.class));
+    }
+
+    @Test
+    void serviceIsIntervalMinusOdMean() {
+        // A → B 走 60 秒，在 B 作业 120 秒，B → D 再走 60 秒
+        finish("T1", "a", "b", T0, T0 + 60_000);
+        finish("T2", "b", "d", T0 + 180_000, T0 + 240_000);
+
+        assertEquals(120_000L, mean(STATION_SERVICE + "B"));
+        assertEquals("1", stat(STATION_SERVICE + "B", EmaStats.F_CNT));
+        // 间隔 180 秒超出连续任务统计区间，不记，但站点作业照样学
+        assertNull(stat(CONTAINER_DURATION + "C1", EmaStats.F_CNT));
+    }
+
+    @Test
+    void notContinuousLearnsNothing() {
+        finish("T1", "a", "b", T0, T0 + 60_000);
+        // 从别的站出发，不是同一容器的下一段
+        finish("T2", "x", "d", T0 + 180_000, T0 + 240_000);
+        assertNull(stat(STATION_SERVICE + "X", EmaStats.F_CNT));
+        assertNull(stat(STATION_SERVICE + "B", EmaStats.F_CNT));
+    }
+
+    @Test
+    void intervalShorterThanTravelIsDropped() {
+        finish("T1", "a", "b", T0, T0 + 60_000);
+        // 间隔 30 秒，小于 B → D 的 OD 均值 60 秒
+        finish("T2", "b", "d", T0 + 30_000, T0 + 90_000);
+        assertNull(stat(STATION_SERVICE + "B", EmaStats.F_CNT));
+    }
+
+    private void finish(String code, String from, String to, long startedAt, long finishedAt) {
+        store.markStarted(code, startedAt);
+        assertTrue(statisticsService.updateStatus(new StatusUpdateDTO(code, from, to, "c1", new Date(finishedAt))).getData());
+    }
+
+    private long mean(String key) {
+        return (long) Double.parseDouble(stat(key, EmaStats.F_MEAN));
+    }
+
+    private String stat(String key, String field) {
+        return store.getStats(key, Collections.singletonList(field)).get(0);
+    }
+}
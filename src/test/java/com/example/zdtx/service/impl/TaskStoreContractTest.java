@@ -0,0 +1,206 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.service.TaskStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TaskStore 的行为约定，各实现继承后给出一个空的 store 即可
+ */
+abstract class TaskStoreContractTest {
+
+    protected TaskStore store;
+
+    protected abstract TaskStore createStore();
+
+    @BeforeEach
+    void setUpStore() {
+        store = createStore();
+    }
+
+    @Test
+    void waitingOrderedByScoreThenCodeDesc() {
+        store.addWaiting("A", 1);
+        store.addWaiting("B", 3);
+        store.addWaiting("C", 3);
+        store.addWaiting("D", 2);
+        assertEquals(Arrays.asList("C", "B", "D", "A"), store.waitingByScoreDesc());
+        assertEquals(4, store.waitingSize());
+
+        // 重复入队只更新分数
+        store.addWaiting("A", 5);
+        assertEquals(Arrays.asList("A", "C", "B", "D"), store.waitingByScoreDesc());
+        assertEquals(4, store.waitingSize());
+        assertEquals(5.0, store.waitingScore("A"));
+    }
+
+    @Test
+    void waitingTopIsPrefixOfScoreOrder() {
+        store.addWaiting("A", 1);
+        store.addWaiting("B", 3);
+        store.addWaiting("C", 3);
+        store.addWaiting("D", 2);
+        assertEquals(Arrays.asList("C", "B"), store.waitingTop(2));
+        assertEquals(Arrays.asList("C", "B", "D", "A"), store.waitingTop(10));
+        assertEquals(store.waitingByScoreDesc(), store.waitingTop(0));
+    }
+
+    @Test
+    void removeWaiting() {
+        store.addWaiting("A", 1);
+        assertTrue(store.removeWaiting("A"));
+        assertFalse(store.removeWaiting("A"));
+        assertNull(store.waitingScore("A"));
+        assertEquals(0, store.waitingSize());
+        assertTrue(store.waitingByScoreDesc().isEmpty());
+    }
+
+    @Test
+    void partitionsHaveSeparateQueuesAndResolveByCode() {
+        TaskStore wh1 = store.partition("WH1");
+        store.addWaiting("A", 1);
+        wh1.enqueueAll(Collections.singletonList(new TaskStore.Waiting("B", 2, fields("houseCode", "WH1"))));
+
+        assertEquals(Collections.singletonList("A"), store.waitingByScoreDesc());
+        assertEquals(Collections.singletonList("B"), wh1.waitingByScoreDesc());
+        assertNull(store.waitingScore("B"));
+        assertEquals(1, store.partition("WH1").waitingSize());
+        assertTrue(store.partitions().contains("WH1"));
+
+        // 只拿到指令号时先找所属分区，再在该分区上读详情、标记
+        assertEquals("WH1", store.partitionOfTask("B"));
+        assertEquals(TaskStore.DEFAULT_PARTITION, store.partitionOfTask("A"));
+        TaskStore owner = store.partition(store.partitionOfTask("B"));
+        assertEquals("WH1", owner.getTask("B").get("houseCode"));
+        assertTrue(wh1.markStarted("B", 1L));
+        assertFalse(owner.markStarted("B", 2L));
+        assertTrue(wh1.removeWaiting("B"));
+        // 登记过的分区队列空了也还在
+        assertTrue(store.partitions().contains("WH1"));
+    }
+
+    @Test
+    void enqueueAllWritesScoresAndDetails() {
+        store.enqueueAll(Arrays.asList(
+                new TaskStore.Waiting("T1", 10, fields("locationFrom", "A", "priority", "1")),
+                new TaskStore.Waiting("T2", 20, fields("locationFrom", "B", "priority", "2"))));
+        assertEquals(Arrays.asList("T2", "T1"), store.waitingByScoreDesc());
+
+        List<Map<String, String>> infos = store.getTasks(Arrays.asList("T1", "NONE", "T2"));
+        assertEquals(3, infos.size());
+        assertEquals("A", infos.get(0).get("locationFrom"));
+        assertTrue(infos.get(1).isEmpty());
+        assertEquals("2", infos.get(2).get("priority"));
+    }
+
+    @Test
+    void taskDetailsMergeAndDelete() {
+        assertTrue(store.getTask("T1").isEmpty());
+        store.putTask("T1", fields("locationFrom", "A", "priority", "1"));
+        store.putTask("T1", fields("priority", "3"));
+        Map<String, String> m = store.getTask("T1");
+        assertEquals("A", m.get("locationFrom"));
+        assertEquals("3", m.get("priority"));
+        assertEquals(m, store.await(store.getTaskAsync("T1")));
+
+        store.deleteTask("T1");
+        assertTrue(store.getTask("T1").isEmpty());
+    }
+
+    @Test
+    void nodeAvailability() {
+        assertNull(store.nodeAvailableAt("30"));
+        store.setNodeAvailableAt("30", 1000L);
+        store.setNodeAvailableAt("30", 2000L);
+        assertEquals(2000L, store.nodeAvailableAt("30"));
+    }
+
+    @Test
+    void occupancyDropsReleasedAndReoccupiesOnlyExisting() {
+        store.occupy("30", "T1", 1000L, 0L);
+        store.occupy("30", "T2", 3000L, 0L);
+        assertEquals(Arrays.asList(1000L, 3000L), sorted(store.occupancy("30", 500L)));
+        assertEquals(Collections.singletonList(3000L), store.occupancy("30", 2000L));
+
+        store.reoccupy("30", "T1", 5000L);
+        store.reoccupy("30", "T9", 5000L);
+        assertEquals(Arrays.asList(3000L, 5000L), sorted(store.occupancy("30", 2000L)));
+
+        // 占用时顺带清掉已释放的
+        store.occupy("30", "T3", 9000L, 4000L);
+        assertEquals(Arrays.asList(5000L, 9000L), sorted(store.occupancy("30", 0L)));
+    }
+
+    @Test
+    void dueIndexCountsAndPrunes() {
+        Map<String, Long> due = new HashMap<>();
+        due.put("T1", 1000L);
+        due.put("T2", 2000L);
+        due.put("T3", 3000L);
+        store.addDue(due);
+        assertEquals(2, store.countDue(1500L, 3000L));
+        store.removeDue("T3");
+        assertEquals(1, store.countDue(1500L, 3000L));
+        assertEquals(1, store.pruneDue(2000L));
+        assertEquals(1, store.countDue(0L, Long.MAX_VALUE));
+    }
+
+    @Test
+    void statsFieldsAlignedWithRequest() {
+        List<String> fields = Arrays.asList("mean_ms", "std_ms", "count");
+        assertEquals(Arrays.asList(null, null, null), store.getStats("stats:od:A|B", fields));
+
+        store.putStats("stats:od:A|B", fields("mean_ms", "100", "count", "1"));
+        store.putStats("stats:od:A|B", fields("count", "2"));
+        assertEquals(Arrays.asList("100", null, "2"), store.getStats("stats:od:A|B", fields));
+        assertEquals(Collections.singletonList("100"),
+                store.await(store.getStatsAsync("stats:od:A|B", Collections.singletonList("mean_ms"))));
+    }
+
+    @Test
+    void incrStatsAccumulates() {
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put("count", 1L);
+        deltas.put("sum_ms", 250L);
+        store.incrStats("stats:completed:20260101", deltas, 60000L);
+        store.incrStats("stats:completed:20260101", deltas, 60000L);
+        assertEquals(Arrays.asList("2", "500"),
+                store.getStats("stats:completed:20260101", Arrays.asList("count", "sum_ms")));
+    }
+
+    @Test
+    void startMarkerOnlyOnce() {
+        assertNull(store.startMarker("T1"));
+        assertTrue(store.markStarted("T1", 100L));
+        assertFalse(store.markStarted("T1", 200L));
+        assertEquals("100", store.startMarker("T1"));
+
+        // 完成回报改写成耗时
+        store.setStartMarker("T1", "50", 60000L);
+        assertEquals("50", store.startMarker("T1"));
+        assertFalse(store.markStarted("T1", 300L));
+    }
+
+    private static List<Long> sorted(List<Long> list) {
+        List<Long> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static Map<String, String> fields(String... kv) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i + 1 < kv.length; i += 2) {
+            m.put(kv[i], kv[i + 1]);
+        }
+        return m;
+    }
+}
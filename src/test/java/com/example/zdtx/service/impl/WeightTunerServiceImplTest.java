@@ -0,0 +1,76 @@
+package com.example.zdtx.service.impl;
+
+import com.example.zdtx.config.StationProperties;
+import com.example.zdtx.service.DispatchJournalService;
+import com.example.zdtx.service.PartitionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * 调参回滚守护：切换后一个观察窗口内下发速率比切换前降得太多就退回原权重，没降就保留
+ */
+class WeightTunerServiceImplTest {
+
+    private static final long WINDOW_MS = 1500;
+
+    private SchedulingWeightsServiceImpl weights;
+    private PartitionService partitionService;
+    private WeightTunerServiceImpl tuner;
+    private DispatchPlanner.Weights tuned;
+
+    @BeforeEach
+    void setUp() {
+        weights = new SchedulingWeightsServiceImpl(new StationProperties());
+        partitionService = Mockito.mock(PartitionService.class);
+        tuner = new WeightTunerServiceImpl(weights, Mockito.mock(DispatchJournalService.class), partitionService);
+        ReflectionTestUtils.setField(tuner, "guardWindowMs", WINDOW_MS);
+        ReflectionTestUtils.setField(tuner, "maxDrop", 0.2);
+        tuned = DispatchPlanner.Weights.DEFAULTS.with("k", DispatchPlanner.Weights.DEFAULTS.get("k") * 2);
+    }
+
+    @Test
+    void rollsBackWhenRateDrops() throws InterruptedException {
+        switchAfterBaseline();
+        // 切换后一条都没发出去
+        Thread.sleep(WINDOW_MS + 100);
+        tuner.sample();
+        assertEquals(DispatchPlanner.Weights.DEFAULTS, weights.current());
+        assertFalse(tuner.info().getGuarding());
+        assertNull(tuner.rollback(), "回滚守护用掉了 previous");
+    }
+
+    @Test
+    void keepsWeightsWhenRateHolds() throws InterruptedException {
+        switchAfterBaseline();
+        when(partitionService.dispatched()).thenReturn(110L + 200L);
+        Thread.sleep(WINDOW_MS + 100);
+        tuner.sample();
+        assertEquals(tuned, weights.current());
+        assertFalse(tuner.info().getGuarding());
+    }
+
+    @Test
+    void observesUntilWindowEnds() throws InterruptedException {
+        switchAfterBaseline();
+        tuner.sample();
+        assertTrue(tuner.info().getGuarding());
+        assertEquals(tuned, weights.current());
+    }
+
+    /**
+     * 切换前约 1.1 秒发了 110 条（0.1 条/毫秒），然后按自动调参的方式带守护切到 tuned
+     */
+    private void switchAfterBaseline() throws InterruptedException {
+        when(partitionService.dispatched()).thenReturn(0L);
+        tuner.sample();
+        Thread.sleep(1100);
+        when(partitionService.dispatched()).thenReturn(110L);
+        ReflectionTestUtils.invokeMethod(tuner, "switchTo", tuned, "测试", true);
+        assertTrue(tuner.info().getGuarding());
+    }
+}